@@ -1,8 +1,11 @@
 package org.open4goods.api.config;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.open4goods.api.config.yml.ApiProperties;
@@ -13,6 +16,7 @@ import org.open4goods.api.services.VerticalsGenerationService;
 import org.open4goods.api.services.completion.AmazonCompletionService;
 import org.open4goods.api.services.completion.EprelCompletionService;
 import org.open4goods.api.services.completion.IcecatCompletionService;
+import org.open4goods.api.services.completion.PerceptualHashIndex;
 import org.open4goods.api.services.completion.ResourceCompletionService;
 import org.open4goods.api.services.completion.WikidataCompletionService;
 import org.open4goods.api.services.store.DataFragmentStoreService;
@@ -41,7 +45,9 @@ import org.open4goods.icecat.services.loader.FeatureLoader;
 import org.open4goods.model.StandardiserService;
 import org.open4goods.model.constants.CacheConstants;
 import org.open4goods.model.constants.UrlConstants;
+import org.open4goods.model.datafragment.DataFragment;
 import org.open4goods.model.exceptions.TechnicalException;
+import org.open4goods.model.exceptions.ValidationException;
 import org.open4goods.model.price.Currency;
 import org.open4goods.model.price.Price;
 import org.open4goods.model.vertical.LegacyPromptConfig;
@@ -73,6 +79,8 @@ import org.open4goods.services.feedservice.service.KwankoFeedService;
 import org.open4goods.services.feedservice.service.WebgainsFeedService;
 import org.open4goods.services.feedservice.service.FeedService;
 import org.open4goods.services.imageprocessing.service.ImageMagickService;
+import org.open4goods.services.productrepository.changes.ElasticProductChangeBus;
+import org.open4goods.services.productrepository.config.IndexationConfig;
 import org.open4goods.services.productrepository.services.ProductRepository;
 import org.open4goods.services.prompt.service.PromptService;
 import org.open4goods.services.remotefilecaching.config.RemoteFileCachingProperties;
@@ -361,8 +369,13 @@ public class ApiConfig {
 
 
 	@Bean
-	ResourceCompletionService resourceCompletionService(ImageMagickService imageService, VerticalsConfigService verticalConfigService, ResourceService resourceService, ProductRepository dataRepository, ApiProperties apiProperties, ObjectProvider<DjlImageEmbeddingService> imageEmbeddingServiceProvider) {
-		return new ResourceCompletionService(imageService, verticalConfigService, resourceService, dataRepository, apiProperties, imageEmbeddingServiceProvider.getIfAvailable());
+	PerceptualHashIndex perceptualHashIndex(ApiProperties apiProperties) {
+		return new PerceptualHashIndex(Path.of(apiProperties.workFolder(), "phash-index.log"));
+	}
+
+	@Bean
+	ResourceCompletionService resourceCompletionService(ImageMagickService imageService, VerticalsConfigService verticalConfigService, ResourceService resourceService, ProductRepository dataRepository, ApiProperties apiProperties, ObjectProvider<DjlImageEmbeddingService> imageEmbeddingServiceProvider, PerceptualHashIndex perceptualHashIndex) {
+		return new ResourceCompletionService(imageService, verticalConfigService, resourceService, dataRepository, apiProperties, imageEmbeddingServiceProvider.getIfAvailable(), perceptualHashIndex);
 
 	}
 
@@ -489,8 +502,8 @@ public class ApiConfig {
         }
 
 	@Bean
-	DataFragmentStoreService dataFragmentStoreService(final ApiProperties config, @Autowired StandardiserService standardiserService, @Autowired AggregationFacadeService generationService, @Autowired ProductRepository aggregatedDataRepository) {
-		return new DataFragmentStoreService(standardiserService, generationService, aggregatedDataRepository, config.getIndexationConfig());
+	DataFragmentStoreService dataFragmentStoreService(final ApiProperties config, @Autowired StandardiserService standardiserService, @Autowired AggregationFacadeService generationService, @Autowired ProductRepository aggregatedDataRepository, SerialisationService serialisationService) {
+		return new DataFragmentStoreService(standardiserService, generationService, aggregatedDataRepository, indexationConfig(config), serialisationService);
 	}
 
 	/**
@@ -505,8 +518,25 @@ public class ApiConfig {
 
 	@Bean
 	@org.springframework.context.annotation.Profile("!local")
-	ProductRepository aggregatedDatasRepository(@Autowired final ApiProperties config, ElasticsearchOperations elasticsearchOperations) {
-		return new ProductRepository(config.getIndexationConfig(), elasticsearchOperations);
+	ProductRepository aggregatedDatasRepository(@Autowired final ApiProperties config, ElasticsearchOperations elasticsearchOperations, SerialisationService serialisationService) {
+		IndexationConfig indexationConfig = indexationConfig(config);
+		ProductRepository repository = new ProductRepository(indexationConfig, elasticsearchOperations, serialisationService);
+		// Notify the front nodes of the indexed changes, for them to evict their caches
+		if (indexationConfig.getChanges().isEnabled()) {
+			repository.setChangeBus(new ElasticProductChangeBus(elasticsearchOperations, indexationConfig.getChanges()));
+		}
+		return repository;
+	}
+
+	/**
+	 * The indexation config, with the queues journal located in the work folder if not explicitly set
+	 */
+	private IndexationConfig indexationConfig(final ApiProperties config) {
+		IndexationConfig indexationConfig = config.getIndexationConfig();
+		if (null == indexationConfig.getJournal().getFolder()) {
+			indexationConfig.getJournal().setFolder(config.dataFragmentsQueueFolderLocation());
+		}
+		return indexationConfig;
 	}
 
 	@Bean
@@ -543,12 +573,24 @@ public class ApiConfig {
 
 	@Bean
 	FeedIndexingProperties feedIndexingProperties() {
-		return new FeedIndexingProperties();
+		FeedIndexingProperties properties = new FeedIndexingProperties();
+		properties.setFingerprintsFolder(apiProperties.workFolder() + "feed-fingerprints");
+		return properties;
 	}
 
 	@Bean
 	DataFragmentIndexer dataFragmentIndexer(@Autowired final DataFragmentStoreService dataFragmentStoreService) {
-		return (dataFragment, datasourceConfigName) -> dataFragmentStoreService.queueDataFragment(dataFragment);
+		return new DataFragmentIndexer() {
+			@Override
+			public CompletableFuture<Void> index(DataFragment dataFragment, String datasourceConfigName) throws ValidationException {
+				return dataFragmentStoreService.queueDataFragment(dataFragment);
+			}
+
+			@Override
+			public void seen(Collection<Long> productIds, String datasourceName) {
+				dataFragmentStoreService.seen(productIds, datasourceName);
+			}
+		};
 	}
 
 	@Bean
@@ -307,6 +307,17 @@ public class ApiProperties {
 	@Min(1)
 	private int eprelRefreshDays = 1;
 
+	/**
+	 * If true, verticals are scored by streaming their products twice and emitting
+	 * scores only partial updates, instead of loading the whole vertical in memory.
+	 */
+	private boolean streamedScoring = true;
+
+	/**
+	 * Configuration of the vertical batch pipeline (concurrency, memory budget)
+	 */
+	private BatchConfig batchConfig = new BatchConfig();
+
 	public List<Integer> getAllowedImagesSizeSuffixes() {
 		return allowedImagesSizeSuffixes;
 	}
@@ -347,6 +358,22 @@ public class ApiProperties {
 		this.completionConcurrency = completionConcurrency;
 	}
 
+	public boolean isStreamedScoring() {
+		return streamedScoring;
+	}
+
+	public void setStreamedScoring(boolean streamedScoring) {
+		this.streamedScoring = streamedScoring;
+	}
+
+	public BatchConfig getBatchConfig() {
+		return batchConfig;
+	}
+
+	public void setBatchConfig(BatchConfig batchConfig) {
+		this.batchConfig = batchConfig;
+	}
+
 	public int getEprelRefreshDays() {
 		return eprelRefreshDays;
 	}
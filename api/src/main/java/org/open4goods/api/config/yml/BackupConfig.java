@@ -50,6 +50,38 @@ public class BackupConfig {
 	 */
 	private int productExportPageSize = 1000;
 
+	/**
+	 * If true, product backups write a full snapshot followed by incremental
+	 * segments holding the products changed since the previous run.
+	 */
+	private boolean incrementalBackup = false;
+
+	/**
+	 * Number of incremental segments after which a full snapshot is taken again
+	 */
+	private int maxIncrementalSegments = 6;
+
+	/**
+	 * Overlap with the previous run, in minutes, covering the products indexed
+	 * but not yet searchable when it started.
+	 */
+	private int incrementalOverlapInMinutes = 10;
+
+	/**
+	 * Number of threads decoding and indexing the imported bulks
+	 */
+	private int importIndexingThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * Max number of read bulks waiting for or being indexed, bounding the import memory
+	 */
+	private int importMaxInFlightBulks = 16;
+
+	/**
+	 * If true, the refresh and the replicas of the products index are disabled during imports
+	 */
+	private boolean relaxIndexSettingsOnImport = true;
+
 	/**
 	 * Page size used while streaming products for copy operations.
 	 */
@@ -185,6 +217,54 @@ public class BackupConfig {
 		this.productImportThreads = productImportThreads;
 	}
 
+	public boolean isIncrementalBackup() {
+		return incrementalBackup;
+	}
+
+	public void setIncrementalBackup(boolean incrementalBackup) {
+		this.incrementalBackup = incrementalBackup;
+	}
+
+	public int getMaxIncrementalSegments() {
+		return maxIncrementalSegments;
+	}
+
+	public void setMaxIncrementalSegments(int maxIncrementalSegments) {
+		this.maxIncrementalSegments = maxIncrementalSegments;
+	}
+
+	public int getIncrementalOverlapInMinutes() {
+		return incrementalOverlapInMinutes;
+	}
+
+	public void setIncrementalOverlapInMinutes(int incrementalOverlapInMinutes) {
+		this.incrementalOverlapInMinutes = incrementalOverlapInMinutes;
+	}
+
+	public int getImportIndexingThreads() {
+		return importIndexingThreads;
+	}
+
+	public void setImportIndexingThreads(int importIndexingThreads) {
+		this.importIndexingThreads = importIndexingThreads;
+	}
+
+	public int getImportMaxInFlightBulks() {
+		return importMaxInFlightBulks;
+	}
+
+	public void setImportMaxInFlightBulks(int importMaxInFlightBulks) {
+		this.importMaxInFlightBulks = importMaxInFlightBulks;
+	}
+
+	public boolean isRelaxIndexSettingsOnImport() {
+		return relaxIndexSettingsOnImport;
+	}
+
+	public void setRelaxIndexSettingsOnImport(boolean relaxIndexSettingsOnImport) {
+		this.relaxIndexSettingsOnImport = relaxIndexSettingsOnImport;
+	}
+
 	public int getCopyPageSize() {
 		return copyPageSize;
 	}
@@ -0,0 +1,62 @@
+package org.open4goods.api.config.yml;
+
+import jakarta.validation.constraints.Min;
+
+/**
+ * Configuration of the vertical batch pipeline (loading, classification, completion,
+ * aggregation, scoring).
+ */
+public class BatchConfig {
+
+	/**
+	 * Number of verticals batched concurrently by the scheduled batch
+	 */
+	@Min(1)
+	private int verticalConcurrency = 2;
+
+	/**
+	 * Memory budget of the batch, expressed as the max number of products held in memory
+	 * by the verticals batched concurrently. A vertical bigger than the budget is batched alone.
+	 */
+	@Min(1)
+	private int maxProductsInMemory = 400_000;
+
+	/**
+	 * Number of threads shared by the per-product classification and aggregation stages.
+	 * 0 means the number of available processors, 1 disables the parallelisation.
+	 */
+	@Min(0)
+	private int productParallelism = 0;
+
+	/**
+	 * @return the effective number of threads to aggregate products with
+	 */
+	public int effectiveProductParallelism() {
+		return productParallelism > 0 ? productParallelism : Runtime.getRuntime().availableProcessors();
+	}
+
+	public int getVerticalConcurrency() {
+		return verticalConcurrency;
+	}
+
+	public void setVerticalConcurrency(int verticalConcurrency) {
+		this.verticalConcurrency = verticalConcurrency;
+	}
+
+	public int getMaxProductsInMemory() {
+		return maxProductsInMemory;
+	}
+
+	public void setMaxProductsInMemory(int maxProductsInMemory) {
+		this.maxProductsInMemory = maxProductsInMemory;
+	}
+
+	public int getProductParallelism() {
+		return productParallelism;
+	}
+
+	public void setProductParallelism(int productParallelism) {
+		this.productParallelism = productParallelism;
+	}
+
+}
@@ -51,6 +51,21 @@ public class ResourceCompletionConfig {
     @Min(1)
     private int perceptiveHashSize = 32;
 
+    /**
+     * Maximum perceptive hash Hamming distance between near-duplicate images. Near-duplicates
+     * are collapsed within a product, and may share one stored file across the catalogue.
+     * Negative disables it.
+     */
+    @Min(-1)
+    @Max(64)
+    private int nearDuplicateMaxDistance = 4;
+
+    /**
+     * True to serve an image from the stored file of a near-duplicate image of another product,
+     * when their MD5 or dominant colours also agree.
+     */
+    private boolean nearDuplicateShareAcrossProducts = false;
+
     /**
      * Alpha value above which transparent pixels are treated as opaque.
      */
@@ -95,12 +110,25 @@ public class ResourceCompletionConfig {
     @Min(1)
     private long maxImageSizeToProcessBytes = 10 * 1024 * 1024L;
 
+    /**
+     * Maximum number of images decoded and analysed at once, 0 for the number of cores.
+     */
+    @Min(0)
+    private int imageAnalysisParallelism = 0;
+
     /**
      * Maximum file size in bytes for a PDF to be processed. Larger PDFs will be skipped.
      */
     @Min(1)
     private long maxPdfSizeToProcessBytes = 50 * 1024 * 1024L;
 
+    /**
+     * Age in days after which a processed resource is revalidated with a conditional GET
+     * (If-None-Match / If-Modified-Since), and analysed again only if changed. 0 disables it.
+     */
+    @Min(0)
+    private int revalidateAfterDays = 30;
+
     public List<ResourceCompletionUrlTemplate> getUrlTemplates() {
         return urlTemplates;
     }
@@ -213,6 +241,30 @@ public class ResourceCompletionConfig {
         this.maxImageSizeToProcessBytes = maxImageSizeToProcessBytes;
     }
 
+    public int getImageAnalysisParallelism() {
+        return imageAnalysisParallelism;
+    }
+
+    public void setImageAnalysisParallelism(int imageAnalysisParallelism) {
+        this.imageAnalysisParallelism = imageAnalysisParallelism;
+    }
+
+    public int getNearDuplicateMaxDistance() {
+        return nearDuplicateMaxDistance;
+    }
+
+    public void setNearDuplicateMaxDistance(int nearDuplicateMaxDistance) {
+        this.nearDuplicateMaxDistance = nearDuplicateMaxDistance;
+    }
+
+    public boolean isNearDuplicateShareAcrossProducts() {
+        return nearDuplicateShareAcrossProducts;
+    }
+
+    public void setNearDuplicateShareAcrossProducts(boolean nearDuplicateShareAcrossProducts) {
+        this.nearDuplicateShareAcrossProducts = nearDuplicateShareAcrossProducts;
+    }
+
     public long getMaxPdfSizeToProcessBytes() {
         return maxPdfSizeToProcessBytes;
     }
@@ -220,4 +272,12 @@ public class ResourceCompletionConfig {
     public void setMaxPdfSizeToProcessBytes(long maxPdfSizeToProcessBytes) {
         this.maxPdfSizeToProcessBytes = maxPdfSizeToProcessBytes;
     }
+
+    public int getRevalidateAfterDays() {
+        return revalidateAfterDays;
+    }
+
+    public void setRevalidateAfterDays(int revalidateAfterDays) {
+        this.revalidateAfterDays = revalidateAfterDays;
+    }
 }
@@ -43,6 +43,8 @@ public class BackupController {
 	@Operation(
 			summary = "Export all products to backup",
 			description = "Streams the full Elasticsearch product index to the configured backup directory. "
+					+ "In incremental mode, only the products changed since the previous export are written, "
+					+ "as an increment of the last full snapshot. "
 					+ "This operation can be long-running on large indices. "
 					+ "Use /backup/products/export/vertical to export a single vertical instead.")
 	@ApiResponse(responseCode = "200", description = "Product export started")
@@ -66,7 +68,8 @@ public class BackupController {
 	@Operation(
 			summary = "Import products from the latest backup",
 			description = "Reads the product backup files from the configured backup directory and bulk-indexes them "
-					+ "back into Elasticsearch. Use with care: existing documents with the same GTIN will be overwritten.")
+					+ "back into Elasticsearch, the full snapshot first and then its increments in order. "
+					+ "Use with care: existing documents with the same GTIN will be overwritten.")
 	@ApiResponse(responseCode = "200", description = "Product import started")
 	public void productsImport() throws InvalidParameterException, IOException {
 		backupService.importProducts();
@@ -1,11 +1,13 @@
 package org.open4goods.api.controller.api;
 
 import java.io.IOException;
+import java.util.Map;
 
 import org.open4goods.api.services.AggregationFacadeService;
 import org.open4goods.api.services.BatchService;
 import org.open4goods.api.services.ResourceCleanupMode;
 import org.open4goods.api.services.ResourceCleanupReport;
+import org.open4goods.api.services.VerticalBatchTimings;
 import org.open4goods.model.RolesConstants;
 import org.open4goods.model.exceptions.InvalidParameterException;
 import org.open4goods.services.prompt.dto.openai.BatchJobResponse;
@@ -118,6 +120,27 @@ public class BatchController {
         batchService.batch(verticalConfigService.getConfigById(vertical));
     }
 
+    @GetMapping("/batch/timings")
+    @Operation(
+            summary = "Get the timings of the last batch runs",
+            description = "Returns, for each vertical batched since startup, the duration of each stage of its last "
+                    + "batch run (waiting for the memory budget, loading, classification, completion, aggregation, "
+                    + "scoring, persisting), along with the number of loaded and completed products.")
+    @ApiResponse(responseCode = "200", description = "Timings returned, keyed by vertical id")
+    public Map<String, VerticalBatchTimings> batchTimings() {
+        return batchService.getBatchTimings();
+    }
+
+    @GetMapping("/batch/running")
+    @Operation(
+            summary = "Get the operations running on verticals",
+            description = "Returns the batch, scoring or sanitisation operation currently holding the lock of each "
+                    + "vertical. A new operation launched on a locked vertical is skipped.")
+    @ApiResponse(responseCode = "200", description = "Running operations returned, keyed by vertical id")
+    public Map<String, String> runningOperations() {
+        return aggregationFacadeService.getVerticalLocks().running();
+    }
+
     @GetMapping("/batch/ai-job/{jobId}/status")
     @Operation(
             summary = "Check the status of an AI batch job",
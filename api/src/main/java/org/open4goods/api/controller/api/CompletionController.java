@@ -1,10 +1,13 @@
 package org.open4goods.api.controller.api;
 
 import java.io.IOException;
+import java.util.List;
 
 import org.open4goods.api.services.completion.AmazonCompletionService;
 import org.open4goods.api.services.completion.EprelCompletionService;
 import org.open4goods.api.services.completion.IcecatCompletionService;
+import org.open4goods.api.services.completion.PerceptualHashIndex;
+import org.open4goods.api.services.completion.PerceptualHashIndex.ImageCluster;
 import org.open4goods.api.services.completion.ResourceCompletionService;
 import org.open4goods.model.RolesConstants;
 import org.open4goods.model.exceptions.InvalidParameterException;
@@ -14,6 +17,7 @@ import org.open4goods.services.productrepository.services.ProductRepository;
 import org.open4goods.verticals.VerticalsConfigService;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -25,6 +29,8 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 
 /**
@@ -43,19 +49,22 @@ public class CompletionController {
     private final IcecatCompletionService iceCatService;
     private final EprelCompletionService eprelCompletionService;
     private final ProductRepository repository;
+    private final PerceptualHashIndex perceptualHashIndex;
 
     public CompletionController(VerticalsConfigService verticalsConfigService,
             ResourceCompletionService resourceCompletionService,
             AmazonCompletionService amazonCompletionService,
             IcecatCompletionService iceCatService,
             EprelCompletionService eprelCompletionService,
-            ProductRepository repository) {
+            ProductRepository repository,
+            PerceptualHashIndex perceptualHashIndex) {
         this.verticalConfigService = verticalsConfigService;
         this.resourceCompletionService = resourceCompletionService;
         this.amazonCompletionService = amazonCompletionService;
         this.iceCatService = iceCatService;
         this.eprelCompletionService = eprelCompletionService;
         this.repository = repository;
+        this.perceptualHashIndex = perceptualHashIndex;
     }
 
     ///////////////////////////////////
@@ -107,6 +116,23 @@ public class CompletionController {
                 verticalConfigService.getConfigByIdOrDefault(data.getVertical()), data);
     }
 
+    @GetMapping("/completion/resources/near-duplicates")
+    @Operation(
+            summary = "List the near-duplicate image clusters of the catalogue",
+            description = "Groups the indexed product images whose perceptive hashes are within the given "
+                    + "Hamming distance, keeping the clusters shared by at least minProducts products. "
+                    + "The clusters shared by the most products come first, their largest image first.")
+    @ApiResponse(responseCode = "200", description = "Near-duplicate image clusters")
+    public List<ImageCluster> nearDuplicateImages(
+            @Parameter(description = "Max Hamming distance between the perceptive hashes of a cluster")
+            @RequestParam(defaultValue = "4") @Min(0) @Max(64) int maxDistance,
+            @Parameter(description = "Min number of products sharing a cluster")
+            @RequestParam(defaultValue = "2") @Min(1) int minProducts,
+            @Parameter(description = "Max number of clusters returned")
+            @RequestParam(defaultValue = "100") @Min(1) int limit) {
+        return perceptualHashIndex.clusters(maxDistance, minProducts, limit);
+    }
+
     ///////////////////////////////////
     // Amazon completion
     ///////////////////////////////////
@@ -2,8 +2,13 @@
 package org.open4goods.api.services;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 import org.open4goods.api.config.yml.ApiProperties;
 import org.open4goods.embedding.config.DjlEmbeddingProperties;
@@ -11,12 +16,14 @@ import org.open4goods.embedding.service.TextEmbeddingService;
 import org.open4goods.api.services.aggregation.AbstractAggregationService;
 import org.open4goods.api.services.aggregation.aggregator.ScoringBatchedAggregator;
 import org.open4goods.api.services.aggregation.aggregator.StandardAggregator;
+import org.open4goods.api.services.aggregation.services.batch.scores.AbstractScoreAggregationService;
 import org.open4goods.api.services.aggregation.services.batch.scores.Attribute2ScoreAggregationService;
 import org.open4goods.api.services.aggregation.services.batch.scores.CleanScoreAggregationService;
 import org.open4goods.api.services.aggregation.services.batch.scores.DataCompletion2ScoreAggregationService;
 import org.open4goods.api.services.aggregation.services.batch.scores.EcoScoreAggregationService;
 import org.open4goods.api.services.aggregation.services.batch.scores.ParticipatingScoresAggregationService;
 import org.open4goods.api.services.aggregation.services.batch.scores.BrandScoresAggregationService;
+import org.open4goods.api.services.aggregation.services.batch.scores.StreamingVerticalScorer;
 import org.open4goods.api.services.aggregation.services.realtime.AttributeRealtimeAggregationService;
 import org.open4goods.api.services.aggregation.services.realtime.IdentityAggregationService;
 import org.open4goods.api.services.aggregation.services.realtime.MediaAggregationService;
@@ -36,16 +43,20 @@ import org.open4goods.icecat.services.IcecatFeatureResolver;
 import org.open4goods.icecat.services.IcecatService;
 import org.open4goods.model.StandardiserService;
 import org.open4goods.model.datafragment.DataFragment;
+import org.open4goods.model.exceptions.ResourceNotFoundException;
 import org.open4goods.model.product.Product;
+import org.open4goods.model.vertical.ProductI18nElements;
 import org.open4goods.model.vertical.VerticalConfig;
 import org.open4goods.services.evaluation.service.EvaluationService;
 import org.open4goods.services.productrepository.services.ProductRepository;
+import org.open4goods.services.productrepository.services.ProductRepository.ProductProjection;
 import org.open4goods.services.serialisation.service.SerialisationService;
 import org.open4goods.verticals.VerticalsConfigService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 
 /**
@@ -58,7 +69,8 @@ import jakarta.annotation.PreDestroy;
  *       ({@link #sanitizeAll()}, {@link #sanitizeVertical(VerticalConfig)},
  *       {@link #aggregateProducts(VerticalConfig, Set)}).</li>
  *   <li><strong>ScoringBatchedAggregator</strong> — used for scoring
- *       ({@link #score(VerticalConfig)}, {@link #scoreAll()}).</li>
+ *       ({@link #score(VerticalConfig)}, {@link #scoreAll()}), or its streamed
+ *       counterpart {@link StreamingVerticalScorer} ({@link #scoreStreamed(VerticalConfig)}).</li>
  * </ul>
  *
  * <p>A single {@link StandardAggregator} instance ({@code realtimeAggregator}) is
@@ -66,8 +78,13 @@ import jakarta.annotation.PreDestroy;
  * without re-building the service chain on every request. All batch methods
  * create a fresh aggregator per invocation to avoid cross-run state leakage.
  *
- * <p>TODO: Maintain a state machine to prevent concurrent batch launches on the
- * same vertical. See docs/adr/ for the proposed design.
+ * <p>The {@link StandardAggregator} services being stateless, batch classification
+ * and aggregation apply them to the products in parallel, on a pool shared by all
+ * the verticals batched concurrently. Scoring keeps its sequential
+ * init / onProduct / done barriers.
+ *
+ * <p>Operations rewriting a whole vertical are guarded by {@link #getVerticalLocks()},
+ * preventing concurrent batch launches on the same vertical.
  */
 public class AggregationFacadeService {
 
@@ -94,6 +111,11 @@ public class AggregationFacadeService {
 	/** Shared realtime aggregator — assembled once and reused across all DataFragment ingestion calls. */
 	private final StandardAggregator realtimeAggregator;
 
+	/** Pool the batch classification and aggregation stages run their products on, null if sequential. */
+	private final ForkJoinPool productPool;
+
+	private final VerticalLocks verticalLocks = new VerticalLocks();
+
 	public AggregationFacadeService(final EvaluationService evaluationService,
 			final StandardiserService standardiserService,
 			final AutowireCapableBeanFactory autowireBeanFactory,
@@ -129,6 +151,15 @@ public class AggregationFacadeService {
 		this.serialisationService = serialisationService;
 		this.barcodeForensicsService = barcodeForensicsService;
 		this.realtimeAggregator = getStandardAggregator("realtime");
+		int parallelism = apiProperties.getBatchConfig().effectiveProductParallelism();
+		this.productPool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+	}
+
+	/**
+	 * @return the locks guarding the operations rewriting a whole vertical
+	 */
+	public VerticalLocks getVerticalLocks() {
+		return verticalLocks;
 	}
 
 	/**
@@ -141,13 +172,25 @@ public class AggregationFacadeService {
 	}
 
 	/**
-	 * Scores a single vertical: loads all products with a valid date, runs the
-	 * {@link ScoringBatchedAggregator}, then queues the full product set for
-	 * Elasticsearch re-indexation.
+	 * Scores a single vertical. When streamed scoring is enabled, delegates to
+	 * {@link #scoreStreamed(VerticalConfig)}. Otherwise loads all products with a
+	 * valid date, runs the {@link ScoringBatchedAggregator}, then queues the full
+	 * product set for Elasticsearch re-indexation.
+	 * Skipped if another operation is running on the vertical.
 	 *
 	 * @param vertical vertical configuration to score
 	 */
 	public void score(final VerticalConfig vertical) {
+		verticalLocks.runExclusively(vertical.getId(), "scoring", () -> {
+			if (apiProperties.isStreamedScoring()) {
+				scoreStreamed(vertical);
+			} else {
+				scoreInMemory(vertical);
+			}
+		});
+	}
+
+	private void scoreInMemory(final VerticalConfig vertical) {
 		logger.info("Score batching for {}", vertical.getId());
 
 		ScoringBatchedAggregator batchAgg = getScoringAggregator();
@@ -157,6 +200,45 @@ public class AggregationFacadeService {
 		dataRepository.addToFullindexationQueue(productBag);
 	}
 
+	/**
+	 * Scores a single vertical through the {@link StreamingVerticalScorer}: the
+	 * products are streamed twice through the scoring projection, and only the
+	 * scores (and EcoScore ranking) are written back, as partial updates. Products
+	 * having indexed scores that are not computed anymore are fully re-indexed.
+	 *
+	 * @param vertical vertical configuration to score
+	 */
+	public void scoreStreamed(final VerticalConfig vertical) {
+		logger.info("Streamed score batching for {}", vertical.getId());
+
+		StreamingVerticalScorer scorer = getStreamingScorer();
+		StreamingVerticalScorer.Result result = scorer.score(
+				() -> dataRepository.exportVerticalWithValidDate(vertical, false, ProductProjection.SCORING),
+				verticalConfigService.getConfigByIdOrDefault(vertical.getId()),
+				dataRepository::addToPartialIndexationQueue);
+
+		if (!result.needsReindex().isEmpty()) {
+			logger.info("Score batching : re-indexing {} products having obsolete scores", result.needsReindex().size());
+			Map<Long, Product> scored = result.needsReindex().stream()
+					.collect(Collectors.toMap(Product::getId, p -> p));
+			List<Product> products = new ArrayList<>();
+			try {
+				dataRepository.multiGetById(scored.keySet()).values().forEach(p -> {
+					Product holder = scored.get(p.getId());
+					p.setScores(holder.getScores());
+					if (null != holder.getRanking()) {
+						p.setRanking(holder.getRanking());
+					}
+					products.add(p);
+				});
+				dataRepository.addToFullindexationQueue(products);
+			} catch (ResourceNotFoundException e) {
+				logger.error("Cannot load the products to re-index for {}", vertical.getId(), e);
+			}
+		}
+		logger.info("Score batching : {} products scored in {}", result.scored(), vertical.getId());
+	}
+
 	/**
 	 * Scores a pre-filtered set of products within the given vertical, without
 	 * persisting results. Useful for triggered re-scoring of a subset.
@@ -205,22 +287,25 @@ public class AggregationFacadeService {
 	 * persists the results. This relies on category matching rather than the
 	 * pre-assigned vertical field, so products that have drifted from their
 	 * vertical assignment are also corrected.
+	 * Skipped if another operation is running on the vertical.
 	 *
 	 * @param vertical vertical configuration to process
 	 */
 	public void sanitizeVertical(final VerticalConfig vertical) {
-		logger.info("started : Sanitisation batching for vertical : {}", vertical);
-		StandardAggregator batchAgg = getStandardAggregator();
-
-		dataRepository.getProductsMatchingCategoriesOrVerticalId(vertical).forEach(p -> {
-			try {
-				batchAgg.onProduct(p);
-				dataRepository.index(p);
-			} catch (AggregationSkipException e) {
-				logger.error("Skipping product during batched sanitisation : ", e);
-			}
+		verticalLocks.runExclusively(vertical.getId(), "sanitisation", () -> {
+			logger.info("started : Sanitisation batching for vertical : {}", vertical);
+			StandardAggregator batchAgg = getStandardAggregator();
+
+			dataRepository.getProductsMatchingCategoriesOrVerticalId(vertical).forEach(p -> {
+				try {
+					batchAgg.onProduct(p);
+					dataRepository.index(p);
+				} catch (AggregationSkipException e) {
+					logger.error("Skipping product during batched sanitisation : ", e);
+				}
+			});
+			logger.info("done: Sanitisation batching for all items");
 		});
-		logger.info("done: Sanitisation batching for all items");
 	}
 
 	/**
@@ -233,14 +318,7 @@ public class AggregationFacadeService {
 	public void aggregateProducts(final VerticalConfig vertical, final Set<Product> products) {
 		logger.info("started : Sanitisation batching for {} products in vertical : {}", products.size(), vertical);
 		StandardAggregator batchAgg = getStandardAggregator();
-
-		products.forEach(p -> {
-			try {
-				batchAgg.onProduct(p);
-			} catch (AggregationSkipException e) {
-				logger.error("Skipping product during batched sanitisation : ", e);
-			}
-		});
+		onEachProduct(batchAgg, products);
 		logger.info("done: Sanitisation batching for all items");
 	}
 
@@ -254,17 +332,33 @@ public class AggregationFacadeService {
 	public void classificationAggregator(final VerticalConfig vertical, final Set<Product> products) {
 		logger.info("started : Classification batching for {} products in vertical : {}", products.size(), vertical);
 		StandardAggregator batchAgg = getCategorieClassificationAggregator();
-
-		products.forEach(p -> {
-			try {
-				batchAgg.onProduct(p);
-			} catch (AggregationSkipException e) {
-				logger.error("Skipping product during batched sanitisation : ", e);
-			}
-		});
+		onEachProduct(batchAgg, products);
 		logger.info("done: classification");
 	}
 
+	/**
+	 * Applies the aggregator to each product, in parallel on the product pool if enabled.
+	 * Products are independent, and so are the {@link StandardAggregator} services calls.
+	 *
+	 * @param batchAgg the aggregator to apply
+	 * @param products products to aggregate; modified in-place
+	 */
+	void onEachProduct(final StandardAggregator batchAgg, final Collection<Product> products) {
+		if (null == productPool || products.size() < 2) {
+			products.forEach(p -> onProduct(batchAgg, p));
+			return;
+		}
+		productPool.submit(() -> products.parallelStream().forEach(p -> onProduct(batchAgg, p))).join();
+	}
+
+	private static void onProduct(final StandardAggregator batchAgg, final Product product) {
+		try {
+			batchAgg.onProduct(product);
+		} catch (AggregationSkipException e) {
+			logger.error("Skipping product during batched sanitisation : ", e);
+		}
+	}
+
 	/**
 	 * Aggregates a single product and force-indexes it immediately.
 	 *
@@ -306,10 +400,42 @@ public class AggregationFacadeService {
 		return realtimeAggregator.onDatafragment(df, data);
 	}
 
-	/** Closes the shared realtime aggregator on application shutdown. */
+	/**
+	 * Validates the templates of the verticals configurations evaluated through the
+	 * {@link EvaluationService} : the url prefixes, generated as blabla templates. Startup fails
+	 * on an invalid one, instead of each product aggregation.
+	 *
+	 * @throws IllegalStateException if a template is invalid
+	 */
+	@PostConstruct
+	void validateVerticalTemplates() {
+		Map<String, String> templates = new LinkedHashMap<>();
+		List<VerticalConfig> verticals = new ArrayList<>(verticalConfigService.getConfigsWithoutDefault());
+		if (null != verticalConfigService.getDefaultConfig()) {
+			verticals.add(verticalConfigService.getDefaultConfig());
+		}
+		for (VerticalConfig vertical : verticals) {
+			for (Map.Entry<String, ProductI18nElements> i18n : vertical.getI18n().entrySet()) {
+				String origin = vertical.getId() + "." + i18n.getKey();
+				ProductI18nElements texts = i18n.getValue();
+				if (null != texts.getUrl()) {
+					templates.put(origin + ".url.prefix", blablaService.thymeleafTemplate(texts.getUrl().getPrefix()));
+				}
+			}
+		}
+		Map<String, String> errors = evaluationService.validateTemplates(templates);
+		if (!errors.isEmpty()) {
+			throw new IllegalStateException("Invalid vertical templates : " + errors);
+		}
+	}
+
+	/** Closes the shared realtime aggregator and the product pool on application shutdown. */
 	@PreDestroy
 	public void shutdown() {
 		realtimeAggregator.close();
+		if (null != productPool) {
+			productPool.shutdownNow();
+		}
 	}
 
 	/**
@@ -381,6 +507,26 @@ public class AggregationFacadeService {
 		return ret;
 	}
 
+	/**
+	 * Builds the streamed scorer, with the scoring services of
+	 * {@link #getScoringAggregator()}, cleaning excepted.
+	 *
+	 * @return a new {@link StreamingVerticalScorer}
+	 */
+	public StreamingVerticalScorer getStreamingScorer() {
+		Logger aggLogger = GenericFileLogger.initLogger("score", apiProperties.aggLogLevel(),
+				apiProperties.logsFolder() + "/aggregation");
+
+		final List<AbstractScoreAggregationService> productScores = new ArrayList<>();
+		productScores.add(new Attribute2ScoreAggregationService(aggLogger));
+		productScores.add(new BrandScoresAggregationService(aggLogger, brandService));
+		productScores.add(new DataCompletion2ScoreAggregationService(aggLogger));
+
+		return new StreamingVerticalScorer(productScores, new EcoScoreAggregationService(aggLogger),
+				new ParticipatingScoresAggregationService(aggLogger),
+				apiProperties.getIndexationConfig().getPartialProductsbulkPageSize());
+	}
+
 	/**
 	 * Shorthand for {@link #getStandardAggregator(String)} using the
 	 * {@code "sanitisation"} log-channel name.
@@ -2,10 +2,24 @@ package org.open4goods.api.services;
 
 import java.io.File;
 import java.io.IOException;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
@@ -20,21 +34,27 @@ import org.open4goods.commons.config.yml.datasource.DataSourceProperties;
 import org.open4goods.services.feedservice.service.FeedIndexingService;
 import org.open4goods.model.helper.IdHelper;
 import org.open4goods.model.product.Product;
+import org.open4goods.model.product.ProductPartialUpdateHolder;
 import org.open4goods.model.vertical.VerticalConfig;
+import org.open4goods.services.productrepository.changes.ProductChangeTracker;
 import org.open4goods.services.productrepository.services.ProductRepository;
 import org.open4goods.services.serialisation.exception.SerialisationException;
 import org.open4goods.services.serialisation.service.SerialisationService;
 import org.open4goods.verticals.VerticalsConfigService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.elasticsearch.core.query.SeqNoPrimaryTerm;
 import org.springframework.scheduling.annotation.Scheduled;
 
 import org.open4goods.api.config.yml.ApiProperties;
+import org.open4goods.api.config.yml.BatchConfig;
 import org.open4goods.commons.services.ResourceService;
 import org.open4goods.model.resource.Resource;
 import org.open4goods.model.resource.ResourceType;
 import org.apache.commons.io.FileUtils;
 
+import jakarta.annotation.PreDestroy;
+
 /**
  * One batch to rule them all
  *
@@ -64,6 +84,11 @@ public class BatchService {
 
 	private ApiProperties apiProperties;
 
+	/** Runs the verticals of the scheduled batch, created on first batch */
+	private ExecutorService verticalExecutor;
+
+	/** Timings of the last batch run, per vertical */
+	private final Map<String, VerticalBatchTimings> batchTimings = new ConcurrentHashMap<>();
 
 	public BatchService(AggregationFacadeService aggregationFacadeService,
 			CompletionFacadeService completionFacadeService, VerticalsConfigService verticalsConfigService, ProductRepository dataRepository, FeedIndexingService feedIndexingService, FeedService feedService, SerialisationService serialisationService, ResourceService resourceService, ApiProperties apiProperties) {
@@ -466,28 +491,133 @@ public class BatchService {
 	public void batch() {
 
 		/////////////////////////////////////////////
-		// On each vertical, products are in memory loaded
+		// On each vertical, products are in memory loaded. Verticals are batched
+		// concurrently, within the products in memory budget
 		/////////////////////////////////////////////
-		for (VerticalConfig vertical : verticalsConfigService.getConfigsWithoutDefault()) {
-			batch(vertical);
-		}
+		BatchConfig batchConfig = apiProperties.getBatchConfig();
+		Collection<VerticalConfig> verticals = verticalsConfigService.getConfigsWithoutDefault();
+		Semaphore memoryBudget = new Semaphore(batchConfig.getMaxProductsInMemory(), true);
 
+		logger.info("Batching {} verticals, {} concurrently", verticals.size(), batchConfig.getVerticalConcurrency());
+		ExecutorService executor = verticalExecutor(batchConfig.getVerticalConcurrency());
+		Map<VerticalConfig, Future<?>> runs = new LinkedHashMap<>();
+		try {
+			for (VerticalConfig vertical : verticals) {
+				runs.put(vertical, executor.submit(() -> batch(vertical, memoryBudget)));
+			}
+			for (Entry<VerticalConfig, Future<?>> run : runs.entrySet()) {
+				try {
+					run.getValue().get();
+				} catch (ExecutionException e) {
+					logger.error("Error in batch of vertical {}", run.getKey().getId(), e.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.error("Batch interrupted", e);
+			runs.values().forEach(run -> run.cancel(true));
+		}
 
 		logger.info("End of batch");
 	}
 
+	@PreDestroy
+	public synchronized void shutdown() {
+		if (null != verticalExecutor) {
+			verticalExecutor.shutdownNow();
+		}
+	}
+
+	private synchronized ExecutorService verticalExecutor(int concurrency) {
+		if (null == verticalExecutor) {
+			AtomicInteger counter = new AtomicInteger();
+			verticalExecutor = Executors.newFixedThreadPool(Math.max(1, concurrency), r -> {
+				Thread t = new Thread(r, "vertical-batch-" + counter.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		return verticalExecutor;
+	}
+
 	/**
 	 * Batch a specific vertical
 	 * @param vertical
 	 */
 	public void batch(VerticalConfig vertical) {
+		batch(vertical, null);
+	}
+
+	/**
+	 * @return the timings of the last batch run of each vertical
+	 */
+	public Map<String, VerticalBatchTimings> getBatchTimings() {
+		return new TreeMap<>(batchTimings);
+	}
+
+	/**
+	 * Batch a specific vertical, skipped if another operation is running on it.
+	 *
+	 * @param vertical
+	 * @param memoryBudget products in memory budget shared with the verticals batched concurrently, null if none
+	 */
+	private void batch(VerticalConfig vertical, Semaphore memoryBudget) {
+		aggregationFacadeService.getVerticalLocks().runExclusively(vertical.getId(), "batch", () -> {
+			StageTimer timer = new StageTimer();
+			int permits = 0;
+			try {
+				if (null != memoryBudget) {
+					permits = reserveMemoryBudget(vertical, memoryBudget);
+					timer.stage("waitingBudget");
+				}
+				batchStages(vertical, timer);
+				batchTimings.put(vertical.getId(), timer.timings(vertical.getId(), null));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				batchTimings.put(vertical.getId(), timer.timings(vertical.getId(), "interrupted"));
+			} catch (RuntimeException e) {
+				batchTimings.put(vertical.getId(), timer.timings(vertical.getId(), e.getMessage()));
+				throw e;
+			} finally {
+				if (permits > 0) {
+					memoryBudget.release(permits);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Waits for enough room in the memory budget to load the vertical products. A vertical
+	 * bigger than the budget takes all of it.
+	 *
+	 * @return the number of permits acquired, to be released once the vertical batched
+	 */
+	private int reserveMemoryBudget(VerticalConfig vertical, Semaphore memoryBudget) throws InterruptedException {
+		Long count = dataRepository.countMainIndexTotal(vertical.getId());
+		int permits = (int) Math.max(1, Math.min(null == count ? 0 : count, apiProperties.getBatchConfig().getMaxProductsInMemory()));
+		logger.info("Reserving {} products in memory for vertical {}", permits, vertical.getId());
+		memoryBudget.acquire(permits);
+		return permits;
+	}
+
+	private void batchStages(VerticalConfig vertical, StageTimer timer) {
 		Set<Product> allProducts = new HashSet<>();
 
 		logger.info("Loading products in memory for vertical {}", vertical);
 
+		// The versions are read before the products, so that a product written once loaded
+		// is detected, and its batch update rejected instead of overwriting the newer write
+		Map<Long, SeqNoPrimaryTerm> versions = dataRepository.getVersionsMatchingVerticalId(vertical);
+		ProductChangeTracker changeTracker = dataRepository.newChangeTracker();
+
 		// We take all products that are typed with the given vertical
 		try (java.util.stream.Stream<Product> stream = dataRepository.getProductsMatchingVerticalId(vertical)) {
-			allProducts = stream.collect(Collectors.toSet());
+			allProducts = stream.peek(p -> changeTracker.track(p, versions.get(p.getId()))).collect(Collectors.toSet());
+		}
+		timer.loaded = allProducts.size();
+		timer.stage("loading");
+		if (changeTracker.untracked() > 0) {
+			logger.warn("{} products of vertical {} indexed while loading, their changes are left to the next batch", changeTracker.untracked(), vertical.getId());
 		}
 
 		logger.info("Sanitisation of {} products for vertical {}", allProducts.size(), vertical.getId());
@@ -496,12 +626,14 @@ public class BatchService {
 		// We apply simple classification to unmatch products from verticals if needed
 		////////////////////
 		aggregationFacadeService.classificationAggregator(vertical, allProducts);
+		timer.stage("classification");
 
 		// We filter the products into the "living one" (that have not been unmatched from caegories matching, and that have a valid price
 		Set<Product> products = allProducts.stream()
 				.filter(e -> e.getOffersCount().intValue() > 0)
 				.filter(e-> null != e.getVertical())
 				.collect(Collectors.toSet());
+		timer.completed = products.size();
 
 		logger.info("Will complete {} products of {}", products.size(), allProducts.size() );
 
@@ -509,12 +641,14 @@ public class BatchService {
 		//  Launch completion on this products
 		////////////////////
 		completionFacadeService.processAll(products, vertical);
+		timer.stage("completion");
 
 		logger.info("Will aggregate {} products", products.size());
 		//////////////////////////////////
 		// Launch aggregation, (now will complete on more Datas (eg API ones)
 		/////////////////////////////////
 		aggregationFacadeService.aggregateProducts(vertical, allProducts);
+		timer.stage("aggregation");
 
 
 		////////////////////
@@ -531,16 +665,55 @@ public class BatchService {
 		} catch (Exception e) {
 			logger.error("Error in batch : scoring fail", e);
 		}
+		timer.stage("scoring");
 
 
 		////////////////////
 		//  Persisting
 		////////////////////
 
-		logger.info("Adding {} ({} completed) products to indexation",allProducts.size(), products.size());
-		// We flush the queue, no matter the previous fragments, we want to be sure there are no erasure on completed items
-		dataRepository.getFullProductQueue().clear();
-		dataRepository.addToFullindexationQueue(allProducts);
+		// Only the changed fields are written, and not over a product updated meanwhile
+		List<ProductPartialUpdateHolder> changes = changeTracker.changes(allProducts);
+		logger.info("Updating {} changed products of {} ({} completed, {} appeared while loading and left to the next batch)",
+				changes.size(), allProducts.size(), products.size(), changeTracker.untracked());
+
+		int pageSize = Math.max(1, apiProperties.getIndexationConfig().getPartialProductsbulkPageSize());
+		Set<Long> rejected = new HashSet<>();
+		for (int i = 0; i < changes.size(); i += pageSize) {
+			rejected.addAll(dataRepository.bulkUpdateDocument(changes.subList(i, Math.min(i + pageSize, changes.size()))));
+		}
+		if (!rejected.isEmpty()) {
+			logger.warn("{} products of vertical {} updated during the batch, left to the next batch", rejected.size(), vertical.getId());
+		}
+		timer.updated = changes.size() - rejected.size();
+		timer.stage("persisting");
+		logger.info("Batched vertical {} : {}", vertical.getId(), timer.stages);
+	}
+
+	/**
+	 * Records the duration of the successive stages of a vertical batch
+	 */
+	private static final class StageTimer {
+
+		private final Instant startedAt = Instant.now();
+		private final long start = System.nanoTime();
+		private final Map<String, Long> stages = new LinkedHashMap<>();
+		private long last = start;
+		private long loaded;
+		private long completed;
+		private long updated;
+
+		/** Ends the current stage, and starts the next one */
+		void stage(String name) {
+			long now = System.nanoTime();
+			stages.put(name, TimeUnit.NANOSECONDS.toMillis(now - last));
+			last = now;
+		}
+
+		VerticalBatchTimings timings(String vertical, String failure) {
+			return new VerticalBatchTimings(vertical, startedAt, loaded, completed, updated, Collections.unmodifiableMap(new LinkedHashMap<>(stages)),
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), failure);
+		}
 	}
 
 
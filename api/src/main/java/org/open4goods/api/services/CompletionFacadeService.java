@@ -2,7 +2,14 @@
 package org.open4goods.api.services;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.open4goods.api.services.completion.AmazonCompletionService;
 import org.open4goods.api.services.completion.EprelCompletionService;
@@ -15,6 +22,8 @@ import org.open4goods.model.vertical.VerticalConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import jakarta.annotation.PreDestroy;
+
 /**
  * This service is in charge of building Product in realtime mode TODO :
  * Maintain a state machine to disable multiple launching
@@ -36,6 +45,9 @@ public class CompletionFacadeService {
 	private final AmazonCompletionService amazonCompletionService;
 	private final ApiProperties apiProperties;
 
+	/** Completes the products of the batched verticals */
+	private ExecutorService completionExecutor;
+
 	public CompletionFacadeService(
 			ResourceCompletionService resourceCompletionService,
 			IcecatCompletionService icecatCompletionService,
@@ -59,46 +71,67 @@ public class CompletionFacadeService {
 	 */
 	public void processAll(Set<Product> products, VerticalConfig vertical) {
 		logger.info("Completing {} products", products.size());
-		int concurrency = apiProperties.getCompletionConcurrency();
-		if (concurrency <= 1) {
-			products.forEach(product -> {
-				try {
-					resourceCompletionService.process(vertical, product);
-					icecatCompletionService.process(vertical, product);
-					eprelCompletionService.process(vertical, product);
-					wikidataCompletionService.process(vertical, product);
-					amazonCompletionService.process(vertical, product);
-				} catch (Exception e) {
-					logger.error("Error completing product {}", product.getId(), e);
-				}
-			});
+		ExecutorService executor = completionExecutor();
+		if (null == executor) {
+			products.forEach(product -> complete(vertical, product));
 			return;
 		}
 
-		java.util.concurrent.Semaphore semaphore = new java.util.concurrent.Semaphore(concurrency);
-		try (var executor = java.util.concurrent.Executors.newVirtualThreadPerTaskExecutor()) {
+		// Shared by the verticals batched concurrently, bounding the overall completion concurrency
+		List<Future<?>> completions = new ArrayList<>(products.size());
+		try {
 			for (Product product : products) {
-				executor.submit(() -> {
-					try {
-						semaphore.acquire();
-						try {
-							resourceCompletionService.process(vertical, product);
-							icecatCompletionService.process(vertical, product);
-							eprelCompletionService.process(vertical, product);
-							wikidataCompletionService.process(vertical, product);
-							amazonCompletionService.process(vertical, product);
-						} finally {
-							semaphore.release();
-						}
-					} catch (InterruptedException e) {
-						Thread.currentThread().interrupt();
-						logger.error("Product completion interrupted for product {}", product.getId(), e);
-					} catch (Exception e) {
-						logger.error("Error completing product {}", product.getId(), e);
-					}
-				});
+				completions.add(executor.submit(() -> complete(vertical, product)));
+			}
+			for (Future<?> completion : completions) {
+				completion.get();
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			completions.forEach(c -> c.cancel(true));
+			logger.error("Completion of vertical {} interrupted", vertical.getId());
+		} catch (ExecutionException e) {
+			// Not expected, failures are handled by product
+			logger.error("Error completing vertical {}", vertical.getId(), e.getCause());
+		}
+	}
+
+	@PreDestroy
+	public synchronized void shutdown() {
+		if (null != completionExecutor) {
+			completionExecutor.shutdownNow();
+		}
+	}
+
+	private void complete(VerticalConfig vertical, Product product) {
+		try {
+			resourceCompletionService.process(vertical, product);
+			icecatCompletionService.process(vertical, product);
+			eprelCompletionService.process(vertical, product);
+			wikidataCompletionService.process(vertical, product);
+			amazonCompletionService.process(vertical, product);
+		} catch (Exception e) {
+			logger.error("Error completing product {}", product.getId(), e);
+		}
+	}
+
+	/**
+	 * @return the completion pool, created on first use, null if the completion is sequential
+	 */
+	private synchronized ExecutorService completionExecutor() {
+		int concurrency = apiProperties.getCompletionConcurrency();
+		if (concurrency <= 1) {
+			return null;
+		}
+		if (null == completionExecutor) {
+			AtomicInteger counter = new AtomicInteger();
+			completionExecutor = Executors.newFixedThreadPool(concurrency, r -> {
+				Thread t = new Thread(r, "product-completion-" + counter.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			});
 		}
+		return completionExecutor;
 	}
 
 	////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -0,0 +1,27 @@
+package org.open4goods.api.services;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Timings of the last batch run on a vertical.
+ *
+ * @param vertical          the vertical id
+ * @param startedAt         start of the run
+ * @param loadedProducts    products loaded in memory
+ * @param completedProducts products completed, aggregated and scored (the living ones)
+ * @param updatedProducts   products having changed, and updated in the index
+ * @param stagesMs          duration of each stage, in milliseconds, in execution order
+ * @param totalMs           duration of the whole run, waiting for the memory budget included
+ * @param failure           message of the error having aborted the run, null on success
+ */
+public record VerticalBatchTimings(
+		String vertical,
+		Instant startedAt,
+		long loadedProducts,
+		long completedProducts,
+		long updatedProducts,
+		Map<String, Long> stagesMs,
+		long totalMs,
+		String failure) {
+}
@@ -0,0 +1,63 @@
+package org.open4goods.api.services;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per-vertical mutual exclusion for the batch operations (batch, scoring, sanitisation)
+ * rewriting the products of a whole vertical. Two such operations running on the same
+ * vertical would load, compute and index the same products concurrently, the last one
+ * erasing the other : the second one is skipped instead of queued.
+ * <p>
+ * Locks are reentrant, so an operation can call another guarded one on the same vertical
+ * from the thread holding the lock.
+ */
+public class VerticalLocks {
+
+	private static final Logger logger = LoggerFactory.getLogger(VerticalLocks.class);
+
+	private final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+
+	/** The operation holding the lock, per vertical */
+	private final Map<String, String> running = new ConcurrentHashMap<>();
+
+	/**
+	 * Runs the task if no other operation is running on the vertical
+	 *
+	 * @param verticalId the vertical the task operates on
+	 * @param operation  name of the operation, for logging and monitoring
+	 * @param task       the task to run
+	 * @return true if the task has been run, false if skipped because the vertical is locked
+	 */
+	public boolean runExclusively(String verticalId, String operation, Runnable task) {
+		ReentrantLock lock = locks.computeIfAbsent(verticalId, k -> new ReentrantLock());
+		if (!lock.tryLock()) {
+			logger.warn("Skipping {} on vertical {} : {} is already running", operation, verticalId, running.get(verticalId));
+			return false;
+		}
+		boolean outermost = lock.getHoldCount() == 1;
+		try {
+			if (outermost) {
+				running.put(verticalId, operation);
+			}
+			task.run();
+			return true;
+		} finally {
+			if (outermost) {
+				running.remove(verticalId);
+			}
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the operations currently running, per vertical
+	 */
+	public Map<String, String> running() {
+		return Map.copyOf(running);
+	}
+}
@@ -24,6 +24,7 @@ import org.open4goods.api.services.aggregation.services.batch.scores.normalizati
 import org.open4goods.api.services.aggregation.services.batch.scores.normalization.NormalizationResult;
 import org.open4goods.api.services.aggregation.services.batch.scores.normalization.NormalizationStrategy;
 import org.open4goods.api.services.aggregation.services.batch.scores.normalization.NormalizationStrategyFactory;
+import org.open4goods.api.services.aggregation.services.batch.scores.normalization.ValueDistribution;
 
 /**
  * Base class for all batch score aggregation services.
@@ -52,8 +53,14 @@ public abstract class AbstractScoreAggregationService extends AbstractAggregatio
         /** Value-frequency map used by percentile/quantile normalization strategies. */
         protected Map<String, Map<Double, Integer>> valueFrequencies = new HashMap<>();
 
+        /** Sorted distributions of the value frequencies, built once per batch on first relativisation. */
+        private final Map<String, ValueDistribution> distributions = new HashMap<>();
+
         private final Set<String> legacyScoringLogged = ConcurrentHashMap.newKeySet();
 
+        /** When true, the batch statistics are not updated anymore (see {@link #freezeStatistics()}) */
+        private boolean statisticsFrozen = false;
+
         public AbstractScoreAggregationService(Logger logger) {
                 super(logger);
         }
@@ -65,7 +72,9 @@ public abstract class AbstractScoreAggregationService extends AbstractAggregatio
                 batchDatas.clear();
                 absoluteCardinalities.clear();
                 valueFrequencies.clear();
+                distributions.clear();
                 legacyScoringLogged.clear();
+                statisticsFrozen = false;
         }
 
 
@@ -80,45 +89,16 @@ public abstract class AbstractScoreAggregationService extends AbstractAggregatio
                 // Operated on absolute values
                 //////////////////////////
                 for (Product p : datas) {
-                        for (String scoreName : absoluteCardinalities.keySet()) {
-                                Score s = p.getScores().get(scoreName);
-                                Cardinality source = absoluteCardinalities.get(scoreName);
-                                Cardinality virtual = new Cardinality(source);
-                                if (s == null) {
-
-
-                                        // Need a virtual score
-                                        s = new Score(scoreName, source.getAvg());
-                                        s.setName(scoreName);
-                                        s.setVirtual(true);
-
-                                }
-                                virtual.setValue(resolveAbsoluteValue(p, scoreName, s));
-                                s.setAbsolute(virtual);
-                                p.getScores().put(scoreName, s);
-                        }
+                        completeScores(p);
                 }
 
-		
-		
                 ////////////////////////
                 // Scores relativisation
                 // Create a relativized cardinality in each product
                 ////////////////////////
                 for (Product p : datas) {
-                        for (String scoreName : batchDatas.keySet()) {
-                                Score s = p.getScores().get(scoreName);
-				if (s != null) {
-					try {
-						relativize(s, vConf);
-					} catch (ValidationException e) {
-						String msg = String.format("%s -> Relativization of score %s failed for product %s. Abort.", this.getClass().getSimpleName(), scoreName, p.getId());
-						dedicatedLogger.error(msg, e);
-						throw new RuntimeException(msg, e);
-					}
-				}
-			}
-		}
+                        relativizeScores(p, vConf);
+                }
 
 
 		////////////////////////
@@ -156,6 +136,69 @@ public abstract class AbstractScoreAggregationService extends AbstractAggregatio
 		
 	}
 	
+        /**
+         * Adds a virtual score (valued with the batch average) for each score of the
+         * batch the product is missing, and sets the absolute cardinality of the
+         * product scores.
+         *
+         * @param p the product to complete
+         */
+        protected void completeScores(Product p) {
+                for (String scoreName : absoluteCardinalities.keySet()) {
+                        Score s = p.getScores().get(scoreName);
+                        Cardinality source = absoluteCardinalities.get(scoreName);
+                        Cardinality virtual = new Cardinality(source);
+                        if (s == null) {
+                                // Need a virtual score
+                                s = new Score(scoreName, source.getAvg());
+                                s.setName(scoreName);
+                                s.setVirtual(true);
+                        }
+                        virtual.setValue(resolveAbsoluteValue(p, scoreName, s));
+                        s.setAbsolute(virtual);
+                        p.getScores().put(scoreName, s);
+                }
+        }
+
+        /**
+         * Relativises the product scores handled by this service, against the batch
+         * cardinalities.
+         *
+         * @param p     the product, completed through {@link #completeScores(Product)}
+         * @param vConf the vertical configuration
+         */
+        protected void relativizeScores(Product p, VerticalConfig vConf) {
+                for (String scoreName : batchDatas.keySet()) {
+                        Score s = p.getScores().get(scoreName);
+                        if (s != null) {
+                                try {
+                                        relativize(s, vConf);
+                                } catch (ValidationException e) {
+                                        String msg = String.format("%s -> Relativization of score %s failed for product %s. Abort.", this.getClass().getSimpleName(), scoreName, p.getId());
+                                        dedicatedLogger.error(msg, e);
+                                        throw new RuntimeException(msg, e);
+                                }
+                        }
+                }
+        }
+
+        /**
+         * Stops updating the batch statistics : {@link #incrementCardinality} becomes a
+         * no-op until the next {@link #init(Collection)}. Used by the streamed scoring,
+         * which computes the product scores a second time once the statistics of the
+         * whole vertical are known.
+         */
+        public void freezeStatistics() {
+                statisticsFrozen = true;
+        }
+
+        /**
+         * @return the names of the scores computed by this service in the current batch
+         */
+        public Set<String> scoreNames() {
+                return batchDatas.keySet();
+        }
+
 	/////////////////////////////////////////
 	// Private methods
 	/////////////////////////////////////////
@@ -232,7 +275,7 @@ public abstract class AbstractScoreAggregationService extends AbstractAggregatio
 			throw new ValidationException("Unknown normalization method for score " + scoreName);
 		}
 
-		NormalizationContext context = new NormalizationContext(abs, valueFrequencies.get(scoreName));
+		NormalizationContext context = new NormalizationContext(abs, valueFrequencies.get(scoreName), distribution(scoreName));
 		NormalizationResult result = strategy.normalize(value, context, attributeConfig);
 		if (result.legacy()) {
 			logLegacyScoring(scoreName);
@@ -263,8 +306,8 @@ public abstract class AbstractScoreAggregationService extends AbstractAggregatio
 			throw new ValidationException("Empty value in relativization");
 		}
 
-		Map<Double, Integer> frequencies = valueFrequencies.get(scoreName);
-		if (frequencies == null || frequencies.isEmpty()) {
+		ValueDistribution distribution = distribution(scoreName);
+		if (distribution.isEmpty()) {
 			return StandardiserService.DEFAULT_MAX_RATING / 2.0;
 		}
 
@@ -273,17 +316,8 @@ public abstract class AbstractScoreAggregationService extends AbstractAggregatio
 			return StandardiserService.DEFAULT_MAX_RATING / 2.0;
 		}
 
-		int countBelow = 0;
-		int countAt = 0;
-
-		for (Map.Entry<Double, Integer> entry : frequencies.entrySet()) {
-			int comparison = Double.compare(entry.getKey(), value);
-			if (comparison < 0) {
-				countBelow += entry.getValue();
-			} else if (comparison == 0) {
-				countAt += entry.getValue();
-			}
-		}
+		long countBelow = distribution.countBelow(value);
+		long countAt = distribution.countAt(value);
 
 		double percentile = (countBelow + (0.5 * countAt)) / totalCount;
 		double scaled = percentile * StandardiserService.DEFAULT_MAX_RATING;
@@ -355,6 +389,10 @@ public abstract class AbstractScoreAggregationService extends AbstractAggregatio
                         throw new ValidationException("Empty value for Score " + scoreName + " ! Consider normalizing in a future export/import phase");
                 }
 
+                if (statisticsFrozen) {
+                        return;
+                }
+
                 Cardinality absolute = absoluteCardinalities.get(scoreName);
                 if (absolute == null) {
                         absolute = new Cardinality();
@@ -378,6 +416,15 @@ public abstract class AbstractScoreAggregationService extends AbstractAggregatio
         private void incrementValueFrequency(String scoreName, Double value) {
                 valueFrequencies.computeIfAbsent(scoreName, key -> new HashMap<>())
                         .merge(value, 1, Integer::sum);
+                distributions.remove(scoreName);
+        }
+
+        /**
+         * Returns the sorted distribution of the values observed for a score, built
+         * from the value frequencies on first use and reused until they change.
+         */
+        private ValueDistribution distribution(String scoreName) {
+                return distributions.computeIfAbsent(scoreName, key -> ValueDistribution.of(valueFrequencies.get(key)));
         }
 
         private boolean shouldTrackFrequencies(String scoreName, VerticalConfig vConf) {
@@ -1,8 +1,6 @@
 package org.open4goods.api.services.aggregation.services.batch.scores;
 
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
 
 import org.open4goods.model.attribute.AttributeType;
 import org.open4goods.model.attribute.IndexedAttribute;
@@ -21,18 +19,10 @@ import org.slf4j.Logger;
  */
 public class Attribute2ScoreAggregationService extends AbstractScoreAggregationService {
 
-        private final Map<Long, Map<String, Double>> absoluteValuesOverrides = new HashMap<>();
-
         public Attribute2ScoreAggregationService(final Logger logger) {
                 super(logger);
         }
 
-        @Override
-        public void init(Collection<Product> datas) {
-                super.init(datas);
-                absoluteValuesOverrides.clear();
-        }
-
 	@Override
 	public void onProduct(Product data, VerticalConfig vConf) {
 
@@ -59,14 +49,14 @@ public class Attribute2ScoreAggregationService extends AbstractScoreAggregationS
 					try {
 						Double rawScore = generateScoresFromAttribute(attrConfig.getKey(), aga, vConf.getAttributesConfig());
 						Double score = applyTransform(rawScore, attrConfig);
-						storeAbsoluteOverride(data, attrConfig.getKey(), rawScore, score);
 
 						// Processing cardinality
 						incrementCardinality(attrConfig.getKey(), score, vConf);
 
 						Score s = new Score(attrConfig.getKey(), score);
+						// The absolute value keeps the untransformed attribute value
 						s.setAbsolute(new Cardinality());
-						s.getAbsolute().setValue(score);
+						s.getAbsolute().setValue(rawScore);
 						// Saving in product
 						data.getScores().put(s.getName(), s);
 					} catch (ValidationException e) {
@@ -139,15 +129,6 @@ public class Attribute2ScoreAggregationService extends AbstractScoreAggregationS
 		};
 	}
 
-	private void storeAbsoluteOverride(Product data, String scoreName, Double rawScore, Double transformedScore) {
-		if (rawScore == null || transformedScore == null) {
-			return;
-		}
-		if (!rawScore.equals(transformedScore)) {
-			absoluteValuesOverrides.computeIfAbsent(data.getId(), id -> new HashMap<>()).put(scoreName, rawScore);
-		}
-	}
-
 	private void handleMissingScore(Product data, AttributeConfig attrConfig, IndexedAttribute aga, VerticalConfig vConf,
 			ValidationException e) {
 		if (attrConfig == null || attrConfig.getScoring() == null) {
@@ -199,14 +180,16 @@ public class Attribute2ScoreAggregationService extends AbstractScoreAggregationS
 	public void done(Collection<Product> datas, VerticalConfig vConf) {
                 // Score relativisation is operated in the AbstactScoreAggService
                 super.done(datas, vConf);
-                absoluteValuesOverrides.clear();
 	}
 
+        /**
+         * The absolute value of a transformed score is the raw attribute value, set in
+         * {@link #onProduct(Product, VerticalConfig)}.
+         */
         @Override
         protected Double resolveAbsoluteValue(Product product, String scoreName, Score score) {
-                Map<String, Double> overrides = absoluteValuesOverrides.get(product.getId());
-                if (overrides != null && overrides.containsKey(scoreName)) {
-                        return overrides.get(scoreName);
+                if (score.getAbsolute() != null && score.getAbsolute().getValue() != null) {
+                        return score.getAbsolute().getValue();
                 }
 
                 return super.resolveAbsoluteValue(product, scoreName, score);
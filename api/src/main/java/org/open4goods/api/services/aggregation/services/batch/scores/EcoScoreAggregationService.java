@@ -32,7 +32,7 @@ import org.slf4j.Logger;
 public class EcoScoreAggregationService extends AbstractScoreAggregationService {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(EcoScoreAggregationService.class);
-	private static final String ECOSCORE_SCORENAME = "ECOSCORE";
+	static final String ECOSCORE_SCORENAME = "ECOSCORE";
 	private static final double ECOSCORE_TARGET_SCALE = 20.0;
 
 	public EcoScoreAggregationService(final Logger logger) {
@@ -61,7 +61,7 @@ public class EcoScoreAggregationService extends AbstractScoreAggregationService
 	 * @return The computed EcoScore, or null if a required sub-score is missing
 	 * @throws ValidationException
 	 */
-	private Double generateEcoScore(Product product, VerticalConfig vConf, Map<String, Double> normalizedWeights) throws ValidationException {
+	Double generateEcoScore(Product product, VerticalConfig vConf, Map<String, Double> normalizedWeights) throws ValidationException {
 
 		double ecoscoreVal = 0.0;
 		Map<String, Score> scores = product.getScores();
@@ -169,18 +169,8 @@ public class EcoScoreAggregationService extends AbstractScoreAggregationService
 		}
 
 		try {
-			// EcoScore absolute stays on 0-20 scale; relativ is scaled to 0-5
-			// so that Score.on20() and Score.percent() produce correct values.
-			double relativScale = StandardiserService.DEFAULT_MAX_RATING / ECOSCORE_TARGET_SCALE;
 			for (Product product : productsWithRealEcoScore) {
-				Cardinality absolute = product.ecoscore().getAbsolute();
-				Cardinality relativ = new Cardinality(absolute);
-				relativ.setValue(absolute.getValue() * relativScale);
-				relativ.setMin(absolute.getMin() != null ? absolute.getMin() * relativScale : null);
-				relativ.setMax(absolute.getMax() != null ? absolute.getMax() * relativScale : null);
-				relativ.setAvg(absolute.getAvg() != null ? absolute.getAvg() * relativScale : null);
-				product.ecoscore().setRelativ(relativ);
-				product.ecoscore().setValue(absolute.getValue());
+				scaleEcoScore(product.ecoscore());
 			}
 	
 			///////////////////////
@@ -214,7 +204,7 @@ public class EcoScoreAggregationService extends AbstractScoreAggregationService
 
 	}
 
-	private Map<String, Double> normalizeWeights(VerticalConfig vConf) {
+	Map<String, Double> normalizeWeights(VerticalConfig vConf) {
 		Map<String, Double> weights = vConf.getImpactScoreConfig().getCriteriasPonderation();
 		if (weights == null || weights.isEmpty()) {
 			return Map.of();
@@ -273,7 +263,25 @@ public class EcoScoreAggregationService extends AbstractScoreAggregationService
 		return (min + max) / 2.0;
 	}
 
-	private EcoScoreRanking ensureRanking(Product product) {
+	/**
+	 * EcoScore absolute stays on 0-20 scale; relativ is scaled to 0-5
+	 * so that Score.on20() and Score.percent() produce correct values.
+	 *
+	 * @param ecoscore a real (non virtual) ecoscore, with its absolute cardinality
+	 */
+	void scaleEcoScore(Score ecoscore) {
+		double relativScale = StandardiserService.DEFAULT_MAX_RATING / ECOSCORE_TARGET_SCALE;
+		Cardinality absolute = ecoscore.getAbsolute();
+		Cardinality relativ = new Cardinality(absolute);
+		relativ.setValue(absolute.getValue() * relativScale);
+		relativ.setMin(absolute.getMin() != null ? absolute.getMin() * relativScale : null);
+		relativ.setMax(absolute.getMax() != null ? absolute.getMax() * relativScale : null);
+		relativ.setAvg(absolute.getAvg() != null ? absolute.getAvg() * relativScale : null);
+		ecoscore.setRelativ(relativ);
+		ecoscore.setValue(absolute.getValue());
+	}
+
+	EcoScoreRanking ensureRanking(Product product) {
 		EcoScoreRanking ranking = product.getRanking();
 		if (ranking == null) {
 			ranking = new EcoScoreRanking();
@@ -282,7 +290,7 @@ public class EcoScoreAggregationService extends AbstractScoreAggregationService
 		return ranking;
 	}
 
-	private boolean hasRealEcoScore(Product product) {
+	boolean hasRealEcoScore(Product product) {
 		Score ecoscore = product.ecoscore();
 		return ecoscore != null && !Boolean.TRUE.equals(ecoscore.getVirtual()) && ecoscore.getAbsolute() != null && ecoscore.getAbsolute().getValue() != null;
 	}
@@ -0,0 +1,200 @@
+package org.open4goods.api.services.aggregation.services.batch.scores;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.open4goods.model.product.Score;
+
+/**
+ * Compact, column oriented storage of the scores of a whole vertical, used by the
+ * {@link StreamingVerticalScorer}.<br/>
+ *
+ * Each product is a row, and each score a column of primitive values (NaN when the
+ * product does not have the score), so the memory footprint is about
+ * products x scores x 8 bytes, whatever the size of the product documents.
+ */
+class ScoreColumns {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	/** Marks a row that is not ranked for a score **/
+	static final int NOT_RANKED = -1;
+
+	private long[] ids = new long[INITIAL_CAPACITY];
+
+	private int size = 0;
+
+	/** The score values, by score name **/
+	private final Map<String, double[]> values = new LinkedHashMap<>();
+
+	/** The absolute values, only allocated for the scores where it differs from the value **/
+	private final Map<String, double[]> absolutes = new LinkedHashMap<>();
+
+	/** The rankings, by score name **/
+	private final Map<String, int[]> rankings = new LinkedHashMap<>();
+
+	/** The lowest and highest ranked product ids, by score name **/
+	private final Map<String, long[]> rankingBounds = new LinkedHashMap<>();
+
+	/** Ids sorted ascending, and the matching rows, to look rows up by id **/
+	private long[] sortedIds;
+	private int[] sortedRows;
+
+	/**
+	 * Adds a product row, with its scores
+	 * @return the row
+	 */
+	int add(long id, Collection<Score> scores) {
+		if (size == ids.length) {
+			grow();
+		}
+		int row = size++;
+		ids[row] = id;
+		for (Score s : scores) {
+			set(row, s);
+		}
+		return row;
+	}
+
+	/**
+	 * Sets the value (and the absolute value) of a score for a row
+	 */
+	void set(int row, Score s) {
+		if (null == s.getValue()) {
+			return;
+		}
+		double value = s.getValue();
+		column(values, s.getName())[row] = value;
+		if (null != s.getAbsolute() && null != s.getAbsolute().getValue() && s.getAbsolute().getValue() != value) {
+			column(absolutes, s.getName())[row] = s.getAbsolute().getValue();
+		}
+	}
+
+	/**
+	 * @return the value of the score for the row, NaN if absent
+	 */
+	double value(String scoreName, int row) {
+		double[] column = values.get(scoreName);
+		return null == column ? Double.NaN : column[row];
+	}
+
+	/**
+	 * @return the absolute value of the score for the row, NaN if absent
+	 */
+	double absolute(String scoreName, int row) {
+		double[] column = absolutes.get(scoreName);
+		if (null == column || Double.isNaN(column[row])) {
+			return value(scoreName, row);
+		}
+		return column[row];
+	}
+
+	Set<String> scoreNames() {
+		return values.keySet();
+	}
+
+	boolean hasScore(String scoreName) {
+		return values.containsKey(scoreName);
+	}
+
+	/**
+	 * Ranks the rows on a score, ascending and keeping the rows order on ties.
+	 * @param relativs the relative values by row, NaN for the rows not to rank
+	 */
+	void rank(String scoreName, double[] relativs) {
+		Integer[] ranked = new Integer[size];
+		int count = 0;
+		for (int row = 0; row < size; row++) {
+			if (!Double.isNaN(relativs[row])) {
+				ranked[count++] = row;
+			}
+		}
+		if (count == 0) {
+			return;
+		}
+		Arrays.sort(ranked, 0, count, (a, b) -> Double.compare(relativs[a], relativs[b]));
+		int[] ranking = new int[ids.length];
+		Arrays.fill(ranking, NOT_RANKED);
+		for (int i = 0; i < count; i++) {
+			ranking[ranked[i]] = i;
+		}
+		rankings.put(scoreName, ranking);
+		rankingBounds.put(scoreName, new long[] { ids[ranked[0]], ids[ranked[count - 1]] });
+	}
+
+	/**
+	 * @return the ranking of the row for the score, {@link #NOT_RANKED} if not ranked
+	 */
+	int ranking(String scoreName, int row) {
+		int[] ranking = rankings.get(scoreName);
+		return null == ranking ? NOT_RANKED : ranking[row];
+	}
+
+	long lowestId(String scoreName) {
+		return rankingBounds.get(scoreName)[0];
+	}
+
+	long highestId(String scoreName) {
+		return rankingBounds.get(scoreName)[1];
+	}
+
+	long id(int row) {
+		return ids[row];
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Builds the id lookup index, once all the rows are added
+	 */
+	void index() {
+		Integer[] rows = new Integer[size];
+		for (int row = 0; row < size; row++) {
+			rows[row] = row;
+		}
+		Arrays.sort(rows, (a, b) -> Long.compare(ids[a], ids[b]));
+		sortedIds = new long[size];
+		sortedRows = new int[size];
+		for (int i = 0; i < size; i++) {
+			sortedRows[i] = rows[i];
+			sortedIds[i] = ids[rows[i]];
+		}
+	}
+
+	/**
+	 * @return the row of a product, -1 if unknown
+	 */
+	int row(long id) {
+		int i = Arrays.binarySearch(sortedIds, id);
+		return i < 0 ? -1 : sortedRows[i];
+	}
+
+	private double[] column(Map<String, double[]> columns, String scoreName) {
+		return columns.computeIfAbsent(scoreName, k -> {
+			double[] column = new double[ids.length];
+			Arrays.fill(column, Double.NaN);
+			return column;
+		});
+	}
+
+	private void grow() {
+		int capacity = ids.length * 2;
+		ids = Arrays.copyOf(ids, capacity);
+		growAll(values, capacity);
+		growAll(absolutes, capacity);
+	}
+
+	private static void growAll(Map<String, double[]> columns, int capacity) {
+		columns.replaceAll((name, column) -> {
+			int previous = column.length;
+			double[] grown = Arrays.copyOf(column, capacity);
+			Arrays.fill(grown, previous, capacity, Double.NaN);
+			return grown;
+		});
+	}
+}
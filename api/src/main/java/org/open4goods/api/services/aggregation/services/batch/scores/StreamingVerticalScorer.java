@@ -0,0 +1,433 @@
+package org.open4goods.api.services.aggregation.services.batch.scores;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.open4goods.commons.exceptions.AggregationSkipException;
+import org.open4goods.model.exceptions.ValidationException;
+import org.open4goods.model.product.EcoScoreRanking;
+import org.open4goods.model.product.Product;
+import org.open4goods.model.product.ProductPartialUpdateField;
+import org.open4goods.model.product.ProductPartialUpdateHolder;
+import org.open4goods.model.product.Score;
+import org.open4goods.model.rating.Cardinality;
+import org.open4goods.model.vertical.VerticalConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scores a whole vertical without holding its products in memory, as an alternative
+ * to the {@link org.open4goods.api.services.aggregation.aggregator.ScoringBatchedAggregator}.
+ * The products are streamed twice :
+ * <ol>
+ *   <li>the scores computed from the product attributes are accumulated in
+ *       {@link ScoreColumns}, along with the batch statistics of each service. The
+ *       relativised values, the ecoscore, the participating scores and the rankings
+ *       are then derived from these columns.</li>
+ *   <li>the product scores are computed again against the (now frozen) statistics,
+ *       completed from the columns, and emitted as scores only partial updates.</li>
+ * </ol>
+ *
+ * The computed scores are the ones the batched aggregator produces, services being
+ * applied in the same order : the attribute based services, then the ecoscore, then
+ * the participating scores.
+ */
+public class StreamingVerticalScorer {
+
+	private static final Logger logger = LoggerFactory.getLogger(StreamingVerticalScorer.class);
+
+	/** Services computing the scores from the product data (attributes, brand, ...) **/
+	private final List<AbstractScoreAggregationService> productScores;
+
+	private final EcoScoreAggregationService ecoScore;
+
+	private final ParticipatingScoresAggregationService participatingScores;
+
+	/** Number of partial updates handed to the consumer at once **/
+	private final int flushSize;
+
+	/**
+	 * The outcome of a streamed scoring
+	 * @param scored the number of products scored
+	 * @param needsReindex products (holding the computed scores and ranking only) whose
+	 * indexed scores contain names that are not computed anymore. A partial update
+	 * merging the scores, those ones must be fully re-indexed.
+	 */
+	public record Result(int scored, List<Product> needsReindex) {
+	}
+
+	/**
+	 * The EcoScore global ranking, computed among the real ecoscores
+	 * @param count number of products having a real ecoscore
+	 * @param best id of the best product
+	 * @param positions the global position by row, 0 when not ranked
+	 * @param better the id of the next better product by row, -1 when none
+	 */
+	private record EcoScoreRankings(int count, Long best, int[] positions, long[] better) {
+
+		boolean isRanked(int row) {
+			return positions[row] > 0;
+		}
+	}
+
+	/**
+	 * @param productScores services computing the scores from the product data, in order
+	 * @param ecoScore
+	 * @param participatingScores
+	 * @param flushSize number of partial updates handed to the consumer at once
+	 */
+	public StreamingVerticalScorer(final List<AbstractScoreAggregationService> productScores,
+			final EcoScoreAggregationService ecoScore,
+			final ParticipatingScoresAggregationService participatingScores,
+			final int flushSize) {
+		this.productScores = productScores;
+		this.ecoScore = ecoScore;
+		this.participatingScores = participatingScores;
+		this.flushSize = Math.max(1, flushSize);
+	}
+
+	/**
+	 * Scores a vertical
+	 * @param products supplies the products of the vertical, called once per pass.
+	 * Products only need the fields read by the scoring services, and their scores
+	 * @param vConf the vertical configuration
+	 * @param updates receives the scores partial updates, by chunks
+	 * @return the scoring result
+	 */
+	public Result score(final Supplier<Stream<Product>> products, final VerticalConfig vConf,
+			final Consumer<List<ProductPartialUpdateHolder>> updates) {
+
+		long start = System.currentTimeMillis();
+		productScores.forEach(s -> s.init(List.of()));
+		ecoScore.init(List.of());
+		participatingScores.init(List.of());
+
+		///////////////////////
+		// First pass : statistics and values
+		///////////////////////
+		ScoreColumns columns = new ScoreColumns();
+		try (Stream<Product> stream = products.get()) {
+			stream.forEach(p -> {
+				p.getScores().clear();
+				computeProductScores(p, vConf);
+				columns.add(p.getId(), p.getScores().values());
+			});
+		}
+		columns.index();
+		productScores.forEach(AbstractScoreAggregationService::freezeStatistics);
+		logger.info("Scoring {} : {} products streamed, {} score columns, in {} ms", vConf.getId(), columns.size(),
+				columns.scoreNames().size(), System.currentTimeMillis() - start);
+
+		///////////////////////
+		// Derived values, from the columns
+		///////////////////////
+		Map<String, Double> ecoWeights = ecoScoreWeights(columns, vConf);
+		rankProductScores(columns, vConf, ecoWeights);
+		EcoScoreRankings ecoRankings = rankEcoScore(columns, vConf, ecoWeights);
+		computeParticipatingScores(columns, vConf, ecoWeights);
+		logger.info("Scoring {} : relativisation and rankings computed in {} ms", vConf.getId(), System.currentTimeMillis() - start);
+
+		///////////////////////
+		// Second pass : emitting the scores
+		///////////////////////
+		int[] scored = { 0 };
+		List<Product> needsReindex = new ArrayList<>();
+		List<ProductPartialUpdateHolder> buffer = new ArrayList<>(flushSize);
+		try (Stream<Product> stream = products.get()) {
+			stream.forEach(p -> {
+				int row = columns.row(p.getId());
+				if (row < 0) {
+					logger.debug("Product {} appeared in {} between the scoring passes, skipped", p.getId(), vConf.getId());
+					return;
+				}
+				Set<String> previous = new HashSet<>(p.getScores().keySet());
+				p.getScores().clear();
+				computeProductScores(p, vConf);
+				completeScores(p, row, columns, vConf, ecoWeights);
+				boolean ranked = null != ecoRankings && ecoRankings.isRanked(row);
+				applyRankings(p, row, columns, ranked ? ecoRankings : null);
+
+				if (!p.getScores().keySet().containsAll(previous)) {
+					Product holder = new Product(p.getId());
+					holder.setScores(p.getScores());
+					holder.setRanking(ranked ? p.getRanking() : null);
+					needsReindex.add(holder);
+				} else {
+					buffer.add(toPartialUpdate(p, vConf.getId(), ranked));
+					if (buffer.size() >= flushSize) {
+						updates.accept(new ArrayList<>(buffer));
+						buffer.clear();
+					}
+				}
+				scored[0]++;
+			});
+		}
+		if (!buffer.isEmpty()) {
+			updates.accept(buffer);
+		}
+
+		logger.info("Scoring {} : {} products scored ({} to re-index) in {} ms", vConf.getId(), scored[0],
+				needsReindex.size(), System.currentTimeMillis() - start);
+		return new Result(scored[0], needsReindex);
+	}
+
+	/**
+	 * Runs the services computing the scores from the product data
+	 */
+	private void computeProductScores(final Product p, final VerticalConfig vConf) {
+		for (AbstractScoreAggregationService service : productScores) {
+			try {
+				service.onProduct(p, vConf);
+			} catch (AggregationSkipException e) {
+				logger.info("Product {} skipped during streamed scoring by {}: {}", p.getId(),
+						service.getClass().getSimpleName(), e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Relativises the product scores computed by the product scores services, and
+	 * stores the relative values in the columns for ranking. The ecoscore is computed
+	 * in the same loop, from the relativised sub-scores.
+	 */
+	private void rankProductScores(final ScoreColumns columns, final VerticalConfig vConf, final Map<String, Double> ecoWeights) {
+		Map<String, double[]> relativs = new HashMap<>();
+		for (int row = 0; row < columns.size(); row++) {
+			Product p = skeleton(columns, row);
+			completeProductScores(p, vConf);
+			for (AbstractScoreAggregationService service : productScores) {
+				collectRelativs(p, row, service.scoreNames(), relativs, columns.size());
+			}
+
+			if (null != ecoWeights) {
+				try {
+					Double value = ecoScore.generateEcoScore(p, vConf, ecoWeights);
+					if (null != value) {
+						ecoScore.incrementCardinality(EcoScoreAggregationService.ECOSCORE_SCORENAME, value, vConf);
+						columns.set(row, new Score(EcoScoreAggregationService.ECOSCORE_SCORENAME, value));
+					} else {
+						logger.debug("EcoScore rating skipped for {} due to missing sub-scores", p.getId());
+					}
+				} catch (ValidationException e) {
+					logger.error("Ecoscore aggregation failed for {} : {}", p.getId(), e.getMessage());
+				}
+			}
+		}
+		relativs.forEach(columns::rank);
+		ecoScore.freezeStatistics();
+	}
+
+	/**
+	 * Ranks the ecoscore, and computes the global EcoScore ranking.
+	 * @return the global ranking, null if no ecoscore is computed
+	 */
+	private EcoScoreRankings rankEcoScore(final ScoreColumns columns, final VerticalConfig vConf, final Map<String, Double> ecoWeights) {
+		if (null == ecoWeights || !columns.hasScore(EcoScoreAggregationService.ECOSCORE_SCORENAME)) {
+			return null;
+		}
+		Map<String, double[]> relativs = new HashMap<>();
+		for (int row = 0; row < columns.size(); row++) {
+			Product p = skeleton(columns, row);
+			completeProductScores(p, vConf);
+			// Ranked on the relativised values, before the scaling of the real ecoscores
+			completeEcoScore(p, row, columns, vConf, ecoWeights, false);
+			collectRelativs(p, row, ecoScore.scoreNames(), relativs, columns.size());
+		}
+		relativs.forEach(columns::rank);
+
+		// The global ranking only considers the real ecoscores, ordered by value
+		double[] ecoValues = new double[columns.size()];
+		for (int row = 0; row < columns.size(); row++) {
+			ecoValues[row] = columns.value(EcoScoreAggregationService.ECOSCORE_SCORENAME, row);
+		}
+		Integer[] sorted = new Integer[columns.size()];
+		int count = 0;
+		for (int row = 0; row < columns.size(); row++) {
+			if (!Double.isNaN(ecoValues[row])) {
+				sorted[count++] = row;
+			}
+		}
+		Arrays.sort(sorted, 0, count, (a, b) -> Double.compare(ecoValues[a], ecoValues[b]));
+		int[] positions = new int[columns.size()];
+		long[] better = new long[columns.size()];
+		Arrays.fill(better, -1L);
+		for (int i = 0; i < count; i++) {
+			positions[sorted[i]] = count - i;
+			if (i < count - 1) {
+				better[sorted[i]] = columns.id(sorted[i + 1]);
+			}
+		}
+		return new EcoScoreRankings(count, count > 0 ? columns.id(sorted[count - 1]) : null, positions, better);
+	}
+
+	/**
+	 * Computes and ranks the participating scores
+	 */
+	private void computeParticipatingScores(final ScoreColumns columns, final VerticalConfig vConf, final Map<String, Double> ecoWeights) {
+		for (int row = 0; row < columns.size(); row++) {
+			Product p = skeleton(columns, row);
+			completeProductScores(p, vConf);
+			completeEcoScore(p, row, columns, vConf, ecoWeights, true);
+			Set<String> before = new HashSet<>(p.getScores().keySet());
+			participatingScores.onProduct(p, vConf);
+			for (Score s : p.getScores().values()) {
+				if (!before.contains(s.getName())) {
+					columns.set(row, s);
+				}
+			}
+		}
+		participatingScores.freezeStatistics();
+
+		Map<String, double[]> relativs = new HashMap<>();
+		for (int row = 0; row < columns.size(); row++) {
+			Product p = skeleton(columns, row);
+			completeProductScores(p, vConf);
+			completeEcoScore(p, row, columns, vConf, ecoWeights, true);
+			completeParticipatingScores(p, vConf);
+			collectRelativs(p, row, participatingScores.scoreNames(), relativs, columns.size());
+		}
+		relativs.forEach(columns::rank);
+	}
+
+	/**
+	 * Completes the scores of a product computed by {@link #computeProductScores}
+	 */
+	private void completeScores(final Product p, final int row, final ScoreColumns columns, final VerticalConfig vConf,
+			final Map<String, Double> ecoWeights) {
+		completeProductScores(p, vConf);
+		completeEcoScore(p, row, columns, vConf, ecoWeights, true);
+		completeParticipatingScores(p, vConf);
+	}
+
+	private void completeProductScores(final Product p, final VerticalConfig vConf) {
+		for (AbstractScoreAggregationService service : productScores) {
+			service.completeScores(p);
+			service.relativizeScores(p, vConf);
+		}
+	}
+
+	private void completeEcoScore(final Product p, final int row, final ScoreColumns columns, final VerticalConfig vConf,
+			final Map<String, Double> ecoWeights, final boolean scale) {
+		if (null == ecoWeights) {
+			return;
+		}
+		double value = columns.value(EcoScoreAggregationService.ECOSCORE_SCORENAME, row);
+		if (!Double.isNaN(value)) {
+			Score s = new Score(EcoScoreAggregationService.ECOSCORE_SCORENAME, value);
+			s.setAbsolute(new Cardinality());
+			s.getAbsolute().setValue(value);
+			p.getScores().put(s.getName(), s);
+		}
+		ecoScore.completeScores(p);
+		ecoScore.relativizeScores(p, vConf);
+		if (scale && ecoScore.hasRealEcoScore(p)) {
+			ecoScore.scaleEcoScore(p.ecoscore());
+		}
+	}
+
+	private void completeParticipatingScores(final Product p, final VerticalConfig vConf) {
+		participatingScores.onProduct(p, vConf);
+		participatingScores.completeScores(p);
+		participatingScores.relativizeScores(p, vConf);
+	}
+
+	/**
+	 * Sets the scores rankings, and the EcoScore global ranking
+	 */
+	private void applyRankings(final Product p, final int row, final ScoreColumns columns, final EcoScoreRankings ecoRankings) {
+		for (Score s : p.getScores().values()) {
+			int ranking = columns.ranking(s.getName(), row);
+			if (ranking != ScoreColumns.NOT_RANKED) {
+				s.setRanking(ranking);
+				s.setLowestScoreId(columns.lowestId(s.getName()));
+				s.setHighestScoreId(columns.highestId(s.getName()));
+			}
+		}
+
+		if (null != ecoRankings) {
+			EcoScoreRanking ranking = ecoScore.ensureRanking(p);
+			ranking.setGlobalCount(ecoRankings.count());
+			ranking.setGlobalPosition(ecoRankings.positions()[row]);
+			ranking.setGlobalBest(ecoRankings.best());
+			ranking.setGlobalBetter(ecoRankings.better()[row] < 0 ? null : ecoRankings.better()[row]);
+		}
+	}
+
+	/**
+	 * @return the normalised ecoscore weights, null if no ecoscore is configured for the vertical
+	 */
+	private Map<String, Double> ecoScoreWeights(final ScoreColumns columns, final VerticalConfig vConf) {
+		if (vConf.getImpactScoreConfig() == null || vConf.getImpactScoreConfig().getCriteriasPonderation().isEmpty()) {
+			logger.error("No ImpactScore defined for vertical {}", vConf.getId());
+			return null;
+		}
+		Map<String, Double> weights = ecoScore.normalizeWeights(vConf);
+		if (weights.isEmpty()) {
+			logger.error("EcoScore weights sum to zero for vertical {}", vConf.getId());
+			return null;
+		}
+		vConf.getImpactScoreConfig().getCriteriasPonderation().keySet().stream()
+				.filter(scoreName -> !columns.hasScore(scoreName))
+				.forEach(scoreName -> logger.warn("EcoScore criteria '{}' is missing in batch. Applying missing-value policy.", scoreName));
+		return weights;
+	}
+
+	/**
+	 * Builds a product holding only the scores stored in the columns for a row
+	 */
+	private Product skeleton(final ScoreColumns columns, final int row) {
+		Product p = new Product(columns.id(row));
+		for (AbstractScoreAggregationService service : productScores) {
+			for (String scoreName : service.scoreNames()) {
+				double value = columns.value(scoreName, row);
+				if (!Double.isNaN(value)) {
+					Score s = new Score(scoreName, value);
+					s.setAbsolute(new Cardinality());
+					s.getAbsolute().setValue(columns.absolute(scoreName, row));
+					p.getScores().put(scoreName, s);
+				}
+			}
+		}
+		return p;
+	}
+
+	private static void collectRelativs(final Product p, final int row, final Set<String> scoreNames,
+			final Map<String, double[]> relativs, final int size) {
+		for (String scoreName : scoreNames) {
+			double[] column = relativs.computeIfAbsent(scoreName, k -> {
+				double[] c = new double[size];
+				Arrays.fill(c, Double.NaN);
+				return c;
+			});
+			Score s = p.getScores().get(scoreName);
+			if (s != null && s.getRelativ() != null && s.getRelativ().getValue() != null) {
+				column[row] = s.getRelativ().getValue();
+			}
+		}
+	}
+
+	private static ProductPartialUpdateHolder toPartialUpdate(final Product p, final String vertical, final boolean withRanking) {
+		ProductPartialUpdateHolder holder = new ProductPartialUpdateHolder(p.getId());
+		// The scoring projection does not fetch the vertical, the streamed products are those of the scored one
+		holder.setVertical(vertical);
+		holder.addChange(ProductPartialUpdateField.SCORES, p.getScores());
+		if (withRanking) {
+			// Only the global ranking is computed here, the specialised one is left untouched
+			Map<String, Object> ranking = new HashMap<>();
+			ranking.put("globalPosition", p.getRanking().getGlobalPosition());
+			ranking.put("globalCount", p.getRanking().getGlobalCount());
+			ranking.put("globalBest", p.getRanking().getGlobalBest());
+			ranking.put("globalBetter", p.getRanking().getGlobalBetter());
+			holder.addChange(ProductPartialUpdateField.RANKING, ranking);
+		}
+		return holder;
+	}
+}
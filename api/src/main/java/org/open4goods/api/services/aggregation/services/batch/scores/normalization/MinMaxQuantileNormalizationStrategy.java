@@ -1,10 +1,5 @@
 package org.open4goods.api.services.aggregation.services.batch.scores.normalization;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
-
 import org.open4goods.model.exceptions.ValidationException;
 import org.open4goods.model.vertical.AttributeConfig;
 import org.open4goods.model.vertical.scoring.ScoreNormalizationParams;
@@ -17,8 +12,8 @@ import org.open4goods.model.vertical.scoring.ScoreNormalizationParams;
  * {@code [scaleMin, scaleMax]}. Clamping ensures the result stays within the output
  * range even for extreme outliers.
  *
- * <p><b>Note:</b> The value distribution is expanded from the frequency map on every
- * call — appropriate for batch sizes up to a few thousand products.
+ * <p>Quantiles are read from the batch {@link ValueDistribution}, built once per batch,
+ * so normalizing a product does not depend on the batch size.
  */
 public class MinMaxQuantileNormalizationStrategy extends AbstractNormalizationStrategy {
 
@@ -39,14 +34,13 @@ public class MinMaxQuantileNormalizationStrategy extends AbstractNormalizationSt
             throw new ValidationException("Invalid quantile bounds for min-max quantile normalization");
         }
 
-        List<Double> values = expandValues(context.valueFrequencies());
-        if (values.isEmpty()) {
+        ValueDistribution distribution = context.distribution();
+        if (distribution.isEmpty()) {
             return handleDegenerate(attributeConfig, "Degenerate distribution for quantile normalization");
         }
 
-        Collections.sort(values);
-        Double lowBound = computeQuantile(values, quantileLow);
-        Double highBound = computeQuantile(values, quantileHigh);
+        Double lowBound = distribution.quantile(quantileLow);
+        Double highBound = distribution.quantile(quantileHigh);
         if (lowBound == null || highBound == null || highBound <= lowBound) {
             return handleDegenerate(attributeConfig, "Degenerate distribution for quantile normalization");
         }
@@ -54,28 +48,4 @@ public class MinMaxQuantileNormalizationStrategy extends AbstractNormalizationSt
         double normalized = (value - lowBound) / (highBound - lowBound);
         return new NormalizationResult(scaleAndClamp(normalized, attributeConfig), false);
     }
-
-    private List<Double> expandValues(Map<Double, Integer> frequencies) {
-        if (frequencies == null || frequencies.isEmpty()) {
-            return List.of();
-        }
-        List<Double> values = new ArrayList<>();
-        frequencies.forEach((v, count) -> {
-            if (count != null && count > 0) {
-                for (int i = 0; i < count; i++) {
-                    values.add(v);
-                }
-            }
-        });
-        return values;
-    }
-
-    private Double computeQuantile(List<Double> values, double quantile) {
-        if (values.isEmpty()) {
-            return null;
-        }
-        double clamped = Math.max(0.0, Math.min(1.0, quantile));
-        int index = (int) Math.round(clamped * (values.size() - 1));
-        return values.get(index);
-    }
 }
@@ -9,17 +9,28 @@ import org.open4goods.model.rating.Cardinality;
  * Immutable snapshot of batch-wide statistics needed for score normalization.
  *
  * <p>{@code valueFrequencies} is guaranteed non-null (falls back to an empty map
- * when the caller passes {@code null}).
+ * when the caller passes {@code null}), and so is {@code distribution} (built from
+ * the frequencies when not provided). Callers normalizing a whole batch should
+ * build the distribution once and share it across the contexts.
  *
  * @param cardinality      observed min/max/mean/stddev across the batch; may be {@code null}
  *                         for strategies that do not require it (e.g. CONSTANT)
- * @param valueFrequencies value→count frequency map; required by PERCENTILE and MINMAX_QUANTILE
+ * @param valueFrequencies value→count frequency map
+ * @param distribution     sorted distribution of the frequencies; queried by PERCENTILE and MINMAX_QUANTILE
  */
-public record NormalizationContext(Cardinality cardinality, Map<Double, Integer> valueFrequencies) {
+public record NormalizationContext(Cardinality cardinality, Map<Double, Integer> valueFrequencies,
+        ValueDistribution distribution) {
 
     public NormalizationContext {
         if (valueFrequencies == null) {
             valueFrequencies = Collections.emptyMap();
         }
+        if (distribution == null) {
+            distribution = ValueDistribution.of(valueFrequencies);
+        }
+    }
+
+    public NormalizationContext(Cardinality cardinality, Map<Double, Integer> valueFrequencies) {
+        this(cardinality, valueFrequencies, null);
     }
 }
@@ -1,7 +1,5 @@
 package org.open4goods.api.services.aggregation.services.batch.scores.normalization;
 
-import java.util.Map;
-
 import org.open4goods.model.exceptions.ValidationException;
 import org.open4goods.model.rating.Cardinality;
 import org.open4goods.model.vertical.AttributeConfig;
@@ -11,7 +9,8 @@ import org.open4goods.model.vertical.AttributeConfig;
  *
  * <p>Computes the fraction of values strictly below {@code value} plus half of the
  * values equal to it, relative to the total count. The resulting percentile
- * ({@code [0, 1]}) is mapped onto {@code [scaleMin, scaleMax]}.
+ * ({@code [0, 1]}) is mapped onto {@code [scaleMin, scaleMax]}. Counts are read from
+ * the batch {@link ValueDistribution} by binary search.
  */
 public class PercentileNormalizationStrategy extends AbstractNormalizationStrategy {
 
@@ -27,22 +26,14 @@ public class PercentileNormalizationStrategy extends AbstractNormalizationStrate
             throw new ValidationException("Missing cardinality for percentile normalization");
         }
 
-        Map<Double, Integer> frequencies = context.valueFrequencies();
+        ValueDistribution distribution = context.distribution();
         Integer totalCount = abs.getCount();
-        if (frequencies == null || frequencies.isEmpty() || totalCount == null || totalCount == 0) {
+        if (distribution.isEmpty() || totalCount == null || totalCount == 0) {
             return handleDegenerate(attributeConfig, "Degenerate distribution for percentile normalization");
         }
 
-        int countBelow = 0;
-        int countAt = 0;
-        for (Map.Entry<Double, Integer> entry : frequencies.entrySet()) {
-            int cmp = Double.compare(entry.getKey(), value);
-            if (cmp < 0) {
-                countBelow += entry.getValue();
-            } else if (cmp == 0) {
-                countAt += entry.getValue();
-            }
-        }
+        long countBelow = distribution.countBelow(value);
+        long countAt = distribution.countAt(value);
 
         double percentile = (countBelow + 0.5 * countAt) / totalCount;
         return new NormalizationResult(scaleAndClamp(percentile, attributeConfig), false);
@@ -0,0 +1,126 @@
+package org.open4goods.api.services.aggregation.services.batch.scores.normalization;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Immutable sorted distribution of the values observed for a score over a batch.
+ *
+ * <p>Built once per batch from the value→count frequency map, it stores the distinct
+ * values in ascending order along with cumulative counts, so that rank and quantile
+ * queries are answered by binary search instead of walking (or expanding and
+ * sorting) the frequency map for every product.
+ */
+public final class ValueDistribution {
+
+    private static final ValueDistribution EMPTY = new ValueDistribution(new double[0], new long[0]);
+
+    /** Distinct observed values, ascending (as ordered by {@link Double#compare}) */
+    private final double[] values;
+
+    /** {@code cumulative[i]} is the number of observations lower than or equal to {@code values[i]} */
+    private final long[] cumulative;
+
+    private ValueDistribution(double[] values, long[] cumulative) {
+        this.values = values;
+        this.cumulative = cumulative;
+    }
+
+    /**
+     * Builds the distribution of a frequency map. Entries with a missing or non
+     * positive count are ignored.
+     *
+     * @param frequencies value→count frequency map, may be {@code null}
+     * @return the distribution, empty if there is no observation
+     */
+    public static ValueDistribution of(Map<Double, Integer> frequencies) {
+        if (frequencies == null || frequencies.isEmpty()) {
+            return EMPTY;
+        }
+        double[] sorted = new double[frequencies.size()];
+        int size = 0;
+        for (Map.Entry<Double, Integer> entry : frequencies.entrySet()) {
+            if (entry.getKey() != null && entry.getValue() != null && entry.getValue() > 0) {
+                sorted[size++] = entry.getKey();
+            }
+        }
+        if (size == 0) {
+            return EMPTY;
+        }
+        sorted = Arrays.copyOf(sorted, size);
+        Arrays.sort(sorted);
+
+        long[] cumulative = new long[size];
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += frequencies.get(sorted[i]);
+            cumulative[i] = total;
+        }
+        return new ValueDistribution(sorted, cumulative);
+    }
+
+    /**
+     * @return the number of observations
+     */
+    public long total() {
+        return values.length == 0 ? 0 : cumulative[values.length - 1];
+    }
+
+    /**
+     * @return the number of distinct observed values
+     */
+    public int distinctValues() {
+        return values.length;
+    }
+
+    public boolean isEmpty() {
+        return values.length == 0;
+    }
+
+    /**
+     * @return the number of observations strictly lower than {@code value}
+     */
+    public long countBelow(double value) {
+        int index = Arrays.binarySearch(values, value);
+        int insertion = index >= 0 ? index : -(index + 1);
+        return insertion == 0 ? 0 : cumulative[insertion - 1];
+    }
+
+    /**
+     * @return the number of observations equal to {@code value}
+     */
+    public long countAt(double value) {
+        int index = Arrays.binarySearch(values, value);
+        if (index < 0) {
+            return 0;
+        }
+        return cumulative[index] - (index == 0 ? 0 : cumulative[index - 1]);
+    }
+
+    /**
+     * Nearest-rank quantile : the value at index {@code round(quantile * (total - 1))}
+     * of the sorted observations.
+     *
+     * @param quantile the quantile, clamped to {@code [0, 1]}
+     * @return the quantile value, {@code null} if the distribution is empty
+     */
+    public Double quantile(double quantile) {
+        if (isEmpty()) {
+            return null;
+        }
+        double clamped = Math.max(0.0, Math.min(1.0, quantile));
+        long rank = Math.round(clamped * (total() - 1));
+        // First distinct value whose cumulative count goes beyond the rank
+        int low = 0;
+        int high = values.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] > rank) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return values[low];
+    }
+}
@@ -6,7 +6,6 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
@@ -26,10 +25,13 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -39,6 +41,7 @@ import org.open4goods.api.config.yml.BackupConfig;
 import org.open4goods.api.services.AggregationFacadeService;
 import org.open4goods.api.services.backup.ProductBackupThread.ProductBackupFile;
 import org.open4goods.model.product.Product;
+import org.open4goods.services.productrepository.services.BulkProductIndexer.BulkIndexReport;
 import org.open4goods.services.productrepository.services.ProductRepository;
 import org.open4goods.services.serialisation.service.SerialisationService;
 import org.open4goods.xwiki.services.XWikiReadService;
@@ -69,6 +72,7 @@ public class BackupService implements HealthIndicator {
 	private static final String PRODUCT_BACKUP_FILE_PREFIX = "products-backup-";
 	private static final String PRODUCT_BACKUP_FILE_SUFFIX = ".gz";
 	private static final String PRODUCT_BACKUP_MANIFEST = "products-backup-manifest.json";
+	private static final String PRODUCT_INCREMENT_FILE_PREFIX = "products-increment-";
 	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
 
@@ -109,7 +113,9 @@ public class BackupService implements HealthIndicator {
 	}
 
 	/**
-	 * This method will periodicaly export all data in a zipped file
+	 * This method will periodicaly export all data in a zipped file. In incremental
+	 * mode, the runs following a full snapshot only export the products changed
+	 * since the previous run, in a new segment of the manifest.
 	 */
 	// TODO : Schedule from conf
 	@Scheduled(initialDelay = 1000 * 3600 * 6, fixedDelay = 1000 * 3600 * 24 * 7)
@@ -123,17 +129,68 @@ public class BackupService implements HealthIndicator {
 		}
 
 		List<ProductBackupFile> tempFiles = new ArrayList<>();
+
+		try {
+			int pageSize = Math.max(1, backupConfig.getProductExportPageSize());
+			File backupFolder = ensureProductBackupFolder();
+			long startedEpochMillis = System.currentTimeMillis();
+
+			ProductBackupManifest previous = backupConfig.isIncrementalBackup() ? readIncrementBase(backupFolder.toPath()) : null;
+			if (null != previous) {
+				long since = previous.lastStartedEpochMillis() - backupConfig.getIncrementalOverlapInMinutes() * 60_000L;
+				logger.info("Products backup increment, changed since {}", new Date(since));
+				exportProducts(() -> productRepo.exportChangedSince(since, pageSize), tempFiles);
+
+				long exportedProducts = tempFiles.stream().mapToLong(ProductBackupFile::productCount).sum();
+				publishProductBackupIncrement(backupFolder.toPath(), previous, tempFiles, since, startedEpochMillis,
+						exportedProducts);
+			} else {
+				expordedProductsCounter.set(0L);
+				expectedBackupedProducts.set(productRepo.countMainIndex());
+				exportProducts(() -> productRepo.exportAll(pageSize), tempFiles);
+
+				long exportedProducts = tempFiles.stream().mapToLong(ProductBackupFile::productCount).sum();
+				publishProductBackupFiles(backupFolder.toPath(), tempFiles, expectedBackupedProducts.get(), exportedProducts,
+						pageSize, startedEpochMillis);
+				expordedProductsCounter.set(exportedProducts);
+			}
+			this.dataBackupException = null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.error("Product backup interrupted", e);
+			this.dataBackupException = e.getMessage();
+			cleanupTempFiles(tempFiles);
+		} catch (ExecutionException e) {
+			logger.error("Error while backing up data", e.getCause());
+			this.dataBackupException = Objects.toString(e.getCause().getMessage(), e.getCause().toString());
+			cleanupTempFiles(tempFiles);
+		} catch (Exception e) {
+			logger.error("Error while backing up data", e);
+			this.dataBackupException = e.getMessage();
+			cleanupTempFiles(tempFiles);
+		} finally {
+			productExportRunning.set(false);
+		}
+
+		logger.info("Products data backup - complete");
+	}
+
+	/**
+	 * Serialise the given products in temporary files, one per export thread
+	 *
+	 * @param products the products to export
+	 * @param tempFiles receives the completed temporary files
+	 */
+	private void exportProducts(Supplier<Stream<Product>> products, List<ProductBackupFile> tempFiles) throws Exception {
 		ExecutorService executorService = null;
 		AtomicBoolean producerDone = new AtomicBoolean(false);
 		AtomicReference<Throwable> workerFailure = new AtomicReference<>();
 
 		try {
 			int exportThreads = Math.max(1, backupConfig.getProductsExportThreads());
-			int pageSize = Math.max(1, backupConfig.getProductExportPageSize());
-			LinkedBlockingQueue<Product> blockingQueue = new LinkedBlockingQueue<>(Math.max(1000, pageSize));
-			expordedProductsCounter.set(0L);
+			LinkedBlockingQueue<Product> blockingQueue = new LinkedBlockingQueue<>(
+					Math.max(1000, backupConfig.getProductExportPageSize()));
 
-			File backupFolder = ensureProductBackupFolder();
 			executorService = Executors.newFixedThreadPool(exportThreads);
 			List<Future<ProductBackupFile>> futures = new ArrayList<>();
 			for (int i = 0; i < exportThreads; i++) {
@@ -141,9 +198,7 @@ public class BackupService implements HealthIndicator {
 						new ProductBackupThread(blockingQueue, serialisationService, i, producerDone, workerFailure)));
 			}
 
-			expectedBackupedProducts.set(productRepo.countMainIndex());
-
-			try (Stream<Product> stream = productRepo.exportAll(pageSize)) {
+			try (Stream<Product> stream = products.get()) {
 				stream.forEach(product -> queueProductForBackup(blockingQueue, workerFailure, product));
 			} finally {
 				producerDone.set(true);
@@ -162,25 +217,6 @@ public class BackupService implements HealthIndicator {
 			if (workerFailure.get() != null) {
 				throw new IllegalStateException("Product backup worker failed", workerFailure.get());
 			}
-
-			long exportedProducts = tempFiles.stream().mapToLong(ProductBackupFile::productCount).sum();
-			publishProductBackupFiles(backupFolder.toPath(), tempFiles, expectedBackupedProducts.get(), exportedProducts,
-					pageSize);
-			expordedProductsCounter.set(exportedProducts);
-			this.dataBackupException = null;
-		} catch (InterruptedException e) {
-			Thread.currentThread().interrupt();
-			logger.error("Product backup interrupted", e);
-			this.dataBackupException = e.getMessage();
-			cleanupTempFiles(tempFiles);
-		} catch (ExecutionException e) {
-			logger.error("Error while backing up data", e.getCause());
-			this.dataBackupException = Objects.toString(e.getCause().getMessage(), e.getCause().toString());
-			cleanupTempFiles(tempFiles);
-		} catch (Exception e) {
-			logger.error("Error while backing up data", e);
-			this.dataBackupException = e.getMessage();
-			cleanupTempFiles(tempFiles);
 		} finally {
 			producerDone.set(true);
 			if (executorService != null && !executorService.isShutdown()) {
@@ -194,10 +230,7 @@ public class BackupService implements HealthIndicator {
 					executorService.shutdownNow();
 				}
 			}
-			productExportRunning.set(false);
 		}
-
-		logger.info("Products data backup - complete");
 	}
 
 	private File ensureProductBackupFolder() throws IOException {
@@ -229,19 +262,80 @@ public class BackupService implements HealthIndicator {
 	}
 
 	private void publishProductBackupFiles(Path backupFolder, List<ProductBackupFile> tempFiles, long expectedProducts,
-			long exportedProducts, int pageSize) throws IOException {
+			long exportedProducts, int pageSize, long startedEpochMillis) throws IOException {
+		List<String> fileNames = moveBackupFiles(backupFolder, tempFiles, PRODUCT_BACKUP_FILE_PREFIX);
+
+		ProductBackupManifest manifest = new ProductBackupManifest(Instant.now().toString(),
+				System.currentTimeMillis(), expectedProducts, exportedProducts, pageSize, fileNames, startedEpochMillis,
+				List.of());
+		writeManifest(backupFolder, manifest);
+
+		// Increments of the previous snapshot, no longer referenced
+		try (Stream<Path> files = Files.list(backupFolder)) {
+			for (Path file : files.filter(f -> f.getFileName().toString().startsWith(PRODUCT_INCREMENT_FILE_PREFIX)).toList()) {
+				Files.deleteIfExists(file);
+			}
+		}
+	}
+
+	private void publishProductBackupIncrement(Path backupFolder, ProductBackupManifest previous,
+			List<ProductBackupFile> tempFiles, long sinceEpochMillis, long startedEpochMillis, long exportedProducts)
+			throws IOException {
+		int sequence = previous.increments().size() + 1;
+		List<String> fileNames = moveBackupFiles(backupFolder, tempFiles, PRODUCT_INCREMENT_FILE_PREFIX + sequence + "-");
+
+		List<ProductBackupIncrement> increments = new ArrayList<>(previous.increments());
+		increments.add(new ProductBackupIncrement(sinceEpochMillis, startedEpochMillis, System.currentTimeMillis(),
+				exportedProducts, fileNames));
+		writeManifest(backupFolder, new ProductBackupManifest(previous.completedAt(), previous.completedEpochMillis(),
+				previous.expectedCount(), previous.exportedCount(), previous.pageSize(), previous.files(),
+				previous.startedEpochMillis(), increments));
+		logger.info("Products backup increment {} published, {} products", sequence, exportedProducts);
+	}
+
+	private List<String> moveBackupFiles(Path backupFolder, List<ProductBackupFile> tempFiles, String prefix)
+			throws IOException {
 		List<String> fileNames = new ArrayList<>();
 		for (ProductBackupFile tempFile : tempFiles) {
-			Path destination = backupFolder
-					.resolve(PRODUCT_BACKUP_FILE_PREFIX + tempFile.fileNumber() + PRODUCT_BACKUP_FILE_SUFFIX);
+			Path destination = backupFolder.resolve(prefix + tempFile.fileNumber() + PRODUCT_BACKUP_FILE_SUFFIX);
 			Files.move(tempFile.path(), destination, StandardCopyOption.REPLACE_EXISTING);
 			fileNames.add(destination.getFileName().toString());
 		}
+		return fileNames;
+	}
 
-		ProductBackupManifest manifest = new ProductBackupManifest(Instant.now().toString(),
-				System.currentTimeMillis(), expectedProducts, exportedProducts, pageSize, fileNames);
-		OBJECT_MAPPER.writerWithDefaultPrettyPrinter().writeValue(backupFolder.resolve(PRODUCT_BACKUP_MANIFEST).toFile(),
-				manifest);
+	/**
+	 * Replace the manifest, atomically for a failure not to leave a partial one
+	 */
+	private void writeManifest(Path backupFolder, ProductBackupManifest manifest) throws IOException {
+		Path tmp = backupFolder.resolve(PRODUCT_BACKUP_MANIFEST + ".tmp");
+		OBJECT_MAPPER.writerWithDefaultPrettyPrinter().writeValue(tmp.toFile(), manifest);
+		Files.move(tmp, backupFolder.resolve(PRODUCT_BACKUP_MANIFEST), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * @return the published manifest, if a new increment can be appended to it. Null if a full
+	 *         snapshot is due : no complete snapshot, or too many increments already
+	 */
+	private ProductBackupManifest readIncrementBase(Path backupFolder) {
+		Path manifestPath = backupFolder.resolve(PRODUCT_BACKUP_MANIFEST);
+		if (!Files.exists(manifestPath)) {
+			return null;
+		}
+		try {
+			ProductBackupManifest manifest = OBJECT_MAPPER.readValue(manifestPath.toFile(), ProductBackupManifest.class);
+			if (manifest.startedEpochMillis() <= 0 || manifest.files() == null
+					|| manifest.exportedCount() < manifest.expectedCount()
+					|| manifest.increments().size() >= backupConfig.getMaxIncrementalSegments()
+					|| manifest.files().stream().anyMatch(f -> !Files.exists(backupFolder.resolve(f)))) {
+				return null;
+			}
+			return manifest;
+		} catch (IOException e) {
+			logger.warn("Unreadable products backup manifest, taking a full snapshot : {}", e.getMessage());
+			return null;
+		}
 	}
 
 	private void cleanupTempFiles(List<ProductBackupFile> tempFiles) {
@@ -306,9 +400,12 @@ public class BackupService implements HealthIndicator {
 
 
 	/**
-	 * Import product from the GZIP files
-	 * NOTE : Could increase perf by having one import thread per file
-	 * @throws Exception
+	 * Import product from the GZIP files. When the folder holds a backup manifest,
+	 * its full snapshot is replayed, then its increments in order.
+	 * <p>
+	 * Files of a segment are read concurrently, their lines being decoded and
+	 * indexed by bulks on a dedicated pool, with a bounded number of bulks in
+	 * flight. The refresh and the replicas of the index are suspended meanwhile.
 	 */
 	public void importProducts() {
 	    logger.info("Product import : started");
@@ -319,55 +416,180 @@ public class BackupService implements HealthIndicator {
 	        return;
 	    }
 
+	    List<List<File>> segments = importSegments(importFolder);
 	    AtomicLong counter = new AtomicLong(0);
-	    ExecutorService executorService = Executors.newFixedThreadPool(backupConfig.getProductImportThreads());
-
-	    for (File importFile : importFolder.listFiles()) {
-	        executorService.submit(() -> {
-	            logger.info("Importing file started : {}", importFile.getAbsolutePath());
-	            try (InputStream inputStream = new FileInputStream(importFile);
-	                 GZIPInputStream gzipInputStream = new GZIPInputStream(inputStream);
-	                 InputStreamReader inputStreamReader = new InputStreamReader(gzipInputStream);
-	                 BufferedReader bufferedReader = new BufferedReader(inputStreamReader)) {
-
-						List<Product> group = new ArrayList<>();
-						bufferedReader.lines().forEach(line -> {
-						    try {
-						        group.add(translate(serialisationService.fromJson(line, Product.class)));
-						        counter.incrementAndGet();
-						        if (counter.get() % 1000 == 0) {
-						            logger.warn("Imported items so : {}", counter.get());
-						        }
-						        if (group.size() == backupConfig.getImportBulkSize()) {
-						        	productRepo.store(group); // Index the current group
-						        	group.clear(); // Clear the group for the next batch
-						        }
-						    } catch (Exception e) {
-						        logger.error("Error occurs in data import", e);
-						    }
-
-						});
-
-						if (!group.isEmpty()) {
-						    productRepo.store(group);
-						}
-						logger.info("Importing file finished : {}", importFile.getAbsolutePath());
-					} catch (Exception e) {
-						logger.error("Error occurs in data file processing", e);
-					}
+	    int maxInFlightBulks = Math.max(1, backupConfig.getImportMaxInFlightBulks());
+	    Semaphore inFlight = new Semaphore(maxInFlightBulks);
+	    ExecutorService readers = Executors.newFixedThreadPool(Math.max(1, backupConfig.getProductImportThreads()));
+	    ExecutorService indexers = Executors.newFixedThreadPool(Math.max(1, backupConfig.getImportIndexingThreads()));
+	    Map<String, String> relaxedSettings = backupConfig.isRelaxIndexSettingsOnImport() ? relaxIndexSettings() : null;
+
+	    try {
+	        for (List<File> segment : segments) {
+	            List<Future<?>> reads = new ArrayList<>();
+	            for (File importFile : segment) {
+	                reads.add(readers.submit(() -> importFile(importFile, indexers, inFlight, counter)));
+	            }
+	            for (Future<?> read : reads) {
+	                read.get();
+	            }
+	            // Waiting for the segment to be indexed, the next one overrides its products
+	            inFlight.acquire(maxInFlightBulks);
+	            inFlight.release(maxInFlightBulks);
+	        }
+	    } catch (InterruptedException e) {
+	        Thread.currentThread().interrupt();
+	        logger.error("Product import interrupted", e);
+	    } catch (ExecutionException e) {
+	        logger.error("Error occurs in data import", e.getCause());
+	    } finally {
+	        readers.shutdownNow();
+	        indexers.shutdown();
+	        try {
+	            if (!indexers.awaitTermination(1, TimeUnit.HOURS)) {
+	                indexers.shutdownNow();
+	            }
+	        } catch (InterruptedException e) {
+	            Thread.currentThread().interrupt();
+	            indexers.shutdownNow();
+	        }
+	        if (null != relaxedSettings) {
+	            restoreIndexSettings(relaxedSettings);
+	        }
+	    }
+
+	    logger.info("Product import : finished, {} products imported", counter.get());
+	}
+
+	/**
+	 * @return the files to import, by segments to replay in order
+	 */
+	List<List<File>> importSegments(File importFolder) {
+	    Path manifestPath = importFolder.toPath().resolve(PRODUCT_BACKUP_MANIFEST);
+	    if (!Files.exists(manifestPath)) {
+	        File[] files = importFolder.listFiles((dir, name) -> name.endsWith(PRODUCT_BACKUP_FILE_SUFFIX));
+	        if (null == files) {
+	            return List.of();
+	        }
+	        Arrays.sort(files);
+	        return List.of(Arrays.asList(files));
+	    }
+
+	    List<List<File>> segments = new ArrayList<>();
+	    try {
+	        ProductBackupManifest manifest = OBJECT_MAPPER.readValue(manifestPath.toFile(), ProductBackupManifest.class);
+	        segments.add(existingFiles(importFolder, manifest.files()));
+	        for (ProductBackupIncrement increment : manifest.increments()) {
+	            segments.add(existingFiles(importFolder, increment.files()));
+	        }
+	    } catch (IOException e) {
+	        logger.error("Cannot read the products backup manifest {}", manifestPath, e);
+	    }
+	    return segments;
+	}
+
+	private List<File> existingFiles(File folder, List<String> names) {
+	    List<File> files = new ArrayList<>();
+	    for (String name : Objects.requireNonNullElse(names, List.<String>of())) {
+	        File file = new File(folder, name);
+	        if (file.exists()) {
+	            files.add(file);
+	        } else {
+	            logger.error("Missing product backup file : {}", file.getAbsolutePath());
+	        }
+	    }
+	    return files;
+	}
+
+	/**
+	 * Read a backup file, handing its lines by bulks to the indexing pool
+	 */
+	private void importFile(File importFile, ExecutorService indexers, Semaphore inFlight, AtomicLong counter) {
+	    logger.info("Importing file started : {}", importFile.getAbsolutePath());
+	    int bulkSize = Math.max(1, backupConfig.getImportBulkSize());
+	    try (BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(
+	            new GZIPInputStream(new FileInputStream(importFile), 64 * 1024), StandardCharsets.UTF_8))) {
+
+	        List<String> lines = new ArrayList<>(bulkSize);
+	        String line;
+	        while ((line = bufferedReader.readLine()) != null) {
+	            lines.add(line);
+	            if (lines.size() == bulkSize) {
+	                submitBulk(lines, indexers, inFlight, counter);
+	                lines = new ArrayList<>(bulkSize);
+	            }
+	        }
+	        if (!lines.isEmpty()) {
+	            submitBulk(lines, indexers, inFlight, counter);
+	        }
+	        logger.info("Importing file finished : {}", importFile.getAbsolutePath());
+	    } catch (InterruptedException e) {
+	        Thread.currentThread().interrupt();
+	        logger.error("Importing file interrupted : {}", importFile.getAbsolutePath());
+	    } catch (Exception e) {
+	        logger.error("Error occurs in data file processing", e);
+	    }
+	}
+
+	private void submitBulk(List<String> lines, ExecutorService indexers, Semaphore inFlight, AtomicLong counter)
+	        throws InterruptedException {
+	    inFlight.acquire();
+	    try {
+	        indexers.execute(() -> {
+	            try {
+	                indexBulk(lines, counter);
+	            } finally {
+	                inFlight.release();
+	            }
 	        });
+	    } catch (RejectedExecutionException e) {
+	        inFlight.release();
+	        throw e;
 	    }
+	}
 
-	    executorService.shutdown();
-	    while (!executorService.isTerminated()) {
+	private void indexBulk(List<String> lines, AtomicLong counter) {
+	    List<Product> group = new ArrayList<>(lines.size());
+	    for (String line : lines) {
 	        try {
-				Thread.sleep(1000);
-			} catch (InterruptedException e) {
-				logger.error("Error while sleeping",e);
-			}
+	            group.add(translate(serialisationService.fromJson(line, Product.class)));
+	        } catch (Exception e) {
+	            logger.error("Error occurs in data import", e);
+	        }
 	    }
+	    if (group.isEmpty()) {
+	        return;
+	    }
+	    BulkIndexReport report;
+	    try {
+	        report = productRepo.store(group);
+	    } catch (Exception e) {
+	        logger.error("Error while indexing {} imported products", group.size(), e);
+	        return;
+	    }
+	    // The failed products are reported by the repository
+	    int stored = group.size() - report.failures().size();
+	    long imported = counter.addAndGet(stored);
+	    if (imported / 10000 != (imported - stored) / 10000) {
+	        logger.info("Imported items so far : {}", imported);
+	    }
+	}
 
-	    logger.info("Product import : finished");
+	private Map<String, String> relaxIndexSettings() {
+	    try {
+	        return productRepo.relaxSettingsForBulkLoad();
+	    } catch (Exception e) {
+	        logger.warn("Cannot relax the products index settings, importing with the current ones", e);
+	        return null;
+	    }
+	}
+
+	private void restoreIndexSettings(Map<String, String> settings) {
+	    try {
+	        productRepo.restoreBulkLoadSettings(settings);
+	    } catch (Exception e) {
+	        logger.error("Cannot restore the products index settings {}", settings, e);
+	    }
 	}
 
 	/**
@@ -385,6 +607,8 @@ public class BackupService implements HealthIndicator {
 	    }
 
 	    productCopyRunning.set(true);
+	    // Outcome of this copy
+	    dataCopyException = null;
 
 	    try {
 	        int copyThreads = Math.max(1, backupConfig.getCopyThreads());
@@ -414,7 +638,11 @@ public class BackupService implements HealthIndicator {
 	                            }
 	                            continue;
 	                        }
-	                        productRepo.store(batch, targetIndexName);
+	                        BulkIndexReport report = productRepo.store(batch, targetIndexName);
+	                        if (report.hasFailures()) {
+	                            // The copy is incomplete
+	                            dataCopyException = report.failures().size() + " products not copied to " + targetIndexName;
+	                        }
 	                    }
 	                } catch (InterruptedException e) {
 	                    Thread.currentThread().interrupt();
@@ -463,7 +691,11 @@ public class BackupService implements HealthIndicator {
 	        productCopyRunning.set(false);
 	    }
 
-	    logger.info("Products copy to {} - complete", targetIndexName);
+	    if (null != dataCopyException) {
+	        logger.error("Products copy to {} - failed : {}", targetIndexName, dataCopyException);
+	    } else {
+	        logger.info("Products copy to {} - complete", targetIndexName);
+	    }
 	}
 
 	/**
@@ -649,6 +881,12 @@ public class BackupService implements HealthIndicator {
 		ProductBackupManifest manifest = readProductBackupManifest(productFolder, errorMessages);
 		if (manifest != null) {
 			validateProductBackupManifest(manifest, productFolder, productBackupFiles, errorMessages);
+			if (!manifest.increments().isEmpty()) {
+				// The snapshot ages between full backups, the last increment tells the backup freshness
+				oldestFileTs = manifest.increments().getLast().files().stream()
+						.mapToLong(f -> productFolder.toPath().resolve(f).toFile().lastModified())
+						.min().orElse(oldestFileTs);
+			}
 		}
 
 		/**
@@ -714,9 +952,9 @@ public class BackupService implements HealthIndicator {
 					manifest.exportedCount() + " < " + manifest.expectedCount());
 		}
 
-		if (System.currentTimeMillis() - manifest.completedEpochMillis() > backupConfig.getMaxProductsBackupAgeInHours()
+		if (System.currentTimeMillis() - manifest.lastCompletedEpochMillis() > backupConfig.getMaxProductsBackupAgeInHours()
 				* 3600L * 1000L) {
-			errorMessages.put("product_backup_manifest_too_old", new Date(manifest.completedEpochMillis()).toString());
+			errorMessages.put("product_backup_manifest_too_old", new Date(manifest.lastCompletedEpochMillis()).toString());
 		}
 
 		List<String> actualFiles = Arrays.stream(productBackupFiles).map(File::getName).toList();
@@ -733,6 +971,15 @@ public class BackupService implements HealthIndicator {
 				}
 			}
 		}
+
+		for (ProductBackupIncrement increment : manifest.increments()) {
+			for (String file : Objects.requireNonNullElse(increment.files(), List.<String>of())) {
+				Path filePath = productFolder.toPath().resolve(file);
+				if (!Files.exists(filePath)) {
+					errorMessages.put("product_backup_increment_file_missing", filePath.toString());
+				}
+			}
+		}
 	}
 
 	/**
@@ -744,9 +991,43 @@ public class BackupService implements HealthIndicator {
 	 * @param exportedCount successfully serialized product count
 	 * @param pageSize Elasticsearch export page size
 	 * @param files final backup files published by the export
+	 * @param startedEpochMillis start of the export, in epoch milliseconds
+	 * @param increments the increments published since, in order
 	 */
 	public record ProductBackupManifest(String completedAt, long completedEpochMillis, long expectedCount,
-			long exportedCount, int pageSize, List<String> files) {
+			long exportedCount, int pageSize, List<String> files, long startedEpochMillis,
+			List<ProductBackupIncrement> increments) {
+
+		public ProductBackupManifest {
+			increments = null == increments ? List.of() : List.copyOf(increments);
+		}
+
+		/**
+		 * @return the start of the last export, snapshot or increment
+		 */
+		public long lastStartedEpochMillis() {
+			return increments.isEmpty() ? startedEpochMillis : increments.getLast().startedEpochMillis();
+		}
+
+		/**
+		 * @return the completion of the last export, snapshot or increment
+		 */
+		public long lastCompletedEpochMillis() {
+			return increments.isEmpty() ? completedEpochMillis : increments.getLast().completedEpochMillis();
+		}
+	}
+
+	/**
+	 * Products changed since the previous export, replayed over the snapshot on import.
+	 *
+	 * @param sinceEpochMillis lower bound of the exported products change date
+	 * @param startedEpochMillis start of the export, in epoch milliseconds
+	 * @param completedEpochMillis completion of the export, in epoch milliseconds
+	 * @param exportedCount successfully serialized product count
+	 * @param files backup files of the increment
+	 */
+	public record ProductBackupIncrement(long sinceEpochMillis, long startedEpochMillis, long completedEpochMillis,
+			long exportedCount, List<String> files) {
 	}
 
 }
@@ -179,7 +179,7 @@ public class AmazonCompletionService extends AbstractCompletionService {
             List<Product> products = dataRepository.exportVerticalWithValidDate(vertical, withExcluded)
                     .limit(remaining)
                     .toList();
-            products.forEach(product -> completeAndIndexProduct(vertical, product));
+            completeAndIndexProducts(vertical, products.stream());
             remaining -= products.size();
         }
     }
@@ -0,0 +1,516 @@
+package org.open4goods.api.services.completion;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import org.open4goods.model.resource.ImageInfo;
+import org.open4goods.model.resource.Resource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Catalogue wide index of the image perceptive hashes, answering the images within a
+ * Hamming distance of a hash through a BK-tree per hash length.
+ * <p>
+ * Images are keyed by product and URL : indexing an image again with another hash or
+ * cache key replaces its previous entry. The index is persisted as an append only log,
+ * replayed at startup and compacted when most of its lines are stale.
+ */
+public class PerceptualHashIndex
+{
+
+    private static final Logger logger = LoggerFactory.getLogger(PerceptualHashIndex.class);
+
+    private static final String ADDED = "A";
+    private static final String REMOVED = "R";
+
+    private final Path logFile;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** BK-tree roots, by hash length */
+    private final Map<Integer, Node> roots = new HashMap<>();
+    /** Indexed images, with the node holding them */
+    private final Map<ImageKey, Node> images = new HashMap<>();
+
+    private BufferedWriter writer;
+    private long logLines;
+
+    /**
+     * @param logFile the file persisting the index
+     */
+    public PerceptualHashIndex(Path logFile)
+    {
+        this.logFile = logFile;
+    }
+
+    /**
+     * Replays the persisted log, then opens it for the incremental updates.
+     */
+    @PostConstruct
+    public void load()
+    {
+        lock.writeLock().lock();
+        try
+        {
+            if (Files.exists(logFile))
+            {
+                try (BufferedReader reader = Files.newBufferedReader(logFile, StandardCharsets.UTF_8))
+                {
+                    String line;
+                    while ((line = reader.readLine()) != null)
+                    {
+                        replay(line);
+                        logLines++;
+                    }
+                }
+                logger.info("Loaded {} perceptive hashes from {}", images.size(), logFile);
+                if (logLines > 2L * images.size())
+                {
+                    compact();
+                }
+            }
+            else
+            {
+                Files.createDirectories(logFile.toAbsolutePath().getParent());
+            }
+            writer = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        catch (IOException e)
+        {
+            // Still usable, only for this run
+            logger.error("Cannot load the perceptive hashes index {} : {}", logFile, e.getMessage());
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close()
+    {
+        lock.writeLock().lock();
+        try
+        {
+            if (writer != null)
+            {
+                writer.close();
+                writer = null;
+            }
+        }
+        catch (IOException e)
+        {
+            logger.error("Cannot close the perceptive hashes index {} : {}", logFile, e.getMessage());
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indexes a product image, replacing its previous entry.
+     *
+     * @param productId the product holding the image
+     * @param resource an image resource having a perceptive hash
+     */
+    public void add(long productId, Resource resource)
+    {
+        ImageInfo imageInfo = resource.getImageInfo();
+        if (imageInfo == null || imageInfo.getpHashValue() == null || resource.getCacheKey() == null)
+        {
+            return;
+        }
+        IndexedImage image = new IndexedImage(productId, resource.getUrl(), resource.getCacheKey(),
+                imageInfo.getpHashValue(), imageInfo.getpHashLength(), safePixels(imageInfo), resource.getMd5(),
+                imageInfo.getDominantColor());
+
+        lock.writeLock().lock();
+        try
+        {
+            if (put(image))
+            {
+                append(logLine(image));
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a product image from the index.
+     *
+     * @param productId the product holding the image
+     * @param url the image URL
+     */
+    public void remove(long productId, String url)
+    {
+        lock.writeLock().lock();
+        try
+        {
+            if (delete(new ImageKey(productId, url)))
+            {
+                append(String.join(";", REMOVED, String.valueOf(productId), url));
+            }
+        }
+        finally
+        {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param hash the searched perceptive hash
+     * @param hashLength its bit resolution
+     * @param maxDistance the max Hamming distance
+     * @return the indexed images within the distance of the hash
+     */
+    public List<IndexedImage> near(long hash, int hashLength, int maxDistance)
+    {
+        lock.readLock().lock();
+        try
+        {
+            List<IndexedImage> ret = new ArrayList<>();
+            for (Node node : nearNodes(roots.get(hashLength), hash, maxDistance))
+            {
+                ret.addAll(node.images);
+            }
+            return ret;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Groups the indexed images around the hashes shared by several products, the largest
+     * groups first.
+     *
+     * @param maxDistance the max Hamming distance to the hash of a cluster
+     * @param minProducts the min number of products sharing a cluster
+     * @param limit the max number of clusters
+     * @return the clusters
+     */
+    public List<ImageCluster> clusters(int maxDistance, int minProducts, int limit)
+    {
+        lock.readLock().lock();
+        try
+        {
+            List<ImageCluster> ret = new ArrayList<>();
+            Set<Node> clustered = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Map.Entry<Integer, Node> root : roots.entrySet())
+            {
+                Deque<Node> stack = new ArrayDeque<>(List.of(root.getValue()));
+                while (!stack.isEmpty())
+                {
+                    Node seed = stack.pop();
+                    seed.forEachChild(stack::push);
+                    if (seed.images.isEmpty() || clustered.contains(seed))
+                    {
+                        continue;
+                    }
+                    List<IndexedImage> members = new ArrayList<>();
+                    for (Node node : nearNodes(root.getValue(), seed.hash, maxDistance))
+                    {
+                        if (clustered.add(node))
+                        {
+                            members.addAll(node.images);
+                        }
+                    }
+                    long products = members.stream().mapToLong(IndexedImage::productId).distinct().count();
+                    if (products >= minProducts)
+                    {
+                        members.sort(Comparator.comparingInt(IndexedImage::pixels).reversed());
+                        ret.add(new ImageCluster(seed.hash, root.getKey(), (int) products, members));
+                    }
+                }
+            }
+            ret.sort(Comparator.comparingInt(ImageCluster::products).reversed());
+            return ret.size() > limit ? new ArrayList<>(ret.subList(0, limit)) : ret;
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of indexed images
+     */
+    public int size()
+    {
+        lock.readLock().lock();
+        try
+        {
+            return images.size();
+        }
+        finally
+        {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the Hamming distance between two hashes of the same length
+     */
+    public static int distance(long a, long b)
+    {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * @return true if the index changed
+     */
+    private boolean put(IndexedImage image)
+    {
+        ImageKey key = new ImageKey(image.productId(), image.url());
+        Node current = images.get(key);
+        if (current != null)
+        {
+            IndexedImage previous = current.images.stream().filter(i -> i.key().equals(key)).findFirst().orElse(null);
+            if (image.equals(previous))
+            {
+                return false;
+            }
+            current.images.remove(previous);
+        }
+
+        Node root = roots.get(image.hashLength());
+        if (root == null)
+        {
+            root = new Node(image.hash(), image.hashLength());
+            roots.put(image.hashLength(), root);
+        }
+        Node node = root;
+        while (node.hash != image.hash())
+        {
+            int d = distance(node.hash, image.hash());
+            Node child = node.child(d);
+            if (child == null)
+            {
+                child = new Node(image.hash(), image.hashLength());
+                node.children[d] = child;
+            }
+            node = child;
+        }
+        node.images.add(image);
+        images.put(key, node);
+        return true;
+    }
+
+    private boolean delete(ImageKey key)
+    {
+        Node node = images.remove(key);
+        if (node == null)
+        {
+            return false;
+        }
+        // The node stays in the tree, holding the other images of its hash if any
+        node.images.removeIf(i -> i.key().equals(key));
+        return true;
+    }
+
+    private List<Node> nearNodes(Node root, long hash, int maxDistance)
+    {
+        List<Node> ret = new ArrayList<>();
+        if (root == null)
+        {
+            return ret;
+        }
+        Deque<Node> stack = new ArrayDeque<>(List.of(root));
+        while (!stack.isEmpty())
+        {
+            Node node = stack.pop();
+            int d = distance(node.hash, hash);
+            if (d <= maxDistance && !node.images.isEmpty())
+            {
+                ret.add(node);
+            }
+            // Triangle inequality : only the children at a distance in [d - max, d + max] may match
+            for (int i = Math.max(1, d - maxDistance); i <= Math.min(node.children.length - 1, d + maxDistance); i++)
+            {
+                if (node.children[i] != null)
+                {
+                    stack.push(node.children[i]);
+                }
+            }
+        }
+        return ret;
+    }
+
+    private void replay(String line)
+    {
+        String[] parts = line.split(";", 9);
+        try
+        {
+            if (ADDED.equals(parts[0]) && parts.length == 9)
+            {
+                put(new IndexedImage(Long.parseLong(parts[1]), parts[8], parts[5], Long.parseLong(parts[3]),
+                        Integer.parseInt(parts[2]), Integer.parseInt(parts[4]), emptyToNull(parts[6]), emptyToNull(parts[7])));
+            }
+            else if (REMOVED.equals(parts[0]) && parts.length >= 3)
+            {
+                delete(new ImageKey(Long.parseLong(parts[1]), line.substring(parts[0].length() + parts[1].length() + 2)));
+            }
+        }
+        catch (NumberFormatException e)
+        {
+            logger.warn("Skipping corrupted perceptive hashes index line : {}", line);
+        }
+    }
+
+    /**
+     * Rewrites the log with the live images only
+     */
+    private void compact() throws IOException
+    {
+        Path compacted = logFile.resolveSibling(logFile.getFileName() + ".compact");
+        try (BufferedWriter out = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8))
+        {
+            for (Node node : images.values().stream().distinct().toList())
+            {
+                for (IndexedImage image : node.images)
+                {
+                    out.write(logLine(image));
+                    out.newLine();
+                }
+            }
+        }
+        Files.move(compacted, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Compacted the perceptive hashes index from {} to {} lines", logLines, images.size());
+        logLines = images.size();
+    }
+
+    private void append(String line)
+    {
+        if (writer == null)
+        {
+            return;
+        }
+        try
+        {
+            writer.write(line);
+            writer.newLine();
+            writer.flush();
+            logLines++;
+        }
+        catch (IOException e)
+        {
+            logger.error("Cannot persist the perceptive hashes index {} : {}", logFile, e.getMessage());
+        }
+    }
+
+    /**
+     * @return the log line adding an image, its URL last as it may contain the separator
+     */
+    private static String logLine(IndexedImage image)
+    {
+        return String.join(";", ADDED, String.valueOf(image.productId()), String.valueOf(image.hashLength()),
+                String.valueOf(image.hash()), String.valueOf(image.pixels()), image.cacheKey(),
+                Objects.toString(image.md5(), ""), Objects.toString(image.dominantColor(), ""), image.url());
+    }
+
+    private static String emptyToNull(String value)
+    {
+        return value.isEmpty() ? null : value;
+    }
+
+    private static int safePixels(ImageInfo imageInfo)
+    {
+        return imageInfo.getWidth() == null || imageInfo.getHeight() == null ? 0 : imageInfo.pixels();
+    }
+
+    /**
+     * An indexed product image
+     *
+     * @param productId the product holding the image
+     * @param url the image URL
+     * @param cacheKey the cache key of its stored file
+     * @param hash its perceptive hash
+     * @param hashLength the hash bit resolution
+     * @param pixels its number of pixels
+     * @param md5 the MD5 of its content, if known
+     * @param dominantColor its dominant colour, if known
+     */
+    public record IndexedImage(long productId, String url, String cacheKey, long hash, int hashLength, int pixels,
+            String md5, String dominantColor)
+    {
+        ImageKey key()
+        {
+            return new ImageKey(productId, url);
+        }
+    }
+
+    /**
+     * Images sharing a perceptive hash, within a distance
+     *
+     * @param hash the hash of the cluster
+     * @param hashLength its bit resolution
+     * @param products the number of products holding the images
+     * @param images the images, the largest first
+     */
+    public record ImageCluster(long hash, int hashLength, int products, List<IndexedImage> images)
+    {
+    }
+
+    private record ImageKey(long productId, String url)
+    {
+    }
+
+    /**
+     * A BK-tree node, holding the images of a hash and its children by distance
+     */
+    private static final class Node
+    {
+        private final long hash;
+        private final List<IndexedImage> images = new ArrayList<>(1);
+        private final Node[] children;
+
+        private Node(long hash, int hashLength)
+        {
+            this.hash = hash;
+            this.children = new Node[Math.min(64, hashLength) + 1];
+        }
+
+        private Node child(int distance)
+        {
+            return children[distance];
+        }
+
+        private void forEachChild(Consumer<Node> consumer)
+        {
+            for (Node child : children)
+            {
+                if (child != null)
+                {
+                    consumer.accept(child);
+                }
+            }
+        }
+    }
+}
@@ -1,21 +1,43 @@
 package org.open4goods.api.services.completion;
 
 import java.awt.Color;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import javax.imageio.ImageIO;
+
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.StatusLine;
 import org.apache.http.client.ClientProtocolException;
+import org.apache.http.client.HttpResponseException;
 import org.apache.http.client.fluent.Request;
 import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.pdmodel.PDDocument;
@@ -56,6 +78,10 @@ import dev.brachtendorf.jimagehash.hashAlgorithms.PerceptiveHash;
  * Completes product resources by adding configured URLs, downloading missing
  * files, extracting metadata, filtering invalid resources, clustering images and
  * choosing a product cover.
+ * <p>
+ * The HTTP validators (ETag, Last-Modified) of the downloads are kept on the
+ * resources, with their analysis. Processed resources are periodically revalidated
+ * with a conditional GET and analysed again only when their content changed.
  */
 public class ResourceCompletionService extends AbstractCompletionService
 {
@@ -70,12 +96,21 @@ public class ResourceCompletionService extends AbstractCompletionService
     private static final Set<String> VIDEO_MIME_TYPES = Set.of(
             "video/quicktime", "video/mp4", "video/mpeg", "video/ogg", "video/webm",
             "video/x-msvideo", "video/x-ms-wmv", "video/3gpp", "video/3gpp2");
+    /** Bytes kept from the start of a download for its MIME type detection. */
+    private static final int MIME_DETECTION_BYTES = 64 * 1024;
+    /** Maximum side of the pixels grid sampled for the image metrics. */
+    private static final int METRICS_GRID_SIZE = 256;
+    /** Max per channel difference of the dominant colours of two images sharing a stored file. */
+    private static final int DOMINANT_COLOR_TOLERANCE = 16;
 
     private final ResourceCompletionConfig config;
     private final ImageMagickService imageService;
     private final ResourceService resourceService;
     private final DjlImageEmbeddingService embeddingService;
-    private final HashingAlgorithm hasher;
+    private final PerceptualHashIndex nearDuplicateIndex;
+    /** Idle perceptive hashers, borrowed by the image analyses */
+    private final Queue<HashingAlgorithm> hashers = new ConcurrentLinkedQueue<>();
+    private final Semaphore imageAnalysisPermits;
 
     private volatile LanguageDetector pdfLanguageDetector;
 
@@ -88,13 +123,15 @@ public class ResourceCompletionService extends AbstractCompletionService
      * @param dataRepository product repository
      * @param apiProperties API configuration properties
      * @param embeddingService optional image embedding service
+     * @param nearDuplicateIndex optional catalogue index of the image perceptive hashes
      */
     public ResourceCompletionService(ImageMagickService imageService,
                                      VerticalsConfigService verticalConfigService,
                                      ResourceService resourceService,
                                      ProductRepository dataRepository,
                                      ApiProperties apiProperties,
-                                     DjlImageEmbeddingService embeddingService)
+                                     DjlImageEmbeddingService embeddingService,
+                                     PerceptualHashIndex nearDuplicateIndex)
     {
         super(dataRepository, verticalConfigService, apiProperties.logsFolder(), apiProperties.aggLogLevel());
         this.config = Optional.ofNullable(apiProperties.getResourceCompletionConfig())
@@ -102,8 +139,10 @@ public class ResourceCompletionService extends AbstractCompletionService
         this.imageService = imageService;
         this.resourceService = resourceService;
         this.embeddingService = embeddingService;
-        this.hasher = new PerceptiveHash(config.getPerceptiveHashSize());
-        this.hasher.setOpaqueHandling(Color.WHITE, config.getPerceptiveHashAlphaThreshold());
+        this.nearDuplicateIndex = nearDuplicateIndex;
+        this.imageAnalysisPermits = new Semaphore(config.getImageAnalysisParallelism() > 0
+                ? config.getImageAnalysisParallelism()
+                : Runtime.getRuntime().availableProcessors());
     }
 
     /**
@@ -141,7 +180,7 @@ public class ResourceCompletionService extends AbstractCompletionService
         }
 
         boolean hasUnprocessed = data.getResources().stream()
-                .anyMatch(r -> !r.isProcessed() && !r.isEvicted());
+                .anyMatch(r -> (!r.isProcessed() && !r.isEvicted()) || isDueForRevalidation(r));
         if (hasUnprocessed)
         {
             return true;
@@ -188,14 +227,15 @@ public class ResourceCompletionService extends AbstractCompletionService
         data.getResources().forEach(r -> r.setGroup(null));
 
         List<Resource> resourcesToProcess = data.getResources().stream()
-                .filter(r -> overrideResources(vertical) || !r.isProcessed())
+                .filter(r -> overrideResources(vertical) || !r.isProcessed() || isDueForRevalidation(r))
                 .filter(r -> overrideResources(vertical) || !r.isEvicted())
-                .map(r -> fetchResource(r, vertical))
+                .map(r -> fetchResource(r, vertical, data.getResources()))
                 .toList();
 
         data.getResources().forEach(r -> normalizeFileNameIfNeeded(r, data));
 
         List<Resource> retainedResources = filterRetainedResources(data, vertical);
+        updateNearDuplicateIndex(data, retainedResources);
         data.setResources(retainedResources.stream().collect(Collectors.toSet()));
 
         List<Resource> imageResources = retainedResources.stream()
@@ -215,28 +255,70 @@ public class ResourceCompletionService extends AbstractCompletionService
     }
 
     /**
-     * Downloads and analyzes one resource.
+     * Downloads and analyzes one resource. A resource due for revalidation keeps its
+     * previous analysis when the remote content did not change.
      *
      * @param resource resource to fetch
      * @param vertical vertical configuration
      * @return enriched resource
      */
     public Resource fetchResource(Resource resource, VerticalConfig vertical)
+    {
+        return fetchResource(resource, vertical, List.of());
+    }
+
+    /**
+     * Downloads and analyzes one resource of a product.
+     *
+     * @param resource resource to fetch
+     * @param vertical vertical configuration
+     * @param siblings the product resources, whose near-duplicate images share their embedding
+     * @return enriched resource
+     */
+    private Resource fetchResource(Resource resource, VerticalConfig vertical, Collection<Resource> siblings)
     {
         logger.info("Handling resource : {} ", resource);
 
+        boolean revalidation = !overrideResources(vertical) && isDueForRevalidation(resource);
+        Long previousTimeStamp = resource.getTimeStamp();
+        String previousMd5 = resource.getMd5();
+        String previousCacheKey = resource.getCacheKey();
+        ResourceStatus previousStatus = resource.getStatus();
+        boolean previousEvicted = resource.isEvicted();
+        String previousEtag = resource.getEtag();
+        String previousLastModified = resource.getLastModified();
+
         resource.setProcessed(true);
         resource.setCacheKey(IdHelper.generateResourceId(resource.getUrl()));
         resource.setTimeStamp(System.currentTimeMillis());
 
         File target = resourceService.getCacheFile(resource);
-        if (!target.exists())
+        DownloadedContent downloaded = null;
+        if (!target.exists() || revalidation)
         {
-            downloadResource(resource, target);
+            downloaded = downloadResource(resource, target, revalidation && target.exists());
+            if (downloaded == null && revalidation)
+            {
+                // Transient failures do not evict a resource analysed before, retried next run
+                resource.setTimeStamp(previousTimeStamp);
+                resource.setEvicted(previousEvicted);
+                resource.setStatus(previousStatus);
+                resource.setCacheKey(previousCacheKey);
+                resource.setEtag(previousEtag);
+                resource.setLastModified(previousLastModified);
+                return resource;
+            }
             if (resource.isEvicted())
             {
                 return resource;
             }
+            if (revalidation && (downloaded.notModified() || downloaded.md5().equals(previousMd5)))
+            {
+                logger.info("Resource not modified, previous analysis kept: {}", resource.getUrl());
+                // Still served from the catalogue copy it was shared with
+                resource.setCacheKey(previousCacheKey);
+                return resource;
+            }
         }
         else
         {
@@ -252,7 +334,16 @@ public class ResourceCompletionService extends AbstractCompletionService
             return resource;
         }
 
-        if (!computeMd5(resource, target) || !detectMimeType(resource, target))
+        if (downloaded != null)
+        {
+            // Digested and detected while downloading
+            resource.setMd5(downloaded.md5());
+            if (!applyMimeType(resource, downloaded.mimeType()))
+            {
+                return resource;
+            }
+        }
+        else if (!computeMd5(resource, target) || !detectMimeType(resource, target))
         {
             return resource;
         }
@@ -263,7 +354,7 @@ public class ResourceCompletionService extends AbstractCompletionService
             {
                 if (target.length() <= config.getMaxImageSizeToProcessBytes())
                 {
-                    processImage(resource, target);
+                    processImage(resource, target, siblings);
                 }
                 else
                 {
@@ -456,7 +547,8 @@ public class ResourceCompletionService extends AbstractCompletionService
     }
 
     /**
-     * Applies MD5 blacklist, MD5 duplicate and minimum image-size filters.
+     * Applies MD5 blacklist, MD5 duplicate, minimum image-size and near-duplicate image
+     * filters. Of near-duplicate images, the largest is retained.
      *
      * @param data product resources to filter
      * @param vertical vertical resource rules
@@ -465,9 +557,14 @@ public class ResourceCompletionService extends AbstractCompletionService
     private List<Resource> filterRetainedResources(Product data, VerticalConfig vertical)
     {
         Set<String> md5s = new HashSet<>();
+        List<ImageInfo> retainedImages = new ArrayList<>();
         ResourcesAggregationConfig resourcesConfig = vertical.getResourcesConfig();
 
-        for (Resource resource : data.getResources())
+        // Largest images first, for the near-duplicates to collapse on them
+        List<Resource> resources = data.getResources().stream()
+                .sorted(Comparator.comparingInt(this::safePixels).reversed())
+                .toList();
+        for (Resource resource : resources)
         {
             if (resource.isEvicted())
             {
@@ -494,6 +591,19 @@ public class ResourceCompletionService extends AbstractCompletionService
                 logger.info("Excluded because image is too small : {}", resource.getUrl());
                 resource.setStatus(ResourceStatus.TOO_SMALL);
                 resource.setEvicted(true);
+                continue;
+            }
+            if (resource.getResourceType() == ResourceType.IMAGE && resource.getImageInfo() != null
+                    && config.getNearDuplicateMaxDistance() >= 0)
+            {
+                if (retainedImages.stream().anyMatch(i -> isNearDuplicate(i, resource.getImageInfo())))
+                {
+                    logger.info("Excluded because of near-duplicate image : {}", resource.getUrl());
+                    resource.setStatus(ResourceStatus.NEAR_DUPLICATE);
+                    resource.setEvicted(true);
+                    continue;
+                }
+                retainedImages.add(resource.getImageInfo());
             }
         }
 
@@ -539,43 +649,155 @@ public class ResourceCompletionService extends AbstractCompletionService
     }
 
     /**
-     * Downloads a resource into the local cache.
+     * Returns whether a processed resource is due for a conditional revalidation.
+     *
+     * @param resource resource to inspect
+     * @return true when revalidation is enabled, the resource has HTTP validators
+     *         and was last checked before the revalidation age
+     */
+    private boolean isDueForRevalidation(Resource resource)
+    {
+        if (config.getRevalidateAfterDays() <= 0 || !resource.isProcessed() || resource.isEvicted())
+        {
+            return false;
+        }
+        if (StringUtils.isBlank(resource.getEtag()) && StringUtils.isBlank(resource.getLastModified()))
+        {
+            return false;
+        }
+        return resource.getTimeStamp() == null || System.currentTimeMillis() - resource.getTimeStamp()
+                > TimeUnit.DAYS.toMillis(config.getRevalidateAfterDays());
+    }
+
+    /**
+     * Downloads a resource into the local cache, computing its MD5 and MIME type
+     * while streaming. The content is written to a temporary file, moved to the
+     * cache once complete.
      *
-     * @param resource remote resource
+     * @param resource remote resource, updated with the response validators
      * @param target target cache file
+     * @param conditional true to send the resource validators, the cached file
+     *        being kept if not modified
+     * @return the downloaded content, or null when the download failed (the
+     *         resource being then evicted)
      */
-    private void downloadResource(Resource resource, File target)
+    private DownloadedContent downloadResource(Resource resource, File target, boolean conditional)
     {
         logger.info("Downloading resource to local file: {}", target);
+        Path part = null;
         try
         {
-            Request.Get(resource.getUrl())
+            // Unique per download, concurrent fetches of a same url do not share a partial file
+            part = Files.createTempFile(target.getParentFile().toPath(), target.getName() + ".", ".part");
+            Path destination = part;
+            Request request = Request.Get(resource.getUrl())
                     .userAgent(config.getDownloadUserAgent())
                     .connectTimeout(config.getConnectTimeoutMs())
-                    .socketTimeout(config.getSocketTimeoutMs())
-                    .execute()
-                    .saveContent(target);
+                    .socketTimeout(config.getSocketTimeoutMs());
+            if (conditional && StringUtils.isNotBlank(resource.getEtag()))
+            {
+                request.addHeader(HttpHeaders.IF_NONE_MATCH, resource.getEtag());
+            }
+            if (conditional && StringUtils.isNotBlank(resource.getLastModified()))
+            {
+                request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, resource.getLastModified());
+            }
+
+            DownloadedContent downloaded = request.execute().handleResponse(response -> {
+                StatusLine status = response.getStatusLine();
+                if (conditional && status.getStatusCode() == HttpStatus.SC_NOT_MODIFIED)
+                {
+                    return DownloadedContent.NOT_MODIFIED;
+                }
+                if (status.getStatusCode() >= 300)
+                {
+                    throw new HttpResponseException(status.getStatusCode(), status.getReasonPhrase());
+                }
+                HttpEntity entity = response.getEntity();
+                if (entity == null)
+                {
+                    throw new ClientProtocolException("Response contains no content");
+                }
+                resource.setEtag(headerValue(response.getFirstHeader(HttpHeaders.ETAG)));
+                resource.setLastModified(headerValue(response.getFirstHeader(HttpHeaders.LAST_MODIFIED)));
+                try (InputStream in = entity.getContent())
+                {
+                    return streamToFile(in, destination);
+                }
+            });
+
+            if (downloaded.notModified())
+            {
+                deletePartialDownload(part.toFile());
+            }
+            else
+            {
+                Files.move(part, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return downloaded;
         }
         catch (ClientProtocolException e)
         {
             logger.error("Cannot download ({}) : {}", e.getMessage(), resource.getUrl());
             resource.setStatus(ResourceStatus.PROTOCOL_EXCEPTION);
             resource.setEvicted(true);
-            deletePartialDownload(target);
         }
         catch (Exception e)
         {
             logger.error("Cannot download ({}) : {}", e.getMessage(), resource.getUrl());
             resource.setStatus(ResourceStatus.IO_EXCEPTION);
             resource.setEvicted(true);
-            deletePartialDownload(target);
         }
+        if (part != null)
+        {
+            deletePartialDownload(part.toFile());
+        }
+        return null;
     }
 
     /**
-     * Removes a partial cache file after a failed download.
+     * Writes a download to a file, digesting its MD5 and keeping its first bytes
+     * for the MIME type detection in the same pass.
      *
-     * @param target target cache file
+     * @param in downloaded content
+     * @param file destination file
+     * @return the downloaded content digest and MIME type
+     * @throws IOException when reading or writing fails
+     */
+    private DownloadedContent streamToFile(InputStream in, Path file) throws IOException
+    {
+        MessageDigest md5 = DigestUtils.getMd5Digest();
+        byte[] head = new byte[MIME_DETECTION_BYTES];
+        int headLength = 0;
+        byte[] buffer = new byte[8192];
+        try (OutputStream out = Files.newOutputStream(file))
+        {
+            int read;
+            while ((read = in.read(buffer)) != -1)
+            {
+                md5.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+                if (headLength < head.length)
+                {
+                    int copied = Math.min(read, head.length - headLength);
+                    System.arraycopy(buffer, 0, head, headLength, copied);
+                    headLength += copied;
+                }
+            }
+        }
+        return new DownloadedContent(false, Hex.encodeHexString(md5.digest()),
+                TIKA.detect(Arrays.copyOf(head, headLength)));
+    }
+
+    private static String headerValue(Header header)
+    {
+        return header == null ? null : header.getValue();
+    }
+
+    /**
+     * Removes a partial or unused download file.
+     *
+     * @param target temporary download file
      */
     private void deletePartialDownload(File target)
     {
@@ -617,9 +839,33 @@ public class ResourceCompletionService extends AbstractCompletionService
      */
     private boolean detectMimeType(Resource resource, File target)
     {
+        String mimeType;
         try
         {
-            resource.setMimeType(TIKA.detect(target));
+            mimeType = TIKA.detect(target);
+        }
+        catch (Exception e)
+        {
+            logger.error("Cannot get mimetype ({}) : {}", e.getMessage(), resource.getUrl());
+            resource.setStatus(ResourceStatus.NO_MIME_TYPE);
+            resource.setEvicted(true);
+            return false;
+        }
+        return applyMimeType(resource, mimeType);
+    }
+
+    /**
+     * Sets a detected MIME type and its extension.
+     *
+     * @param resource resource to update
+     * @param detected detected MIME type
+     * @return true when the MIME type is known
+     */
+    private boolean applyMimeType(Resource resource, String detected)
+    {
+        try
+        {
+            resource.setMimeType(detected);
             org.apache.tika.mime.MimeType mimeType = TIKA_CONFIG.getMimeRepository().forName(resource.getMimeType());
             String extension = mimeType.getExtension();
             resource.setExtension(StringUtils.removeStart(extension, "."));
@@ -853,15 +1099,53 @@ public class ResourceCompletionService extends AbstractCompletionService
     }
 
     /**
-     * Extracts image dimensions, perceptive hash and optional embedding.
+     * Extracts image dimensions, perceptive hash, colour and sharpness metrics and optional
+     * embedding, all computed from a single decoding of the file. At most
+     * {@link ResourceCompletionConfig#getImageAnalysisParallelism()} images are analysed at
+     * once, bounding the CPU and the decoded rasters held in memory.
      *
      * @param resource resource to update
      * @param src local image file
      */
-    private void processImage(Resource resource, File src)
+    private void processImage(Resource resource, File src, Collection<Resource> siblings)
     {
         resource.setResourceType(ResourceType.IMAGE);
-        ImageInfo imageInfo = imageService.buildImageInfo(src);
+        try
+        {
+            imageAnalysisPermits.acquire();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            logger.error("Interrupted while waiting to analyse image : {}", resource.getUrl());
+            resource.setStatus(ResourceStatus.CANNOT_ANALYSE);
+            return;
+        }
+        try
+        {
+            analyseImage(resource, src, siblings);
+        }
+        finally
+        {
+            imageAnalysisPermits.release();
+        }
+    }
+
+    private void analyseImage(Resource resource, File src, Collection<Resource> siblings)
+    {
+        BufferedImage raster = decodeImage(src);
+        ImageInfo imageInfo;
+        if (raster != null)
+        {
+            imageInfo = new ImageInfo();
+            imageInfo.setWidth(raster.getWidth());
+            imageInfo.setHeight(raster.getHeight());
+        }
+        else
+        {
+            // Formats without an ImageIO reader (e.g. WebP)
+            imageInfo = imageService.buildImageInfo(src);
+        }
         if (imageInfo == null || imageInfo.getHeight() == null || imageInfo.getWidth() == null)
         {
             logger.error("Cannot analyse image : {}", resource.getUrl());
@@ -870,13 +1154,10 @@ public class ResourceCompletionService extends AbstractCompletionService
             return;
         }
 
+        HashingAlgorithm hasher = borrowHasher();
         try
         {
-            Hash hash;
-            synchronized (hasher)
-            {
-                hash = hasher.hash(src);
-            }
+            Hash hash = raster != null ? hasher.hash(raster) : hasher.hash(src);
             imageInfo.setpHashValue(hash.getHashValue().longValue());
             imageInfo.setpHashLength(hash.getBitResolution());
         }
@@ -885,12 +1166,26 @@ public class ResourceCompletionService extends AbstractCompletionService
             logger.error("Cannot compute perceptive hash ({}) : {}", e.getMessage(), resource.getUrl());
             resource.setStatus(ResourceStatus.PERCEPTIV_HASH_FAIL);
         }
+        finally
+        {
+            hashers.offer(hasher);
+        }
 
+        if (raster != null)
+        {
+            computeRasterMetrics(raster, imageInfo);
+        }
+
+        Resource sibling = nearDuplicateSibling(resource, imageInfo, siblings);
         try
         {
-            if (embeddingService != null)
+            if (sibling != null)
             {
-                imageInfo.setEmbedding(embeddingService.embed(src.toPath()));
+                imageInfo.setEmbedding(sibling.getImageInfo().getEmbedding());
+            }
+            else if (embeddingService != null)
+            {
+                imageInfo.setEmbedding(raster != null ? embeddingService.embed(raster) : embeddingService.embed(src.toPath()));
             }
         }
         catch (Exception e)
@@ -907,6 +1202,244 @@ public class ResourceCompletionService extends AbstractCompletionService
         }
 
         resource.setImageInfo(imageInfo);
+        shareCatalogueCopy(resource, imageInfo);
+    }
+
+    /**
+     * @return an analysed image of the product near-duplicate of the given one and having an
+     *         embedding, or null
+     */
+    private Resource nearDuplicateSibling(Resource resource, ImageInfo imageInfo, Collection<Resource> siblings)
+    {
+        if (config.getNearDuplicateMaxDistance() < 0 || imageInfo.getpHashValue() == null)
+        {
+            return null;
+        }
+        return siblings.stream()
+                .filter(r -> r != resource && !r.isEvicted() && r.getImageInfo() != null)
+                .filter(r -> r.getImageInfo().getEmbedding() != null)
+                .filter(r -> isNearDuplicate(r.getImageInfo(), imageInfo))
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Serves an image from the stored file of a near-duplicate image of the catalogue at least
+     * as large, instead of its own download. Only when enabled, a perceptive hash match being
+     * confirmed by an identical MD5 or an agreeing dominant colour. The MD5 of the download is
+     * kept, for the revalidations to detect a remote change. The own file is left to the orphan
+     * resources cleanup.
+     */
+    private void shareCatalogueCopy(Resource resource, ImageInfo imageInfo)
+    {
+        if (nearDuplicateIndex == null || !config.isNearDuplicateShareAcrossProducts()
+                || config.getNearDuplicateMaxDistance() < 0 || imageInfo.getpHashValue() == null)
+        {
+            return;
+        }
+        int pixels = imageInfo.pixels();
+        for (PerceptualHashIndex.IndexedImage candidate : nearDuplicateIndex.near(imageInfo.getpHashValue(),
+                imageInfo.getpHashLength(), config.getNearDuplicateMaxDistance()))
+        {
+            if (candidate.cacheKey().equals(resource.getCacheKey()) || candidate.pixels() < pixels)
+            {
+                continue;
+            }
+            boolean sameContent = resource.getMd5() != null && resource.getMd5().equals(candidate.md5());
+            if (!sameContent && !isSameDominantColor(candidate.dominantColor(), imageInfo.getDominantColor()))
+            {
+                continue;
+            }
+            try
+            {
+                File shared = resourceService.getCacheFile(candidate.cacheKey());
+                if (shared.exists() && shared.length() > 0)
+                {
+                    logger.info("Near-duplicate of {}, sharing its stored file: {}", candidate.url(), resource.getUrl());
+                    resource.setCacheKey(candidate.cacheKey());
+                    resource.setFileSize(shared.length());
+                    return;
+                }
+            }
+            catch (Exception e)
+            {
+                logger.warn("Cannot resolve the stored file {} : {}", candidate.cacheKey(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return true if both dominant colours are known and close on each channel
+     */
+    private static boolean isSameDominantColor(String a, String b)
+    {
+        if (a == null || b == null)
+        {
+            return false;
+        }
+        try
+        {
+            Color ca = Color.decode(a);
+            Color cb = Color.decode(b);
+            return Math.abs(ca.getRed() - cb.getRed()) <= DOMINANT_COLOR_TOLERANCE
+                    && Math.abs(ca.getGreen() - cb.getGreen()) <= DOMINANT_COLOR_TOLERANCE
+                    && Math.abs(ca.getBlue() - cb.getBlue()) <= DOMINANT_COLOR_TOLERANCE;
+        }
+        catch (NumberFormatException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Indexes the perceptive hashes of the retained product images, and removes the evicted ones.
+     *
+     * @param data processed product
+     * @param retainedResources its retained resources
+     */
+    private void updateNearDuplicateIndex(Product data, List<Resource> retainedResources)
+    {
+        if (nearDuplicateIndex == null || config.getNearDuplicateMaxDistance() < 0)
+        {
+            return;
+        }
+        for (Resource resource : data.getResources())
+        {
+            if (resource.getResourceType() != ResourceType.IMAGE)
+            {
+                continue;
+            }
+            if (resource.isEvicted())
+            {
+                nearDuplicateIndex.remove(data.getId(), resource.getUrl());
+            }
+            else if (retainedResources.contains(resource))
+            {
+                nearDuplicateIndex.add(data.getId(), resource);
+            }
+        }
+    }
+
+    /**
+     * @return true if both images have perceptive hashes of the same length, within the
+     *         near-duplicate distance
+     */
+    private boolean isNearDuplicate(ImageInfo a, ImageInfo b)
+    {
+        return a.getpHashValue() != null && b.getpHashValue() != null
+                && a.getpHashLength() == b.getpHashLength()
+                && PerceptualHashIndex.distance(a.getpHashValue(), b.getpHashValue()) <= config.getNearDuplicateMaxDistance();
+    }
+
+    /**
+     * @return the decoded image, or null if no ImageIO reader handles its format
+     */
+    private BufferedImage decodeImage(File src)
+    {
+        try
+        {
+            return ImageIO.read(src);
+        }
+        catch (Exception e)
+        {
+            logger.debug("Cannot decode image {} : {}", src, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Hashers are not thread safe : each analysis takes one from the pool, created on demand
+     * and never more than the image analysis parallelism.
+     */
+    private HashingAlgorithm borrowHasher()
+    {
+        HashingAlgorithm hasher = hashers.poll();
+        if (hasher == null)
+        {
+            hasher = new PerceptiveHash(config.getPerceptiveHashSize());
+            hasher.setOpaqueHandling(Color.WHITE, config.getPerceptiveHashAlphaThreshold());
+        }
+        return hasher;
+    }
+
+    /**
+     * Computes the dominant colour and the sharpness of an image, on a grid of at most
+     * {@value #METRICS_GRID_SIZE} pixels a side sampled from its raster.
+     *
+     * @param raster the decoded image
+     * @param imageInfo the metrics holder
+     */
+    static void computeRasterMetrics(BufferedImage raster, ImageInfo imageInfo)
+    {
+        int step = Math.max(1, (Math.max(raster.getWidth(), raster.getHeight()) + METRICS_GRID_SIZE - 1) / METRICS_GRID_SIZE);
+        int gridWidth = (raster.getWidth() + step - 1) / step;
+        int gridHeight = (raster.getHeight() + step - 1) / step;
+        boolean alpha = raster.getColorModel().hasAlpha();
+
+        // Colours quantized on 4 bits per channel, with the channel sums of each bucket
+        int[] counts = new int[4096];
+        long[] sums = new long[4096 * 3];
+        double[] luminance = new double[gridWidth * gridHeight];
+        for (int gy = 0; gy < gridHeight; gy++)
+        {
+            for (int gx = 0; gx < gridWidth; gx++)
+            {
+                int argb = raster.getRGB(gx * step, gy * step);
+                int r = (argb >> 16) & 0xFF;
+                int g = (argb >> 8) & 0xFF;
+                int b = argb & 0xFF;
+                if (alpha && (argb >>> 24) < 128)
+                {
+                    // Transparent pixels render on a white background
+                    r = g = b = 255;
+                }
+                else
+                {
+                    int bucket = (r >> 4) << 8 | (g >> 4) << 4 | b >> 4;
+                    counts[bucket]++;
+                    sums[bucket * 3] += r;
+                    sums[bucket * 3 + 1] += g;
+                    sums[bucket * 3 + 2] += b;
+                }
+                luminance[gy * gridWidth + gx] = 0.299 * r + 0.587 * g + 0.114 * b;
+            }
+        }
+
+        int dominant = -1;
+        for (int i = 0; i < counts.length; i++)
+        {
+            if (counts[i] > 0 && (dominant < 0 || counts[i] > counts[dominant]))
+            {
+                dominant = i;
+            }
+        }
+        if (dominant >= 0)
+        {
+            int n = counts[dominant];
+            imageInfo.setDominantColor(String.format("#%02x%02x%02x",
+                    sums[dominant * 3] / n, sums[dominant * 3 + 1] / n, sums[dominant * 3 + 2] / n));
+        }
+
+        if (gridWidth > 2 && gridHeight > 2)
+        {
+            double sum = 0;
+            double sumSquares = 0;
+            int n = 0;
+            for (int y = 1; y < gridHeight - 1; y++)
+            {
+                for (int x = 1; x < gridWidth - 1; x++)
+                {
+                    int i = y * gridWidth + x;
+                    double laplacian = luminance[i - 1] + luminance[i + 1] + luminance[i - gridWidth]
+                            + luminance[i + gridWidth] - 4 * luminance[i];
+                    sum += laplacian;
+                    sumSquares += laplacian * laplacian;
+                    n++;
+                }
+            }
+            double mean = sum / n;
+            imageInfo.setSharpness(sumSquares / n - mean * mean);
+        }
     }
 
     /**
@@ -1130,4 +1663,16 @@ public class ResourceCompletionService extends AbstractCompletionService
     {
         return Boolean.TRUE.equals(vertical.getResourcesConfig().getOverrideResources());
     }
+
+    /**
+     * Outcome of a download.
+     *
+     * @param notModified true when the server answered the revalidation with 304
+     * @param md5 content MD5, null if not modified
+     * @param mimeType detected content MIME type, null if not modified
+     */
+    private record DownloadedContent(boolean notModified, String md5, String mimeType)
+    {
+        private static final DownloadedContent NOT_MODIFIED = new DownloadedContent(true, null, null);
+    }
 }
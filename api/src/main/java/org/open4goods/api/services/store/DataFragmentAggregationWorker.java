@@ -1,13 +1,16 @@
 package org.open4goods.api.services.store;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.open4goods.model.datafragment.DataFragment;
+import org.open4goods.services.productrepository.journal.JournaledQueue.Batch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 /**
- * Worker thread that asynchronously dequeue the DataFragments from the file queue. It
+ * Worker thread that asynchronously dequeue the DataFragments from its own lane of the
+ * file queue. Lanes are GTIN partitioned, so a worker is the only one to aggregate the
+ * products of its lane.
  * @author goulven
  *
  */
@@ -19,6 +22,9 @@ public class DataFragmentAggregationWorker implements Runnable {
 	/** The service used to "atomically" fetch and store / update DataFragments **/
 	private final DataFragmentStoreService  service;
 
+	/** The lane this worker is bound to **/
+	private final int laneIndex;
+
 	/** Size of pages that will be bulked to the DataFragmentStore**/
 	private final int dequeuePageSize;
 
@@ -33,10 +39,12 @@ public class DataFragmentAggregationWorker implements Runnable {
 	/**
 	 * Constructor
 	 * @param dataFragmentStoreService
+	 * @param laneIndex
 	 * @param dequeuePageSize
 	 */
-	public DataFragmentAggregationWorker(final DataFragmentStoreService dataFragmentStoreService, final int dequeuePageSize, final int pauseDuration, String workerName) {
+	public DataFragmentAggregationWorker(final DataFragmentStoreService dataFragmentStoreService, final int laneIndex, final int dequeuePageSize, final int pauseDuration, String workerName) {
 		service = dataFragmentStoreService;
+		this.laneIndex = laneIndex;
 		this.dequeuePageSize = dequeuePageSize;
 		this.pauseDuration = pauseDuration;
 		this.workerName = workerName;
@@ -47,16 +55,26 @@ public class DataFragmentAggregationWorker implements Runnable {
 
                 while (!service.getServiceShutdown().get()) {
                         try {
-				if (!service.getQueue().isEmpty()) {
+				if (!service.getLane(laneIndex).isEmpty()) {
 					// There is data to consume and queue consummation is enabled
-					final Set<DataFragment> buffer = new HashSet<>();	
-					
-					service.getQueue().drainTo(buffer, dequeuePageSize);
+					// Keeping arrival order, fragments of a same gtin are coalesced by the service
+					final Batch<DataFragment> buffer = service.getLane(laneIndex).drain(dequeuePageSize);
 					
 					if (!buffer.isEmpty()) {
 						// Aggregating
-						service.aggregateAndstore(buffer);
-						logger.info("{} has handled {} DataFragments. {} Remaining in queue", workerName, buffer.size(), service.getQueue().size());
+						final Map<Long, CompletableFuture<Void>> indexed;
+						try {
+							indexed = service.aggregateAndstore(buffer.items());
+						} catch (final Exception e) {
+							// Kept journaled, aggregated again after a pause
+							logger.error("{} failed to handle {} DataFragments, they will be retried", workerName, buffer.size(), e);
+							service.getLane(laneIndex).retry(buffer);
+							Thread.sleep(pauseDuration);
+							continue;
+						}
+						// Handed over to the journaled products queues, the fragments are done once their product is indexed
+						service.getLane(laneIndex).commit(buffer, df -> indexed.getOrDefault(Long.valueOf(df.gtin()), DataFragmentStoreService.NOT_INDEXED));
+						logger.info("{} has handled {} DataFragments. {} Remaining in lane", workerName, buffer.size(), service.getLane(laneIndex).size());
 					}
 
 				} else {
@@ -1,11 +1,15 @@
 package org.open4goods.api.services.store;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.commons.lang3.StringUtils;
@@ -20,10 +24,15 @@ import org.open4goods.model.product.Product;
 import org.open4goods.model.product.ProductPartialUpdateField;
 import org.open4goods.model.product.ProductPartialUpdateHolder;
 import org.open4goods.services.productrepository.config.IndexationConfig;
+import org.open4goods.services.productrepository.journal.JournalCodec;
+import org.open4goods.services.productrepository.journal.JournaledQueue;
 import org.open4goods.services.productrepository.services.ProductRepository;
 import org.open4goods.services.productrepository.workers.FullProductIndexationWorker;
+import org.open4goods.services.serialisation.service.SerialisationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 
 import jakarta.annotation.PreDestroy;
 
@@ -35,6 +44,15 @@ import jakarta.annotation.PreDestroy;
  *
  * It also provides mechanism to stop indexation (and keep data in the persisted
  * file), and to perform "direct" updates without giving up to the file buffer
+ *
+ * <p>The queue is partitioned in one lane per {@link DataFragmentAggregationWorker}.
+ * A DataFragment is always routed to the lane owning its GTIN, so all the fragments
+ * of a product are aggregated by the same worker, and the fragments of a same
+ * product drained in one batch are coalesced into a single read / aggregate / write.
+ *
+ * <p>When the {@link IndexationConfig#getJournal() journal} is enabled, each lane is
+ * backed by a memory mapped write-ahead journal, and the fragments not aggregated
+ * before the last shutdown are replayed once the application is ready.
  * @author Goulven.Furet
  *
  */
@@ -43,6 +61,9 @@ public class DataFragmentStoreService {
 
 	private static final Logger logger = LoggerFactory.getLogger(DataFragmentStoreService.class);
 
+	/** Outcome of the fragments not queued for indexation */
+	static final CompletableFuture<Void> NOT_INDEXED = CompletableFuture.failedFuture(new IllegalStateException("Fragment not indexed"));
+
 
 	public StandardiserService standardiserService;
 
@@ -53,8 +74,8 @@ public class DataFragmentStoreService {
 	// Queue worker shutdown condition
 	private final AtomicBoolean serviceShutdown = new AtomicBoolean(false);
 
-	// The queue implementation
-	private BlockingQueue<DataFragment> queue;
+	// The queue lanes, one per worker, indexed by GTIN affinity
+	private final List<JournaledQueue<DataFragment>> lanes;
 
 	private ProductRepository aggregatedDataRepository;
 
@@ -68,25 +89,56 @@ public class DataFragmentStoreService {
 	 * @param indexationConfig 
 	 * @param queueFolder The folder where indexation queued datas will be stored
 	 */
-	public DataFragmentStoreService(StandardiserService standardiserService, AggregationFacadeService generationService, ProductRepository aggregatedDataRepository, IndexationConfig indexationConfig) {
+	public DataFragmentStoreService(StandardiserService standardiserService, AggregationFacadeService generationService, ProductRepository aggregatedDataRepository, IndexationConfig indexationConfig, SerialisationService serialisationService) {
 
 
 		this.standardiserService = standardiserService;
 		this.aggregatedDataRepository = aggregatedDataRepository;
 		this.generationService=generationService;
 		
-		this.queue =  new LinkedBlockingQueue<>(indexationConfig.getDatafragmentQueueMaxSize());
-		
-		for (int i = 0; i < indexationConfig.getDataFragmentworkers(); i++) {					
-			logger.info("Starting file queue consumer thread {}, with bulk page size of {} items",i, indexationConfig.getDataFragmentBulkPageSize() );
+		// The global max size is shared among the lanes
+		int laneCount = Math.max(1, indexationConfig.getDataFragmentworkers());
+		int laneCapacity = Math.max(1, indexationConfig.getDatafragmentQueueMaxSize() / laneCount);
+		this.lanes = new ArrayList<>(laneCount);
+		for (int i = 0; i < laneCount; i++) {
+			try {
+				lanes.add(JournaledQueue.open("datafragments-" + i, laneCapacity, indexationConfig.getJournal(), JournalCodec.json(serialisationService, DataFragment.class)));
+			} catch (IOException e) {
+				throw new IllegalStateException("Cannot open the datafragments journal", e);
+			}
+		}
+
+		for (int i = 0; i < laneCount; i++) {
+			logger.info("Starting file queue consumer thread {}, with bulk page size of {} items and lane capacity of {}",i, indexationConfig.getDataFragmentBulkPageSize(), laneCapacity);
 			//TODO(p3,perf) : Virtual threads, but ko with visualVM profiling
-			new Thread(new DataFragmentAggregationWorker(this, indexationConfig.getDataFragmentBulkPageSize(), indexationConfig.getPauseDuration(),"datafragment-worker-"+i)).start();;
+			new Thread(new DataFragmentAggregationWorker(this, i, indexationConfig.getDataFragmentBulkPageSize(), indexationConfig.getPauseDuration(),"datafragment-worker-"+i)).start();;
 		}
 	}
 
+	/**
+	 * Replay, in background, the journaled fragments not aggregated before the last shutdown.
+	 * Run once the application is ready, not to hold its startup for the whole replay.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void replayJournals() {
+		if (lanes.stream().noneMatch(JournaledQueue::isJournaled)) {
+			return;
+		}
+		Thread replay = new Thread(() -> lanes.forEach(JournaledQueue::replay), "datafragments-journal-replay");
+		replay.setDaemon(true);
+		replay.start();
+	}
+
 	
 	public @PreDestroy void destroy() {
 		serviceShutdown.set(true);
+		for (JournaledQueue<DataFragment> lane : lanes) {
+			try {
+				lane.close();
+			} catch (IOException e) {
+				logger.error("Error while closing datafragments journal", e);
+			}
+		}
 	}
 	
 	
@@ -113,14 +165,16 @@ public class DataFragmentStoreService {
 	 * there caused significant stack-trace allocation overhead under high-throughput ingestion.
 	 *
 	 * @param data the fragment to enqueue
+	 * @return completed once the product of the fragment is indexed, exceptionally if the
+	 *         fragment is skipped or could not be indexed
 	 * @throws ValidationException when the fragment fails deeper validation in {@link #preHandle}
 	 */
 //	@Timed(value = "queueDataFragment", description = "Validation, standardisation and addding to queue a DataFragment")
-	public void queueDataFragment(final DataFragment data) throws ValidationException {
+	public CompletableFuture<Void> queueDataFragment(final DataFragment data) throws ValidationException {
 
 		if (data.isBrandFragment()) {
 			logger.debug("Skipping brand fragment classical indexation {}", data);
-			return;
+			return NOT_INDEXED;
 		}
 
 		// Fast-path rejection: fragments without a numeric GTIN are extremely common
@@ -128,12 +182,33 @@ public class DataFragmentStoreService {
 		// throwing ValidationException avoids stack-trace allocation for each such row.
 		if (!StringUtils.isNumeric(data.gtin())) {
 			logger.debug("Skipping fragment with no numeric gtin: {}", data);
-			return;
+			return NOT_INDEXED;
 		}
 
 		preHandle(data);
 		logger.debug("Queuing datafragment {}", data);
-		enqueue(data);
+		return enqueue(data);
+	}
+
+	/**
+	 * Marks products as seen unchanged in a datasource feed : their last change date and the
+	 * timestamp of their offers from this datasource are refreshed through the partial
+	 * indexation queue, without reading nor aggregating them.
+	 *
+	 * @param productIds     the products seen
+	 * @param datasourceName the datasource whose offers are still valid
+	 */
+	public void seen(final Collection<Long> productIds, final String datasourceName) {
+		long now = System.currentTimeMillis();
+		List<ProductPartialUpdateHolder> touches = new ArrayList<>(productIds.size());
+		for (Long productId : productIds) {
+			ProductPartialUpdateHolder touch = new ProductPartialUpdateHolder(productId);
+			touch.addChange(ProductPartialUpdateField.LAST_CHANGE, now);
+			touch.seen(datasourceName);
+			touches.add(touch);
+		}
+		logger.debug("Marking {} products as seen in {}", touches.size(), datasourceName);
+		aggregatedDataRepository.addToPartialIndexationQueue(touches);
 	}
 
 	/**
@@ -167,46 +242,74 @@ public class DataFragmentStoreService {
 
 
 	/**
-	 * Add an element to the persisted queue
+	 * Add an element to the persisted queue, in the lane owning its GTIN
 	 *
 	 * @param df
+	 * @return completed once the product of the fragment is indexed
 	 */
-	void enqueue(final DataFragment df) {
+	CompletableFuture<Void> enqueue(final DataFragment df) {
 		try {
-			queue.put(df);
+			return lanes.get(laneIndex(df.gtin())).putTracked(df);
 		} catch (Exception e) {
 			logger.error("Exception while adding in the queue, ",e);			
+			return CompletableFuture.failedFuture(e);
 		}	
 	}
 
+	/**
+	 * Compute the lane a GTIN is bound to. Same GTIN always gives same lane, so
+	 * two fragments of a product can never be aggregated concurrently.
+	 *
+	 * @param gtin a numeric gtin
+	 * @return the lane index
+	 */
+	int laneIndex(final String gtin) {
+		return Math.floorMod(Long.hashCode(Long.parseLong(gtin)), lanes.size());
+	}
+
 
 	/**
-	 * Aggregates datafragments to already known aggregatedDatas, then store the results
+	 * Aggregates datafragments to already known aggregatedDatas, then store the results.
+	 * Fragments targeting the same GTIN are coalesced : the product is read once,
+	 * all its fragments are applied in arrival order, and a single full (or partial)
+	 * update is submitted.
+	 *
+	 * @return by GTIN, completed once the product is indexed. The products not updated are absent
+	 * @throws Exception if the products can not be read or submitted, the fragments being to be retried
 	 */
-	public void aggregateAndstore(Collection<DataFragment> buffer) {
+	public Map<Long, CompletableFuture<Void>> aggregateAndstore(Collection<DataFragment> buffer) throws Exception {
 		
-		try {
-			// Retrieving datafragments
-			Map<String, Product> aggDatas = aggregatedDataRepository.multiGetById(
-					buffer.stream()
-					.map(e -> Long.valueOf(e.gtin()))
-					.toList());
-
-
-			// Storing for partial updates
-			Set<Product> fullItemsResults = new HashSet<Product>();
-			// Storing for full updates
-			Set<ProductPartialUpdateHolder> partialItemsResults = new HashSet<ProductPartialUpdateHolder>();
-			
-			
-			for (DataFragment df : buffer) {
-				Product data = aggDatas.get(df.gtin());
-				if (null == data) {
-					// This is a first product
-					data = new Product();
-					data.setCreationDate(System.currentTimeMillis());
-				}
+		// Grouping datafragments by product, keeping the arrival order
+		Map<Long, List<DataFragment>> byGtin = new LinkedHashMap<>();
+		for (DataFragment df : buffer) {
+			byGtin.computeIfAbsent(Long.valueOf(df.gtin()), k -> new ArrayList<>()).add(df);
+		}
+
+		// Retrieving products, once per gtin
+		Map<Long, Product> aggDatas = new HashMap<>();
+		aggregatedDataRepository.multiGetById(byGtin.keySet())
+			.values()
+			.forEach(p -> aggDatas.put(p.getId(), p));
+
 
+		// Storing for partial updates
+		Set<Product> fullItemsResults = new HashSet<Product>();
+		// Storing for full updates
+		Set<ProductPartialUpdateHolder> partialItemsResults = new HashSet<ProductPartialUpdateHolder>();
+		
+		
+		for (Map.Entry<Long, List<DataFragment>> entry : byGtin.entrySet()) {
+			Product data = aggDatas.get(entry.getKey());
+			if (null == data) {
+				// This is a first product
+				data = new Product();
+				data.setCreationDate(System.currentTimeMillis());
+			}
+
+			boolean fullUpdate = false;
+			boolean partialUpdate = false;
+
+			for (DataFragment df : entry.getValue()) {
 				/////////////////////////////
 				// Updating the datasources
 				/////////////////////////////
@@ -220,13 +323,7 @@ public class DataFragmentStoreService {
 					priceService.onDataFragment(df, data, null);
 					// Updating lastChange
 					data.setLastChange(System.currentTimeMillis());
-					
-					ProductPartialUpdateHolder partial = new ProductPartialUpdateHolder(data.getId());
-					partial.addChange(ProductPartialUpdateField.LAST_CHANGE, data.getLastChange());
-					partial.addChange(ProductPartialUpdateField.PRICE, data.getPrice());
-					partial.addChange(ProductPartialUpdateField.OFFERS_COUNT, data.getOffersCount());
-					
-					partialItemsResults.add(partial);
+					partialUpdate = true;
 					
 				} else {
 					// Item has changed, we proceed to full update
@@ -236,33 +333,51 @@ public class DataFragmentStoreService {
 					
 					// Proceeding to aggregation pipeline
 					try {
-						Product newP = generationService.updateOne(df,data);
-						
-						fullItemsResults.add(newP);
+						data = generationService.updateOne(df,data);
+						fullUpdate = true;
 					} catch (AggregationSkipException e1) {
 						logger.warn("Aggregation skipped for {} : {}",df,e1.getMessage());
+					} catch (RuntimeException e1) {
+						// Not to fail the whole batch for a product
+						logger.error("Aggregation failed for {}", df, e1);
 					}
 				}
 			}
 
-			// Saving the result
-			
-			if (fullItemsResults.size() > 0) {
-				logger.info("Will submit {} full products for indexation (datafragment queue size is now {})",  fullItemsResults.size(),queue.size());
-				aggregatedDataRepository.addToFullindexationQueue(fullItemsResults);
-				logger.info("Submitted {} full products for indexation (datafragment queue size is now {})",  fullItemsResults.size(),queue.size());
+			if (entry.getValue().size() > 1) {
+				logger.info("Coalesced {} DataFragments for {}", entry.getValue().size(), entry.getKey());
 			}
-			
-			
-			if (partialItemsResults.size() > 0) {
-				logger.info("Will submit {} partial products for indexation (datafragment queue size is now {})", partialItemsResults.size(), queue.size());
-				aggregatedDataRepository.addToPartialIndexationQueue(partialItemsResults);
-				logger.info("Submitted {} partial products for indexation (datafragment queue size is now {})", partialItemsResults.size(), queue.size());
+
+			if (fullUpdate) {
+				// The full document also carries the price updates of the partial fragments
+				fullItemsResults.add(data);
+			} else if (partialUpdate) {
+				ProductPartialUpdateHolder partial = new ProductPartialUpdateHolder(data.getId());
+				partial.setVertical(data.getVertical());
+				partial.addChange(ProductPartialUpdateField.LAST_CHANGE, data.getLastChange());
+				partial.addChange(ProductPartialUpdateField.PRICE, data.getPrice());
+				partial.addChange(ProductPartialUpdateField.OFFERS_COUNT, data.getOffersCount());
+				
+				partialItemsResults.add(partial);
 			}
-			
-		} catch (final Exception e) {
-			logger.error("Error while dequeing DataFragments",e);
-		}	
+		}
+
+		// Saving the result
+		Map<Long, CompletableFuture<Void>> indexed = new HashMap<>();
+		
+		if (fullItemsResults.size() > 0) {
+			logger.info("Will submit {} full products for indexation (datafragment queue size is now {})",  fullItemsResults.size(),getQueueSize());
+			indexed.putAll(aggregatedDataRepository.addToFullindexationQueue(fullItemsResults));
+			logger.info("Submitted {} full products for indexation (datafragment queue size is now {})",  fullItemsResults.size(),getQueueSize());
+		}
+		
+		
+		if (partialItemsResults.size() > 0) {
+			logger.info("Will submit {} partial products for indexation (datafragment queue size is now {})", partialItemsResults.size(), getQueueSize());
+			indexed.putAll(aggregatedDataRepository.addToPartialIndexationQueue(partialItemsResults));
+			logger.info("Submitted {} partial products for indexation (datafragment queue size is now {})", partialItemsResults.size(), getQueueSize());
+		}
+		return indexed;
 	}
 
 
@@ -271,13 +386,20 @@ public class DataFragmentStoreService {
 	}
 
 
-	public BlockingQueue<DataFragment> getQueue() {
-		return queue;
+	/**
+	 * @param index the lane index, as given to the worker
+	 * @return the lane consumed by the worker
+	 */
+	public JournaledQueue<DataFragment> getLane(int index) {
+		return lanes.get(index);
 	}
 
 
-	public void setQueue(BlockingQueue<DataFragment> queue) {
-		this.queue = queue;
+	/**
+	 * @return the number of DataFragments waiting in all the lanes
+	 */
+	public int getQueueSize() {
+		return lanes.stream().mapToInt(JournaledQueue::size).sum();
 	}
 
 
@@ -0,0 +1,95 @@
+package org.open4goods.api.services;
+
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.open4goods.api.config.yml.ApiProperties;
+import org.open4goods.brand.service.BrandService;
+import org.open4goods.commons.services.BarcodeForensicsService;
+import org.open4goods.commons.services.BarcodeValidationService;
+import org.open4goods.commons.services.DataSourceConfigService;
+import org.open4goods.commons.services.Gs1PrefixService;
+import org.open4goods.commons.services.textgen.BlablaService;
+import org.open4goods.embedding.config.DjlEmbeddingProperties;
+import org.open4goods.embedding.service.DjlTextEmbeddingService;
+import org.open4goods.icecat.services.IcecatFeatureResolver;
+import org.open4goods.icecat.services.IcecatService;
+import org.open4goods.model.vertical.PrefixedAttrText;
+import org.open4goods.model.vertical.ProductI18nElements;
+import org.open4goods.model.vertical.VerticalConfig;
+import org.open4goods.services.evaluation.config.EvaluationConfig;
+import org.open4goods.services.evaluation.service.EvaluationService;
+import org.open4goods.services.productrepository.services.ProductRepository;
+import org.open4goods.services.serialisation.service.SerialisationService;
+import org.open4goods.verticals.VerticalsConfigService;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+
+/**
+ * Tests the startup validation of the verticals templates.
+ */
+class AggregationFacadeServiceTemplatesTest {
+
+    private final VerticalsConfigService verticalsConfigService = mock(VerticalsConfigService.class);
+
+    @Test
+    void urlPrefixesAreValidatedAsBlablaTemplates() {
+        verticals(vertical("tv", "||tv|[(${BRAND})]|| [(${p.model()})]"));
+
+        assertThatCode(() -> aggregationFacadeService().validateVerticalTemplates()).doesNotThrowAnyException();
+    }
+
+    @Test
+    void startupFailsOnAnInvalidUrlPrefix() {
+        verticals(vertical("tv", "||tv|télé||"), vertical("fridge", "||[(${p.brand(})]|frigo||"));
+
+        assertThatThrownBy(() -> aggregationFacadeService().validateVerticalTemplates())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("fridge.fr.url.prefix")
+                .hasMessageNotContaining("tv.fr.url.prefix");
+    }
+
+    private void verticals(final VerticalConfig... verticals) {
+        when(verticalsConfigService.getConfigsWithoutDefault()).thenReturn(List.of(verticals));
+    }
+
+    private VerticalConfig vertical(final String id, final String urlPrefix) {
+        PrefixedAttrText url = new PrefixedAttrText();
+        url.setPrefix(urlPrefix);
+        ProductI18nElements texts = new ProductI18nElements();
+        texts.setUrl(url);
+        VerticalConfig config = new VerticalConfig();
+        config.setId(id);
+        config.setI18n(Map.of("fr", texts));
+        return config;
+    }
+
+    private AggregationFacadeService aggregationFacadeService() {
+        EvaluationService evaluationService = new EvaluationService(new EvaluationConfig());
+        ApiProperties apiProperties = new ApiProperties();
+        apiProperties.setRootFolder("/tmp/open4goods/");
+
+        return new AggregationFacadeService(
+                evaluationService,
+                mock(org.open4goods.model.StandardiserService.class),
+                mock(AutowireCapableBeanFactory.class),
+                mock(ProductRepository.class),
+                apiProperties,
+                mock(Gs1PrefixService.class),
+                mock(DataSourceConfigService.class),
+                verticalsConfigService,
+                mock(BarcodeValidationService.class),
+                mock(BrandService.class),
+                new BlablaService(evaluationService),
+                mock(IcecatService.class),
+                mock(IcecatFeatureResolver.class),
+                mock(SerialisationService.class),
+                mock(DjlTextEmbeddingService.class),
+                new DjlEmbeddingProperties(),
+                mock(BarcodeForensicsService.class));
+    }
+}
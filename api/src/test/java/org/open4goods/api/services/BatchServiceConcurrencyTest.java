@@ -0,0 +1,181 @@
+package org.open4goods.api.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.open4goods.api.config.yml.ApiProperties;
+import org.open4goods.api.config.yml.BatchConfig;
+import org.open4goods.commons.services.ResourceService;
+import org.open4goods.model.product.Product;
+import org.open4goods.model.product.ProductPartialUpdateHolder;
+import org.open4goods.model.vertical.VerticalConfig;
+import org.open4goods.services.feedservice.service.FeedIndexingService;
+import org.open4goods.services.feedservice.service.FeedService;
+import org.open4goods.services.productrepository.changes.ProductChangeTracker;
+import org.open4goods.services.productrepository.config.IndexationConfig;
+import org.open4goods.services.productrepository.services.ProductRepository;
+import org.open4goods.services.serialisation.service.SerialisationService;
+import org.open4goods.verticals.VerticalsConfigService;
+
+/**
+ * Verifies the verticals scheduling of {@link BatchService#batch()} : concurrency,
+ * memory budget, per-vertical locking and timings.
+ */
+class BatchServiceConcurrencyTest {
+
+    private final AggregationFacadeService aggregationFacadeService = mock(AggregationFacadeService.class);
+    private final CompletionFacadeService completionFacadeService = mock(CompletionFacadeService.class);
+    private final VerticalsConfigService verticalsConfigService = mock(VerticalsConfigService.class);
+    private final ProductRepository dataRepository = mock(ProductRepository.class);
+    private final ApiProperties apiProperties = mock(ApiProperties.class);
+    private final BatchConfig batchConfig = new BatchConfig();
+    private final VerticalLocks verticalLocks = new VerticalLocks();
+    private final ProductChangeTracker changeTracker = mock(ProductChangeTracker.class);
+
+    private final BatchService batchService = new BatchService(aggregationFacadeService, completionFacadeService,
+            verticalsConfigService, dataRepository, mock(FeedIndexingService.class), mock(FeedService.class),
+            mock(SerialisationService.class), mock(ResourceService.class), apiProperties);
+
+    BatchServiceConcurrencyTest() {
+        when(apiProperties.getBatchConfig()).thenReturn(batchConfig);
+        when(apiProperties.getIndexationConfig()).thenReturn(new IndexationConfig());
+        when(aggregationFacadeService.getVerticalLocks()).thenReturn(verticalLocks);
+        when(dataRepository.getProductsMatchingVerticalId(any())).thenAnswer(i -> {
+            VerticalConfig vertical = i.getArgument(0);
+            return Stream.of(product(vertical.getId()));
+        });
+        when(dataRepository.countMainIndexTotal(anyString())).thenReturn(1L);
+        when(dataRepository.newChangeTracker()).thenReturn(changeTracker);
+        when(verticalsConfigService.getConfigsWithoutDefault()).thenReturn(List.of(vertical("tv"), vertical("laptop")));
+    }
+
+    @Test
+    void verticalsAreBatchedConcurrently() {
+        batchConfig.setVerticalConcurrency(2);
+        CountDownLatch bothCompleting = new CountDownLatch(2);
+        AtomicInteger timeouts = new AtomicInteger();
+        doAnswer(i -> {
+            bothCompleting.countDown();
+            if (!bothCompleting.await(10, TimeUnit.SECONDS)) {
+                timeouts.incrementAndGet();
+            }
+            return null;
+        }).when(completionFacadeService).processAll(any(), any());
+
+        batchService.batch();
+
+        assertThat(timeouts).hasValue(0);
+        assertThat(batchService.getBatchTimings()).containsOnlyKeys("tv", "laptop");
+    }
+
+    @Test
+    void memoryBudgetLimitsConcurrentVerticals() {
+        batchConfig.setVerticalConcurrency(2);
+        batchConfig.setMaxProductsInMemory(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        doAnswer(i -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(50);
+            running.decrementAndGet();
+            return null;
+        }).when(completionFacadeService).processAll(any(), any());
+
+        batchService.batch();
+
+        assertThat(maxRunning).hasValue(1);
+        assertThat(batchService.getBatchTimings()).containsOnlyKeys("tv", "laptop");
+    }
+
+    @Test
+    void timingsListStagesInOrder() {
+        batchService.batch(vertical("tv"));
+
+        VerticalBatchTimings timings = batchService.getBatchTimings().get("tv");
+        assertThat(timings.failure()).isNull();
+        assertThat(timings.loadedProducts()).isEqualTo(1);
+        assertThat(timings.completedProducts()).isEqualTo(1);
+        assertThat(timings.stagesMs()).containsOnlyKeys("loading", "classification", "completion", "aggregation", "scoring", "persisting");
+        assertThat(timings.stagesMs().keySet()).first().isEqualTo("loading");
+    }
+
+    @Test
+    void onlyChangedProductsAreUpdated() {
+        ProductPartialUpdateHolder changed = new ProductPartialUpdateHolder(1L);
+        ProductPartialUpdateHolder concurrentlyUpdated = new ProductPartialUpdateHolder(2L);
+        when(changeTracker.changes(anyCollection())).thenReturn(List.of(changed, concurrentlyUpdated));
+        when(dataRepository.bulkUpdateDocument(any())).thenReturn(Set.of(2L));
+
+        batchService.batch(vertical("tv"));
+
+        verify(dataRepository).bulkUpdateDocument(List.of(changed, concurrentlyUpdated));
+        verify(dataRepository, never()).addToFullindexationQueue(any());
+        verify(dataRepository, never()).getFullProductQueue();
+        assertThat(batchService.getBatchTimings().get("tv").updatedProducts()).isEqualTo(1);
+    }
+
+    @Test
+    void lockedVerticalIsSkipped() throws InterruptedException {
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> verticalLocks.runExclusively("tv", "scoring", () -> {
+            locked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        holder.start();
+        locked.await();
+
+        assertThat(verticalLocks.running()).containsEntry("tv", "scoring");
+        batchService.batch(vertical("tv"));
+        assertThat(batchService.getBatchTimings()).doesNotContainKey("tv");
+
+        release.countDown();
+        holder.join();
+        assertThat(verticalLocks.running()).isEmpty();
+        batchService.batch(vertical("tv"));
+        assertThat(batchService.getBatchTimings()).containsKey("tv");
+    }
+
+    @Test
+    void locksAreReentrant() {
+        AtomicInteger runs = new AtomicInteger();
+        boolean ran = verticalLocks.runExclusively("tv", "batch",
+                () -> verticalLocks.runExclusively("tv", "scoring", runs::incrementAndGet));
+
+        assertThat(ran).isTrue();
+        assertThat(runs).hasValue(1);
+        assertThat(verticalLocks.running()).isEmpty();
+    }
+
+    private static VerticalConfig vertical(String id) {
+        VerticalConfig vertical = new VerticalConfig();
+        vertical.setId(id);
+        return vertical;
+    }
+
+    private static Product product(String vertical) {
+        Product product = new Product((long) vertical.hashCode());
+        product.setVertical(vertical);
+        product.setOffersCount(1);
+        return product;
+    }
+}
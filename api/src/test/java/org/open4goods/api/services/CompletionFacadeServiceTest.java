@@ -0,0 +1,82 @@
+package org.open4goods.api.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.open4goods.api.config.yml.ApiProperties;
+import org.open4goods.api.services.completion.AmazonCompletionService;
+import org.open4goods.api.services.completion.EprelCompletionService;
+import org.open4goods.api.services.completion.IcecatCompletionService;
+import org.open4goods.api.services.completion.ResourceCompletionService;
+import org.open4goods.api.services.completion.WikidataCompletionService;
+import org.open4goods.model.product.Product;
+import org.open4goods.model.vertical.VerticalConfig;
+
+class CompletionFacadeServiceTest {
+
+    private final ResourceCompletionService resourceCompletionService = mock(ResourceCompletionService.class);
+    private final AmazonCompletionService amazonCompletionService = mock(AmazonCompletionService.class);
+    private final ApiProperties apiProperties = mock(ApiProperties.class);
+
+    private final CompletionFacadeService service = new CompletionFacadeService(resourceCompletionService,
+            mock(IcecatCompletionService.class), mock(EprelCompletionService.class),
+            mock(WikidataCompletionService.class), amazonCompletionService, apiProperties);
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void productsAreCompletedConcurrentlyOnTheSharedPool() {
+        when(apiProperties.getCompletionConcurrency()).thenReturn(2);
+        CountDownLatch bothCompleting = new CountDownLatch(2);
+        AtomicInteger timeouts = new AtomicInteger();
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        doAnswer(i -> {
+            threads.add(Thread.currentThread().getName());
+            bothCompleting.countDown();
+            if (!bothCompleting.await(10, TimeUnit.SECONDS)) {
+                timeouts.incrementAndGet();
+            }
+            return null;
+        }).when(resourceCompletionService).process(any(), any());
+
+        service.processAll(Set.of(new Product(1L), new Product(2L)), new VerticalConfig());
+        service.processAll(Set.of(new Product(3L), new Product(4L)), new VerticalConfig());
+
+        assertThat(timeouts).hasValue(0);
+        // The second vertical reuses the pool threads
+        assertThat(threads).containsExactlyInAnyOrder("product-completion-1", "product-completion-2");
+        verify(amazonCompletionService, times(4)).process(any(), any());
+    }
+
+    @Test
+    void failingProductDoesNotStopTheOthers() {
+        when(apiProperties.getCompletionConcurrency()).thenReturn(1);
+        Product failing = new Product(1L);
+        doAnswer(i -> {
+            if (i.getArgument(1) == failing) {
+                throw new IllegalStateException("boom");
+            }
+            return null;
+        }).when(resourceCompletionService).process(any(), any());
+
+        service.processAll(Set.of(failing, new Product(2L)), new VerticalConfig());
+
+        verify(amazonCompletionService).process(any(), any(Product.class));
+    }
+}
@@ -0,0 +1,206 @@
+package org.open4goods.api.services.aggregation.services.batch.scores;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.open4goods.api.services.aggregation.AbstractAggregationService;
+import org.open4goods.api.services.aggregation.aggregator.ScoringBatchedAggregator;
+import org.open4goods.brand.service.BrandService;
+import org.open4goods.model.attribute.AttributeType;
+import org.open4goods.model.attribute.IndexedAttribute;
+import org.open4goods.model.product.Product;
+import org.open4goods.model.product.ProductPartialUpdateField;
+import org.open4goods.model.product.ProductPartialUpdateHolder;
+import org.open4goods.model.product.Score;
+import org.open4goods.model.vertical.AttributeComparisonRule;
+import org.open4goods.model.vertical.AttributeConfig;
+import org.open4goods.model.vertical.AttributesConfig;
+import org.open4goods.model.vertical.ImpactScoreConfig;
+import org.open4goods.model.vertical.VerticalConfig;
+import org.open4goods.model.vertical.scoring.ScoreScoringConfig;
+import org.open4goods.model.vertical.scoring.ScoreTransform;
+import org.open4goods.services.productrepository.changes.ProductChangeEvent;
+import org.open4goods.services.productrepository.changes.ProductChangeGroup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tests for {@link StreamingVerticalScorer}.
+ */
+class StreamingVerticalScorerTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StreamingVerticalScorerTest.class);
+
+    private final BrandService brandService = mock(BrandService.class);
+
+    @Test
+    void streamedScoresMatchBatchedScores() {
+        VerticalConfig vConf = verticalConfig();
+
+        List<Product> batched = products();
+        batchedAggregator().score(batched, vConf);
+
+        List<ProductPartialUpdateHolder> updates = new ArrayList<>();
+        StreamingVerticalScorer.Result result = streamingScorer(2).score(() -> products().stream(), vConf, updates::addAll);
+
+        assertThat(result.scored()).isEqualTo(batched.size());
+        assertThat(result.needsReindex()).isEmpty();
+        assertThat(updates).hasSize(batched.size());
+
+        Map<Long, ProductPartialUpdateHolder> byId = new HashMap<>();
+        updates.forEach(u -> byId.put(u.getProductId(), u));
+
+        for (Product expected : batched) {
+            ProductPartialUpdateHolder update = byId.get(expected.getId());
+            @SuppressWarnings("unchecked")
+            Map<String, Score> scores = (Map<String, Score>) update.getChanges().get(ProductPartialUpdateField.SCORES.path());
+
+            assertThat(scores.keySet()).isEqualTo(expected.getScores().keySet());
+            expected.getScores().forEach((name, score) -> {
+                Score actual = scores.get(name);
+                assertThat(actual.getValue()).as("%s value of %s", name, expected.getId()).isEqualTo(score.getValue());
+                assertThat(actual.getVirtual()).as("%s virtual of %s", name, expected.getId()).isEqualTo(score.getVirtual());
+                assertThat(actual.getAbsolute().getValue()).as("%s absolute of %s", name, expected.getId()).isEqualTo(score.getAbsolute().getValue());
+                assertThat(actual.getRelativ().getValue()).as("%s relativ of %s", name, expected.getId()).isEqualTo(score.getRelativ().getValue());
+                assertThat(actual.getRanking()).as("%s ranking of %s", name, expected.getId()).isEqualTo(score.getRanking());
+                assertThat(actual.getHighestScoreId()).isEqualTo(score.getHighestScoreId());
+                assertThat(actual.getLowestScoreId()).isEqualTo(score.getLowestScoreId());
+            });
+
+            @SuppressWarnings("unchecked")
+            Map<String, Object> ranking = (Map<String, Object>) update.getChanges().get(ProductPartialUpdateField.RANKING.path());
+            assertThat(ranking).isNotNull();
+            assertThat(ranking.get("globalPosition")).isEqualTo(expected.getRanking().getGlobalPosition());
+            assertThat(ranking.get("globalCount")).isEqualTo(expected.getRanking().getGlobalCount());
+            assertThat(ranking.get("globalBest")).isEqualTo(expected.getRanking().getGlobalBest());
+            assertThat(ranking.get("globalBetter")).isEqualTo(expected.getRanking().getGlobalBetter());
+        }
+    }
+
+    @Test
+    void streamedUpdatesNotifyTheScoredVertical() {
+        List<ProductPartialUpdateHolder> updates = new ArrayList<>();
+        streamingScorer(2).score(() -> products().stream(), verticalConfig(), updates::addAll);
+
+        assertThat(updates).isNotEmpty().allSatisfy(update -> {
+            assertThat(update.getVertical()).isEqualTo("v-test");
+            assertThat(ProductChangeEvent.events(update)).singleElement().satisfies(event -> {
+                assertThat(event.vertical()).isEqualTo("v-test");
+                assertThat(event.groups()).contains(ProductChangeGroup.SCORES);
+            });
+        });
+    }
+
+    @Test
+    void productsHavingObsoleteScoresNeedReindex() {
+        VerticalConfig vConf = verticalConfig();
+
+        List<ProductPartialUpdateHolder> updates = new ArrayList<>();
+        StreamingVerticalScorer.Result result = streamingScorer(10).score(() -> {
+            List<Product> products = products();
+            products.getFirst().getScores().put("RETIRED", new Score("RETIRED", 1.0));
+            return products.stream();
+        }, vConf, updates::addAll);
+
+        assertThat(result.needsReindex()).extracting(Product::getId).containsExactly(1L);
+        assertThat(result.needsReindex().getFirst().getScores()).containsKey("ECOSCORE").doesNotContainKey("RETIRED");
+        assertThat(updates).extracting(ProductPartialUpdateHolder::getProductId).doesNotContain(1L);
+    }
+
+    @Test
+    void productsAddedBetweenPassesAreSkipped() {
+        VerticalConfig vConf = verticalConfig();
+        int[] calls = { 0 };
+
+        List<ProductPartialUpdateHolder> updates = new ArrayList<>();
+        StreamingVerticalScorer.Result result = streamingScorer(10).score(() -> {
+            List<Product> products = products();
+            if (calls[0]++ > 0) {
+                products.add(product(99L, "7", "3"));
+            }
+            return products.stream();
+        }, vConf, updates::addAll);
+
+        assertThat(result.scored()).isEqualTo(products().size());
+        assertThat(updates).extracting(ProductPartialUpdateHolder::getProductId).doesNotContain(99L);
+    }
+
+    private ScoringBatchedAggregator batchedAggregator() {
+        List<AbstractAggregationService> services = new ArrayList<>();
+        services.add(new CleanScoreAggregationService(LOGGER));
+        services.add(new Attribute2ScoreAggregationService(LOGGER));
+        services.add(new BrandScoresAggregationService(LOGGER, brandService));
+        services.add(new DataCompletion2ScoreAggregationService(LOGGER));
+        services.add(new EcoScoreAggregationService(LOGGER));
+        services.add(new ParticipatingScoresAggregationService(LOGGER));
+        return new ScoringBatchedAggregator(services);
+    }
+
+    private StreamingVerticalScorer streamingScorer(int flushSize) {
+        List<AbstractScoreAggregationService> productScores = new ArrayList<>();
+        productScores.add(new Attribute2ScoreAggregationService(LOGGER));
+        productScores.add(new BrandScoresAggregationService(LOGGER, brandService));
+        productScores.add(new DataCompletion2ScoreAggregationService(LOGGER));
+        return new StreamingVerticalScorer(productScores, new EcoScoreAggregationService(LOGGER),
+                new ParticipatingScoresAggregationService(LOGGER), flushSize);
+    }
+
+    private static List<Product> products() {
+        List<Product> products = new ArrayList<>();
+        products.add(product(1L, "8", "120"));
+        products.add(product(2L, "3", "80"));
+        products.add(product(3L, "5", null));
+        products.add(product(4L, null, "45"));
+        products.add(product(5L, "9", "200"));
+        products.add(product(6L, "5", "80"));
+        return products;
+    }
+
+    private static Product product(long id, String repair, String weight) {
+        Product product = new Product(id);
+        if (repair != null) {
+            product.getAttributes().getIndexed().put("REPAIR", new IndexedAttribute("REPAIR", repair));
+        }
+        if (weight != null) {
+            product.getAttributes().getIndexed().put("WEIGHT", new IndexedAttribute("WEIGHT", weight));
+        }
+        // Stale scores, as indexed by a previous run
+        product.getScores().put("REPAIR", new Score("REPAIR", 1.0));
+        return product;
+    }
+
+    private static VerticalConfig verticalConfig() {
+        AttributeConfig repair = new AttributeConfig();
+        repair.setKey("REPAIR");
+        repair.setAsScore(true);
+        repair.setFilteringType(AttributeType.NUMERIC);
+        repair.setImpactBetterIs(AttributeComparisonRule.GREATER);
+        repair.setParticipateInScores(Set.of("DURABILITY"));
+
+        AttributeConfig weight = new AttributeConfig();
+        weight.setKey("WEIGHT");
+        weight.setAsScore(true);
+        weight.setFilteringType(AttributeType.NUMERIC);
+        weight.setImpactBetterIs(AttributeComparisonRule.LOWER);
+        weight.setParticipateInScores(Set.of("DURABILITY"));
+        ScoreScoringConfig scoring = new ScoreScoringConfig();
+        scoring.setTransform(ScoreTransform.LOG);
+        weight.setScoring(scoring);
+
+        ImpactScoreConfig impactScoreConfig = new ImpactScoreConfig();
+        impactScoreConfig.setCriteriasPonderation(Map.of("REPAIR", 0.5, "WEIGHT", 0.3, "DATA_QUALITY", 0.2));
+
+        VerticalConfig verticalConfig = new VerticalConfig();
+        verticalConfig.setId("v-test");
+        verticalConfig.setAttributesConfig(new AttributesConfig(List.of(repair, weight)));
+        verticalConfig.setImpactScoreConfig(impactScoreConfig);
+        return verticalConfig;
+    }
+}
@@ -0,0 +1,69 @@
+package org.open4goods.api.services.aggregation.services.batch.scores.normalization;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class ValueDistributionTest {
+
+    @Test
+    void emptyFrequenciesGiveEmptyDistribution() {
+        assertThat(ValueDistribution.of(null).isEmpty()).isTrue();
+        assertThat(ValueDistribution.of(Map.of()).total()).isZero();
+        assertThat(ValueDistribution.of(Map.of(1.0, 0)).isEmpty()).isTrue();
+        assertThat(ValueDistribution.of(Map.of()).quantile(0.5)).isNull();
+    }
+
+    @Test
+    void countsMatchFrequencies() {
+        ValueDistribution distribution = ValueDistribution.of(Map.of(1.0, 2, 3.0, 1, 5.0, 4));
+
+        assertThat(distribution.total()).isEqualTo(7);
+        assertThat(distribution.distinctValues()).isEqualTo(3);
+        assertThat(distribution.countBelow(0.5)).isZero();
+        assertThat(distribution.countBelow(1.0)).isZero();
+        assertThat(distribution.countAt(1.0)).isEqualTo(2);
+        assertThat(distribution.countBelow(3.0)).isEqualTo(2);
+        assertThat(distribution.countAt(3.0)).isEqualTo(1);
+        assertThat(distribution.countBelow(4.0)).isEqualTo(3);
+        assertThat(distribution.countAt(4.0)).isZero();
+        assertThat(distribution.countBelow(9.0)).isEqualTo(7);
+    }
+
+    @Test
+    void matchesExpandedSortedValues() {
+        Random random = new Random(42);
+        Map<Double, Integer> frequencies = new HashMap<>();
+        for (int i = 0; i < 5_000; i++) {
+            frequencies.merge((double) random.nextInt(300) - 100, 1, Integer::sum);
+        }
+        List<Double> expanded = new ArrayList<>();
+        frequencies.forEach((value, count) -> {
+            for (int i = 0; i < count; i++) {
+                expanded.add(value);
+            }
+        });
+        Collections.sort(expanded);
+
+        ValueDistribution distribution = ValueDistribution.of(frequencies);
+
+        for (double quantile = 0.0; quantile <= 1.0; quantile += 0.01) {
+            int index = (int) Math.round(quantile * (expanded.size() - 1));
+            assertThat(distribution.quantile(quantile)).isEqualTo(expanded.get(index));
+        }
+        for (double value = -110; value < 210; value += 0.5) {
+            final double v = value;
+            long below = expanded.stream().filter(e -> Double.compare(e, v) < 0).count();
+            long at = expanded.stream().filter(e -> Double.compare(e, v) == 0).count();
+            assertThat(distribution.countBelow(value)).isEqualTo(below);
+            assertThat(distribution.countAt(value)).isEqualTo(at);
+        }
+    }
+}
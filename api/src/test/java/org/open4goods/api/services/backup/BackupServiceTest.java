@@ -2,6 +2,10 @@ package org.open4goods.api.services.backup;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -14,7 +18,11 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Stream;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -22,13 +30,18 @@ import java.util.zip.GZIPOutputStream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
 import org.open4goods.api.config.yml.BackupConfig;
+import org.open4goods.api.services.backup.BackupService.ProductBackupManifest;
 import org.open4goods.model.product.Product;
+import org.open4goods.services.productrepository.services.BulkProductIndexer.BulkIndexReport;
 import org.open4goods.services.productrepository.services.ProductRepository;
 import org.open4goods.services.serialisation.service.SerialisationService;
 import org.springframework.boot.health.contributor.Health;
 import org.springframework.boot.health.contributor.Status;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 class BackupServiceTest {
 
     @TempDir
@@ -161,6 +174,95 @@ class BackupServiceTest {
         assertThat(backupService.health().getDetails()).containsKey("product_export_exception");
     }
 
+    @Test
+    void incrementalBackupAppendsChangedProductsToThePublishedSnapshot() throws Exception {
+        backupConfig.setIncrementalBackup(true);
+        when(productRepository.countMainIndex()).thenReturn(1L);
+        when(productRepository.exportAll(1000)).thenReturn(Stream.of(new Product()));
+        when(productRepository.exportChangedSince(anyLong(), eq(1000))).thenReturn(Stream.of(new Product()));
+        when(serialisationService.toJson(any(Product.class))).thenReturn("{\"id\":1}");
+
+        backupService.backupProducts();
+        backupService.backupProducts();
+
+        verify(productRepository, times(1)).exportAll(1000);
+        verify(productRepository, times(1)).exportChangedSince(anyLong(), eq(1000));
+        ProductBackupManifest manifest = new ObjectMapper()
+                .readValue(productBackupFolder.resolve("products-backup-manifest.json").toFile(), ProductBackupManifest.class);
+        assertThat(manifest.files()).containsExactly("products-backup-0.gz", "products-backup-1.gz");
+        assertThat(manifest.increments()).singleElement().satisfies(increment -> {
+            assertThat(increment.exportedCount()).isEqualTo(1);
+            assertThat(increment.sinceEpochMillis()).isLessThan(manifest.startedEpochMillis());
+            assertThat(increment.files()).containsExactly("products-increment-1-0.gz", "products-increment-1-1.gz");
+        });
+        assertThat(backupService.health().getStatus()).isEqualTo(Status.UP);
+
+        // Past the max increments, a full snapshot replaces them
+        backupConfig.setMaxIncrementalSegments(1);
+        when(productRepository.exportAll(1000)).thenReturn(Stream.of(new Product()));
+        backupService.backupProducts();
+
+        verify(productRepository, times(2)).exportAll(1000);
+        assertThat(Files.exists(productBackupFolder.resolve("products-increment-1-0.gz"))).isFalse();
+    }
+
+    @Test
+    void copyWithProductsNotIndexedFails() throws Exception {
+        Product product = new Product();
+        product.setId(1L);
+        when(productRepository.exportAll(backupConfig.getCopyPageSize())).thenReturn(Stream.of(product));
+        when(productRepository.store(any(), eq("products-copy")))
+                .thenReturn(new BulkIndexReport(0, 0, Map.of("1", "400 mapper_parsing_exception"), Set.of()));
+
+        backupService.copyTo("copy");
+
+        assertThat(backupService.health().getDetails()).containsEntry("product_copy_exception", "1 products not copied to products-copy");
+    }
+
+    @Test
+    void importReplaysTheSnapshotThenTheIncrementsWithRelaxedIndexSettings() throws Exception {
+        Path importFolder = tempDir.resolve("import");
+        Files.createDirectories(importFolder);
+        writeGzip(importFolder.resolve("products-backup-0.gz"), "base-1\nbase-2");
+        writeGzip(importFolder.resolve("products-increment-1-0.gz"), "increment-2");
+        Files.writeString(importFolder.resolve("products-backup-manifest.json"), """
+                {
+                  "completedEpochMillis": 1,
+                  "expectedCount": 2,
+                  "exportedCount": 2,
+                  "files": ["products-backup-0.gz"],
+                  "startedEpochMillis": 1,
+                  "increments": [ { "startedEpochMillis": 2, "completedEpochMillis": 2, "exportedCount": 1,
+                                    "files": ["products-increment-1-0.gz"] } ]
+                }
+                """, StandardCharsets.UTF_8);
+        backupConfig.setImportBulkSize(1);
+        Map<String, String> previousSettings = Map.of("refresh_interval", "30s", "number_of_replicas", "1");
+        when(productRepository.relaxSettingsForBulkLoad()).thenReturn(previousSettings);
+        when(serialisationService.fromJson(any(String.class), eq(Product.class))).thenAnswer(invocation -> {
+            Product product = new Product();
+            product.setId(Long.valueOf(invocation.getArgument(0, String.class).replaceAll("\\D", "")));
+            product.setOfferNames(new java.util.HashSet<>(List.of(invocation.getArgument(0, String.class))));
+            return product;
+        });
+        List<String> stored = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            for (Product product : invocation.<Collection<Product>>getArgument(0)) {
+                stored.add(product.getOfferNames().iterator().next());
+            }
+            return new BulkIndexReport(invocation.<Collection<Product>>getArgument(0).size(), 0, Map.of(), Set.of());
+        }).when(productRepository).store(any());
+
+        backupService.importProducts();
+
+        assertThat(stored).hasSize(3).endsWith("increment-2");
+        assertThat(stored.subList(0, 2)).containsExactlyInAnyOrder("base-1", "base-2");
+        InOrder inOrder = inOrder(productRepository);
+        inOrder.verify(productRepository).relaxSettingsForBulkLoad();
+        inOrder.verify(productRepository, times(3)).store(any());
+        inOrder.verify(productRepository).restoreBulkLoadSettings(previousSettings);
+    }
+
     private void writeExistingBackup() throws IOException {
         writeGzip(productBackupFolder.resolve("products-backup-0.gz"), "old-0");
         writeGzip(productBackupFolder.resolve("products-backup-1.gz"), "old-1");
@@ -0,0 +1,89 @@
+package org.open4goods.api.services.completion;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.open4goods.api.services.completion.PerceptualHashIndex.IndexedImage;
+import org.open4goods.model.resource.ImageInfo;
+import org.open4goods.model.resource.Resource;
+
+class PerceptualHashIndexTest {
+
+    @TempDir
+    private Path folder;
+
+    @Test
+    void findsTheImagesWithinTheDistance() throws Exception {
+        PerceptualHashIndex index = open();
+        index.add(1L, image("https://example.test/a.jpg", 0b0000L));
+        index.add(2L, image("https://example.test/b.jpg", 0b0001L));
+        index.add(3L, image("https://example.test/c.jpg", 0b0111L));
+        index.add(4L, image("https://example.test/d.jpg", 0b1111_1111L));
+
+        assertThat(index.near(0b0000L, 36, 1)).extracting(IndexedImage::url)
+                .containsExactlyInAnyOrder("https://example.test/a.jpg", "https://example.test/b.jpg");
+        assertThat(index.near(0b0000L, 36, 3)).hasSize(3);
+        assertThat(index.near(0b0000L, 64, 3)).isEmpty();
+    }
+
+    @Test
+    void updatesArePersistedAndReplayed() throws Exception {
+        PerceptualHashIndex index = open();
+        index.add(1L, image("https://example.test/a.jpg", 0b0000L));
+        index.add(2L, image("https://example.test/b;c.jpg", 0b0001L));
+        index.add(3L, image("https://example.test/c.jpg", 0b0011L));
+        // Replaced by its new hash
+        index.add(1L, image("https://example.test/a.jpg", 0b1111_0000L));
+        index.remove(2L, "https://example.test/b;c.jpg");
+        index.close();
+
+        PerceptualHashIndex reloaded = open();
+
+        assertThat(reloaded.size()).isEqualTo(2);
+        assertThat(reloaded.near(0b0000L, 36, 2)).extracting(IndexedImage::url)
+                .containsExactly("https://example.test/c.jpg");
+        assertThat(reloaded.near(0b1111_0000L, 36, 0)).extracting(IndexedImage::productId).containsExactly(1L);
+        assertThat(reloaded.near(0b0011L, 36, 0)).singleElement().satisfies(image -> {
+            assertThat(image.md5()).isEqualTo("md5-" + "https://example.test/c.jpg".hashCode());
+            assertThat(image.dominantColor()).isEqualTo("#ffffff");
+        });
+    }
+
+    @Test
+    void clustersTheImagesSharedByProducts() throws Exception {
+        PerceptualHashIndex index = open();
+        index.add(1L, image("https://example.test/a.jpg", 0b0000L));
+        index.add(2L, image("https://example.test/b.jpg", 0b0001L));
+        index.add(3L, image("https://example.test/c.jpg", 0b0000L));
+        index.add(3L, image("https://example.test/alone.jpg", 0b1111_1111_1111L));
+
+        assertThat(index.clusters(1, 2, 10)).singleElement().satisfies(cluster -> {
+            assertThat(cluster.products()).isEqualTo(3);
+            assertThat(cluster.images()).hasSize(3);
+        });
+        assertThat(index.clusters(1, 4, 10)).isEmpty();
+    }
+
+    private PerceptualHashIndex open() {
+        PerceptualHashIndex index = new PerceptualHashIndex(folder.resolve("phash-index.log"));
+        index.load();
+        return index;
+    }
+
+    private Resource image(String url, long hash) throws Exception {
+        Resource resource = new Resource(url);
+        resource.setCacheKey(Integer.toHexString(url.hashCode()));
+        resource.setMd5("md5-" + url.hashCode());
+        ImageInfo imageInfo = new ImageInfo();
+        imageInfo.setWidth(100);
+        imageInfo.setHeight(100);
+        imageInfo.setpHashValue(hash);
+        imageInfo.setpHashLength(36);
+        imageInfo.setDominantColor("#ffffff");
+        resource.setImageInfo(imageInfo);
+        return resource;
+    }
+}
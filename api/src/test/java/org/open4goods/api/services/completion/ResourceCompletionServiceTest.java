@@ -2,19 +2,29 @@ package org.open4goods.api.services.completion;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.imageio.ImageIO;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.junit.jupiter.api.io.TempDir;
 import org.open4goods.api.config.yml.ApiProperties;
 import org.open4goods.api.config.yml.ResourceCompletionConfig;
@@ -32,6 +42,8 @@ import org.open4goods.services.imageprocessing.service.ImageMagickService;
 import org.open4goods.services.productrepository.services.ProductRepository;
 import org.open4goods.verticals.VerticalsConfigService;
 
+import com.sun.net.httpserver.HttpServer;
+
 import ch.qos.logback.classic.Level;
 
 class ResourceCompletionServiceTest {
@@ -42,6 +54,7 @@ class ResourceCompletionServiceTest {
     private ResourceCompletionConfig config;
     private ResourceService resourceService;
     private ImageMagickService imageService;
+    private PerceptualHashIndex nearDuplicateIndex;
     private ResourceCompletionService service;
     private VerticalConfig vertical;
 
@@ -56,8 +69,10 @@ class ResourceCompletionServiceTest {
         when(apiProperties.logsFolder()).thenReturn("target/test-logs");
         when(apiProperties.aggLogLevel()).thenReturn(Level.INFO);
 
+        nearDuplicateIndex = new PerceptualHashIndex(cacheFolder.resolve("phash-index.log"));
+        nearDuplicateIndex.load();
         service = new ResourceCompletionService(imageService, mock(VerticalsConfigService.class),
-                resourceService, mock(ProductRepository.class), apiProperties, null);
+                resourceService, mock(ProductRepository.class), apiProperties, null, nearDuplicateIndex);
         vertical = new VerticalConfig();
     }
 
@@ -202,6 +217,233 @@ class ResourceCompletionServiceTest {
         assertThat(product.getCoverImagePath()).startsWith("/images/");
     }
 
+    @Test
+    void unchangedResourceIsRevalidatedWithoutReprocessing() throws Exception {
+        byte[] png = pngBytes(100, 100);
+        AtomicReference<String> etag = new AtomicReference<>("\"v1\"");
+        AtomicReference<byte[]> content = new AtomicReference<>(png);
+        AtomicInteger fullResponses = new AtomicInteger();
+        HttpServer server = startServer(etag, content, fullResponses);
+        try {
+            when(imageService.buildImageInfo(any(File.class))).thenReturn(imageInfo(100, 100, null));
+            String url = "http://localhost:" + server.getAddress().getPort() + "/image.png";
+
+            Resource resource = service.fetchResource(new Resource(url), vertical);
+
+            assertThat(resource.isEvicted()).isFalse();
+            assertThat(resource.getEtag()).isEqualTo("\"v1\"");
+            assertThat(resource.getMd5()).isEqualTo(DigestUtils.md5Hex(png));
+            assertThat(resource.getMimeType()).isEqualTo("image/png");
+            assertThat(resource.getResourceType()).isEqualTo(ResourceType.IMAGE);
+            assertThat(cacheFileFor(url)).hasBinaryContent(png);
+
+            // Not yet due : not part of the processing
+            assertThat(service.shouldProcess(vertical, productWith(resource))).isFalse();
+
+            // Due : a 304 keeps the previous analysis
+            resource.setTimeStamp(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(31));
+            assertThat(service.shouldProcess(vertical, productWith(resource))).isTrue();
+            clearInvocations(imageService);
+            service.fetchResource(resource, vertical);
+
+            assertThat(fullResponses).hasValue(1);
+            verify(imageService, never()).buildImageInfo(any(File.class));
+            assertThat(resource.getImageInfo().getWidth()).isEqualTo(100);
+            assertThat(System.currentTimeMillis() - resource.getTimeStamp()).isLessThan(TimeUnit.MINUTES.toMillis(1));
+
+            // Changed remote content is downloaded and analysed again
+            byte[] changed = pngBytes(200, 200);
+            etag.set("\"v2\"");
+            content.set(changed);
+            when(imageService.buildImageInfo(any(File.class))).thenReturn(imageInfo(200, 200, null));
+            resource.setTimeStamp(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(31));
+            service.fetchResource(resource, vertical);
+
+            assertThat(fullResponses).hasValue(2);
+            assertThat(resource.getEtag()).isEqualTo("\"v2\"");
+            assertThat(resource.getMd5()).isEqualTo(DigestUtils.md5Hex(changed));
+            assertThat(resource.getImageInfo().getWidth()).isEqualTo(200);
+            assertThat(cacheFileFor(url)).hasBinaryContent(changed);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void failedRevalidationKeepsThePreviousAnalysis() throws Exception {
+        byte[] png = pngBytes(100, 100);
+        HttpServer server = startServer(new AtomicReference<>("\"v1\""), new AtomicReference<>(png), new AtomicInteger());
+        String url = "http://localhost:" + server.getAddress().getPort() + "/image.png";
+        Resource resource;
+        try {
+            when(imageService.buildImageInfo(any(File.class))).thenReturn(imageInfo(100, 100, null));
+            resource = service.fetchResource(new Resource(url), vertical);
+        } finally {
+            server.stop(0);
+        }
+        resource.setStatus(ResourceStatus.PERCEPTIV_HASH_FAIL);
+        long previousTimeStamp = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(31);
+        resource.setTimeStamp(previousTimeStamp);
+
+        service.fetchResource(resource, vertical);
+
+        assertThat(resource.isEvicted()).isFalse();
+        assertThat(resource.getStatus()).isEqualTo(ResourceStatus.PERCEPTIV_HASH_FAIL);
+        assertThat(resource.getTimeStamp()).isEqualTo(previousTimeStamp);
+        assertThat(resource.getEtag()).isEqualTo("\"v1\"");
+        assertThat(resource.getImageInfo().getWidth()).isEqualTo(100);
+        assertThat(cacheFileFor(url)).hasBinaryContent(png);
+        assertThat(cacheFileFor(url).getParentFile().list()).containsExactly(cacheFileFor(url).getName());
+    }
+
+    @Test
+    void imageIsAnalysedFromASingleDecoding() throws Exception {
+        String url = "https://example.test/decoded.png";
+        File cacheFile = cacheFileFor(url);
+        BufferedImage image = new BufferedImage(120, 80, BufferedImage.TYPE_INT_RGB);
+        java.awt.Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.RED);
+        graphics.fillRect(0, 0, 120, 80);
+        graphics.setColor(Color.BLUE);
+        graphics.fillRect(0, 0, 30, 20);
+        graphics.dispose();
+        ImageIO.write(image, "png", cacheFile);
+
+        Resource resource = service.fetchResource(new Resource(url), vertical);
+
+        verify(imageService, never()).buildImageInfo(any(File.class));
+        assertThat(resource.isEvicted()).isFalse();
+        ImageInfo imageInfo = resource.getImageInfo();
+        assertThat(imageInfo.getWidth()).isEqualTo(120);
+        assertThat(imageInfo.getHeight()).isEqualTo(80);
+        assertThat(imageInfo.getpHashValue()).isNotNull();
+        assertThat(imageInfo.getDominantColor()).isEqualTo("#ff0000");
+        assertThat(imageInfo.getSharpness()).isGreaterThan(0.0);
+
+        // A flat image has no edges
+        ImageInfo flat = new ImageInfo();
+        ResourceCompletionService.computeRasterMetrics(new BufferedImage(600, 400, BufferedImage.TYPE_INT_RGB), flat);
+        assertThat(flat.getDominantColor()).isEqualTo("#000000");
+        assertThat(flat.getSharpness()).isZero();
+    }
+
+    @Test
+    void nearDuplicateImagesAreCollapsedWithinAProduct() throws Exception {
+        Product product = new Product(123L);
+        Resource large = processedImage("https://example.test/large.jpg", "large", 200, 200);
+        large.getImageInfo().setpHashValue(0b1011_0110L);
+        large.getImageInfo().setpHashLength(36);
+        Resource reencoded = processedImage("https://example.test/reencoded.jpg", "reencoded", 150, 150);
+        reencoded.getImageInfo().setpHashValue(0b1011_0111L);
+        reencoded.getImageInfo().setpHashLength(36);
+        Resource other = processedImage("https://example.test/other.jpg", "other", 100, 100);
+        other.getImageInfo().setpHashValue(0xFFFF_0000L);
+        other.getImageInfo().setpHashLength(36);
+        product.getResources().addAll(List.of(reencoded, large, other));
+
+        service.processProduct(vertical, product);
+
+        assertThat(product.getResources()).extracting(Resource::getUrl)
+                .containsExactlyInAnyOrder("https://example.test/large.jpg", "https://example.test/other.jpg");
+        assertThat(reencoded.getStatus()).isEqualTo(ResourceStatus.NEAR_DUPLICATE);
+        assertThat(nearDuplicateIndex.near(0b1011_0110L, 36, 0)).extracting(PerceptualHashIndex.IndexedImage::url)
+                .containsExactly("https://example.test/large.jpg");
+    }
+
+    @Test
+    void nearDuplicateImageSharesTheStoredFileOfTheCatalogue() throws Exception {
+        config.setNearDuplicateShareAcrossProducts(true);
+        String first = "https://merchant-a.test/packshot.png";
+        String second = "https://merchant-b.test/packshot.png";
+        writePngToCache(first, 300, 200);
+        writePngToCache(second, 300, 200);
+
+        Resource shared = processInTwoProducts(first, second);
+
+        assertThat(shared.isEvicted()).isFalse();
+        assertThat(shared.getCacheKey()).isEqualTo(IdHelper.generateResourceId(first));
+        assertThat(nearDuplicateIndex.clusters(0, 2, 10)).singleElement()
+                .satisfies(cluster -> assertThat(cluster.products()).isEqualTo(2));
+    }
+
+    @Test
+    void storedFilesAreNotSharedAcrossProductsByDefault() throws Exception {
+        String first = "https://merchant-a.test/packshot.png";
+        String second = "https://merchant-b.test/packshot.png";
+        writePngToCache(first, 300, 200);
+        writePngToCache(second, 300, 200);
+
+        Resource own = processInTwoProducts(first, second);
+
+        assertThat(own.getCacheKey()).isEqualTo(IdHelper.generateResourceId(second));
+        assertThat(nearDuplicateIndex.clusters(0, 2, 10)).hasSize(1);
+    }
+
+    @Test
+    void perceptiveHashMatchesOfOtherColoursDoNotShareTheirStoredFile() throws Exception {
+        config.setNearDuplicateShareAcrossProducts(true);
+        String red = "https://merchant-a.test/red.png";
+        String blue = "https://merchant-b.test/blue.png";
+        writePngToCache(red, 300, 200, Color.RED);
+        writePngToCache(blue, 300, 200, Color.BLUE);
+
+        Resource own = processInTwoProducts(red, blue);
+
+        assertThat(nearDuplicateIndex.clusters(config.getNearDuplicateMaxDistance(), 2, 10)).hasSize(1);
+        assertThat(own.getImageInfo().getDominantColor()).isEqualTo("#0000ff");
+        assertThat(own.getCacheKey()).isEqualTo(IdHelper.generateResourceId(blue));
+    }
+
+    /**
+     * @return the resource of the second product, processed after the first one
+     */
+    private Resource processInTwoProducts(String first, String second) throws Exception {
+        Product product = new Product(1L);
+        product.getResources().add(new Resource(first));
+        service.processProduct(vertical, product);
+
+        Product other = new Product(2L);
+        other.getResources().add(new Resource(second));
+        service.processProduct(vertical, other);
+        return other.getResources().iterator().next();
+    }
+
+    private Product productWith(Resource resource) {
+        Product product = new Product(123L);
+        product.setCoverImagePath("/images/cover.png");
+        resource.setGroup(0);
+        product.getResources().add(resource);
+        return product;
+    }
+
+    private HttpServer startServer(AtomicReference<String> etag, AtomicReference<byte[]> content,
+            AtomicInteger fullResponses) throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/image.png", exchange -> {
+            exchange.getResponseHeaders().add("ETag", etag.get());
+            if (etag.get().equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            fullResponses.incrementAndGet();
+            exchange.getResponseHeaders().add("Content-Type", "image/png");
+            exchange.sendResponseHeaders(200, content.get().length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(content.get());
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private byte[] pngBytes(int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
     private Resource processedImage(String url, String md5, int width, int height) throws Exception {
         Resource resource = new Resource(url);
         resource.setProcessed(true);
@@ -230,6 +472,15 @@ class ResourceCompletionServiceTest {
         ImageIO.write(image, "png", cacheFile);
     }
 
+    private void writePngToCache(String url, int width, int height, Color color) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        java.awt.Graphics2D graphics = image.createGraphics();
+        graphics.setColor(color);
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        ImageIO.write(image, "png", cacheFileFor(url));
+    }
+
     private void writeTextToCache(String url, String text) throws Exception {
         java.nio.file.Files.writeString(cacheFileFor(url).toPath(), text);
     }
@@ -0,0 +1,124 @@
+package org.open4goods.api.services.store;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.open4goods.api.services.AggregationFacadeService;
+import org.open4goods.model.StandardiserService;
+import org.open4goods.model.attribute.ReferentielKey;
+import org.open4goods.model.datafragment.DataFragment;
+import org.open4goods.model.product.Product;
+import org.open4goods.model.product.ProductPartialUpdateHolder;
+import org.open4goods.services.productrepository.config.IndexationConfig;
+import org.open4goods.services.productrepository.services.ProductRepository;
+import org.open4goods.services.serialisation.service.SerialisationService;
+
+class DataFragmentStoreServiceTest {
+
+    private ProductRepository productRepository;
+    private AggregationFacadeService aggregationFacadeService;
+    private DataFragmentStoreService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        productRepository = mock(ProductRepository.class);
+        aggregationFacadeService = mock(AggregationFacadeService.class);
+        when(productRepository.multiGetById(anyCollection())).thenReturn(Map.of());
+        when(aggregationFacadeService.updateOne(any(), any())).thenAnswer(inv -> {
+            Product p = inv.getArgument(1);
+            DataFragment df = inv.getArgument(0);
+            p.setId(Long.valueOf(df.gtin()));
+            return p;
+        });
+
+        IndexationConfig config = new IndexationConfig();
+        config.setDataFragmentworkers(4);
+        config.setDatafragmentQueueMaxSize(400);
+        config.setPauseDuration(60_000);
+        service = new DataFragmentStoreService(mock(StandardiserService.class), aggregationFacadeService,
+                productRepository, config, new SerialisationService());
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.destroy();
+    }
+
+    @Test
+    void sameGtinIsAlwaysRoutedToTheSameLane() {
+        int lane = service.laneIndex("3760000000017");
+
+        assertThat(service.laneIndex("3760000000017")).isEqualTo(lane);
+        assertThat(lane).isBetween(0, 3);
+    }
+
+    @Test
+    void enqueueUsesTheGtinLane() {
+        DataFragment df = fragment("https://a.example/1", "merchant-a", "3760000000017", 1);
+
+        service.enqueue(df);
+
+        assertThat(service.getQueueSize()).isEqualTo(1);
+        assertThat(service.getLane(service.laneIndex("3760000000017")).drain(10).items()).containsExactly(df);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void seenProductsAreTouchedWithoutBeingRead() throws Exception {
+        service.seen(List.of(1L, 2L), "merchant-a");
+
+        ArgumentCaptor<Collection<ProductPartialUpdateHolder>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(productRepository).addToPartialIndexationQueue(captor.capture());
+        verify(productRepository, never()).multiGetById(anyCollection());
+        assertThat(captor.getValue()).extracting(ProductPartialUpdateHolder::getProductId).containsExactly(1L, 2L);
+        ProductPartialUpdateHolder touch = captor.getValue().iterator().next();
+        assertThat(touch.getSeenDatasources()).containsExactly("merchant-a");
+        assertThat(touch.getChanges()).containsOnlyKeys("lastChange");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void fragmentsOfSameGtinAreCoalescedIntoOneReadAndOneWrite() throws Exception {
+        DataFragment first = fragment("https://a.example/1", "merchant-a", "3760000000017", 1);
+        DataFragment second = fragment("https://b.example/1", "merchant-b", "3760000000017", 2);
+        DataFragment other = fragment("https://a.example/2", "merchant-a", "3760000000024", 3);
+
+        service.aggregateAndstore(List.of(first, second, other));
+
+        ArgumentCaptor<Collection<Long>> ids = ArgumentCaptor.forClass(Collection.class);
+        verify(productRepository, times(1)).multiGetById(ids.capture());
+        assertThat(ids.getValue()).containsExactly(3760000000017L, 3760000000024L);
+
+        verify(aggregationFacadeService, times(3)).updateOne(any(), any());
+
+        ArgumentCaptor<Collection<Product>> stored = ArgumentCaptor.forClass(Collection.class);
+        verify(productRepository, times(1)).addToFullindexationQueue(stored.capture());
+        assertThat(stored.getValue()).hasSize(2);
+        Product coalesced = stored.getValue().stream()
+                .filter(p -> p.getId().equals(3760000000017L))
+                .findFirst()
+                .orElseThrow();
+        assertThat(coalesced.getDatasourceCodes()).containsKeys("merchant-a", "merchant-b");
+    }
+
+    private DataFragment fragment(String url, String datasource, String gtin, int hash) {
+        DataFragment df = DataFragment.newOffer(url, datasource);
+        df.addReferentielAttribute(ReferentielKey.GTIN, gtin);
+        df.setFragmentHashCode(hash);
+        return df;
+    }
+}
@@ -51,6 +51,9 @@ public class B2bApiProperties {
     @Valid
     private Stripe stripe = new Stripe();
 
+    @Valid
+    private Barcode barcode = new Barcode();
+
     public URI getPublicBaseUrl() {
         return publicBaseUrl;
     }
@@ -131,6 +134,14 @@ public class B2bApiProperties {
         this.stripe = stripe;
     }
 
+    public Barcode getBarcode() {
+        return barcode;
+    }
+
+    public void setBarcode(final Barcode barcode) {
+        this.barcode = barcode;
+    }
+
     public static class Credits {
 
         @Positive
@@ -439,6 +450,27 @@ public class B2bApiProperties {
 
         private boolean failClosed = true;
 
+        /**
+         * Usage events sent per pipelined stream write. 1 writes each event synchronously.
+         */
+        @Min(1)
+        private int usageStreamBatchSize = 1;
+
+        /**
+         * Maximum delay before buffered usage events are written.
+         */
+        @NotNull
+        private Duration usageStreamFlushInterval = Duration.ofSeconds(1);
+
+        /**
+         * Usage events buffered while the stream cannot be written, before requests fail.
+         */
+        @Min(1)
+        private int usageStreamBufferCapacity = 10_000;
+
+        @Valid
+        private Lease lease = new Lease();
+
         public Duration getBalanceTtl() {
             return balanceTtl;
         }
@@ -478,6 +510,98 @@ public class B2bApiProperties {
         public void setFailClosed(final boolean failClosed) {
             this.failClosed = failClosed;
         }
+
+        public int getUsageStreamBatchSize() {
+            return usageStreamBatchSize;
+        }
+
+        public void setUsageStreamBatchSize(final int usageStreamBatchSize) {
+            this.usageStreamBatchSize = usageStreamBatchSize;
+        }
+
+        public Duration getUsageStreamFlushInterval() {
+            return usageStreamFlushInterval;
+        }
+
+        public void setUsageStreamFlushInterval(final Duration usageStreamFlushInterval) {
+            this.usageStreamFlushInterval = usageStreamFlushInterval;
+        }
+
+        public int getUsageStreamBufferCapacity() {
+            return usageStreamBufferCapacity;
+        }
+
+        public void setUsageStreamBufferCapacity(final int usageStreamBufferCapacity) {
+            this.usageStreamBufferCapacity = usageStreamBufferCapacity;
+        }
+
+        public Lease getLease() {
+            return lease;
+        }
+
+        public void setLease(final Lease lease) {
+            this.lease = lease;
+        }
+    }
+
+    /**
+     * Node-local leases of organization credits and API key rate-limit tokens, consumed
+     * without Redis round trips.
+     */
+    public static class Lease {
+
+        private boolean enabled = false;
+
+        /**
+         * Credits leased at once from an organization hot balance, at most half of it.
+         */
+        @Min(1)
+        private long creditBlock = 100;
+
+        /**
+         * Rate-limit tokens leased at once from an API key window, at most half of what it has left.
+         */
+        @Min(1)
+        private int rateLimitBlock = 10;
+
+        /**
+         * Lifetime of a credit lease. Unreturned leases of a lost node are given back to the
+         * hot balance by the next reconciliation after their expiry.
+         */
+        @NotNull
+        private Duration ttl = Duration.ofMinutes(5);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(final boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getCreditBlock() {
+            return creditBlock;
+        }
+
+        public void setCreditBlock(final long creditBlock) {
+            this.creditBlock = creditBlock;
+        }
+
+        public int getRateLimitBlock() {
+            return rateLimitBlock;
+        }
+
+        public void setRateLimitBlock(final int rateLimitBlock) {
+            this.rateLimitBlock = rateLimitBlock;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(final Duration ttl) {
+            this.ttl = ttl;
+        }
     }
 
     public static class RateLimit {
@@ -552,6 +676,45 @@ public class B2bApiProperties {
         }
     }
 
+    public static class Barcode {
+
+        /** Threads rendering the barcodes of the ZIP batches, shared by the requests. */
+        @Min(1)
+        private int renderThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+        /** Barcodes rendered and stored per round, bounding the memory of a ZIP batch. */
+        @Min(1)
+        private int zipChunkSize = 32;
+
+        /** Minimum remaining lifetime of a stored asset for its URL to be returned again. */
+        @NotNull
+        private Duration assetReuseMinTtl = Duration.ofDays(15);
+
+        public int getRenderThreads() {
+            return renderThreads;
+        }
+
+        public void setRenderThreads(final int renderThreads) {
+            this.renderThreads = renderThreads;
+        }
+
+        public int getZipChunkSize() {
+            return zipChunkSize;
+        }
+
+        public void setZipChunkSize(final int zipChunkSize) {
+            this.zipChunkSize = zipChunkSize;
+        }
+
+        public Duration getAssetReuseMinTtl() {
+            return assetReuseMinTtl;
+        }
+
+        public void setAssetReuseMinTtl(final Duration assetReuseMinTtl) {
+            this.assetReuseMinTtl = assetReuseMinTtl;
+        }
+    }
+
     public static class Stripe {
 
         private String secretKey = "";
@@ -10,6 +10,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import java.io.IOException;
 import java.util.List;
 import org.open4goods.b2bapi.config.OpenApiConfig;
 import org.open4goods.b2bapi.dto.barcode.B2bBarcodeRenderRequest;
@@ -111,8 +112,8 @@ public class BarcodeController {
      * @param requests list of barcode rendering requests
      * @param principal authenticated principal
      * @param request HTTP request
-     * @param response HTTP response
-     * @return a ZIP archive download containing the rendered barcodes
+     * @param response HTTP response, the ZIP archive is streamed to
+     * @throws IOException if the response stream cannot be opened
      */
     @Operation(
             summary = "Batch export barcodes as ZIP",
@@ -141,15 +142,12 @@ public class BarcodeController {
     )
     @PreAuthorize("hasAuthority('PDAPI_KEY')")
     @PostMapping(value = "/render-zip", produces = "application/zip")
-    public ResponseEntity<byte[]> renderBarcodeZip(
+    public void renderBarcodeZip(
             @RequestBody @Valid final List<B2bBarcodeRenderRequest> requests,
             @AuthenticationPrincipal final ApiKeyPrincipal principal,
             final HttpServletRequest request,
-            final HttpServletResponse response) {
-        final byte[] zipBytes = barcodeService.renderBarcodeZip(requests, principal, request, response);
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"barcodes.zip\"")
-                .body(zipBytes);
+            final HttpServletResponse response) throws IOException {
+        barcodeService.renderBarcodeZip(requests, principal, request, response, response.getOutputStream());
     }
 
     /**
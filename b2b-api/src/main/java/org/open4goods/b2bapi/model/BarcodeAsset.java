@@ -15,6 +15,10 @@ public class BarcodeAsset extends BaseUuidEntity {
     @Column(nullable = false, unique = true, columnDefinition = "text")
     private String token;
 
+    /** Hash of the rendering parameters, for identical requests to reuse the asset. */
+    @Column(columnDefinition = "text")
+    private String inputHash;
+
     @Column(nullable = false)
     private byte[] content;
 
@@ -37,6 +41,16 @@ public class BarcodeAsset extends BaseUuidEntity {
         this.expiresAt = expiresAt;
     }
 
+    public BarcodeAsset(
+            final String token,
+            final String inputHash,
+            final byte[] content,
+            final String contentType,
+            final Instant expiresAt) {
+        this(token, content, contentType, expiresAt);
+        this.inputHash = inputHash;
+    }
+
     public String getToken() {
         return token;
     }
@@ -45,6 +59,14 @@ public class BarcodeAsset extends BaseUuidEntity {
         this.token = token;
     }
 
+    public String getInputHash() {
+        return inputHash;
+    }
+
+    public void setInputHash(final String inputHash) {
+        this.inputHash = inputHash;
+    }
+
     public byte[] getContent() {
         return content;
     }
@@ -0,0 +1,28 @@
+package org.open4goods.b2bapi.repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import org.open4goods.b2bapi.model.BarcodeAsset;
+
+/**
+ * Batch operations on the barcode assets, keeping their content out of the persistence context.
+ */
+public interface BarcodeAssetBatchRepository {
+
+    /**
+     * Inserts the assets in JDBC batches, then detaches them.
+     *
+     * @param assets the new assets
+     */
+    void insertAll(List<BarcodeAsset> assets);
+
+    /**
+     * Finds the detached assets rendered from one of the given input hashes and expiring after the given instant.
+     *
+     * @param inputHashes the rendering input hashes
+     * @param expiringAfter the minimum expiry of the returned assets
+     * @return the matching assets, possibly several per hash
+     */
+    List<BarcodeAsset> findByInputHashes(Collection<String> inputHashes, Instant expiringAfter);
+}
@@ -0,0 +1,48 @@
+package org.open4goods.b2bapi.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import org.open4goods.b2bapi.model.BarcodeAsset;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Persists the assets with {@code persist} rather than {@code merge}, sparing the select of the assigned ids,
+ * and detaches them once flushed so that large batches do not accumulate their content in memory.
+ */
+class BarcodeAssetBatchRepositoryImpl implements BarcodeAssetBatchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public void insertAll(final List<BarcodeAsset> assets) {
+        if (assets.isEmpty()) {
+            return;
+        }
+        assets.forEach(entityManager::persist);
+        entityManager.flush();
+        assets.forEach(entityManager::detach);
+    }
+
+    @Override
+    public List<BarcodeAsset> findByInputHashes(final Collection<String> inputHashes, final Instant expiringAfter) {
+        if (inputHashes.isEmpty()) {
+            return List.of();
+        }
+        final List<BarcodeAsset> assets = entityManager.createQuery("""
+                        select asset
+                        from BarcodeAsset asset
+                        where asset.inputHash in :inputHashes
+                          and asset.expiresAt > :expiringAfter
+                        """, BarcodeAsset.class)
+                .setParameter("inputHashes", inputHashes)
+                .setParameter("expiringAfter", expiringAfter)
+                .getResultList();
+        assets.forEach(entityManager::detach);
+        return assets;
+    }
+}
@@ -14,7 +14,7 @@ import org.springframework.stereotype.Repository;
  * Repository for cached barcode assets.
  */
 @Repository
-public interface BarcodeAssetRepository extends JpaRepository<BarcodeAsset, UUID> {
+public interface BarcodeAssetRepository extends JpaRepository<BarcodeAsset, UUID>, BarcodeAssetBatchRepository {
 
     Optional<BarcodeAsset> findByToken(String token);
 
@@ -13,6 +13,7 @@ import com.nimbusds.jose.crypto.MACSigner;
 import com.nimbusds.jose.crypto.MACVerifier;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.awt.Color;
@@ -22,20 +23,29 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
 import java.time.Clock;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
 import javax.imageio.ImageTypeSpecifier;
@@ -71,6 +81,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.w3c.dom.Document;
@@ -87,6 +98,7 @@ public class B2bBarcodeService {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(B2bBarcodeService.class);
     public static final String FACET_BARCODE_RENDER = "barcode.render";
+    private static final java.time.Duration ASSET_TTL = java.time.Duration.ofDays(30);
 
     private final B2bApiProperties properties;
     private final BillingCatalogProperties billingCatalogProperties;
@@ -96,6 +108,7 @@ public class B2bBarcodeService {
     private final BarcodeAssetRepository barcodeAssetRepository;
     private final CreditBucketRepository creditBucketRepository;
     private final Clock clock;
+    private final ExecutorService renderExecutor;
 
     @Autowired
     public B2bBarcodeService(
@@ -134,6 +147,14 @@ public class B2bBarcodeService {
         this.barcodeAssetRepository = barcodeAssetRepository;
         this.creditBucketRepository = creditBucketRepository;
         this.clock = clock;
+        this.renderExecutor = Executors.newFixedThreadPool(
+                properties.getBarcode().getRenderThreads(),
+                Thread.ofPlatform().name("barcode-render-", 0).daemon().factory());
+    }
+
+    @PreDestroy
+    void shutdownRenderExecutor() {
+        renderExecutor.shutdownNow();
     }
 
     /**
@@ -163,11 +184,13 @@ public class B2bBarcodeService {
 
         boolean reserved = false;
         long currentRedisBalance = 0;
-        RedisBalanceResult reserveResult = redisMeteringService.reserveCredits(orgId, maxCost);
+        RedisBalanceResult reserveResult = redisMeteringService.reserveCredits(
+                orgId, maxCost, () -> creditBucketRepository.sumLiveCredits(orgId));
         if (reserveResult.status() == RedisBalanceStatus.BALANCE_NOT_LOADED) {
             final long dbBalance = creditBucketRepository.sumLiveCredits(orgId);
             redisMeteringService.reconcileBalance(orgId, dbBalance);
-            reserveResult = redisMeteringService.reserveCredits(orgId, maxCost);
+            reserveResult = redisMeteringService.reserveCredits(
+                    orgId, maxCost, () -> creditBucketRepository.sumLiveCredits(orgId));
         }
 
         if (reserveResult.status() == RedisBalanceStatus.RESERVED) {
@@ -176,7 +199,10 @@ public class B2bBarcodeService {
         } else if (reserveResult.status() == RedisBalanceStatus.INSUFFICIENT_CREDITS) {
             final long duration = clock.millis() - startTime;
             final String requestId = resolveOrCreateRequestId(request);
-            long remaining = creditBucketRepository.sumLiveCredits(orgId);
+            // Durable with credit leases, otherwise read from the buckets
+            final long remaining = reserveResult.balance() >= 0
+                    ? reserveResult.balance()
+                    : creditBucketRepository.sumLiveCredits(orgId);
             setHeadersAndAttributes(request, response, requestId, 0L, remaining, duration);
 
             usageStreamService.emit(new UsageStreamEvent(
@@ -203,17 +229,25 @@ public class B2bBarcodeService {
         int httpStatus = 200;
         long remainingBalance = currentRedisBalance;
 
-        byte[] barcodeBytes = null;
+        final String inputHash = computeInputHash(req);
         String token = null;
-        Instant expiresAt = clock.instant().plus(java.time.Duration.ofDays(30));
+        Instant expiresAt = clock.instant().plus(ASSET_TTL);
 
         try {
-            barcodeBytes = generateBarcodeBytes(req);
-            token = generateSignedToken(req);
-
-            String contentType = req.format().equalsIgnoreCase("svg") ? "image/svg+xml" : "image/png";
-            BarcodeAsset asset = new BarcodeAsset(token, barcodeBytes, contentType, expiresAt);
-            barcodeAssetRepository.save(asset);
+            // Identical parameters share the asset, as long as its URL remains usable long enough
+            final Optional<BarcodeAsset> stored = barcodeAssetRepository
+                    .findByInputHashes(List.of(inputHash), clock.instant().plus(properties.getBarcode().getAssetReuseMinTtl()))
+                    .stream()
+                    .findFirst();
+            if (stored.isPresent()) {
+                token = stored.get().getToken();
+                expiresAt = stored.get().getExpiresAt();
+            } else {
+                final byte[] barcodeBytes = generateBarcodeBytes(req);
+                token = generateSignedToken(req);
+                barcodeAssetRepository.insertAll(List.of(
+                        new BarcodeAsset(token, inputHash, barcodeBytes, contentType(req), expiresAt)));
+            }
 
             billable = true;
             actualCost = 1;
@@ -252,7 +286,7 @@ public class B2bBarcodeService {
                             actualCost = 0;
                         }
 
-                        redisMeteringService.reconcileBalance(orgId, remainingBalance);
+                        redisMeteringService.settled(orgId, remainingBalance);
                     } catch (final InsufficientCreditsException ex) {
                         redisMeteringService.refundCredits(orgId, maxCost);
                         httpStatus = 402;
@@ -284,33 +318,41 @@ public class B2bBarcodeService {
         String publicAssetUrl = properties.getPublicBaseUrl() + "/api/v1/barcodes/assets/" + token;
         B2bBarcodeDimensions dims = new B2bBarcodeDimensions(req.width(), req.height(), req.options().dpi());
         B2bBarcodeRenderMeta meta = new B2bBarcodeRenderMeta(requestId, billable, actualCost);
-        String inputHash = computeInputHash(req);
 
         return new B2bBarcodeRenderResponse(
                 meta,
                 publicAssetUrl,
                 expiresAt,
                 dims,
-                req.format().equalsIgnoreCase("svg") ? "image/svg+xml" : "image/png",
+                contentType(req),
                 Collections.emptyList(),
                 inputHash);
     }
 
     /**
-     * Renders a batch of barcodes, packaging them into a ZIP archive, and billing credits accordingly.
+     * Renders a batch of barcodes, streaming them as a ZIP archive, and billing credits accordingly.
+     * <p>
+     * Barcodes are rendered in parallel by rounds of {@code b2b.barcode.zip-chunk-size}, reusing the assets
+     * already rendered from identical parameters, and each round is written to the archive and stored
+     * before the next one, so that memory does not grow with the batch size. The credit headers are sent
+     * with the first round, announcing the cost of the whole batch: a failure in a later round aborts the
+     * partially sent archive and only the barcodes already written are billed.
+     * <p>
+     * No transaction spans the stream: each round stores its assets in its own, and the debit of the
+     * written barcodes is settled in its own as well, so that it is kept when a later round fails.
      *
      * @param requests the list of rendering requests
      * @param principal the authenticated API key principal
      * @param request servlet request object
      * @param response servlet response object
-     * @return the bytes of the generated ZIP archive
+     * @param out the stream the archive is written to
      */
-    @Transactional
-    public byte[] renderBarcodeZip(
+    public void renderBarcodeZip(
             final List<B2bBarcodeRenderRequest> requests,
             final ApiKeyPrincipal principal,
             final HttpServletRequest request,
-            final HttpServletResponse response) {
+            final HttpServletResponse response,
+            final OutputStream out) {
         ensureServices();
 
         final long startTime = clock.millis();
@@ -327,11 +369,13 @@ public class B2bBarcodeService {
 
         boolean reserved = false;
         long currentRedisBalance = 0;
-        RedisBalanceResult reserveResult = redisMeteringService.reserveCredits(orgId, maxCost);
+        RedisBalanceResult reserveResult = redisMeteringService.reserveCredits(
+                orgId, maxCost, () -> creditBucketRepository.sumLiveCredits(orgId));
         if (reserveResult.status() == RedisBalanceStatus.BALANCE_NOT_LOADED) {
             final long dbBalance = creditBucketRepository.sumLiveCredits(orgId);
             redisMeteringService.reconcileBalance(orgId, dbBalance);
-            reserveResult = redisMeteringService.reserveCredits(orgId, maxCost);
+            reserveResult = redisMeteringService.reserveCredits(
+                    orgId, maxCost, () -> creditBucketRepository.sumLiveCredits(orgId));
         }
 
         if (reserveResult.status() == RedisBalanceStatus.RESERVED) {
@@ -340,7 +384,10 @@ public class B2bBarcodeService {
         } else if (reserveResult.status() == RedisBalanceStatus.INSUFFICIENT_CREDITS) {
             final long duration = clock.millis() - startTime;
             final String requestId = resolveOrCreateRequestId(request);
-            long remaining = creditBucketRepository.sumLiveCredits(orgId);
+            // Durable with credit leases, otherwise read from the buckets
+            final long remaining = reserveResult.balance() >= 0
+                    ? reserveResult.balance()
+                    : creditBucketRepository.sumLiveCredits(orgId);
             setHeadersAndAttributes(request, response, requestId, 0L, remaining, duration);
 
             usageStreamService.emit(new UsageStreamEvent(
@@ -367,44 +414,48 @@ public class B2bBarcodeService {
         int httpStatus = 200;
         long remainingBalance = currentRedisBalance;
 
-        ByteArrayOutputStream zipBaos = new ByteArrayOutputStream();
+        final int chunkSize = properties.getBarcode().getZipChunkSize();
 
         try {
-            try (java.util.zip.ZipOutputStream zos = new java.util.zip.ZipOutputStream(zipBaos)) {
-                for (int i = 0; i < requests.size(); i++) {
-                    B2bBarcodeRenderRequest req = requests.get(i);
-                    byte[] barcodeBytes = generateBarcodeBytes(req);
-                    String token = generateSignedToken(req);
-                    Instant expiresAt = clock.instant().plus(java.time.Duration.ofDays(30));
-
-                    String contentType = req.format().equalsIgnoreCase("svg") ? "image/svg+xml" : "image/png";
-                    BarcodeAsset asset = new BarcodeAsset(token, barcodeBytes, contentType, expiresAt);
-                    barcodeAssetRepository.save(asset);
-
-                    String ext = req.format().equalsIgnoreCase("svg") ? "svg" : "png";
-                    String safeData = req.data().replaceAll("[^a-zA-Z0-9_-]", "");
-                    String entryName = String.format("%d_%s_%s.%s", i, req.type().toLowerCase(), safeData, ext);
-
-                    java.util.zip.ZipEntry entry = new java.util.zip.ZipEntry(entryName);
-                    zos.putNextEntry(entry);
-                    zos.write(barcodeBytes);
+            final ZipOutputStream zos = new ZipOutputStream(out);
+            for (int from = 0; from < requests.size(); from += chunkSize) {
+                final List<B2bBarcodeRenderRequest> chunk = requests.subList(from, Math.min(from + chunkSize, requests.size()));
+                final List<byte[]> contents = renderChunk(chunk);
+
+                if (from == 0) {
+                    startZipResponse(request, response, requestId, maxCost, currentRedisBalance, clock.millis() - startTime);
+                }
+                for (int i = 0; i < chunk.size(); i++) {
+                    final B2bBarcodeRenderRequest req = chunk.get(i);
+                    final String ext = req.format().equalsIgnoreCase("svg") ? "svg" : "png";
+                    final String safeData = req.data().replaceAll("[^a-zA-Z0-9_-]", "");
+                    final String entryName = String.format("%d_%s_%s.%s", from + i, req.type().toLowerCase(), safeData, ext);
+
+                    zos.putNextEntry(new ZipEntry(entryName));
+                    zos.write(contents.get(i));
                     zos.closeEntry();
 
                     actualCost++;
                 }
             }
+            // The servlet stream is left open to the container
+            zos.finish();
+            zos.flush();
             billable = true;
         } catch (final InvalidBarcodeException e) {
             httpStatus = 400;
             noPayReason = "invalid-input";
+            discardPartialArchive(response);
             throw e;
         } catch (final RuntimeException e) {
             httpStatus = 500;
             noPayReason = "render-failure";
+            discardPartialArchive(response);
             throw e;
         } catch (final Throwable t) {
             httpStatus = 500;
             noPayReason = "render-failure";
+            discardPartialArchive(response);
             throw new RuntimeException(t);
         } finally {
             if (reserved) {
@@ -433,7 +484,7 @@ public class B2bBarcodeService {
                         if (refund > 0) {
                             redisMeteringService.refundCredits(orgId, refund);
                         }
-                        redisMeteringService.reconcileBalance(orgId, remainingBalance);
+                        redisMeteringService.settled(orgId, remainingBalance);
                     } catch (final InsufficientCreditsException ex) {
                         redisMeteringService.refundCredits(orgId, maxCost);
                         httpStatus = 402;
@@ -462,7 +513,77 @@ public class B2bBarcodeService {
                     Instant.now(clock)));
         }
 
-        return zipBaos.toByteArray();
+    }
+
+    /**
+     * Renders the barcodes of a ZIP round, in parallel. Assets already rendered from the same parameters are
+     * reused, and the newly rendered ones are stored in a single batch.
+     *
+     * @param chunk the requests of the round
+     * @return the barcode bytes, in the order of the requests
+     */
+    private List<byte[]> renderChunk(final List<B2bBarcodeRenderRequest> chunk) {
+        final Instant now = clock.instant();
+        final List<String> hashes = chunk.stream().map(B2bBarcodeService::computeInputHash).toList();
+
+        final Map<String, byte[]> contents = new HashMap<>();
+        for (final BarcodeAsset asset : barcodeAssetRepository.findByInputHashes(new HashSet<>(hashes), now)) {
+            contents.putIfAbsent(asset.getInputHash(), asset.getContent());
+        }
+
+        final Map<String, B2bBarcodeRenderRequest> missing = new LinkedHashMap<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            if (!contents.containsKey(hashes.get(i))) {
+                missing.putIfAbsent(hashes.get(i), chunk.get(i));
+            }
+        }
+        final Map<String, CompletableFuture<byte[]>> renders = new LinkedHashMap<>();
+        missing.forEach((hash, req) -> renders.put(hash,
+                CompletableFuture.supplyAsync(() -> generateBarcodeBytes(req), renderExecutor)));
+
+        final Instant expiresAt = now.plus(ASSET_TTL);
+        final List<BarcodeAsset> created = new ArrayList<>(renders.size());
+        try {
+            for (final Map.Entry<String, CompletableFuture<byte[]>> render : renders.entrySet()) {
+                final B2bBarcodeRenderRequest req = missing.get(render.getKey());
+                final byte[] content = render.getValue().join();
+                contents.put(render.getKey(), content);
+                created.add(new BarcodeAsset(generateSignedToken(req), render.getKey(), content, contentType(req), expiresAt));
+            }
+        } catch (final CompletionException e) {
+            renders.values().forEach(render -> render.cancel(false));
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        barcodeAssetRepository.insertAll(created);
+
+        return hashes.stream().map(contents::get).toList();
+    }
+
+    private void startZipResponse(
+            final HttpServletRequest request,
+            final HttpServletResponse response,
+            final String requestId,
+            final long creditsConsumed,
+            final long creditsRemaining,
+            final long responseTimeMs) {
+        setHeadersAndAttributes(request, response, requestId, creditsConsumed, creditsRemaining, responseTimeMs);
+        if (response != null) {
+            response.setContentType("application/zip");
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"barcodes.zip\"");
+        }
+    }
+
+    /**
+     * Drops the archive headers and the bytes still buffered, for the error to be rendered instead (the credit
+     * headers are set again once settled). Once the response is committed, the client gets a truncated archive.
+     */
+    private static void discardPartialArchive(final HttpServletResponse response) {
+        if (response != null && !response.isCommitted()) {
+            response.reset();
+        }
     }
 
     /**
@@ -486,10 +607,9 @@ public class B2bBarcodeService {
         try {
             B2bBarcodeRenderRequest req = parseSignedToken(token);
             byte[] content = generateBarcodeBytes(req);
-            String contentType = req.format().equalsIgnoreCase("svg") ? "image/svg+xml" : "image/png";
 
-            Instant expiresAt = clock.instant().plus(java.time.Duration.ofDays(30));
-            BarcodeAsset asset = new BarcodeAsset(token, content, contentType, expiresAt);
+            Instant expiresAt = clock.instant().plus(ASSET_TTL);
+            BarcodeAsset asset = new BarcodeAsset(token, computeInputHash(req), content, contentType(req), expiresAt);
             barcodeAssetRepository.save(asset);
             return asset;
         } catch (Exception exception) {
@@ -505,7 +625,7 @@ public class B2bBarcodeService {
      */
     public String generateSignedToken(final B2bBarcodeRenderRequest req) {
         final Instant issuedAt = clock.instant();
-        final Instant expiresAt = issuedAt.plus(java.time.Duration.ofDays(30));
+        final Instant expiresAt = issuedAt.plus(ASSET_TTL);
 
         try {
             Map<String, String> metaMap = new LinkedHashMap<>();
@@ -674,6 +794,10 @@ public class B2bBarcodeService {
         }
     }
 
+    private static String contentType(final B2bBarcodeRenderRequest req) {
+        return req.format().equalsIgnoreCase("svg") ? "image/svg+xml" : "image/png";
+    }
+
     /**
      * Generates barcode output bytes based on format (PNG or SVG).
      *
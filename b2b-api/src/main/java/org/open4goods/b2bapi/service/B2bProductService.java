@@ -157,11 +157,13 @@ public class B2bProductService {
         boolean reserved = false;
         long currentRedisBalance = 0;
 
-        RedisBalanceResult reserveResult = redisMeteringService.reserveCredits(orgId, maxCost);
+        RedisBalanceResult reserveResult = redisMeteringService.reserveCredits(
+                orgId, maxCost, () -> creditBucketRepository.sumLiveCredits(orgId));
         if (reserveResult.status() == RedisBalanceStatus.BALANCE_NOT_LOADED) {
             final long dbBalance = creditBucketRepository.sumLiveCredits(orgId);
             redisMeteringService.reconcileBalance(orgId, dbBalance);
-            reserveResult = redisMeteringService.reserveCredits(orgId, maxCost);
+            reserveResult = redisMeteringService.reserveCredits(
+                    orgId, maxCost, () -> creditBucketRepository.sumLiveCredits(orgId));
         }
 
         if (reserveResult.status() == RedisBalanceStatus.RESERVED) {
@@ -170,11 +172,14 @@ public class B2bProductService {
         } else if (reserveResult.status() == RedisBalanceStatus.INSUFFICIENT_CREDITS) {
             final long duration = clock.millis() - startTime;
             final String requestId = resolveOrCreateRequestId(request);
-            long remaining = 0;
-            try {
-                remaining = creditBucketRepository.sumLiveCredits(orgId);
-            } catch (final Exception e) {
-                LOGGER.warn("Failed to retrieve durable credit balance for orgId={}", orgId, e);
+            // Durable with credit leases, otherwise read from the buckets
+            long remaining = Math.max(0L, reserveResult.balance());
+            if (reserveResult.balance() < 0) {
+                try {
+                    remaining = creditBucketRepository.sumLiveCredits(orgId);
+                } catch (final Exception e) {
+                    LOGGER.warn("Failed to retrieve durable credit balance for orgId={}", orgId, e);
+                }
             }
             setHeadersAndAttributes(request, response, requestId, 0L, remaining, duration);
 
@@ -263,7 +268,7 @@ public class B2bProductService {
                         if (refund > 0) {
                             redisMeteringService.refundCredits(orgId, refund);
                         }
-                        redisMeteringService.reconcileBalance(orgId, remainingBalance);
+                        redisMeteringService.settled(orgId, remainingBalance);
 
                     } catch (final InsufficientCreditsException ex) {
                         // Rare: Buckets expired/changed between reservation and settlement
@@ -16,6 +16,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
@@ -54,7 +55,8 @@ public class CreditLedgerService {
     }
 
     /**
-     * Debits the requested cost from live buckets, ordered by earliest expiry.
+     * Debits the requested cost from live buckets, ordered by earliest expiry. The debit is committed in its
+     * own transaction, whatever the outcome of the caller one.
      *
      * @param organizationId organization id
      * @param requestId idempotency request id
@@ -63,7 +65,7 @@ public class CreditLedgerService {
      * @param cost credits to debit
      * @return durable settlement result
      */
-    @Transactional(isolation = Isolation.SERIALIZABLE)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, isolation = Isolation.SERIALIZABLE)
     public CreditSettlementResult settleDebit(
             final UUID organizationId,
             final String requestId,
@@ -4,10 +4,17 @@ import java.nio.charset.StandardCharsets;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 import org.open4goods.b2bapi.config.B2bApiProperties;
 import org.open4goods.b2bapi.exception.RateLimitExceededException;
 import org.open4goods.b2bapi.exception.RedisUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.dao.DataAccessException;
@@ -16,12 +23,36 @@ import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PreDestroy;
+
 /**
  * Loads and invokes Redis Lua scripts for metered hot-path operations.
+ *
+ * <p>When {@code b2b.redis.lease.enabled} is set, credits and API key rate-limit tokens are
+ * leased by blocks to this node and consumed locally, a request then needing no Redis round
+ * trip until its lease is exhausted or expires:</p>
+ * <ul>
+ * <li>a credit lease is atomically moved from the organization hot balance to a per-node
+ * entry of the organization leases hash, stamped with its expiry. It takes at most half of
+ * the hot balance, leaving the rest to the other nodes. The node stops using it before that
+ * expiry, and renews it by reporting what it has left;</li>
+ * <li>a request the leases can not cover is checked against the durable balance before
+ * being rejected: the missing credits may be leased to other nodes. If covered, it is
+ * reserved on the hot balance regardless, which then owes them until reconciliation;</li>
+ * <li>reconciliation sets the hot balance to the durable balance minus the live leases,
+ * dropping the expired ones: credits leased by a lost node come back once their lease
+ * expired. Unused credits are returned on shutdown;</li>
+ * <li>hot balance plus leases never exceed the durable balance, and the durable debit
+ * remains the final guard: credits can not be over-spent;</li>
+ * <li>rate-limit tokens are leased from the current window counter, at most half of what the
+ * window has left and never beyond its limit. Unused tokens are returned on shutdown.</li>
+ * </ul>
  */
 @Service
 public class RedisMeteringService {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisMeteringService.class);
+
     private static final String BALANCE_PREFIX = "b2b:org:";
     private static final String RATE_LIMIT_PREFIX = "b2b:ratelimit:";
 
@@ -34,17 +65,87 @@ public class RedisMeteringService {
             return redis.call('DECRBY', KEYS[1], cost)
             """;
 
+    /**
+     * Reserves without a balance check, the hot balance then owing what the leases held.
+     */
+    private static final String OVERDRAW_SCRIPT = """
+            if not redis.call('GET', KEYS[1]) then return -2 end
+            return redis.call('DECRBY', KEYS[1], tonumber(ARGV[1]))
+            """;
+
     private static final String REFUND_SCRIPT = """
             if not redis.call('GET', KEYS[1]) then return -2 end
             return redis.call('INCRBY', KEYS[1], tonumber(ARGV[1]))
             """;
 
     private static final String RECONCILE_SCRIPT = """
-            redis.call('SET', KEYS[1], tonumber(ARGV[1]))
+            local leased = 0
+            local now = tonumber(ARGV[3])
+            local entries = redis.call('HGETALL', KEYS[2])
+            for i = 1, #entries, 2 do
+              local amount, expires = string.match(entries[i + 1], '^(%d+):(%d+)$')
+              if amount and tonumber(expires) > now then
+                leased = leased + tonumber(amount)
+              else
+                redis.call('HDEL', KEYS[2], entries[i])
+              end
+            end
+            local bal = tonumber(ARGV[1]) - leased
+            if bal < 0 then bal = 0 end
+            redis.call('SET', KEYS[1], bal)
             redis.call('EXPIRE', KEYS[1], tonumber(ARGV[2]))
             return 1
             """;
 
+    /**
+     * Tops the node lease up to the wanted amount, taking at most half of the hot balance
+     * unless the cost needs more. The node reports what it has left, capped by its live lease
+     * entry (nothing if expired). Returns {status, lease total, hot balance}.
+     */
+    private static final String LEASE_SCRIPT = """
+            local bal = redis.call('GET', KEYS[1])
+            if not bal then return {-2, 0, 0} end
+            bal = tonumber(bal)
+            local held = tonumber(ARGV[2])
+            local recorded = 0
+            local entry = redis.call('HGET', KEYS[2], ARGV[1])
+            if entry then
+              local amount, expires = string.match(entry, '^(%d+):(%d+)$')
+              if amount and tonumber(expires) > tonumber(ARGV[5]) then recorded = tonumber(amount) end
+            end
+            if held > recorded then held = recorded end
+            local take = tonumber(ARGV[3]) - held
+            local share = math.max(math.ceil(bal / 2), tonumber(ARGV[4]) - held)
+            if take > share then take = share end
+            if take > bal then take = bal end
+            if take < 0 then take = 0 end
+            local status = 1
+            if held + take < tonumber(ARGV[4]) then
+              take = 0
+              status = -1
+            end
+            if take > 0 then bal = redis.call('DECRBY', KEYS[1], take) end
+            local total = held + take
+            if total > 0 then
+              redis.call('HSET', KEYS[2], ARGV[1], total .. ':' .. ARGV[6])
+            else
+              redis.call('HDEL', KEYS[2], ARGV[1])
+            end
+            redis.call('PEXPIRE', KEYS[2], tonumber(ARGV[7]))
+            return {status, total, bal}
+            """;
+
+    private static final String RETURN_LEASE_SCRIPT = """
+            local entry = redis.call('HGET', KEYS[2], ARGV[1])
+            redis.call('HDEL', KEYS[2], ARGV[1])
+            if not entry then return 0 end
+            local amount, expires = string.match(entry, '^(%d+):(%d+)$')
+            if not amount or tonumber(expires) <= tonumber(ARGV[3]) then return 0 end
+            local back = math.min(tonumber(ARGV[2]), tonumber(amount))
+            if back > 0 and redis.call('GET', KEYS[1]) then redis.call('INCRBY', KEYS[1], back) end
+            return back
+            """;
+
     private static final String RATE_LIMIT_SCRIPT = """
             local n = redis.call('INCR', KEYS[1])
             if n == 1 then redis.call('EXPIRE', KEYS[1], tonumber(ARGV[2])) end
@@ -52,12 +153,36 @@ public class RedisMeteringService {
             return n
             """;
 
+    /**
+     * Leases up to a block of tokens of the window, at most half of what it has left, and only
+     * counts the granted ones. Returns {granted tokens, prior count}.
+     */
+    private static final String RATE_LIMIT_LEASE_SCRIPT = """
+            local before = tonumber(redis.call('GET', KEYS[1]) or '0')
+            local limit = tonumber(ARGV[1])
+            if before >= limit then return {0, before} end
+            local granted = math.min(tonumber(ARGV[3]), math.ceil((limit - before) / 2))
+            local n = redis.call('INCRBY', KEYS[1], granted)
+            if n == granted then redis.call('EXPIRE', KEYS[1], tonumber(ARGV[2])) end
+            return {granted, before}
+            """;
+
+    private static final String RETURN_TOKENS_SCRIPT = """
+            if not redis.call('GET', KEYS[1]) then return 0 end
+            return redis.call('DECRBY', KEYS[1], tonumber(ARGV[1]))
+            """;
+
     private final StringRedisTemplate redisTemplate;
     private final B2bApiProperties properties;
     private final Clock clock;
 
     private volatile LoadedScripts loadedScripts;
 
+    /** Identifies the leases of this node. */
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<UUID, CreditLease> creditLeases = new ConcurrentHashMap<>();
+    private final Map<UUID, RateLimitLease> rateLimitLeases = new ConcurrentHashMap<>();
+
     @Autowired
     public RedisMeteringService(
             final ObjectProvider<StringRedisTemplate> redisTemplate,
@@ -82,6 +207,39 @@ public class RedisMeteringService {
      * @return reservation outcome
      */
     public RedisBalanceResult reserveCredits(final UUID organizationId, final long maxCost) {
+        return reserveCredits(organizationId, maxCost, null);
+    }
+
+    /**
+     * Reserves the maximum request cost from the organization hot balance. With credit
+     * leases, a cost the leases can not cover is checked against the durable balance before
+     * being rejected, and is then overdrawn from the hot balance: the durable debit remains
+     * the guard.
+     *
+     * @param organizationId organization id
+     * @param maxCost maximum facet cost
+     * @param durableBalance supplier of the authoritative balance, null to reject on the leases alone
+     * @return reservation outcome, with a negative balance when unknown
+     */
+    public RedisBalanceResult reserveCredits(
+            final UUID organizationId,
+            final long maxCost,
+            final LongSupplier durableBalance) {
+        if (leasing()) {
+            final RedisBalanceResult result = reserveFromLease(organizationId, maxCost);
+            if (result.status() != RedisBalanceStatus.INSUFFICIENT_CREDITS || durableBalance == null) {
+                return result;
+            }
+            final long balance = durableBalance.getAsLong();
+            if (balance < maxCost) {
+                return new RedisBalanceResult(RedisBalanceStatus.INSUFFICIENT_CREDITS, balance);
+            }
+            LOGGER.debug("Credits of organization {} leased to other nodes, overdrawing the hot balance", organizationId);
+            if (evalInteger(sha().overdrawSha(), balanceKey(organizationId), Long.toString(maxCost)) == -2L) {
+                return new RedisBalanceResult(RedisBalanceStatus.BALANCE_NOT_LOADED, -2L);
+            }
+            return new RedisBalanceResult(RedisBalanceStatus.RESERVED, balance - maxCost);
+        }
         final long result = evalInteger(sha().reserveSha(), balanceKey(organizationId), Long.toString(maxCost));
         if (result == -2L) {
             return new RedisBalanceResult(RedisBalanceStatus.BALANCE_NOT_LOADED, result);
@@ -100,6 +258,12 @@ public class RedisMeteringService {
      * @return refund outcome
      */
     public RedisBalanceResult refundCredits(final UUID organizationId, final long amount) {
+        if (leasing()) {
+            final CreditLease lease = creditLeases.get(organizationId);
+            if (lease != null && lease.refund(amount, clock.millis())) {
+                return new RedisBalanceResult(RedisBalanceStatus.UPDATED, lease.estimatedBalance());
+            }
+        }
         final long result = evalInteger(sha().refundSha(), balanceKey(organizationId), Long.toString(amount));
         if (result == -2L) {
             return new RedisBalanceResult(RedisBalanceStatus.BALANCE_NOT_LOADED, result);
@@ -116,9 +280,103 @@ public class RedisMeteringService {
     public void reconcileBalance(final UUID organizationId, final long durableBalance) {
         evalInteger(
                 sha().reconcileSha(),
-                balanceKey(organizationId),
+                new String[] {balanceKey(organizationId), leasesKey(organizationId)},
                 Long.toString(durableBalance),
-                Long.toString(properties.getRedis().getBalanceTtl().toSeconds()));
+                Long.toString(properties.getRedis().getBalanceTtl().toSeconds()),
+                Long.toString(clock.millis()));
+    }
+
+    /**
+     * Records the durable balance resulting from a settled debit. Reconciles the hot balance,
+     * or with leases, only caps the local lease to the durable balance: the hot balance then
+     * already excludes the leased credits.
+     *
+     * @param organizationId organization id
+     * @param durableBalance authoritative balance after the debit
+     */
+    public void settled(final UUID organizationId, final long durableBalance) {
+        if (!leasing()) {
+            reconcileBalance(organizationId, durableBalance);
+            return;
+        }
+        final CreditLease lease = creditLeases.get(organizationId);
+        if (lease != null) {
+            lease.capTo(durableBalance);
+        }
+    }
+
+    /**
+     * Returns the unused credit leases of this node to the organizations hot balances.
+     */
+    @PreDestroy
+    public void returnLeases() {
+        final long now = clock.millis();
+        creditLeases.forEach((organizationId, lease) -> {
+            final long unused = lease.release();
+            if (unused <= 0) {
+                return;
+            }
+            try {
+                evalInteger(
+                        sha().returnLeaseSha(),
+                        new String[] {balanceKey(organizationId), leasesKey(organizationId)},
+                        nodeId,
+                        Long.toString(unused),
+                        Long.toString(now));
+            } catch (final RedisUnavailableException exception) {
+                LOGGER.warn("Credit lease of organization {} not returned, given back on its expiry", organizationId);
+            }
+        });
+        final long windowIndex = Instant.now(clock).getEpochSecond() / properties.getRatelimit().getWindow().toSeconds();
+        rateLimitLeases.forEach((apiKeyId, lease) -> {
+            final long unused = lease.release(windowIndex);
+            if (unused <= 0) {
+                return;
+            }
+            try {
+                evalInteger(sha().returnTokensSha(), rateLimitKey(apiKeyId, windowIndex), Long.toString(unused));
+            } catch (final RedisUnavailableException exception) {
+                LOGGER.warn("Rate-limit tokens of API key {} not returned, given back with the window", apiKeyId);
+            }
+        });
+    }
+
+    private RedisBalanceResult reserveFromLease(final UUID organizationId, final long cost) {
+        final CreditLease lease = creditLeases.computeIfAbsent(organizationId, id -> new CreditLease());
+        if (lease.tryConsume(cost, clock.millis())) {
+            return new RedisBalanceResult(RedisBalanceStatus.RESERVED, lease.estimatedBalance());
+        }
+        // A single renewal per organization at once, the others wait for its outcome
+        synchronized (lease) {
+            final long now = clock.millis();
+            if (lease.tryConsume(cost, now)) {
+                return new RedisBalanceResult(RedisBalanceStatus.RESERVED, lease.estimatedBalance());
+            }
+            final B2bApiProperties.Lease config = properties.getRedis().getLease();
+            final long ttl = config.getTtl().toMillis();
+            final long held = lease.remaining();
+            final List<Object> result = evalMulti(
+                    sha().leaseSha(),
+                    new String[] {balanceKey(organizationId), leasesKey(organizationId)},
+                    nodeId,
+                    Long.toString(held),
+                    Long.toString(Math.max(config.getCreditBlock(), cost)),
+                    Long.toString(cost),
+                    Long.toString(now),
+                    Long.toString(now + ttl),
+                    Long.toString(2 * ttl));
+            final long status = (Long) result.get(0);
+            if (status == -2L) {
+                return new RedisBalanceResult(RedisBalanceStatus.BALANCE_NOT_LOADED, status);
+            }
+            // Usable until a fifth of the ttl before the lease entry expires
+            lease.renewed(held, (Long) result.get(1), (Long) result.get(2), now + ttl - ttl / 5);
+            if (status == 1L && lease.tryConsume(cost, now)) {
+                return new RedisBalanceResult(RedisBalanceStatus.RESERVED, lease.estimatedBalance());
+            }
+            // Other nodes may hold the missing credits, the balance is only known durably
+            return new RedisBalanceResult(RedisBalanceStatus.INSUFFICIENT_CREDITS, -1L);
+        }
     }
 
     /**
@@ -131,6 +389,9 @@ public class RedisMeteringService {
         final Duration window = properties.getRatelimit().getWindow();
         final long windowSeconds = window.toSeconds();
         final long windowIndex = Instant.now(clock).getEpochSecond() / windowSeconds;
+        if (leasing()) {
+            return acquireRateLimitToken(apiKeyId, windowIndex, windowSeconds);
+        }
         final long result = evalInteger(
                 sha().rateLimitSha(),
                 rateLimitKey(apiKeyId, windowIndex),
@@ -165,10 +426,40 @@ public class RedisMeteringService {
         return result;
     }
 
+    private long acquireRateLimitToken(final UUID apiKeyId, final long windowIndex, final long windowSeconds) {
+        final RateLimitLease lease = rateLimitLeases.computeIfAbsent(apiKeyId, id -> new RateLimitLease());
+        synchronized (lease) {
+            long count = lease.tryAcquire(windowIndex);
+            if (count > 0) {
+                return count;
+            }
+            final List<Object> result = evalMulti(
+                    sha().rateLimitLeaseSha(),
+                    new String[] {rateLimitKey(apiKeyId, windowIndex)},
+                    Integer.toString(properties.getRatelimit().getRequestsPerMinute()),
+                    Long.toString(windowSeconds),
+                    Integer.toString(properties.getRedis().getLease().getRateLimitBlock()));
+            lease.renewed(windowIndex, (Long) result.get(0), (Long) result.get(1));
+            count = lease.tryAcquire(windowIndex);
+            if (count <= 0) {
+                throw new RateLimitExceededException("Rate limit exceeded.");
+            }
+            return count;
+        }
+    }
+
     public String balanceKey(final UUID organizationId) {
         return BALANCE_PREFIX + organizationId + ":balance";
     }
 
+    String leasesKey(final UUID organizationId) {
+        return BALANCE_PREFIX + organizationId + ":leases";
+    }
+
+    private boolean leasing() {
+        return properties.getRedis().getLease().isEnabled();
+    }
+
     private String rateLimitKey(final UUID apiKeyId, final long windowIndex) {
         return RATE_LIMIT_PREFIX + apiKeyId + ":" + windowIndex;
     }
@@ -195,28 +486,51 @@ public class RedisMeteringService {
         try {
             return redisTemplate.execute((RedisCallback<LoadedScripts>) connection -> new LoadedScripts(
                     connection.scriptLoad(bytes(RESERVE_SCRIPT)),
+                    connection.scriptLoad(bytes(OVERDRAW_SCRIPT)),
                     connection.scriptLoad(bytes(REFUND_SCRIPT)),
                     connection.scriptLoad(bytes(RECONCILE_SCRIPT)),
-                    connection.scriptLoad(bytes(RATE_LIMIT_SCRIPT))));
+                    connection.scriptLoad(bytes(RATE_LIMIT_SCRIPT)),
+                    connection.scriptLoad(bytes(LEASE_SCRIPT)),
+                    connection.scriptLoad(bytes(RETURN_LEASE_SCRIPT)),
+                    connection.scriptLoad(bytes(RATE_LIMIT_LEASE_SCRIPT)),
+                    connection.scriptLoad(bytes(RETURN_TOKENS_SCRIPT))));
         } catch (final DataAccessException exception) {
             throw new RedisUnavailableException("Redis Lua scripts could not be loaded.");
         }
     }
 
     private long evalInteger(final String sha, final String key, final String... args) {
+        return evalInteger(sha, new String[] {key}, args);
+    }
+
+    private long evalInteger(final String sha, final String[] keys, final String... args) {
+        final Long result = eval(sha, ReturnType.INTEGER, keys, args);
+        if (result == null) {
+            throw new RedisUnavailableException("Redis Lua script returned no result.");
+        }
+        return result;
+    }
+
+    private List<Object> evalMulti(final String sha, final String[] keys, final String... args) {
+        final List<Object> result = eval(sha, ReturnType.MULTI, keys, args);
+        if (result == null || result.size() < 2) {
+            throw new RedisUnavailableException("Redis Lua script returned no result.");
+        }
+        return result;
+    }
+
+    private <T> T eval(final String sha, final ReturnType returnType, final String[] keys, final String... args) {
         ensureRedisTemplate();
-        final byte[][] keysAndArgs = new byte[args.length + 1][];
-        keysAndArgs[0] = bytes(key);
+        final byte[][] keysAndArgs = new byte[keys.length + args.length][];
+        for (int i = 0; i < keys.length; i++) {
+            keysAndArgs[i] = bytes(keys[i]);
+        }
         for (int i = 0; i < args.length; i++) {
-            keysAndArgs[i + 1] = bytes(args[i]);
+            keysAndArgs[keys.length + i] = bytes(args[i]);
         }
         try {
-            final Long result = redisTemplate.execute((RedisCallback<Long>) connection ->
-                    connection.evalSha(sha, ReturnType.INTEGER, 1, keysAndArgs));
-            if (result == null) {
-                throw new RedisUnavailableException("Redis Lua script returned no result.");
-            }
-            return result;
+            return redisTemplate.execute((RedisCallback<T>) connection ->
+                    connection.evalSha(sha, returnType, keys.length, keysAndArgs));
         } catch (final DataAccessException exception) {
             throw new RedisUnavailableException("Redis Lua script execution failed.");
         }
@@ -234,8 +548,110 @@ public class RedisMeteringService {
 
     private record LoadedScripts(
             String reserveSha,
+            String overdrawSha,
             String refundSha,
             String reconcileSha,
-            String rateLimitSha) {
+            String rateLimitSha,
+            String leaseSha,
+            String returnLeaseSha,
+            String rateLimitLeaseSha,
+            String returnTokensSha) {
+    }
+
+    /**
+     * Credits of an organization leased to this node.
+     */
+    static final class CreditLease {
+
+        private final AtomicLong remaining = new AtomicLong();
+        private volatile long usableUntil;
+        private volatile long knownHotBalance;
+
+        boolean tryConsume(final long cost, final long now) {
+            if (now >= usableUntil) {
+                return false;
+            }
+            long current = remaining.get();
+            while (current >= cost) {
+                if (remaining.compareAndSet(current, current - cost)) {
+                    return true;
+                }
+                current = remaining.get();
+            }
+            return false;
+        }
+
+        boolean refund(final long amount, final long now) {
+            if (now >= usableUntil) {
+                return false;
+            }
+            remaining.addAndGet(amount);
+            return true;
+        }
+
+        /**
+         * Applies a renewal. Credits consumed or refunded meanwhile are kept, the lease total
+         * having been computed from {@code held}.
+         */
+        void renewed(final long held, final long total, final long hotBalance, final long usableUntil) {
+            remaining.addAndGet(total - held);
+            this.knownHotBalance = hotBalance;
+            this.usableUntil = usableUntil;
+        }
+
+        void capTo(final long durableBalance) {
+            remaining.getAndUpdate(current -> Math.min(current, Math.max(0L, durableBalance)));
+        }
+
+        long release() {
+            usableUntil = 0L;
+            return remaining.getAndSet(0L);
+        }
+
+        long remaining() {
+            return Math.max(0L, remaining.get());
+        }
+
+        long estimatedBalance() {
+            return remaining() + knownHotBalance;
+        }
+    }
+
+    /**
+     * Rate-limit tokens of an API key leased to this node for a window.
+     */
+    static final class RateLimitLease {
+
+        private long windowIndex = -1L;
+        private long granted;
+        private long used;
+        private long priorCount;
+
+        /**
+         * @return the approximate request count inside the window, 0 if no token is left
+         */
+        synchronized long tryAcquire(final long currentWindow) {
+            if (windowIndex != currentWindow || used >= granted) {
+                return 0L;
+            }
+            used++;
+            return priorCount + used;
+        }
+
+        synchronized void renewed(final long currentWindow, final long granted, final long priorCount) {
+            this.windowIndex = currentWindow;
+            this.granted = granted;
+            this.used = 0L;
+            this.priorCount = priorCount;
+        }
+
+        /**
+         * @return the tokens left unused in the current window
+         */
+        synchronized long release(final long currentWindow) {
+            final long unused = windowIndex == currentWindow ? granted - used : 0L;
+            granted = used;
+            return unused;
+        }
     }
 }
@@ -2,29 +2,56 @@ package org.open4goods.b2bapi.service;
 
 import java.time.Clock;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.open4goods.b2bapi.config.B2bApiProperties;
 import org.open4goods.b2bapi.exception.RedisUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.StringRedisConnection;
 import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PreDestroy;
+
 /**
  * Emits finished-request analytics events to the Redis usage stream.
+ *
+ * <p>With {@code b2b.redis.usage-stream-batch-size} above 1, events are buffered and
+ * written by a background flusher in a single pipelined round trip, once a batch is full or
+ * after the flush interval. Events whose write failed are kept for the next flush; requests
+ * only fail once the buffer is full.</p>
  */
 @Service
 public class UsageStreamService {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(UsageStreamService.class);
+
     public static final String USAGE_STREAM_KEY = "b2b:usage";
 
     private final StringRedisTemplate redisTemplate;
     private final B2bApiProperties properties;
     private final Clock clock;
 
+    private final BlockingDeque<Map<String, String>> buffer;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private volatile ScheduledExecutorService flusher;
+
     @Autowired
     public UsageStreamService(
             final ObjectProvider<StringRedisTemplate> redisTemplate,
@@ -39,6 +66,7 @@ public class UsageStreamService {
         this.redisTemplate = redisTemplate;
         this.properties = properties;
         this.clock = clock;
+        this.buffer = new LinkedBlockingDeque<>(properties.getRedis().getUsageStreamBufferCapacity());
     }
 
     /**
@@ -51,6 +79,10 @@ public class UsageStreamService {
             throw new RedisUnavailableException("Redis usage stream is unavailable.");
         }
         final Map<String, String> fields = fields(event);
+        if (batching()) {
+            enqueue(fields);
+            return;
+        }
         try {
             redisTemplate.opsForStream().add(MapRecord.create(USAGE_STREAM_KEY, fields));
             redisTemplate.opsForStream().trim(
@@ -62,6 +94,120 @@ public class UsageStreamService {
         }
     }
 
+    /**
+     * Stops the background flusher and writes the buffered events.
+     */
+    @PreDestroy
+    public void close() {
+        final ScheduledExecutorService current = flusher;
+        if (current != null) {
+            current.shutdown();
+        }
+        flushQuietly();
+    }
+
+    /**
+     * Writes the buffered events, in batches sent as single pipelined round trips.
+     */
+    public void flush() {
+        final int batchSize = properties.getRedis().getUsageStreamBatchSize();
+        flushRequested.set(false);
+        while (!buffer.isEmpty()) {
+            final List<Map<String, String>> batch = new ArrayList<>(batchSize);
+            buffer.drainTo(batch, batchSize);
+            try {
+                redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    final StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                    for (final Map<String, String> fields : batch) {
+                        stringConnection.xAdd(StreamRecords.string(fields).withStreamKey(USAGE_STREAM_KEY));
+                    }
+                    stringConnection.xTrim(USAGE_STREAM_KEY, properties.getRedis().getUsageStreamMaxlen(), true);
+                    return null;
+                });
+            } catch (final RedisPipelineException exception) {
+                // Only the rejected events are written again, the others are already in the stream
+                final List<Map<String, String>> failed = failed(batch, exception.getPipelineResult());
+                rebuffer(failed);
+                LOGGER.warn("Usage stream write of {} events out of {} failed, {} buffered", failed.size(), batch.size(), buffer.size());
+                return;
+            } catch (final DataAccessException exception) {
+                rebuffer(batch);
+                LOGGER.warn("Usage stream write of {} events failed, {} buffered", batch.size(), buffer.size());
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the events whose XADD failed, the pipeline results following the batch order
+     */
+    private List<Map<String, String>> failed(final List<Map<String, String>> batch, final List<Object> results) {
+        if (results == null || results.size() < batch.size()) {
+            return batch;
+        }
+        final List<Map<String, String>> failed = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (results.get(i) instanceof Exception) {
+                failed.add(batch.get(i));
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Keeps events in order for the next flush, the newest being dropped if full.
+     */
+    private void rebuffer(final List<Map<String, String>> events) {
+        for (int i = events.size() - 1; i >= 0; i--) {
+            buffer.offerFirst(events.get(i));
+        }
+    }
+
+    private void enqueue(final Map<String, String> fields) {
+        if (!buffer.offer(fields)) {
+            throw new RedisUnavailableException("Redis usage stream buffer is full.");
+        }
+        final ScheduledExecutorService executor = flusher();
+        if (buffer.size() >= properties.getRedis().getUsageStreamBatchSize() && flushRequested.compareAndSet(false, true)) {
+            executor.execute(this::flushQuietly);
+        }
+    }
+
+    private ScheduledExecutorService flusher() {
+        ScheduledExecutorService current = flusher;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (flusher == null) {
+                final long interval = properties.getRedis().getUsageStreamFlushInterval().toMillis();
+                flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    final Thread thread = new Thread(runnable, "usage-stream-flusher");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+            }
+            return flusher;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (final RuntimeException exception) {
+            LOGGER.warn("Usage stream flush failed: {}", exception.getMessage());
+        }
+    }
+
+    private boolean batching() {
+        return properties.getRedis().getUsageStreamBatchSize() > 1;
+    }
+
+    int buffered() {
+        return buffer.size();
+    }
+
     private Map<String, String> fields(final UsageStreamEvent event) {
         final Instant timestamp = event.timestamp() == null ? clock.instant() : event.timestamp();
         final Map<String, String> fields = new LinkedHashMap<>();
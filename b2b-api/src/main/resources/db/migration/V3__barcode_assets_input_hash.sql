@@ -0,0 +1,3 @@
+ALTER TABLE barcode_assets ADD COLUMN input_hash text;
+
+CREATE INDEX ix_barcode_assets_input_hash ON barcode_assets(input_hash, expires_at);
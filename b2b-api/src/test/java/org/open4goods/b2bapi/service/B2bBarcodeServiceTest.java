@@ -2,23 +2,48 @@ package org.open4goods.b2bapi.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.ArgumentCaptor;
 import org.open4goods.b2bapi.config.B2bApiProperties;
 import org.open4goods.b2bapi.config.BillingCatalogProperties;
 import org.open4goods.b2bapi.dto.barcode.B2bBarcodeMetadata;
 import org.open4goods.b2bapi.dto.barcode.B2bBarcodeOptions;
 import org.open4goods.b2bapi.dto.barcode.B2bBarcodeRenderRequest;
+import org.open4goods.b2bapi.dto.barcode.B2bBarcodeRenderResponse;
 import org.open4goods.b2bapi.exception.InvalidBarcodeException;
+import org.open4goods.b2bapi.model.BarcodeAsset;
 import org.open4goods.b2bapi.repository.BarcodeAssetRepository;
 import org.open4goods.b2bapi.repository.CreditBucketRepository;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 class B2bBarcodeServiceTest {
 
@@ -140,4 +165,168 @@ class B2bBarcodeServiceTest {
         barcodeService.pruneExpiredAssets();
         verify(barcodeAssetRepository, times(1)).deleteExpired(NOW);
     }
+
+    @Test
+    void streamsZipReusingStoredAssetsAndStoringNewOnesOnce() throws Exception {
+        properties.getBarcode().setZipChunkSize(2);
+        final ApiKeyPrincipal principal = new ApiKeyPrincipal(UUID.randomUUID(), UUID.randomUUID());
+        final B2bBarcodeRenderRequest stored = new B2bBarcodeRenderRequest(
+                "ean13", "4006381333931", "svg", 200, 100, "#000000", "#ffffff", 0, true, true,
+                new B2bBarcodeOptions(300, 0.33, 15.0, 8.0, "print-safe"), null
+        );
+        final B2bBarcodeRenderRequest rendered = new B2bBarcodeRenderRequest(
+                "qr", "Hello world", "png", 200, 200, "#000000", "#ffffff", 0, true, true,
+                new B2bBarcodeOptions(300, 0.33, 15.0, 8.0, "print-safe"), null
+        );
+        final byte[] storedContent = "<svg>stored</svg>".getBytes(StandardCharsets.UTF_8);
+        when(barcodeAssetRepository.findByInputHashes(any(), any())).thenReturn(List.of(new BarcodeAsset(
+                "stored-token", B2bBarcodeService.computeInputHash(stored), storedContent, "image/svg+xml", NOW.plusSeconds(60))));
+        when(redisMeteringService.reserveCredits(eq(principal.organizationId()), eq(3L), any()))
+                .thenReturn(new RedisBalanceResult(RedisBalanceStatus.RESERVED, 7));
+        when(creditLedgerService.settleDebit(eq(principal.organizationId()), any(), any(), any(), eq(3L)))
+                .thenReturn(new CreditSettlementResult(7, 3, false));
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        barcodeService.renderBarcodeZip(List.of(rendered, rendered, stored), principal, null, null, out);
+
+        final Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries.put(entry.getName(), zip.readAllBytes());
+            }
+        }
+        assertThat(entries).containsOnlyKeys(
+                "0_qr_Helloworld.png", "1_qr_Helloworld.png", "2_ean13_4006381333931.svg");
+        assertThat(entries.get("1_qr_Helloworld.png")).isEqualTo(entries.get("0_qr_Helloworld.png"));
+        assertThat(entries.get("2_ean13_4006381333931.svg")).isEqualTo(storedContent);
+
+        // The repeated request of the first round is rendered and stored once, the stored one of the second not at all
+        @SuppressWarnings("unchecked")
+        final ArgumentCaptor<List<BarcodeAsset>> inserted = ArgumentCaptor.forClass(List.class);
+        verify(barcodeAssetRepository, times(2)).insertAll(inserted.capture());
+        assertThat(inserted.getAllValues().get(0)).singleElement()
+                .extracting(BarcodeAsset::getInputHash).isEqualTo(B2bBarcodeService.computeInputHash(rendered));
+        assertThat(inserted.getAllValues().get(1)).isEmpty();
+        verify(redisMeteringService).settled(principal.organizationId(), 7);
+    }
+
+    @Test
+    void renderReturnsTheStoredAssetOfIdenticalParameters() {
+        final ApiKeyPrincipal principal = new ApiKeyPrincipal(UUID.randomUUID(), UUID.randomUUID());
+        final B2bBarcodeRenderRequest req = new B2bBarcodeRenderRequest(
+                "ean13", "4006381333931", "png", 200, 100, "#000000", "#ffffff", 0, true, true,
+                new B2bBarcodeOptions(300, 0.33, 15.0, 8.0, "print-safe"), null
+        );
+        final Instant expiresAt = NOW.plus(java.time.Duration.ofDays(20));
+        when(barcodeAssetRepository.findByInputHashes(List.of(B2bBarcodeService.computeInputHash(req)),
+                NOW.plus(properties.getBarcode().getAssetReuseMinTtl())))
+                .thenReturn(List.of(new BarcodeAsset("stored-token", B2bBarcodeService.computeInputHash(req),
+                        new byte[] {1}, "image/png", expiresAt)));
+        when(redisMeteringService.reserveCredits(eq(principal.organizationId()), eq(1L), any()))
+                .thenReturn(new RedisBalanceResult(RedisBalanceStatus.RESERVED, 9));
+        when(creditLedgerService.settleDebit(eq(principal.organizationId()), any(), any(), any(), eq(1L)))
+                .thenReturn(new CreditSettlementResult(9, 1, false));
+
+        final B2bBarcodeRenderResponse response = barcodeService.renderBarcode(req, principal, null, null);
+
+        assertThat(response.assetUrl()).isEqualTo("https://api.test.com/api/v1/barcodes/assets/stored-token");
+        assertThat(response.expiresAt()).isEqualTo(expiresAt);
+        assertThat(response.meta().creditsConsumed()).isEqualTo(1);
+        verify(barcodeAssetRepository, never()).insertAll(any());
+    }
+
+    @Test
+    void debitOfTheRoundsWrittenBeforeAFailingOneIsCommitted() {
+        properties.getBarcode().setZipChunkSize(1);
+        final ApiKeyPrincipal principal = new ApiKeyPrincipal(UUID.randomUUID(), UUID.randomUUID());
+        final B2bBarcodeRenderRequest valid = new B2bBarcodeRenderRequest(
+                "ean13", "4006381333931", "svg", 200, 100, "#000000", "#ffffff", 0, true, true,
+                new B2bBarcodeOptions(300, 0.33, 15.0, 8.0, "print-safe"), null
+        );
+        final B2bBarcodeRenderRequest invalidChecksum = new B2bBarcodeRenderRequest(
+                "ean13", "4006381333930", "svg", 200, 100, "#000000", "#ffffff", 0, true, true,
+                new B2bBarcodeOptions(300, 0.33, 15.0, 8.0, "print-safe"), null
+        );
+        when(redisMeteringService.reserveCredits(eq(principal.organizationId()), eq(3L), any()))
+                .thenReturn(new RedisBalanceResult(RedisBalanceStatus.RESERVED, 7));
+        final AtomicInteger settleOutcome = new AtomicInteger(-1);
+        when(creditLedgerService.settleDebit(eq(principal.organizationId()), any(), any(), any(), eq(2L)))
+                .thenAnswer(invocation -> {
+                    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                        @Override
+                        public void afterCompletion(final int status) {
+                            settleOutcome.set(status);
+                        }
+                    });
+                    return new CreditSettlementResult(8, 2, false);
+                });
+
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.register(TransactionalConfig.class);
+            context.registerBean(CreditLedgerService.class, () -> creditLedgerService);
+            context.registerBean(B2bBarcodeService.class, () -> new B2bBarcodeService(
+                    properties,
+                    billingCatalogProperties,
+                    redisMeteringService,
+                    context.getBean(CreditLedgerService.class),
+                    usageStreamService,
+                    barcodeAssetRepository,
+                    creditBucketRepository,
+                    clock
+            ));
+            context.refresh();
+
+            // The third round fails once the first two are written
+            assertThatThrownBy(() -> context.getBean(B2bBarcodeService.class).renderBarcodeZip(
+                    List.of(valid, valid, invalidChecksum), principal, null, null, new ByteArrayOutputStream()))
+                    .isInstanceOf(InvalidBarcodeException.class);
+        }
+
+        assertThat(settleOutcome).hasValue(TransactionSynchronization.STATUS_COMMITTED);
+        verify(redisMeteringService).refundCredits(principal.organizationId(), 1L);
+    }
+
+    /**
+     * Transactional proxies over a transaction manager that only tracks the transactions.
+     */
+    @Configuration
+    @EnableTransactionManagement
+    static class TransactionalConfig {
+
+        @Bean
+        PlatformTransactionManager transactionManager() {
+            return new AbstractPlatformTransactionManager() {
+                @Override
+                protected Object doGetTransaction() {
+                    return new Object();
+                }
+
+                @Override
+                protected boolean isExistingTransaction(final Object transaction) {
+                    return TransactionSynchronizationManager.isActualTransactionActive();
+                }
+
+                @Override
+                protected void doBegin(final Object transaction, final TransactionDefinition definition) {
+                }
+
+                @Override
+                protected Object doSuspend(final Object transaction) {
+                    return transaction;
+                }
+
+                @Override
+                protected void doResume(final Object transaction, final Object suspendedResources) {
+                }
+
+                @Override
+                protected void doCommit(final DefaultTransactionStatus status) {
+                }
+
+                @Override
+                protected void doRollback(final DefaultTransactionStatus status) {
+                }
+            };
+        }
+    }
 }
@@ -133,4 +133,134 @@ class RedisMeteringServiceTest {
         assertThatThrownBy(() -> unavailable.reserveCredits(UUID.randomUUID(), 1))
                 .isInstanceOf(RedisUnavailableException.class);
     }
+
+    @Test
+    void creditLeasesAreConsumedLocallyAndNeverExceedTheBalance() {
+        final UUID organizationId = UUID.randomUUID();
+        final String balanceKey = service.balanceKey(organizationId);
+        redisTemplate.opsForValue().set(balanceKey, "10");
+        final RedisMeteringService nodeA = leasingNode(Clock.fixed(NOW, ZoneOffset.UTC));
+        final RedisMeteringService nodeB = leasingNode(Clock.fixed(NOW, ZoneOffset.UTC));
+
+        assertThat(nodeA.reserveCredits(organizationId, 1).status()).isEqualTo(RedisBalanceStatus.RESERVED);
+        assertThat(redisTemplate.opsForValue().get(balanceKey)).isEqualTo("6");
+        for (int i = 0; i < 3; i++) {
+            assertThat(nodeA.reserveCredits(organizationId, 1).status()).isEqualTo(RedisBalanceStatus.RESERVED);
+        }
+        assertThat(redisTemplate.opsForValue().get(balanceKey))
+                .as("consumed from the local lease").isEqualTo("6");
+
+        int reserved = 4;
+        for (int i = 0; i < 10; i++) {
+            for (final RedisMeteringService node : new RedisMeteringService[] {nodeA, nodeB}) {
+                if (node.reserveCredits(organizationId, 1).status() == RedisBalanceStatus.RESERVED) {
+                    reserved++;
+                }
+            }
+        }
+
+        assertThat(reserved).as("leases never exceed the balance").isEqualTo(10);
+        assertThat(redisTemplate.opsForValue().get(balanceKey)).isEqualTo("0");
+        assertThat(nodeA.reserveCredits(organizationId, 1).status()).isEqualTo(RedisBalanceStatus.INSUFFICIENT_CREDITS);
+        assertThat(nodeB.reserveCredits(organizationId, 1).status()).isEqualTo(RedisBalanceStatus.INSUFFICIENT_CREDITS);
+    }
+
+    @Test
+    void reconcileExcludesLiveLeasesAndReleasesExpiredOnes() {
+        final UUID organizationId = UUID.randomUUID();
+        final String balanceKey = service.balanceKey(organizationId);
+        final RedisMeteringService node = leasingNode(Clock.fixed(NOW, ZoneOffset.UTC));
+        node.reconcileBalance(organizationId, 10);
+
+        node.reserveCredits(organizationId, 1);
+        node.reconcileBalance(organizationId, 10);
+        assertThat(redisTemplate.opsForValue().get(balanceKey)).isEqualTo("6");
+
+        leasingNode(Clock.fixed(NOW.plus(Duration.ofMinutes(6)), ZoneOffset.UTC)).reconcileBalance(organizationId, 9);
+        assertThat(redisTemplate.opsForValue().get(balanceKey)).isEqualTo("9");
+        assertThat(redisTemplate.opsForHash().size(node.leasesKey(organizationId))).isZero();
+    }
+
+    @Test
+    void unusedLeasesAreReturnedOnShutdown() {
+        final UUID organizationId = UUID.randomUUID();
+        final String balanceKey = service.balanceKey(organizationId);
+        redisTemplate.opsForValue().set(balanceKey, "10");
+        final RedisMeteringService node = leasingNode(Clock.fixed(NOW, ZoneOffset.UTC));
+
+        node.reserveCredits(organizationId, 1);
+        node.returnLeases();
+
+        assertThat(redisTemplate.opsForValue().get(balanceKey)).isEqualTo("9");
+        assertThat(redisTemplate.opsForHash().size(node.leasesKey(organizationId))).isZero();
+    }
+
+    @Test
+    void leasedRateLimitTokensNeverExceedTheWindowLimit() {
+        final UUID apiKeyId = UUID.randomUUID();
+        final RedisMeteringService nodeA = leasingNode(Clock.fixed(NOW, ZoneOffset.UTC));
+        final RedisMeteringService nodeB = leasingNode(Clock.fixed(NOW, ZoneOffset.UTC));
+
+        assertThat(nodeA.checkRateLimit(apiKeyId)).isEqualTo(1);
+        assertThat(nodeA.checkRateLimit(apiKeyId)).isEqualTo(2);
+        assertThatThrownBy(() -> nodeA.checkRateLimit(apiKeyId))
+                .isInstanceOf(RateLimitExceededException.class);
+        assertThatThrownBy(() -> nodeB.checkRateLimit(apiKeyId))
+                .isInstanceOf(RateLimitExceededException.class);
+    }
+
+    @Test
+    void creditLeasesTakeAtMostHalfOfTheHotBalance() {
+        final UUID organizationId = UUID.randomUUID();
+        final String balanceKey = service.balanceKey(organizationId);
+        redisTemplate.opsForValue().set(balanceKey, "6");
+        final RedisMeteringService node = leasingNode(Clock.fixed(NOW, ZoneOffset.UTC));
+
+        assertThat(node.reserveCredits(organizationId, 1).status()).isEqualTo(RedisBalanceStatus.RESERVED);
+        assertThat(redisTemplate.opsForValue().get(balanceKey)).isEqualTo("3");
+    }
+
+    @Test
+    void costsLeasedToOtherNodesAreCheckedAgainstTheDurableBalance() {
+        final UUID organizationId = UUID.randomUUID();
+        final String balanceKey = service.balanceKey(organizationId);
+        redisTemplate.opsForValue().set(balanceKey, "4");
+        final RedisMeteringService nodeA = leasingNode(Clock.fixed(NOW, ZoneOffset.UTC));
+        final RedisMeteringService nodeB = leasingNode(Clock.fixed(NOW, ZoneOffset.UTC));
+        nodeA.reserveCredits(organizationId, 1);
+
+        final RedisBalanceResult leasesOnly = nodeB.reserveCredits(organizationId, 3);
+        assertThat(leasesOnly.status()).isEqualTo(RedisBalanceStatus.INSUFFICIENT_CREDITS);
+        assertThat(leasesOnly.balance()).as("unknown without the durable balance").isNegative();
+
+        final RedisBalanceResult rejected = nodeB.reserveCredits(organizationId, 3, () -> 2L);
+        assertThat(rejected.status()).isEqualTo(RedisBalanceStatus.INSUFFICIENT_CREDITS);
+        assertThat(rejected.balance()).isEqualTo(2);
+
+        final RedisBalanceResult reserved = nodeB.reserveCredits(organizationId, 3, () -> 4L);
+        assertThat(reserved.status()).isEqualTo(RedisBalanceStatus.RESERVED);
+        assertThat(reserved.balance()).isEqualTo(1);
+        assertThat(redisTemplate.opsForValue().get(balanceKey)).as("owed until reconciliation").isEqualTo("-1");
+    }
+
+    @Test
+    void unusedRateLimitTokensAreReturnedOnShutdown() {
+        final UUID apiKeyId = UUID.randomUUID();
+        properties.getRatelimit().setRequestsPerMinute(20);
+        final RedisMeteringService nodeA = leasingNode(Clock.fixed(NOW, ZoneOffset.UTC));
+        final RedisMeteringService nodeB = leasingNode(Clock.fixed(NOW, ZoneOffset.UTC));
+
+        assertThat(nodeA.checkRateLimit(apiKeyId)).isEqualTo(1);
+        nodeA.returnLeases();
+
+        assertThat(nodeB.checkRateLimit(apiKeyId)).as("counted from the used tokens only").isEqualTo(2);
+    }
+
+    private RedisMeteringService leasingNode(final Clock clock) {
+        properties.getRedis().getLease().setEnabled(true);
+        properties.getRedis().getLease().setCreditBlock(4);
+        properties.getRedis().getLease().setRateLimitBlock(10);
+        properties.getRedis().getLease().setTtl(Duration.ofMinutes(5));
+        return new RedisMeteringService(redisTemplate, properties, clock);
+    }
 }
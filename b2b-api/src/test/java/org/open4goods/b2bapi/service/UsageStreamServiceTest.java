@@ -0,0 +1,157 @@
+package org.open4goods.b2bapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.open4goods.b2bapi.config.B2bApiProperties;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.stream.StringRecord;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * Unit tests for the batched usage stream writes.
+ */
+class UsageStreamServiceTest {
+
+    private static final Instant NOW = Instant.parse("2026-06-15T12:00:00Z");
+
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    private final StringRedisConnection connection = mock(StringRedisConnection.class);
+
+    /** Request ids of the events of each pipelined round trip. */
+    private final List<List<String>> pipelines = Collections.synchronizedList(new ArrayList<>());
+
+    private B2bApiProperties properties;
+    private UsageStreamService service;
+
+    @BeforeEach
+    void setUp() {
+        properties = new B2bApiProperties();
+        properties.getRedis().setUsageStreamBatchSize(3);
+        properties.getRedis().setUsageStreamFlushInterval(Duration.ofHours(1));
+        properties.getRedis().setUsageStreamBufferCapacity(10);
+        properties.getRedis().setUsageStreamMaxlen(1000);
+        service = new UsageStreamService(redisTemplate, properties, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.close();
+    }
+
+    @Test
+    void enqueuedEventsAreWrittenOnCloseInOnePipeline() {
+        pipelining(List.of());
+
+        service.emit(event("r1"));
+        service.emit(event("r2"));
+
+        assertThat(service.buffered()).isEqualTo(2);
+        verify(redisTemplate, never()).executePipelined(any(RedisCallback.class));
+
+        service.close();
+
+        assertThat(service.buffered()).isZero();
+        assertThat(pipelines).containsExactly(List.of("r1", "r2"));
+        verify(connection).xTrim(UsageStreamService.USAGE_STREAM_KEY, 1000, true);
+    }
+
+    @Test
+    void fullBatchesAreFlushedInTheBackground() {
+        pipelining(List.of());
+
+        service.emit(event("r1"));
+        service.emit(event("r2"));
+        service.emit(event("r3"));
+
+        verify(redisTemplate, timeout(5000)).executePipelined(any(RedisCallback.class));
+        assertThat(pipelines).containsExactly(List.of("r1", "r2", "r3"));
+        assertThat(service.buffered()).isZero();
+    }
+
+    @Test
+    void onlyEventsRejectedByThePipelineAreWrittenAgain() {
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenAnswer(invocation -> {
+                    run(invocation.getArgument(0));
+                    throw new RedisPipelineException("XADD failed", List.of(
+                            "1-0", new RedisSystemException("OOM", null), "3-0", 0L));
+                })
+                .thenAnswer(invocation -> {
+                    run(invocation.getArgument(0));
+                    return List.of();
+                });
+
+        service.emit(event("r1"));
+        service.emit(event("r2"));
+        service.flush();
+
+        assertThat(service.buffered()).isEqualTo(1);
+
+        service.flush();
+
+        assertThat(pipelines).containsExactly(List.of("r1", "r2"), List.of("r2"));
+        assertThat(service.buffered()).isZero();
+    }
+
+    @Test
+    void eventsOfAFailedRoundTripAreKeptInOrder() {
+        when(redisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenThrow(new RedisSystemException("Connection refused", null))
+                .thenAnswer(invocation -> {
+                    run(invocation.getArgument(0));
+                    return List.of();
+                });
+
+        service.emit(event("r1"));
+        service.emit(event("r2"));
+        service.flush();
+
+        assertThat(service.buffered()).isEqualTo(2);
+
+        service.flush();
+
+        assertThat(pipelines).containsExactly(List.of("r1", "r2"));
+    }
+
+    private void pipelining(final List<Object> results) {
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            run(invocation.getArgument(0));
+            return results;
+        });
+    }
+
+    private void run(final RedisCallback<?> callback) {
+        final List<String> requestIds = new ArrayList<>();
+        when(connection.xAdd(any(StringRecord.class))).thenAnswer(invocation -> {
+            requestIds.add(invocation.<StringRecord>getArgument(0).getValue().get("requestId"));
+            return null;
+        });
+        callback.doInRedis(connection);
+        pipelines.add(requestIds);
+    }
+
+    private UsageStreamEvent event(final String requestId) {
+        return new UsageStreamEvent(
+                UUID.randomUUID(), null, "price", "4006381333931", requestId, 200, true, 1L, null, 12, null);
+    }
+}
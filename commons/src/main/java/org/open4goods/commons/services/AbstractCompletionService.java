@@ -1,5 +1,11 @@
 package org.open4goods.commons.services;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
 import org.open4goods.commons.helper.GenericFileLogger;
 import org.open4goods.model.product.Product;
 import org.open4goods.model.vertical.VerticalConfig;
@@ -22,6 +28,9 @@ import ch.qos.logback.classic.Level;
  */
 public abstract class AbstractCompletionService {
 
+    /** Pending indexations above which the indexed ones are forgotten */
+    private static final int PENDING_SUBMISSIONS_PRUNE_SIZE = 1000;
+
     protected final ProductRepository dataRepository;
     protected final VerticalsConfigService verticalConfigService;
     protected final Logger logger;
@@ -82,9 +91,35 @@ public abstract class AbstractCompletionService {
         if (limit != null) {
             products = products.limit(limit);
         }
+        completeAndIndexProducts(vertical, products);
+    }
+
+    /**
+     * Processes the products and submits them to the indexation, sent in bulks. Returns once
+     * all are indexed.
+     *
+     * @param vertical the vertical context
+     * @param products the products to process
+     */
+    protected void completeAndIndexProducts(VerticalConfig vertical, Stream<Product> products) {
+        List<CompletableFuture<Void>> submissions = new ArrayList<>();
+        AtomicInteger failures = new AtomicInteger();
         products.forEach(data -> {
-            completeAndIndexProduct(vertical, data);
+            processProduct(vertical, data);
+            submissions.add(dataRepository.submitIndex(data).whenComplete((ok, e) -> {
+                if (e != null) {
+                    failures.incrementAndGet();
+                    logger.error("Cannot index completed product {} : {}", data.getId(), e.getMessage());
+                }
+            }));
+            if (submissions.size() >= PENDING_SUBMISSIONS_PRUNE_SIZE) {
+                submissions.removeIf(CompletableFuture::isDone);
+            }
         });
+        submissions.forEach(s -> s.exceptionally(e -> null).join());
+        if (failures.get() > 0) {
+            logger.error("{} completed products not indexed", failures.get());
+        }
     }
 
     /**
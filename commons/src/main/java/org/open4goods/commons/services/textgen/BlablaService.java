@@ -1,5 +1,7 @@
 package org.open4goods.commons.services.textgen;
 
+import java.util.function.Function;
+
 import org.apache.commons.lang3.StringUtils;
 import org.open4goods.model.exceptions.InvalidParameterException;
 import org.open4goods.model.product.Product;
@@ -96,6 +98,30 @@ public class BlablaService {
      * @return the template with alternatives resolved
      */
     public String fastOr(final String text, final BlaBlaSecGenerator seqGen) {
+        return resolveAlternatives(text, choices -> {
+            if (choices.length == 1) {
+                return seqGen.getNextAlea(2) == 1 ? choices[0] : "";
+            }
+            return choices[seqGen.getNextAlea(choices.length)];
+        });
+    }
+
+    /**
+     * Returns the Thymeleaf template a blabla template is evaluated as, every alternative of its
+     * inline random segments being kept. Validating it validates the expressions of all the
+     * texts the blabla template can generate.
+     *
+     * @param text blabla template
+     * @return the Thymeleaf template, with the alternatives in sequence
+     */
+    public String thymeleafTemplate(final String text) {
+        return resolveAlternatives(text, choices -> String.join(" ", choices));
+    }
+
+    /**
+     * Replaces the inline random segments of a text by the selection of their alternatives.
+     */
+    private String resolveAlternatives(final String text, final Function<String[], String> selection) {
 
         if (StringUtils.isEmpty(text)) {
             return text;
@@ -119,14 +145,7 @@ public class BlablaService {
                 break;
             }
 
-            final String[] choices = splitChoices(text.substring(start + RANDOM_START_TOKEN.length(), end));
-            if (choices.length == 1) {
-                if (seqGen.getNextAlea(2) == 1) {
-                    result.append(choices[0]);
-                }
-            } else {
-                result.append(choices[seqGen.getNextAlea(choices.length)]);
-            }
+            result.append(selection.apply(splitChoices(text.substring(start + RANDOM_START_TOKEN.length(), end))));
 
             cursor = end + RANDOM_END_TOKEN.length();
         }
@@ -115,6 +115,14 @@ class BlablaServiceTest {
         assertThat(result).isEmpty();
     }
 
+    @Test
+    void thymeleafTemplateKeepsEveryAlternative() {
+        final String template = "||TV|Télévision|| [(${p.brand()})] ||[(${p.model()})]||";
+
+        assertThat(blablaService.thymeleafTemplate(template))
+                .isEqualTo("TV Télévision [(${p.brand()})] [(${p.model()})]");
+    }
+
     @Test
     void generatorRejectsNonPositiveBounds() {
         final BlaBlaSecGenerator generator = new BlaBlaSecGenerator(12);
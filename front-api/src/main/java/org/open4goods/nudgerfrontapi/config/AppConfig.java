@@ -11,6 +11,9 @@ import org.open4goods.nudgerfrontapi.config.properties.CacheProperties;
 import org.open4goods.nudgerfrontapi.config.properties.GoogleTaxonomyProperties;
 import org.open4goods.services.blog.config.BlogConfiguration;
 import org.open4goods.services.blog.service.BlogService;
+import org.open4goods.services.productrepository.changes.ElasticProductChangeBus;
+import org.open4goods.services.productrepository.changes.LocalProductChangeBus;
+import org.open4goods.services.productrepository.changes.ProductChangeBus;
 import org.open4goods.services.productrepository.services.ProductRepository;
 import org.open4goods.services.remotefilecaching.config.RemoteFileCachingProperties;
 import org.open4goods.services.remotefilecaching.service.RemoteFileCachingService;
@@ -49,6 +52,18 @@ public class AppConfig {
         return new ProductRepository(elasticsearchOperations);
     }
 
+    /**
+     * Changes published by the indexation nodes. Without the changes log, an in process bus
+     * on which nothing is published : cached entries only expire.
+     */
+    @Bean
+    ProductChangeBus productChangeBus(CacheProperties cacheProperties, ElasticsearchOperations elasticsearchOperations) {
+        if (cacheProperties.getProductChanges().isEnabled()) {
+            return new ElasticProductChangeBus(elasticsearchOperations, cacheProperties.getProductChanges());
+        }
+        return new LocalProductChangeBus();
+    }
+
     @Bean
     BrandService brandService(RemoteFileCachingService remoteFileCachingService,
             SerialisationService serialisationService) throws Exception {
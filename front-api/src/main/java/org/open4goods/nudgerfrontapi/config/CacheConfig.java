@@ -18,6 +18,8 @@ import org.springframework.context.annotation.Configuration;
 
 import java.time.Duration;
 import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
  * Cache configuration backed by byte-budgeted {@link Caffeine} caches.
@@ -27,6 +29,14 @@ import java.util.Arrays;
  * search result holding 100 enriched product DTOs) can be megabytes, so capping
  * by entry count gives no OOM guarantee. Each cache is therefore sized in bytes
  * via {@link CacheProperties}.</p>
+ *
+ * <p>With {@link CacheProperties#isSerializedValues()}, values are stored as compressed
+ * payloads by {@link SerializedCaffeineCache}: their weight is then their exact byte
+ * length, and the graph walk of the weigher leaves the request path.</p>
+ *
+ * <p>Expiring caches listed in {@link CacheProperties#getRefreshAheadCaches()} are wrapped
+ * in a {@link RefreshAheadCache}: {@code @Cacheable(sync = true)} misses are loaded once per
+ * key, and hot entries are reloaded in the background before they expire.</p>
  */
 @Configuration
 public class CacheConfig {
@@ -35,21 +45,28 @@ public class CacheConfig {
     CacheManager cacheManager(@Autowired final Ticker ticker,
                               @Autowired final CacheProperties cacheProperties,
                               @Autowired final Weigher<Object, Object> cacheValueWeigher) {
-        final CaffeineCache foreverCache = buildCache(CacheConstants.FOREVER_LOCAL_CACHE_NAME, ticker,
-                cacheProperties.getForeverMaxBytes().toBytes(), null, cacheValueWeigher);
-        final CaffeineCache hourCache = buildCache(CacheConstants.ONE_HOUR_LOCAL_CACHE_NAME, ticker,
-                cacheProperties.getOneHourMaxBytes().toBytes(), cacheProperties.getOneHourTtl(), cacheValueWeigher);
-        final CaffeineCache minuteCache = buildCache(CacheConstants.ONE_MINUTE_LOCAL_CACHE_NAME, ticker,
-                cacheProperties.getOneMinuteMaxBytes().toBytes(), cacheProperties.getOneMinuteTtl(), cacheValueWeigher);
-        final CaffeineCache dayCache = buildCache(CacheConstants.ONE_DAY_LOCAL_CACHE_NAME, ticker,
-                cacheProperties.getOneDayMaxBytes().toBytes(), cacheProperties.getOneDayTtl(), cacheValueWeigher);
+        final SerializedCacheValueCodec codec = cacheProperties.isSerializedValues() ? new SerializedCacheValueCodec() : null;
+        final Executor refreshExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        final Cache foreverCache = buildCache(CacheConstants.FOREVER_LOCAL_CACHE_NAME, ticker,
+                cacheProperties.getForeverMaxBytes().toBytes(), null, cacheValueWeigher, codec, cacheProperties, refreshExecutor);
+        final Cache hourCache = buildCache(CacheConstants.ONE_HOUR_LOCAL_CACHE_NAME, ticker,
+                cacheProperties.getOneHourMaxBytes().toBytes(), cacheProperties.getOneHourTtl(), cacheValueWeigher, codec,
+                cacheProperties, refreshExecutor);
+        final Cache minuteCache = buildCache(CacheConstants.ONE_MINUTE_LOCAL_CACHE_NAME, ticker,
+                cacheProperties.getOneMinuteMaxBytes().toBytes(), cacheProperties.getOneMinuteTtl(), cacheValueWeigher, codec,
+                cacheProperties, refreshExecutor);
+        final Cache dayCache = buildCache(CacheConstants.ONE_DAY_LOCAL_CACHE_NAME, ticker,
+                cacheProperties.getOneDayMaxBytes().toBytes(), cacheProperties.getOneDayTtl(), cacheValueWeigher, codec,
+                cacheProperties, refreshExecutor);
         final SimpleCacheManager manager = new SimpleCacheManager();
         manager.setCaches(Arrays.asList(foreverCache, dayCache, hourCache, minuteCache));
         return manager;
     }
 
-    private CaffeineCache buildCache(final String name, final Ticker ticker, final long maxBytes,
-                                     final Duration ttl, final Weigher<Object, Object> weigher) {
+    private Cache buildCache(final String name, final Ticker ticker, final long maxBytes,
+                             final Duration ttl, final Weigher<Object, Object> weigher,
+                             final SerializedCacheValueCodec codec, final CacheProperties cacheProperties,
+                             final Executor refreshExecutor) {
         final Caffeine<Object, Object> builder = Caffeine.newBuilder()
                 .recordStats()
                 .ticker(ticker)
@@ -58,7 +75,15 @@ public class CacheConfig {
         if (ttl != null) {
             builder.expireAfterWrite(ttl);
         }
-        return new CaffeineCache(name, builder.build());
+        final CaffeineCache cache = codec != null
+                ? new SerializedCaffeineCache(name, builder.build(), codec)
+                : new CaffeineCache(name, builder.build());
+        if (ttl != null && cacheProperties.getRefreshAheadCaches().contains(name)) {
+            return new RefreshAheadCache(cache, ttl, cacheProperties.getRefreshAheadRatio(),
+                    cacheProperties.getRefreshAheadMinHits(), cacheProperties.getRefreshAheadMaxConcurrency(),
+                    ticker, refreshExecutor);
+        }
+        return cache;
     }
 
     @Bean
@@ -72,6 +97,9 @@ public class CacheConfig {
             final Cache cache = cacheManager.getCache(cacheName);
             if (cache instanceof CaffeineCache caffeineCache) {
                 CaffeineCacheMetrics.monitor(registry, caffeineCache.getNativeCache(), cacheName);
+            } else if (cache instanceof RefreshAheadCache refreshAheadCache) {
+                CaffeineCacheMetrics.monitor(registry, refreshAheadCache.getNativeCache(), cacheName);
+                refreshAheadCache.bindTo(registry);
             }
         });
     }
@@ -16,6 +16,9 @@ import org.springframework.http.ResponseEntity;
  * that reaches them, which slightly over-estimates retention. That is the safe
  * direction for an OOM defence.</p>
  *
+ * <p>{@link SerializedCacheValue}s are weighed by their exact payload size, without
+ * walking any graph.</p>
+ *
  * <p>If {@code jol} fails to walk a value (e.g. JVM-internal types behind
  * modules) the weigher falls back to {@link #FALLBACK_WEIGHT_BYTES} to avoid
  * polluting the cache with a zero weight.</p>
@@ -35,6 +38,9 @@ public final class CacheValueWeigher implements Weigher<Object, Object> {
         if (value == null) {
             return MIN_WEIGHT_BYTES;
         }
+        if (value instanceof SerializedCacheValue serialized) {
+            return serialized.weight();
+        }
         final Object payload = unwrap(value);
         if (payload == null) {
             return MIN_WEIGHT_BYTES;
@@ -0,0 +1,280 @@
+package org.open4goods.nudgerfrontapi.config;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Policy.FixedExpiration;
+import com.github.benmanes.caffeine.cache.Ticker;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * {@link CaffeineCache} decorator refreshing hot entries before they expire.
+ *
+ * <p>Only applies to {@code @Cacheable(sync = true)} methods, which go through
+ * {@link #get(Object, Callable)}:</p>
+ * <ul>
+ * <li>misses are loaded once per key, concurrent callers wait for that load (Caffeine
+ * per-key compute) instead of all hitting the backend when a popular entry expires;</li>
+ * <li>once an entry is older than {@code refreshRatio × ttl}, hits are counted, and when a
+ * key reaches {@code minHits} in that window it is reloaded in the background with the
+ * loader of the hit, the stale value still being served meanwhile. A hot entry is thus
+ * replaced before expiring, and nobody pays the load after the roll-over.</li>
+ * </ul>
+ *
+ * <p>Refreshes run on virtual threads, at most {@code maxConcurrentRefreshes} at once:
+ * extra candidates are skipped, and refreshed by a later hit or loaded on expiry.</p>
+ */
+public class RefreshAheadCache implements Cache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RefreshAheadCache.class);
+
+    /** Upper bound of keys whose hits are counted in their refresh window. */
+    private static final int MAX_CANDIDATES = 10_000;
+
+    private final CaffeineCache delegate;
+    private final com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache;
+    private final FixedExpiration<Object, Object> expiration;
+    private final long refreshAfterNanos;
+    private final int minHits;
+    private final Semaphore refreshPermits;
+    private final Executor executor;
+    private final Ticker ticker;
+
+    /** Hits of the entries in their refresh window. */
+    private final com.github.benmanes.caffeine.cache.Cache<Object, AtomicInteger> windowHits;
+    private final Map<Object, Boolean> loading = new ConcurrentHashMap<>();
+    /** Refreshes in progress, by key. An eviction drops the refresh of the key. */
+    private final Map<Object, Object> refreshing = new ConcurrentHashMap<>();
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+
+    /**
+     * @param delegate               cache to decorate, built with {@code expireAfterWrite}
+     * @param ttl                    expiry of the delegate entries
+     * @param refreshRatio           fraction of the ttl after which hot entries are refreshed
+     * @param minHits                hits needed in the refresh window to trigger a refresh
+     * @param maxConcurrentRefreshes maximum number of refreshes running at once
+     * @param ticker                 time source, the one of the delegate
+     * @param executor               executor running the refreshes
+     */
+    @SuppressWarnings("unchecked")
+    public RefreshAheadCache(final CaffeineCache delegate, final Duration ttl, final double refreshRatio,
+                             final int minHits, final int maxConcurrentRefreshes, final Ticker ticker,
+                             final Executor executor) {
+        this.delegate = delegate;
+        this.nativeCache = delegate.getNativeCache();
+        this.expiration = (FixedExpiration<Object, Object>) nativeCache.policy().expireAfterWrite()
+                .orElseThrow(() -> new IllegalArgumentException("Refresh ahead requires an expiring cache: " + delegate.getName()));
+        this.refreshAfterNanos = (long) (ttl.toNanos() * Math.min(1d, Math.max(0d, refreshRatio)));
+        this.minHits = Math.max(1, minHits);
+        this.refreshPermits = new Semaphore(Math.max(1, maxConcurrentRefreshes));
+        this.ticker = ticker;
+        this.executor = executor;
+        this.windowHits = Caffeine.newBuilder()
+                .ticker(ticker)
+                .maximumSize(MAX_CANDIDATES)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    @Override
+    public <T> T get(final Object key, final Callable<T> valueLoader) {
+        // asMap() lookups neither record stats nor count as an access
+        final boolean present = nativeCache.asMap().containsKey(key);
+        if (!present && loading.containsKey(key)) {
+            coalesced.increment();
+        }
+        final T value = delegate.get(key, () -> {
+            loading.put(key, Boolean.TRUE);
+            try {
+                return timedLoad(valueLoader);
+            } finally {
+                loading.remove(key);
+            }
+        });
+        if (present) {
+            refreshIfDue(key, valueLoader);
+        }
+        return value;
+    }
+
+    /**
+     * Schedule a background reload of the entry when it is old and hot enough.
+     */
+    private void refreshIfDue(final Object key, final Callable<?> valueLoader) {
+        final long age = expiration.ageOf(key, TimeUnit.NANOSECONDS).orElse(0L);
+        if (age < refreshAfterNanos) {
+            return;
+        }
+        if (windowHits.get(key, k -> new AtomicInteger()).incrementAndGet() < minHits) {
+            return;
+        }
+        final Object token = new Object();
+        if (refreshing.putIfAbsent(key, token) != null) {
+            return;
+        }
+        if (!refreshPermits.tryAcquire()) {
+            refreshing.remove(key, token);
+            return;
+        }
+        try {
+            executor.execute(() -> refresh(key, valueLoader, token));
+        } catch (RuntimeException e) {
+            refreshing.remove(key, token);
+            refreshPermits.release();
+            LOGGER.warn("Cannot schedule the refresh of {} in cache {} : {}", key, getName(), e.getMessage());
+        }
+    }
+
+    private void refresh(final Object key, final Callable<?> valueLoader, final Object token) {
+        try {
+            final Object value = timedLoad(valueLoader);
+            // Not stored if the entry has been evicted meanwhile
+            if (refreshing.remove(key, token)) {
+                delegate.put(key, value);
+                windowHits.invalidate(key);
+                refreshes.increment();
+            }
+        } catch (Exception e) {
+            // The current value is kept, and loaded again on expiry
+            refreshFailures.increment();
+            LOGGER.warn("Refresh of {} in cache {} failed : {}", key, getName(), e.getMessage());
+        } finally {
+            refreshing.remove(key, token);
+            refreshPermits.release();
+        }
+    }
+
+    private <T> T timedLoad(final Callable<T> valueLoader) throws Exception {
+        final long start = ticker.read();
+        try {
+            return valueLoader.call();
+        } finally {
+            loads.increment();
+            loadNanos.add(ticker.read() - start);
+        }
+    }
+
+    /**
+     * Register the load and refresh metrics of this cache, tagged with its name like the
+     * Caffeine cache metrics.
+     *
+     * @param registry registry to bind to
+     */
+    public void bindTo(final MeterRegistry registry) {
+        FunctionTimer.builder("cache.load.duration", this, c -> c.loads.sum(), c -> c.loadNanos.sum(), TimeUnit.NANOSECONDS)
+                .tag("cache", getName())
+                .description("Time spent loading values, refreshes included")
+                .register(registry);
+        FunctionCounter.builder("cache.load.coalesced", this, c -> c.coalesced.sum())
+                .tag("cache", getName())
+                .description("Misses that waited for a load of the same key already in progress")
+                .register(registry);
+        FunctionCounter.builder("cache.refreshes", this, c -> c.refreshes.sum())
+                .tag("cache", getName())
+                .tag("result", "success")
+                .register(registry);
+        FunctionCounter.builder("cache.refreshes", this, c -> c.refreshFailures.sum())
+                .tag("cache", getName())
+                .tag("result", "failure")
+                .register(registry);
+    }
+
+    long coalescedLoads() {
+        return coalesced.sum();
+    }
+
+    long refreshes() {
+        return refreshes.sum();
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public com.github.benmanes.caffeine.cache.Cache<Object, Object> getNativeCache() {
+        return nativeCache;
+    }
+
+    @Override
+    public ValueWrapper get(final Object key) {
+        return delegate.get(key);
+    }
+
+    @Override
+    public <T> T get(final Object key, final Class<T> type) {
+        return delegate.get(key, type);
+    }
+
+    @Override
+    public CompletableFuture<?> retrieve(final Object key) {
+        return delegate.retrieve(key);
+    }
+
+    @Override
+    public <T> CompletableFuture<T> retrieve(final Object key, final Supplier<CompletableFuture<T>> valueLoader) {
+        return delegate.retrieve(key, valueLoader);
+    }
+
+    @Override
+    public void put(final Object key, final Object value) {
+        delegate.put(key, value);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(final Object key, final Object value) {
+        return delegate.putIfAbsent(key, value);
+    }
+
+    @Override
+    public void evict(final Object key) {
+        refreshing.remove(key);
+        delegate.evict(key);
+        windowHits.invalidate(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(final Object key) {
+        refreshing.remove(key);
+        windowHits.invalidate(key);
+        return delegate.evictIfPresent(key);
+    }
+
+    @Override
+    public void clear() {
+        refreshing.clear();
+        delegate.clear();
+        windowHits.invalidateAll();
+    }
+
+    @Override
+    public boolean invalidate() {
+        refreshing.clear();
+        windowHits.invalidateAll();
+        return delegate.invalidate();
+    }
+}
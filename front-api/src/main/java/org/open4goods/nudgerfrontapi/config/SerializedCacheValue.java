@@ -0,0 +1,29 @@
+package org.open4goods.nudgerfrontapi.config;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+
+/**
+ * A cached value held as a compressed JSON payload rather than as an object graph.
+ *
+ * <p>Produced and read back by {@link SerializedCacheValueCodec}. When the cached value
+ * was a {@link org.springframework.http.ResponseEntity}, only its body is serialized:
+ * status and headers are kept as is.</p>
+ *
+ * @param type    class of the serialized value (the body class for a response entity)
+ * @param status  status of the cached response entity, {@code null} for plain values
+ * @param headers headers of the cached response entity, {@code null} for plain values
+ * @param payload deflated JSON of the value
+ */
+record SerializedCacheValue(Class<?> type, HttpStatusCode status, HttpHeaders headers, byte[] payload) {
+
+    /** Approximate retained size of the wrapper, status and headers. */
+    static final int ENTRY_OVERHEAD_BYTES = 256;
+
+    /**
+     * @return the exact payload size plus a fixed allowance for the wrapper
+     */
+    int weight() {
+        return payload.length + ENTRY_OVERHEAD_BYTES;
+    }
+}
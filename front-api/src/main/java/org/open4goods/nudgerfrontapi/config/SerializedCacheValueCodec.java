@@ -0,0 +1,247 @@
+package org.open4goods.nudgerfrontapi.config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.DeserializationFeature;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+/**
+ * Turns cached values into compact {@link SerializedCacheValue}s (JSON, deflated at the
+ * fastest level) and back.
+ *
+ * <p>Only values that survive the round trip are serialized. The first value of each class
+ * is probed: its class must be fully typed (no {@link Object}, abstract or interface
+ * properties, whose values would be read back as maps or lists, raw JSON maps and lists of
+ * objects aside), and its JSON must be the one of the value read back, which does not rely
+ * on {@link Object#equals(Object)}. The values of a class passing the probe are then
+ * serialized once, without read back. The values of a class failing it, root level
+ * collections and maps (whose element types would be lost) and {@code null} bodies are
+ * returned unchanged by {@link #encode(Object)}, and stay cached as objects.</p>
+ *
+ * <p>A value that cannot be read back is decoded as a miss, for the cache to evict it.</p>
+ */
+public final class SerializedCacheValueCodec {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SerializedCacheValueCodec.class);
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final JsonMapper mapper = JsonMapper.builder()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    /** Outcome of the probe of each class : whether its values are serialized. */
+    private final Map<Class<?>, Boolean> serializable = new ConcurrentHashMap<>();
+
+    /**
+     * @param value the value to cache
+     * @return a {@link SerializedCacheValue}, or the value itself if it cannot be serialized
+     */
+    public Object encode(final Object value) {
+        final Object payload = value instanceof ResponseEntity<?> entity ? entity.getBody() : value;
+        if (payload == null || payload instanceof Collection<?> || payload instanceof Map<?, ?>
+                || payload.getClass().isArray()) {
+            return value;
+        }
+        final Class<?> type = payload.getClass();
+        final Boolean probed = serializable.get(type);
+        if (Boolean.FALSE.equals(probed)) {
+            return value;
+        }
+
+        final byte[] bytes;
+        try {
+            bytes = probed == null ? probe(type, payload) : deflate(payload);
+        } catch (final JacksonException | UncheckedIOException e) {
+            LOGGER.warn("{} cannot be serialized, its cached values are kept as objects : {}", type.getName(), e.getMessage());
+            serializable.put(type, false);
+            return value;
+        }
+        if (bytes == null) {
+            return value;
+        }
+        return value instanceof ResponseEntity<?> entity
+                ? new SerializedCacheValue(type, entity.getStatusCode(), entity.getHeaders(), bytes)
+                : new SerializedCacheValue(type, null, null, bytes);
+    }
+
+    /**
+     * @param stored a value returned by {@link #encode(Object)}
+     * @return the original value, {@code null} if it cannot be read back
+     */
+    public Object decode(final Object stored) {
+        if (!(stored instanceof SerializedCacheValue serialized)) {
+            return stored;
+        }
+        final Object payload;
+        try {
+            payload = inflate(serialized);
+        } catch (final JacksonException | UncheckedIOException e) {
+            LOGGER.warn("Cached {} cannot be read back : {}", serialized.type().getName(), e.getMessage());
+            return null;
+        }
+        if (serialized.status() == null) {
+            return payload;
+        }
+        return new ResponseEntity<>(payload, serialized.headers(), serialized.status());
+    }
+
+    /**
+     * Probes the first value of a class, and records the outcome.
+     *
+     * @return the deflated JSON of the value, {@code null} if the values of its class are kept as objects
+     */
+    private byte[] probe(final Class<?> type, final Object payload) {
+        if (!isTyped(type, Map.of(), new HashSet<>())) {
+            LOGGER.warn("{} has untyped properties, its cached values are kept as objects", type.getName());
+            serializable.put(type, false);
+            return null;
+        }
+        final byte[] json = mapper.writeValueAsBytes(payload);
+        // Both trees parsed from JSON : numbers of the same node types, properties in any order
+        final JsonNode readBack = mapper.readTree(mapper.writeValueAsBytes(mapper.readValue(json, type)));
+        if (!mapper.readTree(json).equals(readBack)) {
+            LOGGER.warn("{} does not survive serialisation, its cached values are kept as objects", type.getName());
+            serializable.put(type, false);
+            return null;
+        }
+        serializable.put(type, true);
+        return deflate(json);
+    }
+
+    /**
+     * @param type     a property type
+     * @param bindings the actual types of the type variables of the enclosing class
+     * @param visited  the classes already walked, for cyclic graphs
+     * @return whether the values of the type are read back as the type they were written from
+     */
+    private static boolean isTyped(final Type type, final Map<TypeVariable<?>, Type> bindings, final Set<Type> visited) {
+        if (type instanceof TypeVariable<?> variable) {
+            final Type actual = bindings.get(variable);
+            return actual != null && isTyped(actual, Map.of(), visited);
+        }
+        if (type instanceof GenericArrayType array) {
+            return isTyped(array.getGenericComponentType(), bindings, visited);
+        }
+        if (!(type instanceof Class<?>) && !(type instanceof ParameterizedType)) {
+            // Wildcards
+            return false;
+        }
+        final Class<?> raw = type instanceof ParameterizedType parameterized
+                ? (Class<?>) parameterized.getRawType()
+                : (Class<?>) type;
+        final Type[] arguments = type instanceof ParameterizedType parameterized
+                ? parameterized.getActualTypeArguments()
+                : new Type[0];
+
+        if (raw.isPrimitive() || raw.isEnum()) {
+            return true;
+        }
+        if (raw.isArray()) {
+            return isTyped(raw.getComponentType(), bindings, visited);
+        }
+        if (Collection.class.isAssignableFrom(raw) || Map.class.isAssignableFrom(raw) || Optional.class == raw) {
+            if (arguments.length == 0) {
+                return false;
+            }
+            for (final Type argument : arguments) {
+                // Raw JSON elements, read back as the maps, lists and scalars they were parsed into
+                if (argument != Object.class && !isTyped(argument, bindings, visited)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (raw == Object.class || raw.isInterface() || Modifier.isAbstract(raw.getModifiers())) {
+            return false;
+        }
+        if (raw.getName().startsWith("java.") || !visited.add(type)) {
+            return true;
+        }
+
+        final Map<TypeVariable<?>, Type> resolved = new HashMap<>();
+        final TypeVariable<?>[] variables = raw.getTypeParameters();
+        for (int i = 0; i < variables.length; i++) {
+            if (i < arguments.length) {
+                resolved.put(variables[i], arguments[i] instanceof TypeVariable<?> variable
+                        ? bindings.get(variable)
+                        : arguments[i]);
+            }
+        }
+        for (final Field field : raw.getDeclaredFields()) {
+            final int modifiers = field.getModifiers();
+            if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers)
+                    && !isTyped(field.getGenericType(), resolved, visited)) {
+                return false;
+            }
+        }
+        // Records, enums and JDK parents hold no property of the value
+        final Type parent = raw.getGenericSuperclass();
+        return parent == null || raw.getSuperclass().getName().startsWith("java.") || isTyped(parent, resolved, visited);
+    }
+
+    private byte[] deflate(final Object payload) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(BUFFER_SIZE);
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (OutputStream out = new DeflaterOutputStream(bytes, deflater, BUFFER_SIZE)) {
+            mapper.writeValue(out, payload);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] deflate(final byte[] json) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(BUFFER_SIZE);
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (OutputStream out = new DeflaterOutputStream(bytes, deflater, BUFFER_SIZE)) {
+            out.write(json);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    private Object inflate(final SerializedCacheValue serialized) {
+        final Inflater inflater = new Inflater();
+        try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(serialized.payload()), inflater, BUFFER_SIZE)) {
+            return mapper.readValue(in, serialized.type());
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.open4goods.nudgerfrontapi.config;
+
+import java.util.concurrent.Callable;
+
+import org.springframework.cache.caffeine.CaffeineCache;
+
+/**
+ * {@link CaffeineCache} storing its values through a {@link SerializedCacheValueCodec}.
+ *
+ * <p>Values are serialized once when stored, and only deserialized when read, so entries
+ * that are evicted before being hit never pay for it. Entries that cannot be read back are
+ * evicted and handled as misses.</p>
+ */
+public class SerializedCaffeineCache extends CaffeineCache {
+
+    private final SerializedCacheValueCodec codec;
+
+    public SerializedCaffeineCache(final String name, final com.github.benmanes.caffeine.cache.Cache<Object, Object> cache,
+                                   final SerializedCacheValueCodec codec) {
+        super(name, cache);
+        this.codec = codec;
+    }
+
+    @Override
+    protected Object lookup(final Object key) {
+        final Object stored = super.lookup(key);
+        if (!(stored instanceof SerializedCacheValue)) {
+            return stored;
+        }
+        final Object decoded = codec.decode(stored);
+        if (decoded == null) {
+            evict(key);
+            return null;
+        }
+        return new Decoded(decoded);
+    }
+
+    @Override
+    public <T> T get(final Object key, final Callable<T> valueLoader) {
+        try {
+            return super.get(key, valueLoader);
+        } catch (final UnreadableValueException e) {
+            // Loaded again in place of the unreadable entry
+            evict(key);
+            return super.get(key, valueLoader);
+        }
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(final Object key, final Object value) {
+        try {
+            return super.putIfAbsent(key, value);
+        } catch (final UnreadableValueException e) {
+            evict(key);
+            return super.putIfAbsent(key, value);
+        }
+    }
+
+    @Override
+    protected Object toStoreValue(final Object userValue) {
+        return super.toStoreValue(codec.encode(userValue));
+    }
+
+    @Override
+    protected Object fromStoreValue(final Object storeValue) {
+        if (storeValue instanceof Decoded decoded) {
+            return super.fromStoreValue(decoded.value());
+        }
+        final Object decoded = codec.decode(storeValue);
+        if (decoded == null && storeValue instanceof SerializedCacheValue) {
+            throw new UnreadableValueException();
+        }
+        return super.fromStoreValue(decoded);
+    }
+
+    /** A stored value already decoded by {@link #lookup(Object)}. */
+    private record Decoded(Object value) {
+    }
+
+    /** Raised when a stored value cannot be read back. */
+    private static final class UnreadableValueException extends IllegalStateException {
+
+        private static final long serialVersionUID = 1L;
+
+        UnreadableValueException() {
+            super("Cached value cannot be read back");
+        }
+    }
+}
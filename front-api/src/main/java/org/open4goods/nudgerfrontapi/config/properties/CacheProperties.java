@@ -1,9 +1,12 @@
 package org.open4goods.nudgerfrontapi.config.properties;
 
+import org.open4goods.model.constants.CacheConstants;
+import org.open4goods.services.productrepository.config.ProductChangesConfig;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.util.unit.DataSize;
 
 import java.time.Duration;
+import java.util.Set;
 
 /**
  * Configuration properties for front cache settings.
@@ -40,6 +43,35 @@ public class CacheProperties {
     /** Byte budget for the FOREVER_LOCAL_CACHE_NAME cache. */
     private DataSize foreverMaxBytes = DataSize.ofMegabytes(128);
 
+    /**
+     * Store cached values as deflated JSON byte arrays instead of object graphs. Entries are
+     * several times smaller and weighed by their exact size, at the cost of a deserialisation
+     * on each hit.
+     */
+    private boolean serializedValues = false;
+
+    /**
+     * Expiring caches whose hot entries are refreshed in the background before they expire
+     * (for {@code @Cacheable(sync = true)} methods). Empty to disable.
+     */
+    private Set<String> refreshAheadCaches = Set.of(CacheConstants.ONE_HOUR_LOCAL_CACHE_NAME,
+            CacheConstants.ONE_DAY_LOCAL_CACHE_NAME);
+
+    /** Fraction of the ttl after which an entry becomes a refresh candidate. */
+    private double refreshAheadRatio = 0.8;
+
+    /** Hits a candidate needs, once in its refresh window, to be refreshed. */
+    private int refreshAheadMinHits = 3;
+
+    /** Maximum number of background refreshes running at once, per cache. */
+    private int refreshAheadMaxConcurrency = 4;
+
+    /**
+     * Changes log polled to evict the cached entries of the products changed by the
+     * indexation, allowing long ttls.
+     */
+    private ProductChangesConfig productChanges = new ProductChangesConfig();
+
     public String getPath() {
         return path;
     }
@@ -103,4 +135,52 @@ public class CacheProperties {
     public void setForeverMaxBytes(DataSize foreverMaxBytes) {
         this.foreverMaxBytes = foreverMaxBytes;
     }
+
+    public boolean isSerializedValues() {
+        return serializedValues;
+    }
+
+    public void setSerializedValues(boolean serializedValues) {
+        this.serializedValues = serializedValues;
+    }
+
+    public Set<String> getRefreshAheadCaches() {
+        return refreshAheadCaches;
+    }
+
+    public void setRefreshAheadCaches(Set<String> refreshAheadCaches) {
+        this.refreshAheadCaches = refreshAheadCaches;
+    }
+
+    public double getRefreshAheadRatio() {
+        return refreshAheadRatio;
+    }
+
+    public void setRefreshAheadRatio(double refreshAheadRatio) {
+        this.refreshAheadRatio = refreshAheadRatio;
+    }
+
+    public int getRefreshAheadMinHits() {
+        return refreshAheadMinHits;
+    }
+
+    public void setRefreshAheadMinHits(int refreshAheadMinHits) {
+        this.refreshAheadMinHits = refreshAheadMinHits;
+    }
+
+    public int getRefreshAheadMaxConcurrency() {
+        return refreshAheadMaxConcurrency;
+    }
+
+    public void setRefreshAheadMaxConcurrency(int refreshAheadMaxConcurrency) {
+        this.refreshAheadMaxConcurrency = refreshAheadMaxConcurrency;
+    }
+
+    public ProductChangesConfig getProductChanges() {
+        return productChanges;
+    }
+
+    public void setProductChanges(ProductChangesConfig productChanges) {
+        this.productChanges = productChanges;
+    }
 }
@@ -2,6 +2,9 @@ package org.open4goods.nudgerfrontapi.config.properties;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
 
 import jakarta.validation.constraints.NotBlank;
 
@@ -12,6 +15,18 @@ public class EmbeddingProperties {
     @NotBlank(message = "front.embedding.api-base-url must be provided")
     private String apiBaseUrl;
 
+    /** Identifier of the embedding model, part of the query embeddings cache keys. */
+    private String modelId = "default";
+
+    /** Byte budget of the query embeddings cache. */
+    private DataSize queryCacheMaxBytes = DataSize.ofMegabytes(32);
+
+    /** Expiry of the cached query embeddings, also the period of the cache warm up. */
+    private Duration queryCacheTtl = Duration.ofHours(24);
+
+    /** Optional file of top queries, one per line, used to warm the query embeddings cache. */
+    private String queryCacheWarmupFile;
+
     public String getApiBaseUrl() {
         return apiBaseUrl;
     }
@@ -19,4 +34,36 @@ public class EmbeddingProperties {
     public void setApiBaseUrl(String apiBaseUrl) {
         this.apiBaseUrl = apiBaseUrl;
     }
+
+    public String getModelId() {
+        return modelId;
+    }
+
+    public void setModelId(String modelId) {
+        this.modelId = modelId;
+    }
+
+    public DataSize getQueryCacheMaxBytes() {
+        return queryCacheMaxBytes;
+    }
+
+    public void setQueryCacheMaxBytes(DataSize queryCacheMaxBytes) {
+        this.queryCacheMaxBytes = queryCacheMaxBytes;
+    }
+
+    public Duration getQueryCacheTtl() {
+        return queryCacheTtl;
+    }
+
+    public void setQueryCacheTtl(Duration queryCacheTtl) {
+        this.queryCacheTtl = queryCacheTtl;
+    }
+
+    public String getQueryCacheWarmupFile() {
+        return queryCacheWarmupFile;
+    }
+
+    public void setQueryCacheWarmupFile(String queryCacheWarmupFile) {
+        this.queryCacheWarmupFile = queryCacheWarmupFile;
+    }
 }
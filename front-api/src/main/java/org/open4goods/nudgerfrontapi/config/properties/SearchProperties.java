@@ -1,5 +1,7 @@
 package org.open4goods.nudgerfrontapi.config.properties;
 
+import java.time.Duration;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 /**
@@ -44,6 +46,46 @@ public class SearchProperties {
         this.semanticMinScore = semanticMinScore;
     }
 
+    /**
+     * Number of ranked candidates materialised by a semantic search cursor, hence the deepest
+     * reachable semantic result.
+     */
+    private int semanticCursorDepth = 500;
+
+    /**
+     * Time during which the pages of a semantic search are served from its cursor.
+     */
+    private Duration semanticCursorTtl = Duration.ofMinutes(10);
+
+    /**
+     * Maximum number of semantic search cursors kept in memory.
+     */
+    private int semanticCursorMaxEntries = 2_000;
+
+    public int getSemanticCursorDepth() {
+        return semanticCursorDepth;
+    }
+
+    public void setSemanticCursorDepth(int semanticCursorDepth) {
+        this.semanticCursorDepth = semanticCursorDepth;
+    }
+
+    public Duration getSemanticCursorTtl() {
+        return semanticCursorTtl;
+    }
+
+    public void setSemanticCursorTtl(Duration semanticCursorTtl) {
+        this.semanticCursorTtl = semanticCursorTtl;
+    }
+
+    public int getSemanticCursorMaxEntries() {
+        return semanticCursorMaxEntries;
+    }
+
+    public void setSemanticCursorMaxEntries(int semanticCursorMaxEntries) {
+        this.semanticCursorMaxEntries = semanticCursorMaxEntries;
+    }
+
     /**
      * Suggest-specific configuration properties.
      */
@@ -238,7 +238,8 @@ public class CategoriesController {
         Pageable pageable = PageRequest.of(0, TOP_PRODUCTS_LIMIT,
                 Sort.by(Sort.Order.desc(SORT_FIELD_IMPACT_SCORE)));
 
-        SearchService.SearchResult result = searchService.search(pageable, null, null, null, filters, false, null);
+        SearchService.SearchResult result = searchService.search(pageable, null, null, null, filters, false, null,
+                Set.of(ProductDtoComponent.base));
         Locale locale = resolveLocale(domainLanguage);
 
         Map<Long, ProductDto> uniqueProducts = new LinkedHashMap<>();
@@ -139,7 +139,8 @@ public class DatavizStatsService {
                 aggregationQuery,
                 filters,
                 false,
-                "TEXT"
+                "TEXT",
+                null
         );
 
         return formatResponse(preset, result);
@@ -203,7 +204,8 @@ public class DatavizStatsService {
                 aggregationQuery,
                 filters,
                 false,
-                "TEXT"
+                "TEXT",
+                null
         );
 
         DatavizHeroStatsDto standardStats = buildHeroStatsFromResult(result);
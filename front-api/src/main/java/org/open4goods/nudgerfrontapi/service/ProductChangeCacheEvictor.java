@@ -0,0 +1,125 @@
+package org.open4goods.nudgerfrontapi.service;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.open4goods.model.CacheKeyGenerator.MethodParamsKey;
+import org.open4goods.model.constants.CacheConstants;
+import org.open4goods.services.productrepository.changes.ProductChangeBus;
+import org.open4goods.services.productrepository.changes.ProductChangeEvent;
+import org.open4goods.services.productrepository.changes.ProductChangeGroup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+
+/**
+ * Evicts the local cache entries made stale by the product changes published on the
+ * {@link ProductChangeBus}:
+ * <ul>
+ * <li>the product references (names, brand, model, scores) of the changed products, by
+ * their product id key;</li>
+ * <li>the {@link SearchService} results scoped to the vertical of a changed product, by
+ * their {@code verticalId} parameter. Keyed by the whole request, they are found in a
+ * single pass over the search cache.</li>
+ * </ul>
+ * <p>Searches not scoped to a vertical (global search, suggestions) are left to their
+ * expiry: any change would evict them, defeating their cache.</p>
+ */
+@Service
+public class ProductChangeCacheEvictor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProductChangeCacheEvictor.class);
+
+    /** Changes rendered by the product references. */
+    private static final Set<ProductChangeGroup> REFERENCE_GROUPS = EnumSet.of(ProductChangeGroup.NAMES,
+            ProductChangeGroup.SCORES, ProductChangeGroup.ATTRIBUTES);
+
+    /** Changes rendered by the search results. */
+    private static final Set<ProductChangeGroup> SEARCH_GROUPS = EnumSet.complementOf(EnumSet.of(ProductChangeGroup.OTHER));
+
+    /** Name of the vertical parameter of the scoped searches. */
+    private static final String VERTICAL_PARAMETER = "verticalId";
+
+    private final CacheManager cacheManager;
+
+    /** Index of the vertical parameter, by cached search method, -1 if not scoped. */
+    private final Map<Method, Integer> verticalParameters = new ConcurrentHashMap<>();
+
+    public ProductChangeCacheEvictor(CacheManager cacheManager, ProductChangeBus productChangeBus) {
+        this.cacheManager = cacheManager;
+        productChangeBus.subscribe(this::evict);
+    }
+
+    /**
+     * Evict the entries affected by the given changes.
+     *
+     * @param events changes published by the indexation
+     */
+    void evict(List<ProductChangeEvent> events) {
+        Set<Long> renamed = new HashSet<>();
+        Set<String> verticals = new HashSet<>();
+        for (ProductChangeEvent event : events) {
+            if (event.affects(REFERENCE_GROUPS)) {
+                renamed.add(event.productId());
+            }
+            if (event.vertical() != null && event.affects(SEARCH_GROUPS)) {
+                verticals.add(event.vertical());
+            }
+        }
+        Cache cache = cacheManager.getCache(CacheConstants.ONE_HOUR_LOCAL_CACHE_NAME);
+        if (cache == null || (renamed.isEmpty() && verticals.isEmpty())) {
+            return;
+        }
+
+        int evicted = 0;
+        for (Long productId : renamed) {
+            if (cache.evictIfPresent(ProductMappingService.referenceCacheKey(productId))) {
+                evicted++;
+            }
+        }
+        if (!verticals.isEmpty() && cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> nativeCache) {
+            List<Object> stale = new ArrayList<>();
+            for (Object key : nativeCache.asMap().keySet()) {
+                if (key instanceof MethodParamsKey call && verticals.contains(vertical(call))) {
+                    stale.add(key);
+                }
+            }
+            // Evicted through the Spring cache, for the decorators to drop their state
+            stale.forEach(cache::evict);
+            evicted += stale.size();
+        }
+        LOGGER.info("{} product changes, {} cache entries evicted", events.size(), evicted);
+    }
+
+    /**
+     * @return the vertical a cached search is scoped to, null if not a scoped search
+     */
+    private String vertical(MethodParamsKey call) {
+        if (call.getMethod().getDeclaringClass() != SearchService.class) {
+            return null;
+        }
+        int index = verticalParameters.computeIfAbsent(call.getMethod(), ProductChangeCacheEvictor::verticalParameter);
+        return index < 0 || index >= call.getParams().size() || !(call.getParams().get(index) instanceof String vertical)
+                ? null
+                : vertical;
+    }
+
+    private static int verticalParameter(Method method) {
+        Parameter[] parameters = method.getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            if (VERTICAL_PARAMETER.equals(parameters[i].getName()) && parameters[i].getType() == String.class) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -7,6 +7,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -174,7 +175,8 @@ public class ProductMappingService {
      */
     public ProductDto getProduct(long gtin, Locale locale, Set<String> includes, DomainLanguage domainLanguage)
             throws ResourceNotFoundException {
-        Product product = repository.getByIdWithoutEmbedding(gtin);
+        // Only fetch the document fields the requested components are mapped from
+        Product product = repository.getById(gtin, ProductSourceProjection.forComponents(resolveComponents(includes)));
         return mapProduct(product, locale, includes, domainLanguage, true);
     }
 
@@ -346,7 +348,8 @@ public class ProductMappingService {
         }
         if (!missing.isEmpty()) {
             try {
-                Map<String, Product> fetched = repository.multiGetByIdWithoutEmbedding(missing);
+                Map<String, Product> fetched = repository.multiGetById(missing,
+                        ProductSourceProjection.forReferences());
                 for (Long id : missing) {
                     Product referencedProduct = fetched.get(String.valueOf(id));
                     if (referencedProduct != null) {
@@ -404,41 +407,50 @@ public class ProductMappingService {
         if (referenceCache == null || id == null) {
             return null;
         }
-        Cache.ValueWrapper wrapper = referenceCache.get(referenceCacheKey(id, domainLanguage, locale));
+        Cache.ValueWrapper wrapper = referenceCache.get(referenceCacheKey(id));
         if (wrapper == null) {
             return null;
         }
-        Object value = wrapper.get();
-        if (value instanceof ProductReferenceDto referenceDto) {
+        if (wrapper.get() instanceof Map<?, ?> byLanguage
+                && byLanguage.get(referenceLanguageKey(domainLanguage, locale)) instanceof ProductReferenceDto referenceDto) {
             return referenceDto;
         }
         return null;
     }
 
     /**
-     * Store a freshly resolved product reference in the cache.
+     * Store a freshly resolved product reference in the cache, next to its other languages.
      */
     private void cacheProductReference(Long id, DomainLanguage domainLanguage, Locale locale,
             ProductReferenceDto referenceDto) {
         if (referenceCache == null || id == null || referenceDto == null) {
             return;
         }
-        referenceCache.put(referenceCacheKey(id, domainLanguage, locale), referenceDto);
+        String key = referenceCacheKey(id);
+        Map<Object, Object> byLanguage = new HashMap<>();
+        Cache.ValueWrapper wrapper = referenceCache.get(key);
+        if (wrapper != null && wrapper.get() instanceof Map<?, ?> cached) {
+            byLanguage.putAll(cached);
+        }
+        byLanguage.put(referenceLanguageKey(domainLanguage, locale), referenceDto);
+        // Replaced, never mutated once cached
+        referenceCache.put(key, Map.copyOf(byLanguage));
     }
 
-    /**
-     * Build the cache key used to store referenced products.
-     */
-    private String referenceCacheKey(Long id, DomainLanguage domainLanguage, Locale locale) {
-        String languageKey;
+    private static String referenceLanguageKey(DomainLanguage domainLanguage, Locale locale) {
         if (domainLanguage != null && StringUtils.hasText(domainLanguage.languageTag())) {
-            languageKey = domainLanguage.languageTag();
+            return domainLanguage.languageTag();
         } else if (locale != null) {
-            languageKey = locale.toLanguageTag();
-        } else {
-            languageKey = DEFAULT_LANGUAGE_KEY;
+            return locale.toLanguageTag();
         }
-        return PRODUCT_REFERENCE_CACHE_PREFIX + ':' + id + ':' + languageKey;
+        return DEFAULT_LANGUAGE_KEY;
+    }
+
+    /**
+     * @return the cache key of a referenced product, holding its references by language
+     */
+    static String referenceCacheKey(long id) {
+        return PRODUCT_REFERENCE_CACHE_PREFIX + ':' + id;
     }
 
     /**
@@ -448,7 +460,7 @@ public class ProductMappingService {
      * @return resolved set of components, defaults to all when empty or
      *         {@code null}
      */
-    private EnumSet<ProductDtoComponent> resolveComponents(Set<String> includes) {
+    static EnumSet<ProductDtoComponent> resolveComponents(Set<String> includes) {
         if (includes == null || includes.isEmpty()) {
             return EnumSet.allOf(ProductDtoComponent.class);
         }
@@ -1061,7 +1073,7 @@ public class ProductMappingService {
             FilterRequestDto filters, boolean semanticSearch, String searchType) {
 
         SearchService.SearchResult result = searchService.search(pageable, verticalId, query, aggregation, filters,
-                 semanticSearch, searchType);
+                 semanticSearch, searchType, resolveComponents(includes));
         SearchHits<Product> hits = result.hits();
 
         List<ProductDto> items = hits.getSearchHits().stream()
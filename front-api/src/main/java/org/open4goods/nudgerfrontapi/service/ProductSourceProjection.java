@@ -0,0 +1,134 @@
+package org.open4goods.nudgerfrontapi.service;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.open4goods.nudgerfrontapi.dto.product.ProductDto.ProductDtoComponent;
+import org.open4goods.services.productrepository.services.ProductRepository;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
+
+/**
+ * Declarative mapping between the {@link ProductDtoComponent} requested by the
+ * frontend and the product document fields their mapping reads.
+ * <p>
+ * Used to build Elasticsearch source filters so that a request for a few
+ * components does not fetch (and deserialise) attributes, resources or price
+ * histories it will never render. When a mapping method starts reading a new
+ * product field, the field must be added to its component here, otherwise it
+ * will silently be left to its default value.
+ */
+public final class ProductSourceProjection {
+
+    /**
+     * Fields read whatever the requested components: identifier, slug, vertical
+     * resolution and name fallbacks.
+     */
+    static final List<String> ALWAYS = List.of(
+            "id",
+            "vertical",
+            "names",
+            "offerNames",
+            "attributes.referentielAttributes");
+
+    /**
+     * Fields read to map the lightweight references used by score extremes and
+     * rankings.
+     */
+    static final List<String> REFERENCE = List.of(
+            "scores",
+            "ranking");
+
+    private static final Map<ProductDtoComponent, List<String>> COMPONENT_FIELDS = new EnumMap<>(
+            ProductDtoComponent.class);
+
+    static {
+        COMPONENT_FIELDS.put(ProductDtoComponent.base, List.of(
+                "creationDate",
+                "lastChange",
+                "externalIds",
+                "googleTaxonomyId",
+                "excluded",
+                "excludedCauses",
+                "gtinInfos",
+                "coverImagePath",
+                "resources",
+                "scores.ECOSCORE",
+                "akaBrands",
+                "akaModels"));
+        COMPONENT_FIELDS.put(ProductDtoComponent.identity, List.of(
+                "akaBrands",
+                "akaModels"));
+        COMPONENT_FIELDS.put(ProductDtoComponent.names, List.of(
+                "scores.ECOSCORE"));
+        COMPONENT_FIELDS.put(ProductDtoComponent.attributes, List.of(
+                "attributes"));
+        COMPONENT_FIELDS.put(ProductDtoComponent.resources, List.of(
+                "resources",
+                "coverImagePath"));
+        COMPONENT_FIELDS.put(ProductDtoComponent.datasources, List.of(
+                "datasourceCodes",
+                "descriptionsByDatasource"));
+        COMPONENT_FIELDS.put(ProductDtoComponent.scores, List.of(
+                "scores",
+                "ranking"));
+        COMPONENT_FIELDS.put(ProductDtoComponent.eprel, List.of(
+                "eprelDatas"));
+        COMPONENT_FIELDS.put(ProductDtoComponent.offers, List.of(
+                "price",
+                "offersCount"));
+        COMPONENT_FIELDS.put(ProductDtoComponent.timeline, List.of(
+                "creationDate",
+                "eprelDatas",
+                "price"));
+    }
+
+    private ProductSourceProjection() {
+    }
+
+    /**
+     * Build the source filter fetching the fields needed to map the given
+     * components.
+     *
+     * @param components requested components, all of them when {@code null} or
+     *                   empty
+     * @return the whole document without vectors when every component is
+     *         requested, the union of the component fields otherwise
+     */
+    public static FetchSourceFilter forComponents(Set<ProductDtoComponent> components) {
+        if (components == null || components.isEmpty() || components.containsAll(EnumSet.allOf(ProductDtoComponent.class))) {
+            return ProductRepository.productFieldsWithoutEmbeddingSourceFilter();
+        }
+        return ProductRepository.customSourceFilter(fields(components), null);
+    }
+
+    /**
+     * Build the source filter used to fetch referenced products (score extremes,
+     * rankings).
+     *
+     * @return source filter limited to the reference fields
+     */
+    public static FetchSourceFilter forReferences() {
+        Set<String> fields = new LinkedHashSet<>(ALWAYS);
+        fields.addAll(REFERENCE);
+        return ProductRepository.customSourceFilter(fields.toArray(String[]::new), null);
+    }
+
+    /**
+     * Resolve the document fields read by the given components.
+     *
+     * @param components requested components
+     * @return the fields, without duplicates
+     */
+    static String[] fields(Collection<ProductDtoComponent> components) {
+        Set<String> fields = new LinkedHashSet<>(ALWAYS);
+        for (ProductDtoComponent component : components) {
+            fields.addAll(COMPONENT_FIELDS.get(component));
+        }
+        return fields.toArray(String[]::new);
+    }
+}
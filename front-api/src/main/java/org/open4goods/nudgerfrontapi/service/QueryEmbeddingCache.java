@@ -0,0 +1,181 @@
+package org.open4goods.nudgerfrontapi.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.open4goods.model.helper.IdHelper;
+import org.open4goods.nudgerfrontapi.config.properties.EmbeddingProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Cache of the normalised embeddings of search queries, in front of {@link EmbeddingProxyService}.
+ *
+ * <p>Popular queries are embedded once per model instead of once per request: entries map the
+ * normalised query text (trimmed, single spaced, lower cased) and the model id to the padded,
+ * L2 normalised vector used for k-NN retrieval. The cache is bounded by a byte budget, each
+ * entry weighing its vector and key.</p>
+ *
+ * <p>Concurrent misses on the same query are coalesced: the first request embeds the query,
+ * the others wait for its result rather than each calling the backend. Failures and missing
+ * embeddings are not cached.</p>
+ *
+ * <p>The cache can be warmed from a file of top queries, one per line, when the application
+ * starts and then once per TTL.</p>
+ */
+@Service
+public class QueryEmbeddingCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryEmbeddingCache.class);
+
+    /** Approximate retained size of an entry besides its vector and key chars. */
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    private final EmbeddingProxyService embeddingProxyService;
+    private final EmbeddingProperties properties;
+    private final AsyncCache<String, float[]> cache;
+
+    public QueryEmbeddingCache(EmbeddingProxyService embeddingProxyService, EmbeddingProperties properties) {
+        this.embeddingProxyService = embeddingProxyService;
+        this.properties = properties;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.getQueryCacheMaxBytes().toBytes())
+                .weigher((String key, float[] vector) -> ENTRY_OVERHEAD_BYTES + key.length() * 2 + vector.length * Float.BYTES)
+                .expireAfterWrite(properties.getQueryCacheTtl())
+                .recordStats()
+                .buildAsync();
+    }
+
+    /**
+     * Returns the normalised embedding of a query, computing it only on the first request.
+     * The returned vector is shared between requests and must not be modified.
+     *
+     * @param query the query text
+     * @return the L2 normalised, 512 dims embedding, or {@code null} if the backend returned none
+     * @throws RuntimeException if the embedding backend failed
+     */
+    public float[] embed(String query) {
+        String text = normalize(query);
+        if (!StringUtils.hasText(text)) {
+            return null;
+        }
+        String key = properties.getModelId() + '\u0000' + text;
+
+        CompletableFuture<float[]> pending = new CompletableFuture<>();
+        CompletableFuture<float[]> existing = cache.asMap().putIfAbsent(key, pending);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        try {
+            float[] embedding = compute(text);
+            if (embedding == null) {
+                cache.asMap().remove(key, pending);
+            }
+            pending.complete(embedding);
+            return embedding;
+        } catch (RuntimeException e) {
+            pending.completeExceptionally(e);
+            cache.asMap().remove(key, pending);
+            throw e;
+        }
+    }
+
+    /**
+     * Embeds the given queries, skipping the ones already cached. Failures are logged and skipped.
+     *
+     * @param queries the queries to warm the cache with
+     * @return the number of queries that have been embedded
+     */
+    public int warmUp(Collection<String> queries) {
+        int embedded = 0;
+        for (String query : queries) {
+            String text = normalize(query);
+            if (!StringUtils.hasText(text) || cache.getIfPresent(properties.getModelId() + '\u0000' + text) != null) {
+                continue;
+            }
+            try {
+                if (embed(text) != null) {
+                    embedded++;
+                }
+            } catch (RuntimeException e) {
+                LOGGER.warn("Query embeddings warm up stopped after {} queries : {}", embedded, e.getMessage());
+                break;
+            }
+        }
+        return embedded;
+    }
+
+    /**
+     * Warms the cache from the configured top queries file, if any.
+     */
+    @Scheduled(initialDelayString = "${front.embedding.query-cache-warmup-delay:PT1M}",
+            fixedDelayString = "${front.embedding.query-cache-ttl:PT24H}")
+    public void warmUpFromFile() {
+        String file = properties.getQueryCacheWarmupFile();
+        if (!StringUtils.hasText(file)) {
+            return;
+        }
+        try {
+            List<String> queries = Files.readAllLines(Path.of(file), StandardCharsets.UTF_8);
+            int embedded = warmUp(queries);
+            LOGGER.info("Warmed query embeddings cache with {} of {} queries from {}", embedded, queries.size(), file);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot read query embeddings warm up file {} : {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * @return the number of cached embeddings
+     */
+    public long size() {
+        return cache.synchronous().estimatedSize();
+    }
+
+    private float[] compute(String text) {
+        float[] embedding = embeddingProxyService.embed(text);
+        if (embedding == null || embedding.length == 0) {
+            return null;
+        }
+        embedding = IdHelper.to512(embedding);
+        normalizeL2(embedding);
+        return embedding;
+    }
+
+    private static String normalize(String query) {
+        if (query == null) {
+            return null;
+        }
+        return query.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static void normalizeL2(float[] v) {
+        float norm = 0;
+        for (float x : v) {
+            norm += x * x;
+        }
+        norm = (float) Math.sqrt(norm);
+        if (norm > 0) {
+            for (int i = 0; i < v.length; i++) {
+                v[i] /= norm;
+            }
+        }
+    }
+}
@@ -7,6 +7,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -24,7 +25,7 @@ import org.open4goods.model.Localisable;
 import org.open4goods.model.attribute.AttributeType;
 import org.open4goods.model.attribute.ReferentielKey;
 import org.open4goods.model.constants.CacheConstants;
-import org.open4goods.model.helper.IdHelper;
+import org.open4goods.model.exceptions.ResourceNotFoundException;
 import org.open4goods.model.price.AggregatedPrice;
 import org.open4goods.model.price.Currency;
 import org.open4goods.model.product.Product;
@@ -39,6 +40,7 @@ import org.open4goods.nudgerfrontapi.dto.PageDto;
 import org.open4goods.nudgerfrontapi.dto.PageMetaDto;
 import org.open4goods.nudgerfrontapi.dto.product.FieldMetadataDto;
 import org.open4goods.nudgerfrontapi.dto.product.ProductDto;
+import org.open4goods.nudgerfrontapi.dto.product.ProductDto.ProductDtoComponent;
 import org.open4goods.nudgerfrontapi.dto.product.ProductDto.ProductDtoSortableFields;
 import org.open4goods.nudgerfrontapi.dto.product.ProductFieldOptionsResponse;
 import org.open4goods.nudgerfrontapi.dto.search.AggregationBucketDto;
@@ -68,14 +70,19 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.elasticsearch.UncategorizedElasticsearchException;
 import org.springframework.data.elasticsearch.client.elc.ElasticsearchAggregations;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
 import org.springframework.data.elasticsearch.client.elc.NativeQueryBuilder;
 import org.springframework.data.elasticsearch.core.SearchHit;
 import org.springframework.data.elasticsearch.core.SearchHits;
 import org.springframework.data.elasticsearch.core.SearchHitsImpl;
+import org.springframework.data.elasticsearch.core.TotalHitsRelation;
 import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
 import co.elastic.clients.elasticsearch._types.ElasticsearchException;
 import co.elastic.clients.elasticsearch._types.FieldValue;
 import co.elastic.clients.elasticsearch._types.Script;
@@ -117,6 +124,10 @@ public class SearchService {
 	private static final String[] SUGGEST_SOURCE_INCLUDES = { "attributes.referentielAttributes.MODEL",
 			"attributes.referentielAttributes.BRAND", "attributes.referentielAttributes.GTIN", "coverImagePath",
 			"vertical", "scores.ECOSCORE", "price.minPrice.price", "price.minPrice.currency" };
+	/** Fields needed to rank semantic candidates (see {@link #buildSemanticSortComparator(Sort)}). */
+	private static final String[] SEMANTIC_CURSOR_SOURCE_INCLUDES = { "id", "offersCount", "price.minPrice.price",
+			"attributes.referentielAttributes.BRAND", "attributes.referentielAttributes.MODEL", "scores.ECOSCORE",
+			"creationDate", "lastChange" };
 	private static final String DEFAULT_LANGUAGE_KEY = "default";
 	private static final String OFFER_NAMES_DENSITY_SCRIPT = """
 			if (params.tokens == null || params.tokens.isEmpty()) { return _score; }
@@ -156,18 +167,23 @@ public class SearchService {
 	private final ProductMappingService productMappingService;
 	private final ApiProperties apiProperties;
 	private final SearchProperties searchProperties;
-	private final EmbeddingProxyService textEmbeddingService;
+	private final QueryEmbeddingCache queryEmbeddings;
+	private final Cache<SemanticCursorKey, SemanticCursor> semanticCursors;
 	private volatile List<VerticalSuggestionEntry> verticalSuggestions = List.of();
 
 	public SearchService(ProductRepository repository, VerticalsConfigService verticalsConfigService,
 			@Lazy ProductMappingService productMappingService, ApiProperties apiProperties,
-			SearchProperties searchProperties, EmbeddingProxyService textEmbeddingService) {
+			SearchProperties searchProperties, QueryEmbeddingCache queryEmbeddings) {
 		this.repository = repository;
 		this.verticalsConfigService = verticalsConfigService;
 		this.productMappingService = productMappingService;
 		this.apiProperties = apiProperties;
 		this.searchProperties = searchProperties;
-		this.textEmbeddingService = textEmbeddingService;
+		this.queryEmbeddings = queryEmbeddings;
+		this.semanticCursors = Caffeine.newBuilder()
+				.maximumSize(searchProperties.getSemanticCursorMaxEntries())
+				.expireAfterWrite(searchProperties.getSemanticCursorTtl())
+				.build();
 	}
 
 	@PostConstruct
@@ -615,13 +631,13 @@ public class SearchService {
 	 *         metadata
 	 */
 	@io.micrometer.core.annotation.Timed(value = "search.products", description = "Time taken to search products", extraTags = {"service", "search"})
-	@Cacheable(cacheNames = CacheConstants.ONE_HOUR_LOCAL_CACHE_NAME, keyGenerator = CacheConstants.KEY_GENERATOR)
+	@Cacheable(cacheNames = CacheConstants.ONE_HOUR_LOCAL_CACHE_NAME, keyGenerator = CacheConstants.KEY_GENERATOR, sync = true)
     public ProductSearchResponseDto searchProducts(Pageable pageable, Locale locale, Set<String> includes,
             AggregationRequestDto aggregation, DomainLanguage domainLanguage, String verticalId, String query,
             FilterRequestDto filters, boolean semanticSearch, String searchType) {
 
         SearchResult result = search(pageable, verticalId, query, aggregation, filters,
-                 semanticSearch, searchType);
+                 semanticSearch, searchType, ProductMappingService.resolveComponents(includes));
         SearchHits<Product> hits = result.hits();
 
         List<ProductDto> items = hits.getSearchHits().stream()
@@ -651,13 +667,18 @@ public class SearchService {
 	 *                              search query
 	 * @param allowSemanticFallback whether semantic search should be attempted
 	 *                              when a text query is provided
+	 * @param components            DTO components the hits will be mapped to,
+	 *                              used to only fetch the fields they read
+	 *                              ({@code null} fetches every field)
 	 * @return a {@link SearchResult} bundling {@link SearchHits} and aggregation
 	 *         metadata
 	 */
 	@io.micrometer.core.annotation.Timed(value = "search.internal", description = "Time taken to execute internal search", extraTags = {"service", "search"})
-	@Cacheable(cacheNames = CacheConstants.ONE_HOUR_LOCAL_CACHE_NAME, keyGenerator = CacheConstants.KEY_GENERATOR)
+	@Cacheable(cacheNames = CacheConstants.ONE_HOUR_LOCAL_CACHE_NAME, keyGenerator = CacheConstants.KEY_GENERATOR, sync = true)
 	public SearchResult search(Pageable pageable, String verticalId, String query,
-			AggregationRequestDto aggregationQuery, FilterRequestDto filters, boolean allowSemanticFallback, String searchType) {
+			AggregationRequestDto aggregationQuery, FilterRequestDto filters, boolean allowSemanticFallback, String searchType,
+			Set<ProductDtoComponent> components) {
+		FetchSourceFilter sourceFilter = ProductSourceProjection.forComponents(components);
 		String sanitizedQuery = sanitize(query);
 		String normalizedVerticalId = normalizeVerticalId(verticalId);
 
@@ -681,76 +702,206 @@ public class SearchService {
 
 		List<Agg> excludedAggregations = extractExcludedAggregations(aggregationQuery);
 		boolean requiresAdminExcludedAggregation = applyDefaultExclusion && !excludedAggregations.isEmpty();
-		Query adminAggregationQuery = requiresAdminExcludedAggregation
-				? (useSemanticSearch
+		ExcludedAggregationsQuery adminAggregations = requiresAdminExcludedAggregation
+				? excludedAggregationsQuery(useSemanticSearch
 						? buildSemanticFilterQuery(normalizedVerticalId, null, normalizedFilters, false, VerticalScope.ANY)
-						: buildProductSearchQuery(normalizedVerticalId, sanitizedQuery, normalizedFilters, false))
+						: buildProductSearchQuery(normalizedVerticalId, sanitizedQuery, normalizedFilters, false),
+						excludedAggregations)
 				: null;
 
-		List<AggregationDescriptor> descriptors = new ArrayList<>();
-		var nativeQueryBuilder = new org.springframework.data.elasticsearch.client.elc.NativeQueryBuilder()
-				.withQuery(searchQuery)
-				.withSourceFilter(ProductRepository.productFieldsWithoutEmbeddingSourceFilter());
-
 		if (useSemanticSearch) {
-			applySemanticSearch(nativeQueryBuilder, semanticEmbedding, searchQuery, pageable);
-		} else {
-			nativeQueryBuilder.withPageable(pageable);
+			float[] embedding = semanticEmbedding;
+			Sort sort = pageable.getSort();
+			SemanticCursor cursor = semanticCursors.get(
+					new SemanticCursorKey("search", sanitizedQuery, normalizedVerticalId, normalizedFilters, aggregationQuery, sort),
+					key -> {
+						NativeQueryBuilder builder = semanticCursorQuery(embedding, searchQuery, true);
+						List<AggregationDescriptor> descriptors = configureAggregations(builder, aggregationQuery);
+						List<SearchHits<Product>> responses = executeSearches(builder.build(), adminAggregations);
+						return toSemanticCursor(responses.getFirst(), sort,
+								resolveAggregations(responses, descriptors, adminAggregations));
+					});
+			return new SearchResult(semanticCursorPage(cursor, pageable, sourceFilter), cursor.aggregations());
 		}
 
+		var nativeQueryBuilder = new org.springframework.data.elasticsearch.client.elc.NativeQueryBuilder()
+				.withQuery(searchQuery)
+				.withSourceFilter(sourceFilter)
+				.withPageable(pageable);
+		List<AggregationDescriptor> descriptors = configureAggregations(nativeQueryBuilder, aggregationQuery);
+		List<SearchHits<Product>> responses = executeSearches(nativeQueryBuilder.build(), adminAggregations);
+		return new SearchResult(responses.getFirst(), resolveAggregations(responses, descriptors, adminAggregations));
+	}
+
+	/**
+	 * Configure the requested aggregations on a query builder.
+	 *
+	 * @param builder          query builder to enrich
+	 * @param aggregationQuery requested aggregations, may be {@code null}
+	 * @return descriptors used to read the aggregation results
+	 */
+	private List<AggregationDescriptor> configureAggregations(NativeQueryBuilder builder, AggregationRequestDto aggregationQuery) {
+		List<AggregationDescriptor> descriptors = new ArrayList<>();
 		if (aggregationQuery != null && aggregationQuery.aggs() != null) {
 			for (Agg agg : aggregationQuery.aggs()) {
 				if (!isValidAggregation(agg)) {
 					continue;
 				}
 				switch (agg.type()) {
-				case terms -> descriptors.add(configureTermsAggregation(nativeQueryBuilder, agg));
-				case range -> descriptors.add(configureRangeAggregation(nativeQueryBuilder, agg));
+				case terms -> descriptors.add(configureTermsAggregation(builder, agg));
+				case range -> descriptors.add(configureRangeAggregation(builder, agg));
 				default -> LOGGER.warn("Unsupported aggregation type {}", agg.type());
 				}
 			}
 		}
+		return descriptors;
+	}
 
-		SearchHits<Product> hits;
+	private SearchHits<Product> executeSearch(NativeQueryBuilder builder) {
+		return executeSearches(List.of(builder.build())).getFirst();
+	}
+
+	/**
+	 * Execute a search along with its excluded aggregations query, in a single round trip.
+	 *
+	 * @param query             main query
+	 * @param adminAggregations excluded aggregations query, or {@code null}
+	 * @return the main hits, followed by the excluded aggregations hits when requested
+	 */
+	private List<SearchHits<Product>> executeSearches(NativeQuery query, ExcludedAggregationsQuery adminAggregations) {
+		return adminAggregations == null
+				? executeSearches(List.of(query))
+				: executeSearches(List.of(query, adminAggregations.query()));
+	}
+
+	/**
+	 * Execute sibling queries, batched in one {@code _msearch} request when there are several.
+	 *
+	 * @param queries queries to execute
+	 * @return the hits of each query, in query order
+	 */
+	private List<SearchHits<Product>> executeSearches(List<NativeQuery> queries) {
 		try {
-			hits = repository.search(nativeQueryBuilder.build(), ProductRepository.MAIN_INDEX_NAME);
+			if (queries.size() == 1) {
+				return List.of(repository.search(queries.getFirst(), ProductRepository.MAIN_INDEX_NAME));
+			}
+			return repository.multiSearch(queries, ProductRepository.MAIN_INDEX_NAME);
 		} catch (Exception e) {
 			elasticLog(e);
 			throw e;
 		}
-		if (useSemanticSearch) {
-			hits = sliceSearchHits(hits, pageable);
-		}
-		List<AggregationResponseDto> aggregations = extractAggregationResults(hits, descriptors);
-		if (requiresAdminExcludedAggregation) {
-			List<AggregationResponseDto> overrides = computeExcludedAggregations(adminAggregationQuery,
-					excludedAggregations);
+	}
+
+	/**
+	 * Extract the aggregation results, with the excluded buckets computed without the default
+	 * exclusion when requested.
+	 *
+	 * @param responses         main hits, followed by the excluded aggregations hits when requested
+	 * @param descriptors       configured aggregations
+	 * @param adminAggregations excluded aggregations query, or {@code null}
+	 * @return aggregation response DTOs
+	 */
+	private List<AggregationResponseDto> resolveAggregations(List<SearchHits<Product>> responses,
+			List<AggregationDescriptor> descriptors, ExcludedAggregationsQuery adminAggregations) {
+		List<AggregationResponseDto> aggregations = extractAggregationResults(responses.getFirst(), descriptors);
+		if (adminAggregations != null) {
+			List<AggregationResponseDto> overrides = extractAggregationResults(responses.get(1),
+					adminAggregations.descriptors());
 			aggregations = mergeAggregationOverrides(aggregations, overrides);
 		}
-		return new SearchResult(hits, List.copyOf(aggregations));
+		return List.copyOf(aggregations);
 	}
 
 	/**
-	 * Configure semantic KNN search clauses for a {@link NativeQueryBuilder}.
+	 * Build the KNN query materialising a semantic cursor: the top
+	 * {@link SearchProperties#getSemanticCursorDepth()} candidates, with only the fields
+	 * needed to rank them.
 	 *
-	 * @param builder    base query builder to enrich
-	 * @param embedding normalized embedding vector
-	 * @param filter     filter query scoping the semantic search
-	 * @param pageable   requested page used to compute the KNN candidate size
+	 * @param embedding     normalized embedding vector
+	 * @param filter        filter query scoping the semantic search
+	 * @param applyMinScore whether the semantic minimum score applies
+	 * @return the query builder
 	 */
-	private void applySemanticSearch(NativeQueryBuilder builder, float[] embedding, Query filter, Pageable pageable) {
-		int knnLimit = Math.max(pageable.getPageSize() * (pageable.getPageNumber() + 1), pageable.getPageSize());
+	private NativeQueryBuilder semanticCursorQuery(float[] embedding, Query filter, boolean applyMinScore) {
+		int depth = searchProperties.getSemanticCursorDepth();
 		List<Float> queryVector = new ArrayList<>(embedding.length);
 		for (float value : embedding) {
 			queryVector.add(value);
 		}
 
 		co.elastic.clients.elasticsearch._types.KnnSearch knnSearch = co.elastic.clients.elasticsearch._types.KnnSearch
-				.of(knn -> knn.field("embedding").queryVector(queryVector).k(knnLimit)
-						.numCandidates(Math.max(knnLimit * 2, 50))
+				.of(knn -> knn.field("embedding").queryVector(queryVector).k(depth)
+						.numCandidates(Math.max(depth * 2, 50))
 						.filter(filter == null ? List.of() : List.of(filter)));
 
-		builder.withKnnSearches(knnSearch).withPageable(PageRequest.of(0, knnLimit)).withMinScore(searchProperties.getSemanticMinScore());
+		NativeQueryBuilder builder = new NativeQueryBuilder().withQuery(filter).withKnnSearches(knnSearch)
+				.withPageable(PageRequest.of(0, depth))
+				.withSourceFilter(new FetchSourceFilter(true, SEMANTIC_CURSOR_SOURCE_INCLUDES, null));
+		if (applyMinScore) {
+			builder.withMinScore(searchProperties.getSemanticMinScore());
+		}
+		return builder;
+	}
+
+	/**
+	 * Rank semantic candidates and keep their ids and scores.
+	 *
+	 * @param hits         candidates, holding the ranking fields only
+	 * @param sort         optional sort definition
+	 * @param aggregations aggregations computed with the candidates, may be {@code null}
+	 * @return the cursor
+	 */
+	private SemanticCursor toSemanticCursor(SearchHits<Product> hits, Sort sort, List<AggregationResponseDto> aggregations) {
+		List<SearchHit<Product>> ranked = sortSemanticHits(hits.getSearchHits(), sort);
+		long[] ids = new long[ranked.size()];
+		float[] scores = new float[ranked.size()];
+		for (int i = 0; i < ranked.size(); i++) {
+			ids[i] = Long.parseLong(ranked.get(i).getId());
+			scores[i] = ranked.get(i).getScore();
+		}
+		// Candidates beyond the cursor depth cannot be paged to
+		TotalHitsRelation relation = ranked.size() < searchProperties.getSemanticCursorDepth()
+				? TotalHitsRelation.EQUAL_TO
+				: TotalHitsRelation.GREATER_THAN_OR_EQUAL_TO;
+		return new SemanticCursor(ids, scores, relation, hits.getMaxScore(), aggregations);
+	}
+
+	/**
+	 * Load the products of one page of a semantic cursor, in cursor order.
+	 *
+	 * @param cursor   materialised semantic results
+	 * @param pageable     requested page
+	 * @param sourceFilter projection of the loaded products
+	 * @return the hits of the page
+	 */
+	private SearchHits<Product> semanticCursorPage(SemanticCursor cursor, Pageable pageable,
+			FetchSourceFilter sourceFilter) {
+		int size = cursor.ids().length;
+		int from = (int) Math.min(pageable.getOffset(), size);
+		int to = Math.min(from + pageable.getPageSize(), size);
+		List<SearchHit<Product>> page = new ArrayList<>(to - from);
+		if (from < to) {
+			List<Long> ids = new ArrayList<>(to - from);
+			for (int i = from; i < to; i++) {
+				ids.add(cursor.ids()[i]);
+			}
+			Map<Long, Product> products = new HashMap<>();
+			try {
+				repository.multiGetById(ids, sourceFilter).values().forEach(product -> products.put(product.getId(), product));
+			} catch (ResourceNotFoundException e) {
+				LOGGER.warn("Cannot load semantic results page : {}", e.getMessage());
+			}
+			for (int i = from; i < to; i++) {
+				Product product = products.get(cursor.ids()[i]);
+				// Products deleted since the cursor has been materialised are skipped
+				if (product != null) {
+					page.add(new SearchHit<>(ProductRepository.MAIN_INDEX_NAME, String.valueOf(cursor.ids()[i]), null,
+							cursor.scores()[i], null, null, null, null, null, null, product));
+				}
+			}
+		}
+		return new SearchHitsImpl<>(size, cursor.totalHitsRelation(), cursor.maxScore(), Duration.ZERO, null, null,
+				page, null, null, null);
 	}
 
 	Query buildProductSearchQuery(String normalizedVerticalId, String sanitizedQuery, FilterRequestDto filters,
@@ -842,7 +993,7 @@ public class SearchService {
 	 * @return grouped search results and unassigned hits when necessary
 	 */
 	@io.micrometer.core.annotation.Timed(value = "search.global", description = "Time taken to execute global search", extraTags = {"service", "search"})
-	@Cacheable(cacheNames = CacheConstants.ONE_HOUR_LOCAL_CACHE_NAME, keyGenerator = CacheConstants.KEY_GENERATOR)
+	@Cacheable(cacheNames = CacheConstants.ONE_HOUR_LOCAL_CACHE_NAME, keyGenerator = CacheConstants.KEY_GENERATOR, sync = true)
 	public GlobalSearchResult globalSearch(String query, DomainLanguage domainLanguage, FilterRequestDto filters,
 			Sort sort, String searchType, Pageable missingVerticalPageable) {
 
@@ -898,7 +1049,7 @@ public class SearchService {
 	 * @return bundle of category and product suggestions
 	 */
 	@io.micrometer.core.annotation.Timed(value = "search.suggest", description = "Time taken to execute suggest", extraTags = {"service", "search"})
-	@Cacheable(cacheNames = CacheConstants.ONE_HOUR_LOCAL_CACHE_NAME, keyGenerator = CacheConstants.KEY_GENERATOR)
+	@Cacheable(cacheNames = CacheConstants.ONE_HOUR_LOCAL_CACHE_NAME, keyGenerator = CacheConstants.KEY_GENERATOR, sync = true)
 	public SuggestResult suggest(String query, DomainLanguage domainLanguage) {
 		String sanitizedQuery = sanitize(query);
 		if (!StringUtils.hasText(sanitizedQuery)) {
@@ -1630,15 +1781,12 @@ public class SearchService {
 		// Vertical groups use a fixed limit (not paginated for now as per requirements)
 		Pageable verticalPageable = PageRequest.of(0, GLOBAL_SEARCH_LIMIT);
 
-		SearchHits<Product> hits = null;
-		SearchHits<Product> missingHits = null;
-		try {
-			hits = executeSemanticSearch(null, sanitizedQuery, embedding, filters, true, verticalPageable, VerticalScope.REQUIRED);
-			missingHits = executeSemanticSearch(null, sanitizedQuery, embedding, filters, true, missingVerticalPageable, VerticalScope.MISSING);
-		} catch (Exception e) {
-			elasticLog(e);
-			throw e;
-		}
+		// Both scopes are searched in a single round trip
+		List<SearchHits<Product>> responses = executeSearches(List.of(
+				semanticSearchQuery(null, sanitizedQuery, embedding, filters, true, verticalPageable, VerticalScope.REQUIRED),
+				semanticSearchQuery(null, sanitizedQuery, embedding, filters, true, missingVerticalPageable, VerticalScope.MISSING)));
+		SearchHits<Product> hits = responses.get(0);
+		SearchHits<Product> missingHits = responses.get(1);
 
 		List<GlobalSearchHit> verticalHits = mapHits(hits, domainLanguage, true, sort);
 		List<GlobalSearchVerticalGroup> grouped = groupHitsByVertical(verticalHits, sort);
@@ -1756,7 +1904,7 @@ public class SearchService {
 		String embeddingInput = buildQueryEmbeddingInput(sanitizedQuery);
 		float[] embedding;
 		try {
-			embedding = textEmbeddingService.embed(embeddingInput);
+			embedding = queryEmbeddings.embed(embeddingInput);
 		} catch (Exception ex) {
 			LOGGER.warn("Semantic search unavailable: {}", ex.getMessage());
 			return List.of();
@@ -1767,39 +1915,17 @@ public class SearchService {
 			return List.of();
 		}
 
-		int knnLimit = Math.max(pageSize * (pageNumber + 1), pageSize);
-
-		// To 512 dims
-		embedding = IdHelper.to512(embedding);
-		normalizeL2(embedding);
-
-		List<Float> queryVector = new ArrayList<>(embedding.length);
-		for (float value : embedding) {
-			queryVector.add(value);
-		}
-
-		Query filterQuery = buildSemanticFilterQuery(verticalId, null, null, true, VerticalScope.ANY);
-
-		co.elastic.clients.elasticsearch._types.KnnSearch knnSearch = co.elastic.clients.elasticsearch._types.KnnSearch
-				.of(knn -> knn.field("embedding").queryVector(queryVector).k(knnLimit)
-						.numCandidates(Math.max(knnLimit * 2, 50))
-						.filter(filterQuery == null ? List.of() : List.of(filterQuery)));
-
-		org.springframework.data.elasticsearch.client.elc.NativeQuery knnQuery = new org.springframework.data.elasticsearch.client.elc.NativeQueryBuilder()
-				.withQuery(filterQuery).withKnnSearches(knnSearch)
-				.withPageable(org.springframework.data.domain.PageRequest.of(0, knnLimit))
-				.withSourceFilter(ProductRepository.productFieldsWithoutEmbeddingSourceFilter()).build();
-
-		SearchHits<Product> hits;
-		try {
-			hits = repository.search(knnQuery, ProductRepository.MAIN_INDEX_NAME);
-		} catch (Exception e) {
-			elasticLog(e);
-			throw e;
-		}
+		float[] semanticEmbedding = embedding;
+		SemanticCursor cursor = semanticCursors.get(
+				new SemanticCursorKey("semantic", sanitizedQuery, verticalId, null, null, Sort.unsorted()),
+				key -> {
+					Query filterQuery = buildSemanticFilterQuery(verticalId, null, null, true, VerticalScope.ANY);
+					return toSemanticCursor(executeSearch(semanticCursorQuery(semanticEmbedding, filterQuery, false)),
+							Sort.unsorted(), null);
+				});
 
-		List<SearchHit<Product>> sortedHits = sortSemanticHits(hits.getSearchHits(), Sort.unsorted());
-		return sortedHits.stream().skip((long) pageNumber * pageSize).limit(pageSize)
+		return semanticCursorPage(cursor, PageRequest.of(pageNumber, pageSize),
+				ProductRepository.productFieldsWithoutEmbeddingSourceFilter()).stream()
 				.map(hit -> mapHit(hit, domainLanguage, resolveSemanticBoostedScore(hit))).filter(Objects::nonNull)
 				.toList();
 	}
@@ -1835,7 +1961,7 @@ public class SearchService {
 	}
 
 	/**
-	 * Executes a semantic search using the provided embedding vector.
+	 * Builds a semantic search using the provided embedding vector.
 	 *
 	 * @param verticalId            optional vertical scope
 	 * @param textQuery             optional text query for lexical matching (used for missing-vertical products)
@@ -1845,28 +1971,23 @@ public class SearchService {
 	 *                              applied
 	 * @param pageable              requested page information
 	 * @param verticalScope         constraint on vertical availability
-	 * @return search hits from the semantic query
+	 * @return the semantic query
 	 */
-	private SearchHits<Product> executeSemanticSearch(String verticalId, String textQuery, float[] embedding, FilterRequestDto filters,
+	private NativeQuery semanticSearchQuery(String verticalId, String textQuery, float[] embedding, FilterRequestDto filters,
 			boolean applyDefaultExclusion, Pageable pageable, VerticalScope verticalScope) {
 		Query filterQuery = buildSemanticFilterQuery(verticalId, textQuery, filters, applyDefaultExclusion, verticalScope);
-		return executeSemanticSearchWithFilter(embedding, filterQuery, pageable);
+		return semanticSearchQuery(embedding, filterQuery, pageable);
 	}
 
 	/**
-	 * Execute a semantic search using a pre-built filter query.
+	 * Build a semantic search using a pre-built filter query.
 	 *
 	 * @param embedding   normalized embedding vector
 	 * @param filterQuery query used to scope semantic results
 	 * @param pageable    requested page
-	 * @return search hits from the semantic query
+	 * @return the semantic query
 	 */
-	private SearchHits<Product> executeSemanticSearchWithFilter(float[] embedding, Query filterQuery,
-			Pageable pageable) {
-		if (embedding == null || embedding.length == 0) {
-			return null;
-		}
-
+	private NativeQuery semanticSearchQuery(float[] embedding, Query filterQuery, Pageable pageable) {
 		int knnLimit = Math.max(pageable.getPageSize() * (pageable.getPageNumber() + 1), pageable.getPageSize());
 		List<Float> queryVector = new ArrayList<>(embedding.length);
 		for (float value : embedding) {
@@ -1882,39 +2003,7 @@ public class SearchService {
 				.withPageable(PageRequest.of(0, knnLimit))
 				.withSourceFilter(ProductRepository.productFieldsWithoutEmbeddingSourceFilter())
 				.withMinScore(searchProperties.getSemanticMinScore());
-
-		try {
-			return repository.search(builder.build(), ProductRepository.MAIN_INDEX_NAME);
-		} catch (Exception e) {
-			elasticLog(e);
-			throw e;
-		}
-	}
-
-	/**
-	 * Slice search hits according to the requested page.
-	 *
-	 * @param hits     raw semantic hits
-	 * @param pageable requested page
-	 * @return sliced hits respecting pagination offsets
-	 */
-	private SearchHits<Product> sliceSearchHits(SearchHits<Product> hits, Pageable pageable) {
-		if (hits == null || hits.isEmpty()) {
-			return hits;
-		}
-
-		List<SearchHit<Product>> sortedHits = sortSemanticHits(hits.getSearchHits(), pageable.getSort());
-
-		int start = Math.toIntExact(pageable.getOffset());
-		int end = Math.min(start + pageable.getPageSize(), sortedHits.size());
-		if (start >= sortedHits.size()) {
-			return new SearchHitsImpl<>(hits.getTotalHits(), hits.getTotalHitsRelation(), hits.getMaxScore(),
-					Duration.ZERO, null, null, List.of(), hits.getAggregations(), hits.getSuggest(), null);
-		}
-
-		List<SearchHit<Product>> sliced = sortedHits.subList(start, end);
-		return new SearchHitsImpl<>(hits.getTotalHits(), hits.getTotalHitsRelation(), hits.getMaxScore(), Duration.ZERO,
-				null, null, sliced, hits.getAggregations(), hits.getSuggest(), null);
+		return builder.build();
 	}
 
 	/**
@@ -2032,10 +2121,10 @@ public class SearchService {
 
 
 	/**
-	 * Builds and normalizes the embedding vector for a query.
+	 * Returns the normalized embedding vector of a query, from the query embeddings cache.
 	 *
 	 * @param sanitizedQuery sanitized query string
-	 * @return normalized embedding vector, or {@code null} if unavailable
+	 * @return normalized embedding vector (shared, not to be modified), or {@code null} if unavailable
 	 */
 	private float[] buildNormalizedEmbedding(String sanitizedQuery) {
 		if (!StringUtils.hasText(sanitizedQuery)) {
@@ -2044,7 +2133,7 @@ public class SearchService {
 		String embeddingInput = buildQueryEmbeddingInput(sanitizedQuery);
 		float[] embedding;
 		try {
-			embedding = textEmbeddingService.embed(embeddingInput);
+			embedding = queryEmbeddings.embed(embeddingInput);
 		} catch (Exception ex) {
 			LOGGER.warn("Semantic search unavailable: {}", ex.getMessage());
 			return null;
@@ -2054,22 +2143,9 @@ public class SearchService {
 			LOGGER.info("Skipping semantic search because embedding is missing for query '{}'", sanitizedQuery);
 			return null;
 		}
-
-		embedding = IdHelper.to512(embedding);
-		normalizeL2(embedding);
 		return embedding;
 	}
 
-	private void normalizeL2(float[] v) {
-		if (v == null) return;
-		float norm = 0;
-		for (float x : v) norm += x * x;
-		norm = (float) Math.sqrt(norm);
-		if (norm > 0) {
-			for (int i = 0; i < v.length; i++) v[i] /= norm;
-		}
-	}
-
 	private Locale resolveLocale(DomainLanguage domainLanguage) {
 		if (domainLanguage == null || !StringUtils.hasText(domainLanguage.languageTag())) {
 			return Locale.ROOT;
@@ -2245,27 +2321,32 @@ public class SearchService {
 				.filter(agg -> EXCLUDED_CAUSES_FIELD.equals(agg.field().trim())).toList();
 	}
 
-	private List<AggregationResponseDto> computeExcludedAggregations(Query query, List<Agg> aggregations) {
-		if (query == null || aggregations == null || aggregations.isEmpty()) {
-			return List.of();
-		}
-
-		var builder = new NativeQueryBuilder().withQuery(query).withPageable(Pageable.unpaged())
-				.withSourceFilter(ProductRepository.productFieldsWithoutEmbeddingSourceFilter());
+	/**
+	 * Build the query computing the excluded aggregations without the default exclusion. It
+	 * only returns aggregations, and is sent along with the main search.
+	 *
+	 * @param query        search query without the default exclusion
+	 * @param aggregations excluded aggregations to compute
+	 * @return the query and its aggregation descriptors
+	 */
+	private ExcludedAggregationsQuery excludedAggregationsQuery(Query query, List<Agg> aggregations) {
+		var builder = new NativeQueryBuilder().withQuery(query).withMaxResults(0)
+				.withSourceFilter(ProductRepository.noSourceFilter());
 
 		List<AggregationDescriptor> descriptors = new ArrayList<>();
 		for (Agg agg : aggregations) {
 			descriptors.add(configureTermsAggregation(builder, agg));
 		}
+		return new ExcludedAggregationsQuery(builder.build(), List.copyOf(descriptors));
+	}
 
-		SearchHits<Product> hits;
-		try {
-			hits = repository.search(builder.build(), ProductRepository.MAIN_INDEX_NAME);
-		} catch (Exception e) {
-			elasticLog(e);
-			throw e;
-		}
-		return extractAggregationResults(hits, descriptors);
+	/**
+	 * Query computing the excluded aggregations of a search.
+	 *
+	 * @param query       aggregation-only query
+	 * @param descriptors descriptors used to read its aggregation results
+	 */
+	private record ExcludedAggregationsQuery(NativeQuery query, List<AggregationDescriptor> descriptors) {
 	}
 
 	private List<AggregationResponseDto> mergeAggregationOverrides(List<AggregationResponseDto> original,
@@ -2568,6 +2649,34 @@ public class SearchService {
 		}
 	}
 
+	/**
+	 * Identifies the semantic results a cursor has been materialised for.
+	 *
+	 * @param scope        calling search flavour, as flavours apply different guardrails
+	 * @param query        sanitized query
+	 * @param verticalId   vertical scope, may be {@code null}
+	 * @param filters      normalized filters, may be {@code null}
+	 * @param aggregations requested aggregations, may be {@code null}
+	 * @param sort         ranking of the results
+	 */
+	private record SemanticCursorKey(String scope, String query, String verticalId, FilterRequestDto filters,
+			AggregationRequestDto aggregations, Sort sort) {
+	}
+
+	/**
+	 * Ranked ids and scores of a semantic search, materialised once so that any page is
+	 * served by a multi-get of its own products.
+	 *
+	 * @param ids               ranked product ids
+	 * @param scores            semantic scores, aligned with ids
+	 * @param totalHitsRelation whether more candidates exist beyond the cursor depth
+	 * @param maxScore          best semantic score
+	 * @param aggregations      aggregations computed on the candidates, may be {@code null}
+	 */
+	private record SemanticCursor(long[] ids, float[] scores, TotalHitsRelation totalHitsRelation, float maxScore,
+			List<AggregationResponseDto> aggregations) {
+	}
+
 	/**
 	 * Wrapper holding the {@link SearchHits} and the aggregation response DTOs.
 	 */
@@ -0,0 +1,110 @@
+package org.open4goods.nudgerfrontapi.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.caffeine.CaffeineCache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RefreshAheadCacheTest {
+
+    private static final Duration TTL = Duration.ofMinutes(10);
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final Ticker ticker = nanos::get;
+    private final List<Runnable> scheduled = new ArrayList<>();
+
+    private final RefreshAheadCache cache = new RefreshAheadCache(new CaffeineCache("test", Caffeine.newBuilder()
+            .ticker(ticker)
+            .expireAfterWrite(TTL)
+            .build()), TTL, 0.8, 2, 1, ticker, scheduled::add);
+
+    @Test
+    void hotEntryIsRefreshedBeforeExpiry() {
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(cache.get("key", loads::incrementAndGet)).isEqualTo(1);
+        advance(Duration.ofMinutes(7));
+        cache.get("key", loads::incrementAndGet);
+        assertThat(scheduled).as("entry not in its refresh window yet").isEmpty();
+
+        advance(Duration.ofMinutes(2));
+        assertThat(cache.get("key", loads::incrementAndGet)).isEqualTo(1);
+        assertThat(scheduled).as("a single hit in the window is not enough").isEmpty();
+        assertThat(cache.get("key", loads::incrementAndGet)).isEqualTo(1);
+        cache.get("key", loads::incrementAndGet);
+        assertThat(scheduled).as("refreshes of a key are not stacked").hasSize(1);
+
+        scheduled.removeFirst().run();
+        assertThat(cache.refreshes()).isEqualTo(1);
+
+        // Past the initial expiry, the refreshed value is served without loading
+        advance(Duration.ofMinutes(5));
+        assertThat(cache.get("key", loads::incrementAndGet)).isEqualTo(2);
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void refreshOfAnEvictedEntryIsDropped() {
+        cache.get("key", () -> "stale");
+        advance(Duration.ofMinutes(9));
+        cache.get("key", () -> "fresh");
+        cache.get("key", () -> "fresh");
+        cache.evict("key");
+
+        scheduled.removeFirst().run();
+
+        assertThat(cache.get("key")).isNull();
+        assertThat(cache.refreshes()).isZero();
+    }
+
+    @Test
+    void concurrentMissesAreLoadedOnce() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            results.add(executor.submit(() -> cache.get("key", () -> {
+                loading.countDown();
+                release.await();
+                return "value-" + loads.incrementAndGet();
+            })));
+            loading.await(10, TimeUnit.SECONDS);
+            for (int i = 0; i < 7; i++) {
+                results.add(executor.submit(() -> cache.get("key", () -> "value-" + loads.incrementAndGet())));
+            }
+            // Waiters are counted before blocking on the load in progress
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (cache.coalescedLoads() < 7 && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            for (Future<Object> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo("value-1");
+            }
+            assertThat(loads).hasValue(1);
+            assertThat(cache.coalescedLoads()).isEqualTo(7);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+}
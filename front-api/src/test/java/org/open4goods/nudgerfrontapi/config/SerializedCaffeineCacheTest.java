@@ -0,0 +1,222 @@
+package org.open4goods.nudgerfrontapi.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SerializedCaffeineCacheTest {
+
+    record Item(String name, double price, List<String> tags) {
+    }
+
+    record Page(List<Item> items, Map<String, Long> counts, int total) {
+    }
+
+    record Holder(Object value) {
+    }
+
+    record Attributes(String name, Map<String, Object> values) {
+    }
+
+    record Typed<T>(T value, List<T> values) {
+    }
+
+    static final class Bean {
+        private String name;
+        private List<Item> items = new ArrayList<>();
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public List<Item> getItems() {
+            return items;
+        }
+
+        public void setItems(List<Item> items) {
+            this.items = items;
+        }
+    }
+
+    static final class Opaque {
+        private String value;
+
+        static Opaque of(String value) {
+            Opaque opaque = new Opaque();
+            opaque.value = value;
+            return opaque;
+        }
+
+        // Written, but not read back
+        public String getLabel() {
+            return "opaque " + value;
+        }
+    }
+
+    static final class Lowered {
+        private String name;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name.toLowerCase();
+        }
+
+        static Lowered of(String name) {
+            Lowered lowered = new Lowered();
+            lowered.name = name;
+            return lowered;
+        }
+    }
+
+    private final com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache = Caffeine.newBuilder()
+            .maximumWeight(10_000_000)
+            .weigher(new CacheValueWeigher())
+            .build();
+
+    private final SerializedCaffeineCache cache = new SerializedCaffeineCache("test", nativeCache,
+            new SerializedCacheValueCodec());
+
+    @Test
+    void recordsAreStoredSerializedAndReadBackEqual() {
+        Page page = page(500);
+
+        cache.put("k", page);
+
+        assertThat(nativeCache.getIfPresent("k")).isInstanceOf(SerializedCacheValue.class);
+        assertThat(cache.get("k", Page.class)).isEqualTo(page);
+        assertThat(cache.get("k", Page.class)).isNotSameAs(page);
+    }
+
+    @Test
+    void serializedValueWeighsItsPayload() {
+        cache.put("k", page(500));
+
+        SerializedCacheValue stored = (SerializedCacheValue) nativeCache.getIfPresent("k");
+        int weight = new CacheValueWeigher().weigh("k", stored);
+
+        assertThat(weight).isEqualTo(stored.payload().length + SerializedCacheValue.ENTRY_OVERHEAD_BYTES);
+    }
+
+    @Test
+    void responseEntityKeepsStatusAndHeaders() {
+        ResponseEntity<Page> response = ResponseEntity.status(HttpStatus.ACCEPTED)
+                .header("Cache-Control", "max-age=3600")
+                .body(page(3));
+
+        cache.put("k", response);
+
+        ResponseEntity<?> cached = cache.get("k", ResponseEntity.class);
+        assertThat(cached.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+        assertThat(cached.getHeaders().getCacheControl()).isEqualTo("max-age=3600");
+        assertThat(cached.getBody()).isEqualTo(response.getBody());
+    }
+
+    @Test
+    void classesWithoutEqualsAreSerialized() {
+        Bean bean = new Bean();
+        bean.setName("bean");
+        bean.setItems(page(2).items());
+
+        cache.put("k", bean);
+
+        assertThat(nativeCache.getIfPresent("k")).isInstanceOf(SerializedCacheValue.class);
+        Bean cached = cache.get("k", Bean.class);
+        assertThat(cached.getName()).isEqualTo("bean");
+        assertThat(cached.getItems()).isEqualTo(bean.getItems());
+    }
+
+    @Test
+    void valuesNotSurvivingTheRoundTripAreKeptAsObjects() {
+        Opaque opaque = Opaque.of("no setter");
+        List<Item> list = new ArrayList<>(page(2).items());
+
+        cache.put("opaque", opaque);
+        cache.put("list", list);
+        cache.put("null", null);
+
+        assertThat(cache.get("opaque", Opaque.class)).isSameAs(opaque);
+        assertThat(cache.get("list", List.class)).isSameAs(list);
+        assertThat(cache.get("null")).isNotNull();
+        assertThat(cache.get("null").get()).isNull();
+    }
+
+    @Test
+    void classesWithUntypedPropertiesAreKeptAsObjects() {
+        Holder text = new Holder("text");
+        // Would be read back as a list of maps
+        Holder items = new Holder(page(1).items());
+
+        cache.put("text", text);
+        cache.put("items", items);
+
+        assertThat(cache.get("text", Holder.class)).isSameAs(text);
+        assertThat(cache.get("items", Holder.class)).isSameAs(items);
+    }
+
+    @Test
+    void rawJsonMapsAreSerialized() {
+        Attributes attributes = new Attributes("eprel", Map.of("class", "A", "power", 12, "tags", List.of("a", "b")));
+
+        cache.put("k", attributes);
+
+        assertThat(nativeCache.getIfPresent("k")).isInstanceOf(SerializedCacheValue.class);
+        assertThat(cache.get("k", Attributes.class)).isEqualTo(attributes);
+    }
+
+    @Test
+    void genericClassesAreKeptAsObjects() {
+        // Type parameters are erased from the value class, they would be read back as maps
+        Typed<Item> typed = new Typed<>(new Item("a", 1, List.of()), List.of());
+
+        cache.put("k", typed);
+
+        assertThat(cache.get("k", Typed.class)).isSameAs(typed);
+    }
+
+    @Test
+    void onlyTheFirstValueOfAClassIsReadBack() {
+        SerializedCacheValueCodec codec = new SerializedCacheValueCodec();
+
+        Object probed = codec.encode(Lowered.of("lower"));
+        Object unprobed = codec.encode(Lowered.of("UPPER"));
+
+        assertThat(probed).isInstanceOf(SerializedCacheValue.class);
+        assertThat(unprobed).isInstanceOf(SerializedCacheValue.class);
+        assertThat(((Lowered) codec.decode(unprobed)).getName()).isEqualTo("upper");
+    }
+
+    @Test
+    void unreadableValuesAreEvictedAsMisses() {
+        nativeCache.put("k", new SerializedCacheValue(Page.class, null, null, new byte[] {1, 2, 3}));
+
+        assertThat(cache.get("k")).isNull();
+        assertThat(nativeCache.getIfPresent("k")).isNull();
+
+        Page page = page(2);
+        nativeCache.put("k", new SerializedCacheValue(Page.class, null, null, new byte[] {1, 2, 3}));
+        assertThat(cache.get("k", () -> page)).isEqualTo(page);
+        assertThat(cache.get("k", Page.class)).isEqualTo(page);
+    }
+
+    private static Page page(int size) {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            items.add(new Item("product-" + i, i * 1.5, List.of("tag-" + (i % 7), "brand-" + (i % 13))));
+        }
+        return new Page(items, Map.of("tv", (long) size), size);
+    }
+}
@@ -0,0 +1,96 @@
+package org.open4goods.nudgerfrontapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.open4goods.model.CacheKeyGenerator;
+import org.open4goods.model.constants.CacheConstants;
+import org.open4goods.nudgerfrontapi.localization.DomainLanguage;
+import org.open4goods.services.productrepository.changes.LocalProductChangeBus;
+import org.open4goods.services.productrepository.changes.ProductChangeEvent;
+import org.open4goods.services.productrepository.changes.ProductChangeGroup;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.SimpleCacheManager;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+class ProductChangeCacheEvictorTest {
+
+    private final LocalProductChangeBus bus = new LocalProductChangeBus();
+    private final CacheKeyGenerator keyGenerator = new CacheKeyGenerator();
+    private final Method search = method("search");
+    private final Method suggest = method("suggest");
+
+    private Cache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new CaffeineCache(CacheConstants.ONE_HOUR_LOCAL_CACHE_NAME, Caffeine.newBuilder().build());
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(List.of(cache));
+        cacheManager.afterPropertiesSet();
+        new ProductChangeCacheEvictor(cacheManager, bus);
+    }
+
+    @Test
+    void referencesOfRenamedProductsAreEvictedByProductId() {
+        cache.put(ProductMappingService.referenceCacheKey(42L), Map.of("fr", "ref-fr", "en", "ref-en"));
+        cache.put(ProductMappingService.referenceCacheKey(421L), Map.of("fr", "other"));
+
+        bus.publish(List.of(new ProductChangeEvent(42L, "tv", EnumSet.of(ProductChangeGroup.NAMES))));
+
+        assertThat(cache.get(ProductMappingService.referenceCacheKey(42L))).isNull();
+        assertThat(cache.get(ProductMappingService.referenceCacheKey(421L))).isNotNull();
+    }
+
+    @Test
+    void searchesOfTheChangedVerticalAreEvicted() {
+        Object tvSearch = search("tv", "oled");
+        Object fridgeSearch = search("fridges", "tv");
+        Object tvSuggest = keyGenerator.generate(null, suggest, "tv", DomainLanguage.fr);
+        cache.put(tvSearch, "tv results");
+        cache.put(fridgeSearch, "fridge results");
+        cache.put(tvSuggest, "suggestions");
+        cache.put(ProductMappingService.referenceCacheKey(42L), Map.of("fr", "ref"));
+
+        bus.publish(List.of(new ProductChangeEvent(42L, "tv", EnumSet.of(ProductChangeGroup.OFFERS))));
+
+        assertThat(cache.get(tvSearch)).isNull();
+        assertThat(cache.get(fridgeSearch)).as("only the vertical parameter scopes a search").isNotNull();
+        assertThat(cache.get(tvSuggest)).isNotNull();
+        assertThat(cache.get(ProductMappingService.referenceCacheKey(42L)))
+                .as("prices are not rendered by references").isNotNull();
+    }
+
+    @Test
+    void technicalChangesKeepTheEntries() {
+        Object tvSearch = search("tv", "oled");
+        cache.put(tvSearch, "tv results");
+
+        bus.publish(List.of(new ProductChangeEvent(42L, "tv", EnumSet.of(ProductChangeGroup.OTHER))));
+
+        assertThat(cache.get(tvSearch)).isNotNull();
+    }
+
+    /**
+     * @return the cache key of a vertical search
+     */
+    private Object search(String verticalId, String query) {
+        return keyGenerator.generate(null, search, null, verticalId, query, null, null, false, null, null);
+    }
+
+    private static Method method(String name) {
+        return Arrays.stream(SearchService.class.getDeclaredMethods())
+                .filter(m -> m.getName().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+}
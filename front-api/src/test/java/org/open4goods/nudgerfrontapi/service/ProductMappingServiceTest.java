@@ -1,6 +1,7 @@
 package org.open4goods.nudgerfrontapi.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
@@ -96,7 +97,7 @@ class ProductMappingServiceTest {
         scores.put("ECOSCORE", ecoscore);
         product.setScores(scores);
 
-        when(repository.getByIdWithoutEmbedding(gtin)).thenReturn(product);
+        when(repository.getById(eq(gtin), any())).thenReturn(product);
 
         ProductDto dto = service.getProduct(gtin, Locale.ENGLISH, Set.of("base"), DomainLanguage.en);
 
@@ -123,7 +124,7 @@ class ProductMappingServiceTest {
         product.setNames(names);
         product.setOfferNames(Set.of("Fallback offer"));
 
-        when(repository.getByIdWithoutEmbedding(gtin)).thenReturn(product);
+        when(repository.getById(eq(gtin), any())).thenReturn(product);
 
         ProductDto dto = service.getProduct(gtin, Locale.ENGLISH, Set.of("base"), DomainLanguage.en);
 
@@ -150,7 +151,7 @@ class ProductMappingServiceTest {
         frI18n.setVerticalMetaTitle("Smartphones durables");
         verticalConfig.getI18n().put("fr", frI18n);
 
-        when(repository.getByIdWithoutEmbedding(gtin)).thenReturn(product);
+        when(repository.getById(eq(gtin), any())).thenReturn(product);
         when(verticalsConfigService.getConfigByIdOrDefault("phones")).thenReturn(verticalConfig);
         when(verticalsConfigService.getConfigById("phones")).thenReturn(verticalConfig);
 
@@ -178,7 +179,7 @@ class ProductMappingServiceTest {
         ranking.setGlobalBetter(222L);
         product.setRanking(ranking);
 
-        when(repository.getByIdWithoutEmbedding(gtin)).thenReturn(product);
+        when(repository.getById(eq(gtin), any())).thenReturn(product);
 
         Product lowest = new Product(111L);
         lowest.setVertical("phones");
@@ -201,7 +202,7 @@ class ProductMappingServiceTest {
         Map<String, Product> referenced = new HashMap<>();
         referenced.put("111", lowest);
         referenced.put("222", highest);
-        when(repository.multiGetByIdWithoutEmbedding(anyCollection())).thenReturn(referenced);
+        when(repository.multiGetById(anyCollection(), any())).thenReturn(referenced);
 
         VerticalConfig verticalConfig = new VerticalConfig();
         verticalConfig.setId("phones");
@@ -268,7 +269,7 @@ class ProductMappingServiceTest {
 
         product.setResources(new HashSet<>(Set.of(image, pdf, video)));
 
-        when(repository.getByIdWithoutEmbedding(gtin)).thenReturn(product);
+        when(repository.getById(eq(gtin), any())).thenReturn(product);
 
         ProductDto dto = service.getProduct(gtin, Locale.ENGLISH, Set.of("resources"), DomainLanguage.en);
 
@@ -302,7 +303,7 @@ class ProductMappingServiceTest {
         urlLocalisable.put("en", "fairphone-4");
         product.getNames().setUrl(urlLocalisable);
 
-        when(repository.getByIdWithoutEmbedding(gtin)).thenReturn(product);
+        when(repository.getById(eq(gtin), any())).thenReturn(product);
         VerticalConfig verticalConfig = new VerticalConfig();
         verticalConfig.setId("electronics");
         VerticalConfigDto configDto = new VerticalConfigDto("electronics", true, false, null, null, 1, null, null, null,
@@ -325,7 +326,7 @@ class ProductMappingServiceTest {
         urlLocalisable.put("fr", "8431312260509-climatisation-midea-mmcs12hrn8qrd0");
         product.getNames().setUrl(urlLocalisable);
 
-        when(repository.getByIdWithoutEmbedding(gtin)).thenReturn(product);
+        when(repository.getById(eq(gtin), any())).thenReturn(product);
         VerticalConfig verticalConfig = new VerticalConfig();
         verticalConfig.setId("air-conditioners");
         ProductI18nElements frI18n = new ProductI18nElements();
@@ -348,7 +349,7 @@ class ProductMappingServiceTest {
         urlLocalisable.put("fr", "/8427973010706-rouleau-pour-couvre-livre-depliant-1-50x0-50/");
         product.getNames().setUrl(urlLocalisable);
 
-        when(repository.getByIdWithoutEmbedding(gtin)).thenReturn(product);
+        when(repository.getById(eq(gtin), any())).thenReturn(product);
 
         ProductDto dto = service.getProduct(gtin, Locale.FRENCH, Set.of("base"), DomainLanguage.fr);
 
@@ -383,7 +384,7 @@ class ProductMappingServiceTest {
         product.setPrice(aggregatedPrices);
         product.setOffersCount(1);
 
-        when(repository.getByIdWithoutEmbedding(gtin)).thenReturn(product);
+        when(repository.getById(eq(gtin), any())).thenReturn(product);
         when(affiliationService.encryptAffiliationLink("amazon", "https://example.com/product"))
                 .thenReturn("encrypted-token");
 
@@ -434,7 +435,7 @@ class ProductMappingServiceTest {
         verticalConfig.setId("test-vertical");
         verticalConfig.setAttributesConfig(attrsConfig);
 
-        when(repository.getByIdWithoutEmbedding(gtin)).thenReturn(product);
+        when(repository.getById(eq(gtin), any())).thenReturn(product);
         when(verticalsConfigService.getConfigById("test-vertical")).thenReturn(verticalConfig);
 
         // Execute - should NOT throw NPE, should fallback to attribute key
@@ -488,7 +489,7 @@ class ProductMappingServiceTest {
         verticalConfig.setId("test-vertical");
         verticalConfig.setAttributesConfig(attrsConfig);
 
-        when(repository.getByIdWithoutEmbedding(gtin)).thenReturn(product);
+        when(repository.getById(eq(gtin), any())).thenReturn(product);
         when(verticalsConfigService.getConfigById("test-vertical")).thenReturn(verticalConfig);
 
         // Request French locale (which is missing)
@@ -536,7 +537,7 @@ class ProductMappingServiceTest {
         verticalConfig.setId("test-vertical");
         verticalConfig.setAttributesConfig(attrsConfig);
 
-        when(repository.getByIdWithoutEmbedding(gtin)).thenReturn(product);
+        when(repository.getById(eq(gtin), any())).thenReturn(product);
         when(verticalsConfigService.getConfigById("test-vertical")).thenReturn(verticalConfig);
 
         // Request French locale (missing both 'fr' and 'default')
@@ -0,0 +1,150 @@
+package org.open4goods.nudgerfrontapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.open4goods.icecat.services.IcecatService;
+import org.open4goods.model.attribute.ReferentielKey;
+import org.open4goods.model.product.ExternalIds;
+import org.open4goods.model.product.GtinInfo;
+import org.open4goods.model.product.Product;
+import org.open4goods.model.product.Score;
+import org.open4goods.nudgerfrontapi.config.properties.ApiProperties;
+import org.open4goods.nudgerfrontapi.dto.product.ProductDto;
+import org.open4goods.nudgerfrontapi.dto.product.ProductDto.ProductDtoComponent;
+import org.open4goods.nudgerfrontapi.localization.DomainLanguage;
+import org.open4goods.services.productrepository.services.ProductRepository;
+import org.open4goods.verticals.VerticalsConfigService;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchCustomConversions;
+import org.springframework.data.elasticsearch.core.convert.MappingElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.mapping.SimpleElasticsearchMappingContext;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
+
+class ProductSourceProjectionTest {
+
+    @Test
+    void everyComponentFetchesTheDocumentWithoutVectors() {
+        FetchSourceFilter expected = ProductRepository.productFieldsWithoutEmbeddingSourceFilter();
+
+        for (Set<ProductDtoComponent> components : java.util.Arrays.asList(null, Set.<ProductDtoComponent>of(),
+                EnumSet.allOf(ProductDtoComponent.class))) {
+            FetchSourceFilter filter = ProductSourceProjection.forComponents(components);
+            assertThat(filter.getIncludes()).isEqualTo(expected.getIncludes());
+            assertThat(filter.getExcludes()).containsExactly(expected.getExcludes());
+        }
+    }
+
+    @Test
+    void componentSubsetOnlyFetchesTheFieldsItReads() {
+        FetchSourceFilter filter = ProductSourceProjection.forComponents(
+                EnumSet.of(ProductDtoComponent.names, ProductDtoComponent.offers));
+
+        assertThat(filter.getIncludes()).containsExactly("id", "vertical", "names", "offerNames",
+                "attributes.referentielAttributes", "scores.ECOSCORE", "price", "offersCount");
+        assertThat(filter.getExcludes()).isNull();
+    }
+
+    @Test
+    void sharedFieldsAreFetchedOnce() {
+        String[] fields = ProductSourceProjection.fields(
+                EnumSet.of(ProductDtoComponent.offers, ProductDtoComponent.timeline));
+
+        assertThat(fields).doesNotHaveDuplicates().contains("price", "creationDate", "eprelDatas");
+    }
+
+    @Test
+    void referencesFetchNamesAndScores() {
+        assertThat(ProductSourceProjection.forReferences().getIncludes())
+                .contains("id", "names", "attributes.referentielAttributes", "scores", "ranking")
+                .doesNotContain("attributes", "price", "resources");
+    }
+
+    @Test
+    void baseProjectionCoversEveryFieldMapBaseReads() {
+        SimpleElasticsearchMappingContext mappingContext = new SimpleElasticsearchMappingContext();
+        mappingContext.setSimpleTypeHolder(new ElasticsearchCustomConversions(List.of()).getSimpleTypeHolder());
+        MappingElasticsearchConverter converter = new MappingElasticsearchConverter(mappingContext);
+        converter.afterPropertiesSet();
+        ApiProperties apiProperties = new ApiProperties();
+        apiProperties.setResourceRootPath("https://static.example");
+        ProductMappingService mappingService = new ProductMappingService(mock(ProductRepository.class), apiProperties,
+                mock(CategoryMappingService.class), mock(VerticalsConfigService.class), mock(SearchService.class),
+                mock(AffiliationService.class), mock(IcecatService.class), mock(CacheManager.class),
+                new ProductTimelineService());
+
+        Product product = fullProduct();
+        Map<String, Object> projected = project(converter.mapObject(product),
+                ProductSourceProjection.fields(EnumSet.of(ProductDtoComponent.base)));
+        Product fetched = converter.read(Product.class, Document.from(projected));
+
+        ProductDto expected = mappingService.mapProduct(product, Locale.ENGLISH, Set.of("base"), DomainLanguage.en, false);
+        ProductDto actual = mappingService.mapProduct(fetched, Locale.ENGLISH, Set.of("base"), DomainLanguage.en, false);
+
+        assertThat(expected.base().gtinInfo()).isNotNull();
+        assertThat(actual.base()).isEqualTo(expected.base());
+    }
+
+    /**
+     * @return a product with every field the base mapping may read
+     */
+    private static Product fullProduct() {
+        Product product = new Product(3760000000017L);
+        product.setCreationDate(1L);
+        product.setLastChange(2L);
+        ExternalIds externalIds = new ExternalIds();
+        externalIds.setAsin("B000000001");
+        externalIds.setMpn(Set.of("MPN-1"));
+        product.setExternalIds(externalIds);
+        product.setGoogleTaxonomyId(328);
+        product.setExcluded(true);
+        product.setExcludedCauses(Set.of("missing_brand"));
+        GtinInfo gtinInfo = new GtinInfo();
+        gtinInfo.setCountry("FR");
+        product.setGtinInfos(gtinInfo);
+        product.setCoverImagePath("/covers/main.jpg");
+        HashMap<String, Score> scores = new HashMap<>();
+        scores.put("ECOSCORE", new Score("ECOSCORE", 12.5));
+        product.setScores(scores);
+        product.setOfferNames(Set.of("Eco Phone 5"));
+        product.getAttributes().addReferentielAttribute(ReferentielKey.BRAND, "Fairphone");
+        product.getAttributes().addReferentielAttribute(ReferentielKey.MODEL, "FP5");
+        product.setAkaBrands(Map.of("merchant", "Fair Phone"));
+        product.setAkaModels(Set.of("Fairphone 5"));
+        return product;
+    }
+
+    /**
+     * Applies source includes the way Elasticsearch does, dotted paths selecting nested fields.
+     */
+    private static Map<String, Object> project(Map<String, Object> source, String[] includes) {
+        Map<String, Object> ret = new HashMap<>();
+        for (String include : includes) {
+            copy(source, ret, include.split("\\."), 0);
+        }
+        return ret;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void copy(Map<String, Object> from, Map<String, Object> to, String[] path, int depth) {
+        Object value = from.get(path[depth]);
+        if (value == null) {
+            return;
+        }
+        if (depth == path.length - 1) {
+            to.put(path[depth], value);
+        } else if (value instanceof Map<?, ?> nested) {
+            copy((Map<String, Object>) nested, (Map<String, Object>) to.computeIfAbsent(path[depth], k -> new HashMap<>()),
+                    path, depth + 1);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.open4goods.nudgerfrontapi.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.open4goods.nudgerfrontapi.config.properties.EmbeddingProperties;
+
+class QueryEmbeddingCacheTest {
+
+    private final EmbeddingProxyService proxy = mock(EmbeddingProxyService.class);
+    private final QueryEmbeddingCache cache = new QueryEmbeddingCache(proxy, new EmbeddingProperties());
+
+    @Test
+    void equivalentQueriesAreEmbeddedOnceAndNormalized() {
+        when(proxy.embed("lave linge")).thenReturn(new float[] {3f, 4f});
+
+        float[] first = cache.embed("  Lave   linge ");
+        float[] second = cache.embed("lave linge");
+
+        verify(proxy, times(1)).embed(anyString());
+        assertThat(second).isSameAs(first).hasSize(512);
+        assertThat(first[0]).isEqualTo(0.6f);
+        assertThat(first[1]).isEqualTo(0.8f);
+    }
+
+    @Test
+    void concurrentMissesAreCoalesced() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(proxy.embed("tv 55")).thenAnswer(i -> {
+            release.await(10, TimeUnit.SECONDS);
+            return new float[] {1f};
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<float[]>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> cache.embed("tv 55")));
+            }
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<float[]> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS)).isSameAs(results.get(0).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(proxy, times(1)).embed("tv 55");
+    }
+
+    @Test
+    void failuresAndMissingEmbeddingsAreNotCached() {
+        when(proxy.embed("down")).thenThrow(new RuntimeException("backend down")).thenReturn(new float[] {1f});
+        when(proxy.embed("empty")).thenReturn(new float[0]);
+
+        assertThatThrownBy(() -> cache.embed("down")).hasMessage("backend down");
+        assertThat(cache.embed("down")).isNotNull();
+        assertThat(cache.embed("empty")).isNull();
+        assertThat(cache.embed("empty")).isNull();
+
+        verify(proxy, times(2)).embed("down");
+        verify(proxy, times(2)).embed("empty");
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void warmUpSkipsCachedQueries() {
+        when(proxy.embed(anyString())).thenReturn(new float[] {1f});
+        cache.embed("tv");
+
+        assertThat(cache.warmUp(List.of("TV", "lave linge", " ", "lave  linge"))).isEqualTo(1);
+        verify(proxy, times(2)).embed(anyString());
+    }
+}
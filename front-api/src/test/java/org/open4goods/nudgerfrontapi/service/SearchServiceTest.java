@@ -26,13 +26,17 @@ import org.open4goods.model.vertical.AttributesConfig;
 import org.open4goods.model.vertical.ProductI18nElements;
 import org.open4goods.model.vertical.VerticalConfig;
 import org.open4goods.nudgerfrontapi.config.properties.ApiProperties;
+import org.open4goods.nudgerfrontapi.config.properties.EmbeddingProperties;
 import org.open4goods.nudgerfrontapi.config.properties.SearchProperties;
 import org.open4goods.nudgerfrontapi.dto.search.AggregationBucketDto;
+import org.open4goods.nudgerfrontapi.dto.search.AggregationRequestDto;
+import org.open4goods.nudgerfrontapi.dto.search.FilterRequestDto.FilterField;
 import org.open4goods.nudgerfrontapi.localization.DomainLanguage;
 import org.open4goods.nudgerfrontapi.service.SearchService.GlobalSearchResult;
 import org.open4goods.services.productrepository.services.ProductRepository;
 import org.open4goods.verticals.VerticalsConfigService;
 import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.SearchHit;
 import org.springframework.data.elasticsearch.core.SearchHits;
 import org.springframework.data.elasticsearch.core.SearchHitsImpl;
 import org.springframework.data.elasticsearch.core.TotalHitsRelation;
@@ -63,7 +67,7 @@ class SearchServiceTest {
     void setUp() {
         searchProperties = new SearchProperties();
         searchService = new SearchService(repository, verticalsConfigService, productMappingService, apiProperties,
-                searchProperties, textEmbeddingService);
+                searchProperties, new QueryEmbeddingCache(textEmbeddingService, new EmbeddingProperties()));
     }
 
     @Test
@@ -166,7 +170,7 @@ class SearchServiceTest {
         when(repository.search(any(), eq(ProductRepository.MAIN_INDEX_NAME))).thenReturn(emptyHits);
 
         // WHEN
-        searchService.search(org.springframework.data.domain.Pageable.unpaged(), null, null, null, null, false, null);
+        searchService.search(org.springframework.data.domain.Pageable.unpaged(), null, null, null, null, false, null, null);
 
         // THEN
         ArgumentCaptor<org.springframework.data.elasticsearch.core.query.Query> queryCaptor = ArgumentCaptor.forClass(org.springframework.data.elasticsearch.core.query.Query.class);
@@ -191,7 +195,7 @@ class SearchServiceTest {
         when(repository.search(any(), eq(ProductRepository.MAIN_INDEX_NAME))).thenReturn(emptyHits);
 
         // WHEN
-        searchService.search(org.springframework.data.domain.Pageable.unpaged(), null, "some query", null, null, false, null);
+        searchService.search(org.springframework.data.domain.Pageable.unpaged(), null, "some query", null, null, false, null, null);
 
         // THEN
         ArgumentCaptor<org.springframework.data.elasticsearch.core.query.Query> queryCaptor = ArgumentCaptor.forClass(org.springframework.data.elasticsearch.core.query.Query.class);
@@ -209,6 +213,28 @@ class SearchServiceTest {
         assertSearchUsesProductProjection(nativeQuery);
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    void search_shouldSendExcludedAggregationsInTheSameMultiSearch() {
+        SearchHits<Product> emptyHits = new SearchHitsImpl<Product>(0L, TotalHitsRelation.EQUAL_TO, 0.0f,
+                java.time.Duration.ZERO, null, null, java.util.Collections.emptyList(), null, null, null);
+        when(repository.multiSearch(any(), eq(ProductRepository.MAIN_INDEX_NAME))).thenReturn(List.of(emptyHits, emptyHits));
+        AggregationRequestDto aggregations = new AggregationRequestDto(List.of(new AggregationRequestDto.Agg("excluded",
+                FilterField.excludedCauses.fieldPath(), AggregationRequestDto.AggType.terms, null, null, 10, null)));
+
+        searchService.search(org.springframework.data.domain.PageRequest.of(0, 10), null, "some query", aggregations, null,
+                false, null, null);
+
+        ArgumentCaptor<List<NativeQuery>> queriesCaptor = ArgumentCaptor.forClass(List.class);
+        verify(repository).multiSearch(queriesCaptor.capture(), eq(ProductRepository.MAIN_INDEX_NAME));
+        verify(repository, times(0)).search(any(), any());
+        List<NativeQuery> queries = queriesCaptor.getValue();
+        assertThat(queries).hasSize(2);
+        assertSearchUsesProductProjection(queries.get(0));
+        assertThat(queries.get(1).getMaxResults()).isZero();
+        assertThat(queries.get(1).getAggregations()).isNotEmpty();
+    }
+
     private void assertSearchUsesProductProjection(NativeQuery nativeQuery) {
         assertThat(nativeQuery.getSourceFilter()).isInstanceOf(FetchSourceFilter.class);
         FetchSourceFilter sourceFilter = (FetchSourceFilter) nativeQuery.getSourceFilter();
@@ -320,6 +346,40 @@ class SearchServiceTest {
         assertThat(technicalMappings).doesNotContain("attributes.indexed.CLASSE_ENERGY.value");
     }
 
+    @Test
+    void semanticSearch_shouldServeEveryPageFromOneCursor() throws Exception {
+        when(textEmbeddingService.embed("lave linge")).thenReturn(new float[] {1f, 0f});
+        List<SearchHit<Product>> candidates = new java.util.ArrayList<>();
+        for (long id = 1; id <= 5; id++) {
+            Product product = new Product(id);
+            product.setOffersCount(1);
+            candidates.add(new SearchHit<>(ProductRepository.MAIN_INDEX_NAME, String.valueOf(id), null, 1f - id / 10f,
+                    null, null, null, null, null, null, product));
+        }
+        when(repository.search(any(), eq(ProductRepository.MAIN_INDEX_NAME))).thenReturn(new SearchHitsImpl<>(5L,
+                TotalHitsRelation.EQUAL_TO, 0.9f, java.time.Duration.ZERO, null, null, candidates, null, null, null));
+        when(repository.multiGetById(any(), any())).thenAnswer(invocation -> {
+            Map<String, Product> products = new java.util.HashMap<>();
+            for (Long id : invocation.<java.util.Collection<Long>>getArgument(0)) {
+                products.put(String.valueOf(id), new Product(id));
+            }
+            return products;
+        });
+
+        SearchService.SearchResult first = searchService.search(org.springframework.data.domain.PageRequest.of(0, 2),
+                null, "lave linge", null, null, true, null, null);
+        SearchService.SearchResult third = searchService.search(org.springframework.data.domain.PageRequest.of(2, 2),
+                null, "lave linge", null, null, true, null, null);
+
+        verify(repository, times(1)).search(any(), eq(ProductRepository.MAIN_INDEX_NAME));
+        verify(repository).multiGetById(eq(List.of(1L, 2L)), any());
+        verify(repository).multiGetById(eq(List.of(5L)), any());
+        assertThat(first.hits().getSearchHits()).extracting(SearchHit::getId).containsExactly("1", "2");
+        assertThat(third.hits().getSearchHits()).extracting(SearchHit::getId).containsExactly("5");
+        assertThat(third.hits().getTotalHits()).isEqualTo(5);
+        assertThat(third.hits().getSearchHit(0).getScore()).isEqualTo(0.5f);
+    }
+
     @Test
     void rangeBoundsDerivation_shouldIgnoreMissingBucket() {
         List<AggregationBucketDto> buckets = List.of(
@@ -14,7 +14,7 @@ public class CacheKeyGenerator implements KeyGenerator {
 	}
 
 	// Only used when there are parameters
-	static final class MethodParamsKey {
+	public static final class MethodParamsKey {
 		private final Method method;
 		private final Object[] params;
 		private final int hash;
@@ -27,6 +27,20 @@ public class CacheKeyGenerator implements KeyGenerator {
 			this.hash = 31 * method.hashCode() + java.util.Arrays.deepHashCode(this.params);
 		}
 
+		/**
+		 * @return the cached method
+		 */
+		public Method getMethod() {
+			return method;
+		}
+
+		/**
+		 * @return the parameters of the call, read-only
+		 */
+		public java.util.List<Object> getParams() {
+			return java.util.Collections.unmodifiableList(java.util.Arrays.asList(params));
+		}
+
 		@Override
 		public int hashCode() {
 			return hash;
@@ -7,7 +7,9 @@ public enum ProductPartialUpdateField {
 
     LAST_CHANGE("lastChange"),
     PRICE("price"),
-    OFFERS_COUNT("offersCount");
+    OFFERS_COUNT("offersCount"),
+    SCORES("scores"),
+    RANKING("ranking");
 
     private final String path;
 
@@ -1,7 +1,9 @@
 package org.open4goods.model.product;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Holder for partial product document updates.
@@ -13,7 +15,45 @@ public class ProductPartialUpdateHolder {
 	
 	private Map<String,Object> changes = new HashMap<>();
 
-	
+	/**
+	 * Optimistic concurrency guard : when set, the update is rejected if the document
+	 * has been written since it was read with this sequence number and primary term
+	 */
+	private Long ifSeqNo;
+
+	private Long ifPrimaryTerm;
+
+	/**
+	 * If true, the changed fields replace the indexed ones as a whole instead of being
+	 * merged into them, so that the entries removed from an object are removed from the
+	 * index too. Only top level fields can be replaced.
+	 */
+	private boolean replaceFields;
+
+	/**
+	 * Datasources whose offers have been seen unchanged : the timestamp of their offers is
+	 * refreshed in place, so that they do not expire
+	 */
+	private Set<String> seenDatasources = new HashSet<>();
+
+	/**
+	 * Vertical of the updated product, if known. Not indexed, only carried along the update
+	 * so that change notifications can target the vertical
+	 */
+	private String vertical;
+
+	/**
+	 * Vertical the product leaves with this update, if any. Only carried along the update so
+	 * that change notifications also target the vertical it left
+	 */
+	private String previousVertical;
+
+	/**
+	 * For deserialisation (journaled indexation queue)
+	 */
+	public ProductPartialUpdateHolder() {
+		super();
+	}
 	
 	public ProductPartialUpdateHolder(Long productId) {
 		super();
@@ -37,6 +77,78 @@ public class ProductPartialUpdateHolder {
 		this.changes = changes;
 	}
 
+	/**
+	 * Rejects the update if the document has been written since it was read
+	 *
+	 * @param seqNo       the sequence number of the document when read
+	 * @param primaryTerm the primary term of the document when read
+	 */
+	public void guard(long seqNo, long primaryTerm) {
+		this.ifSeqNo = seqNo;
+		this.ifPrimaryTerm = primaryTerm;
+	}
+
+	public boolean hasGuard() {
+		return null != ifSeqNo && null != ifPrimaryTerm;
+	}
+
+	public Long getIfSeqNo() {
+		return ifSeqNo;
+	}
+
+	public void setIfSeqNo(Long ifSeqNo) {
+		this.ifSeqNo = ifSeqNo;
+	}
+
+	public Long getIfPrimaryTerm() {
+		return ifPrimaryTerm;
+	}
+
+	public void setIfPrimaryTerm(Long ifPrimaryTerm) {
+		this.ifPrimaryTerm = ifPrimaryTerm;
+	}
+
+	public boolean isReplaceFields() {
+		return replaceFields;
+	}
+
+	public void setReplaceFields(boolean replaceFields) {
+		this.replaceFields = replaceFields;
+	}
+
+	/**
+	 * Refreshes the offers of a datasource, seen unchanged in its feed
+	 *
+	 * @param datasourceName the name of the datasource
+	 */
+	public void seen(String datasourceName) {
+		seenDatasources.add(datasourceName);
+	}
+
+	public Set<String> getSeenDatasources() {
+		return seenDatasources;
+	}
+
+	public void setSeenDatasources(Set<String> seenDatasources) {
+		this.seenDatasources = seenDatasources;
+	}
+
+	public String getVertical() {
+		return vertical;
+	}
+
+	public void setVertical(String vertical) {
+		this.vertical = vertical;
+	}
+
+	public String getPreviousVertical() {
+		return previousVertical;
+	}
+
+	public void setPreviousVertical(String previousVertical) {
+		this.previousVertical = previousVertical;
+	}
+
 	public Long getProductId() {
 		return productId;
 	}
@@ -29,6 +29,12 @@ public class ImageInfo {
 	private Integer clusterId;
     private float[] embedding;
 
+	/** Most frequent opaque colour, as #rrggbb */
+	private String dominantColor;
+
+	/** Variance of the luminance laplacian, low for blurred or flat images */
+	private Double sharpness;
+
 	public ImageInfo() {
 		super();
 	}
@@ -103,6 +109,22 @@ public class ImageInfo {
 		this.embedding = embedding;
 	}
 
+	public String getDominantColor() {
+		return dominantColor;
+	}
+
+	public void setDominantColor(String dominantColor) {
+		this.dominantColor = dominantColor;
+	}
+
+	public Double getSharpness() {
+		return sharpness;
+	}
+
+	public void setSharpness(Double sharpness) {
+		this.sharpness = sharpness;
+	}
+
 
 
 
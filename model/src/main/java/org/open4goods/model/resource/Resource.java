@@ -51,6 +51,11 @@ public class Resource implements Validable
 
     private String md5;
 
+    // HTTP validators of the downloaded content, for conditional revalidations
+    private String etag;
+
+    private String lastModified;
+
     private ResourceType resourceType;
 
     private ImageInfo imageInfo;
@@ -395,6 +400,26 @@ public class Resource implements Validable
         this.md5 = md5;
     }
 
+    public String getEtag()
+    {
+        return etag;
+    }
+
+    public void setEtag(String etag)
+    {
+        this.etag = etag;
+    }
+
+    public String getLastModified()
+    {
+        return lastModified;
+    }
+
+    public void setLastModified(String lastModified)
+    {
+        this.lastModified = lastModified;
+    }
+
     public ResourceType getResourceType()
     {
         return resourceType;
@@ -1,6 +1,6 @@
 package org.open4goods.model.resource;
 
 public enum ResourceStatus {
-	MD5_CHECKSUM_FAIL, PROTOCOL_EXCEPTION, IO_EXCEPTION, NO_MIME_TYPE, MD5_EXCLUSION, MD5_DUPLICATE, TOO_SMALL, CANNOT_ANALYSE, PERCEPTIV_HASH_FAIL, PDF_PARSING_ERROR, EMPTY_FILE, UNSUPPORTED_MIME_TYPE, SIZE_LIMIT_EXCEEDED
+	MD5_CHECKSUM_FAIL, PROTOCOL_EXCEPTION, IO_EXCEPTION, NO_MIME_TYPE, MD5_EXCLUSION, MD5_DUPLICATE, TOO_SMALL, CANNOT_ANALYSE, PERCEPTIV_HASH_FAIL, PDF_PARSING_ERROR, EMPTY_FILE, UNSUPPORTED_MIME_TYPE, SIZE_LIMIT_EXCEEDED, NEAR_DUPLICATE
 
 }
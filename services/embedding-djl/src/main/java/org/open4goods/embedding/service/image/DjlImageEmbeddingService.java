@@ -1,5 +1,6 @@
 package org.open4goods.embedding.service.image;
 
+import java.awt.image.BufferedImage;
 import java.nio.file.Path;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
@@ -158,6 +159,24 @@ public class DjlImageEmbeddingService
      * @throws Exception when the image cannot be processed.
      */
     public float[] embed(Path imagePath) throws Exception
+    {
+        return predict(ImageFactory.getInstance().fromFile(imagePath), imagePath);
+    }
+
+    /**
+     * Generates an embedding for an already decoded image, the input tensor being built
+     * from its raster without decoding the file again.
+     *
+     * @param image the decoded image.
+     * @return the normalized embedding vector.
+     * @throws Exception when the image cannot be processed.
+     */
+    public float[] embed(BufferedImage image) throws Exception
+    {
+        return predict(ImageFactory.getInstance().fromImage(image), "decoded image");
+    }
+
+    private float[] predict(Image img, Object source) throws Exception
     {
         if (!ready.get())
         {
@@ -177,7 +196,6 @@ public class DjlImageEmbeddingService
             {
                 throw new IllegalStateException("Timed out waiting for an image predictor from the pool");
             }
-            Image img = ImageFactory.getInstance().fromFile(imagePath);
             return predictor.predict(img);
         }
         catch (InterruptedException e)
@@ -187,12 +205,12 @@ public class DjlImageEmbeddingService
         }
         catch (TranslateException e)
         {
-            LOGGER.error("Error while computing embedding for {}: {}", imagePath, e.getMessage());
+            LOGGER.error("Error while computing embedding for {}: {}", source, e.getMessage());
             throw e;
         }
         catch (Exception e)
         {
-            LOGGER.error("Error while computing embedding for {}: {}", imagePath, e.getMessage(), e);
+            LOGGER.error("Error while computing embedding for {}: {}", source, e.getMessage(), e);
             throw e;
         }
         finally
@@ -1,18 +1,24 @@
 package org.open4goods.services.evaluation.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.expression.spel.SpelCompilerMode;
 import org.springframework.context.annotation.Configuration;
 
 /**
  * Configuration properties for the evaluation service.
  *
- * <p>This configuration allows setting properties related to Thymeleaf template caching.</p>
+ * <p>This configuration allows setting properties related to Thymeleaf template caching and
+ * to the parsed SpEL expressions registry.</p>
  *
  * <p>Configuration example in YAML:
  * <pre>
  * evaluation:
  *   template:
  *     cacheable: true
+ *     template-cache-max-size: 1000
+ *     expression-cache-max-size: 2000
+ *     spel-cache-max-size: 1000
+ *     spel-compiler-mode: MIXED
  * </pre>
  * </p>
  */
@@ -25,6 +31,30 @@ public class EvaluationConfig {
      */
     private boolean cacheable = true;
 
+    /**
+     * Max number of parsed Thymeleaf templates kept in cache. Templates are cached by their
+     * content, so every generated variant of a "blabla" counts.
+     */
+    private int templateCacheMaxSize = 1000;
+
+    /**
+     * Max number of parsed Thymeleaf expressions (and their SpEL) kept in cache.
+     */
+    private int expressionCacheMaxSize = 2000;
+
+    /**
+     * Max number of distinct SpEL expressions kept parsed. Beyond, expressions are parsed
+     * at each evaluation.
+     */
+    private int spelCacheMaxSize = 1000;
+
+    /**
+     * Compilation of the cached SpEL expressions to bytecode. MIXED compiles an expression
+     * once it has been successfully interpreted a few times and falls back to interpretation
+     * if the compiled form fails.
+     */
+    private SpelCompilerMode spelCompilerMode = SpelCompilerMode.MIXED;
+
     public boolean isCacheable() {
         return cacheable;
     }
@@ -32,4 +62,36 @@ public class EvaluationConfig {
     public void setCacheable(boolean cacheable) {
         this.cacheable = cacheable;
     }
-}
\ No newline at end of file
+
+    public int getTemplateCacheMaxSize() {
+        return templateCacheMaxSize;
+    }
+
+    public void setTemplateCacheMaxSize(int templateCacheMaxSize) {
+        this.templateCacheMaxSize = templateCacheMaxSize;
+    }
+
+    public int getExpressionCacheMaxSize() {
+        return expressionCacheMaxSize;
+    }
+
+    public void setExpressionCacheMaxSize(int expressionCacheMaxSize) {
+        this.expressionCacheMaxSize = expressionCacheMaxSize;
+    }
+
+    public int getSpelCacheMaxSize() {
+        return spelCacheMaxSize;
+    }
+
+    public void setSpelCacheMaxSize(int spelCacheMaxSize) {
+        this.spelCacheMaxSize = spelCacheMaxSize;
+    }
+
+    public SpelCompilerMode getSpelCompilerMode() {
+        return spelCompilerMode;
+    }
+
+    public void setSpelCompilerMode(SpelCompilerMode spelCompilerMode) {
+        this.spelCompilerMode = spelCompilerMode;
+    }
+}
@@ -1,7 +1,13 @@
 package org.open4goods.services.evaluation.service;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.open4goods.model.product.Product;
 import org.open4goods.services.evaluation.StrictSpringStandardDialect;
@@ -12,10 +18,17 @@ import org.slf4j.LoggerFactory;
 import org.springframework.expression.EvaluationException;
 import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.ParseException;
+import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.stereotype.Service;
-import org.thymeleaf.context.Context;
+import org.thymeleaf.cache.ICache;
+import org.thymeleaf.cache.StandardCache;
+import org.thymeleaf.cache.StandardCacheManager;
+import org.thymeleaf.context.IContext;
 import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.spring6.expression.ThymeleafEvaluationContext;
 import org.thymeleaf.templatemode.TemplateMode;
 import org.thymeleaf.templateresolver.StringTemplateResolver;
 
@@ -25,6 +38,14 @@ import org.thymeleaf.templateresolver.StringTemplateResolver;
  * <p>
  * This service provides methods to evaluate conditions on products and generate computed strings based on product properties.
  * </p>
+ * <p>
+ * Each distinct SpEL expression is parsed once and kept in a bounded registry, where it is compiled
+ * to bytecode according to the configured {@link org.springframework.expression.spel.SpelCompilerMode}.
+ * Thymeleaf templates and their expressions are kept parsed in the engine caches, sized from the
+ * configuration, and their SpEL expressions share one evaluation context, keeping the resolved
+ * property accessors. Evaluation counts, cache hits and cumulated timings are exposed through
+ * {@link #statistics()}.
+ * </p>
  */
 @Service
 public class EvaluationService {
@@ -35,10 +56,25 @@ public class EvaluationService {
     private static final String TPL_VAR_START = "${";
 
     // SpEL expression parser (trusted expressions)
-    private static ExpressionParser expressionParser;
+    private final ExpressionParser expressionParser;
+
+    // Parsed (and possibly compiled) SpEL expressions, by expression string
+    private final Map<String, Expression> spelExpressions = new ConcurrentHashMap<>();
+    private final int spelCacheMaxSize;
 
     // Thymeleaf template engine
-    private SpringTemplateEngine thymeleafTemplateEngine;
+    private final SpringTemplateEngine thymeleafTemplateEngine;
+    private final StandardCacheManager thymeleafCacheManager;
+
+    // SpEL context of the template expressions, shared so that its property accessors keep their resolved
+    // getters across evaluations. Only read by the engine, which wraps it per evaluation for its own variables.
+    private final StandardEvaluationContext spelContext = new StandardEvaluationContext();
+
+    private final LongAdder spelParses = new LongAdder();
+    private final LongAdder spelEvaluations = new LongAdder();
+    private final LongAdder spelEvaluationNanos = new LongAdder();
+    private final LongAdder templateEvaluations = new LongAdder();
+    private final LongAdder templateEvaluationNanos = new LongAdder();
 
     /**
      * Constructs a new EvaluationService and initializes the template engines.
@@ -56,9 +92,42 @@ public class EvaluationService {
         templateResolver.setCacheable(evaluationProperties.isCacheable());
         thymeleafTemplateEngine.setTemplateResolver(templateResolver);
         thymeleafTemplateEngine.setDialect(new StrictSpringStandardDialect());
+        // Parsed templates and expressions caches, with hit counters for the statistics
+        thymeleafCacheManager = new StandardCacheManager();
+        thymeleafCacheManager.setTemplateCacheMaxSize(evaluationProperties.getTemplateCacheMaxSize());
+        thymeleafCacheManager.setTemplateCacheEnableCounters(true);
+        thymeleafCacheManager.setExpressionCacheMaxSize(evaluationProperties.getExpressionCacheMaxSize());
+        thymeleafCacheManager.setExpressionCacheEnableCounters(true);
+        thymeleafTemplateEngine.setCacheManager(thymeleafCacheManager);
 
         // Initialize SpEL engine (expressions are trusted)
-        expressionParser = new SpelExpressionParser();
+        expressionParser = new SpelExpressionParser(new SpelParserConfiguration(evaluationProperties.getSpelCompilerMode(),
+                EvaluationService.class.getClassLoader()));
+        spelCacheMaxSize = evaluationProperties.getSpelCacheMaxSize();
+        // Resolvers and accessors are lazily created, not to be raced by the first concurrent evaluations
+        spelContext.getPropertyAccessors();
+        spelContext.getConstructorResolvers();
+        spelContext.getMethodResolvers();
+    }
+
+    /**
+     * Returns the parsed form of a SpEL expression, parsing it on first use.
+     *
+     * @param spel the SpEL expression.
+     * @return the parsed expression, shared by all the evaluations of this expression.
+     * @throws ParseException if the expression is invalid.
+     */
+    Expression expression(final String spel) {
+        Expression expression = spelExpressions.get(spel);
+        if (expression == null) {
+            expression = expressionParser.parseExpression(spel);
+            spelParses.increment();
+            // Beyond the max size (expressions built on the fly ?), no more caching
+            if (spelExpressions.size() < spelCacheMaxSize) {
+                spelExpressions.putIfAbsent(spel, expression);
+            }
+        }
+        return expression;
     }
 
     /**
@@ -69,7 +138,8 @@ public class EvaluationService {
      * @return the boolean result of the evaluation.
      */
     public Boolean spelEval(final Product p, final String spel) {
-        final Expression expression = expressionParser.parseExpression(spel);
+        final Expression expression = expression(spel);
+        final long start = System.nanoTime();
         try {
             // Evaluate the expression on the product and return the result as Boolean.
             return expression.getValue(p, Boolean.class);
@@ -77,6 +147,9 @@ public class EvaluationService {
             // Log critical error and return false.
             logger.error("Critical error while evaluating SpEL '{}': {}", spel, e.getMessage(), e);
             return false;
+        } finally {
+            spelEvaluations.increment();
+            spelEvaluationNanos.add(System.nanoTime() - start);
         }
     }
 
@@ -88,7 +161,8 @@ public class EvaluationService {
      * @return the computed string result of the evaluation.
      */
     public String spelCompute(final Product p, final String spel) {
-        final Expression expression = expressionParser.parseExpression(spel);
+        final Expression expression = expression(spel);
+        final long start = System.nanoTime();
         try {
             // Evaluate the expression on the product and return the result as String.
             return expression.getValue(p, String.class);
@@ -96,6 +170,9 @@ public class EvaluationService {
             // Log critical error and return an empty string.
             logger.error("Critical error while computing SpEL '{}': {}", spel, e.getMessage(), e);
             return "";
+        } finally {
+            spelEvaluations.increment();
+            spelEvaluationNanos.add(System.nanoTime() - start);
         }
     }
 
@@ -133,31 +210,175 @@ public class EvaluationService {
      * @throws TemplateEvaluationException if the template evaluation fails due to unresolved variables.
      */
     public String thymeleafEval(final Product p, final String template, Map<String, Object> additionalParams) {
+        final long start = System.nanoTime();
         try {
-            // Create the Thymeleaf context and add default variables.
-            final Context ctx = new Context();
-            ctx.setVariable("data", p);
-            ctx.setVariable("p", p);
-            ctx.setVariable("product", p);
+            // The variables are collected once, in a map sized upfront, and handed to the engine as they are
+            final Map<?, ?> referentielAttributes = p == null ? Map.of() : p.getAttributes().getReferentielAttributes();
+            final Map<String, Object> variables = HashMap.newHashMap(4 + referentielAttributes.size()
+                    + (additionalParams == null ? 0 : additionalParams.size()));
+            variables.put(ThymeleafEvaluationContext.THYMELEAF_EVALUATION_CONTEXT_CONTEXT_VARIABLE_NAME, spelContext);
+            variables.put("data", p);
+            variables.put("p", p);
+            variables.put("product", p);
             if (additionalParams != null) {
-                ctx.setVariables(additionalParams);
+                variables.putAll(additionalParams);
             }
 
             // If a product is provided, add referential attributes to the context.
-            if (p != null) {
-                for (Entry<?, ?> e : p.getAttributes().getReferentielAttributes().entrySet()) {
-                    ctx.setVariable(e.getKey().toString(), e.getValue());
-                }
+            for (Entry<?, ?> e : referentielAttributes.entrySet()) {
+                variables.put(e.getKey().toString(), e.getValue());
             }
 
             // Process the template with the provided context.
             // With the custom dialect in place, if any variable is unresolvable, a TemplateEvaluationException will be thrown.
-            return thymeleafTemplateEngine.process(template, ctx);
+            return thymeleafTemplateEngine.process(template, new TemplateContext(variables));
 
         } catch (final Exception e) {
             // Log error and rethrow as TemplateEvaluationException for critical failures.
             logger.error("Template evaluation failed for template '{}': {}", template, e.getMessage(), e);
             throw new TemplateEvaluationException("Template evaluation failed", e);
+        } finally {
+            templateEvaluations.increment();
+            templateEvaluationNanos.add(System.nanoTime() - start);
         }
     }
+
+    /**
+     * Validates templates before their first evaluation : every variable ({@code ${...}}) and
+     * selection ({@code *{...}}) expression they contain must be closed and be a valid SpEL
+     * expression. Meant to be called at startup with the configured templates, so that a
+     * broken configuration is reported once rather than at each evaluation.
+     *
+     * @param templates the templates to validate, by a description of their origin.
+     * @return the error messages of the invalid templates, by origin. Empty if all are valid.
+     */
+    public Map<String, String> validateTemplates(final Map<String, String> templates) {
+        final Map<String, String> errors = new LinkedHashMap<>();
+        for (Entry<String, String> e : templates.entrySet()) {
+            final String error = validateTemplate(e.getValue());
+            if (error != null) {
+                logger.error("Invalid template {} : {}", e.getKey(), error);
+                errors.put(e.getKey(), error);
+            }
+        }
+        logger.info("{} templates validated, {} invalid", templates.size(), errors.size());
+        return errors;
+    }
+
+    /**
+     * @return the error message if the template contains an invalid expression, null if valid.
+     */
+    private String validateTemplate(final String template) {
+        if (template == null) {
+            return null;
+        }
+        int from = 0;
+        while (true) {
+            final int dollar = template.indexOf(TPL_VAR_START, from);
+            final int star = template.indexOf("*{", from);
+            final int start = dollar < 0 ? star : star < 0 ? dollar : Math.min(dollar, star);
+            if (start < 0) {
+                return null;
+            }
+            final int end = closingBrace(template, start + 2);
+            if (end < 0) {
+                return "unclosed expression at " + start;
+            }
+            final String spel = template.substring(start + 2, end);
+            try {
+                expressionParser.parseExpression(spel);
+            } catch (final ParseException ex) {
+                return "'" + spel + "' : " + ex.getMessage();
+            }
+            from = end + 1;
+        }
+    }
+
+    /**
+     * @return the index of the brace closing an expression opened before {@code from}, ignoring
+     *         the braces of nested literals and of quoted strings. -1 if not closed.
+     */
+    private static int closingBrace(final String template, final int from) {
+        int depth = 0;
+        char quote = 0;
+        for (int i = from; i < template.length(); i++) {
+            final char c = template.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                if (depth == 0) {
+                    return i;
+                }
+                depth--;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the evaluation counts, cache usage and cumulated evaluation times since startup.
+     */
+    public EvaluationStatistics statistics() {
+        final ICache<?, ?> templateCache = thymeleafCacheManager.getTemplateCache();
+        long templateCacheHits = 0;
+        long templateCacheMisses = 0;
+        if (templateCache instanceof StandardCache<?, ?> cache) {
+            templateCacheHits = cache.getHitCount();
+            templateCacheMisses = cache.getMissCount();
+        }
+        return new EvaluationStatistics(spelExpressions.size(), spelParses.sum(), spelEvaluations.sum(),
+                spelEvaluationNanos.sum() / 1_000_000, templateEvaluations.sum(), templateEvaluationNanos.sum() / 1_000_000,
+                templateCacheHits, templateCacheMisses);
+    }
+
+    /**
+     * Variables of a template evaluation, read by the engine as they are : unlike a {@link org.thymeleaf.context.Context},
+     * no copy is made while collecting them.
+     *
+     * @param variables the template variables, by name.
+     */
+    private record TemplateContext(Map<String, Object> variables) implements IContext {
+
+        @Override
+        public Locale getLocale() {
+            return Locale.getDefault();
+        }
+
+        @Override
+        public boolean containsVariable(final String name) {
+            return variables.containsKey(name);
+        }
+
+        @Override
+        public Set<String> getVariableNames() {
+            return variables.keySet();
+        }
+
+        @Override
+        public Object getVariable(final String name) {
+            return variables.get(name);
+        }
+    }
+
+    /**
+     * Evaluation statistics.
+     *
+     * @param spelCached          distinct SpEL expressions kept parsed.
+     * @param spelParses          SpEL parses, a registry miss each.
+     * @param spelEvaluations     SpEL evaluations.
+     * @param spelMillis          cumulated SpEL evaluation time.
+     * @param templateEvaluations Thymeleaf template evaluations.
+     * @param templateMillis      cumulated template evaluation time, parsing included.
+     * @param templateCacheHits   evaluations of an already parsed template.
+     * @param templateCacheMisses evaluations that had to parse their template.
+     */
+    public record EvaluationStatistics(int spelCached, long spelParses, long spelEvaluations, long spelMillis,
+            long templateEvaluations, long templateMillis, long templateCacheHits, long templateCacheMisses) {
+    }
 }
@@ -14,10 +14,12 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.open4goods.model.attribute.ProductAttributes;
+import org.open4goods.model.attribute.ReferentielKey;
 import org.open4goods.model.product.Product;
 import org.open4goods.services.evaluation.config.EvaluationConfig;
 import org.open4goods.services.evaluation.exception.TemplateEvaluationException;
 import org.open4goods.services.evaluation.service.EvaluationService;
+import org.open4goods.services.evaluation.service.EvaluationService.EvaluationStatistics;
 import org.springframework.boot.SpringBootConfiguration;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.context.annotation.ComponentScan;
@@ -100,6 +102,70 @@ public class EvaluationServiceTest {
         assertTrue(exception.getMessage().contains("Template evaluation failed"));
     }
 
+    /**
+     * Test that a SpEL expression is parsed once and then served from the registry.
+     */
+    @Test
+    public void testSpelExpressionParsedOnce() {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(evaluationService.spelEval(productMock, "1 < 2"));
+        }
+        assertEquals("computedString", evaluationService.spelCompute(productMock, "'computedString'"));
+
+        EvaluationStatistics stats = evaluationService.statistics();
+        assertEquals(2, stats.spelCached());
+        assertEquals(2, stats.spelParses());
+        assertEquals(4, stats.spelEvaluations());
+    }
+
+    /**
+     * Test that a template is parsed on its first evaluation only.
+     */
+    @Test
+    public void testThymeleafTemplateParsedOnce() {
+        String template = "Product name: [[${name}]]";
+        assertEquals("Product name: first", evaluationService.thymeleafEval(Map.of("name", "first"), template));
+        assertEquals("Product name: second", evaluationService.thymeleafEval(Map.of("name", "second"), template));
+
+        EvaluationStatistics stats = evaluationService.statistics();
+        assertEquals(2, stats.templateEvaluations());
+        assertEquals(1, stats.templateCacheMisses());
+        assertEquals(1, stats.templateCacheHits());
+    }
+
+    /**
+     * Test that the product, its referential attributes and the parameters are resolved at each evaluation,
+     * and that the local variables of an evaluation are not seen by the next one.
+     */
+    @Test
+    public void testThymeleafEvalVariables() {
+        when(productAttributesMock.getReferentielAttributes()).thenReturn(Map.of(ReferentielKey.BRAND, "SAMSUNG"));
+        String template = "[# th:with=\"local=${name}\"][[${local}]][/] [[${BRAND}]] [[${product.getAttributes() != null}]]";
+
+        assertEquals("first SAMSUNG true", evaluationService.thymeleafEval(productMock, template, Map.of("name", "first")));
+        assertEquals("second SAMSUNG true", evaluationService.thymeleafEval(productMock, template, Map.of("name", "second")));
+        assertThrows(TemplateEvaluationException.class,
+                () -> evaluationService.thymeleafEval(productMock, "[[${local}]]", Map.of("name", "third")));
+    }
+
+    /**
+     * Test the validation of templates expressions.
+     */
+    @Test
+    public void testValidateTemplates() {
+        Map<String, String> templates = new HashMap<>();
+        templates.put("valid", "||TV|Télévision|| [(${p.brand()})] [[${#strings.toUpperCase(p.model())}]] [[${ {'a':1}['a'] }]]");
+        templates.put("plain", "no expression at all");
+        templates.put("invalid", "[(${p.brand(})]");
+        templates.put("unclosed", "[(${p.brand()]");
+
+        Map<String, String> errors = evaluationService.validateTemplates(templates);
+
+        assertEquals(2, errors.size());
+        assertTrue(errors.containsKey("invalid"));
+        assertTrue(errors.get("unclosed").contains("unclosed"));
+    }
+
     /**
      * Minimal test configuration to bootstrap the Spring context.
      */
@@ -9,6 +9,41 @@ public class FeedIndexingProperties {
 
     private int workerPauseDurationMs = 4000;
 
+    /**
+     * If true, feeds are parsed while being downloaded and decompressed, without temporary
+     * files. Feeds that cannot be read sequentially still go through a local file.
+     */
+    private boolean streaming = true;
+
+    /** Size of the streamed feed prefix buffered for the CSV dialect detection, in bytes. */
+    private int detectionPrefixBytes = 4 * 1024 * 1024;
+
+    /**
+     * Number of threads shared by the workers to parse big feed files in parallel chunks.
+     * 0 means the number of available processors, 1 disables the parallel parsing. Chunks
+     * being read from a local file, remote feeds are then downloaded instead of streamed.
+     */
+    private int parseParallelism = 1;
+
+    /** Minimum size of a feed file for it to be parsed in parallel chunks, in bytes. */
+    private long parallelParseMinBytes = 64L * 1024 * 1024;
+
+    /**
+     * Folder of the per-datasource row fingerprints. When set, rows unchanged since the last
+     * run of their feed are not rebuilt, their products are only marked as seen. Null disables it.
+     */
+    private String fingerprintsFolder;
+
+    /** Rows are rebuilt once every this number of days, even when unchanged. */
+    private int fingerprintRefreshDays = 7;
+
+    /**
+     * @return the effective number of threads to parse feeds with
+     */
+    public int effectiveParseParallelism() {
+        return parseParallelism > 0 ? parseParallelism : Runtime.getRuntime().availableProcessors();
+    }
+
     public int getConcurrentFetcherTask() {
         return concurrentFetcherTask;
     }
@@ -24,4 +59,52 @@ public class FeedIndexingProperties {
     public void setWorkerPauseDurationMs(int workerPauseDurationMs) {
         this.workerPauseDurationMs = workerPauseDurationMs;
     }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    public int getDetectionPrefixBytes() {
+        return detectionPrefixBytes;
+    }
+
+    public void setDetectionPrefixBytes(int detectionPrefixBytes) {
+        this.detectionPrefixBytes = detectionPrefixBytes;
+    }
+
+    public int getParseParallelism() {
+        return parseParallelism;
+    }
+
+    public void setParseParallelism(int parseParallelism) {
+        this.parseParallelism = parseParallelism;
+    }
+
+    public long getParallelParseMinBytes() {
+        return parallelParseMinBytes;
+    }
+
+    public void setParallelParseMinBytes(long parallelParseMinBytes) {
+        this.parallelParseMinBytes = parallelParseMinBytes;
+    }
+
+    public String getFingerprintsFolder() {
+        return fingerprintsFolder;
+    }
+
+    public void setFingerprintsFolder(String fingerprintsFolder) {
+        this.fingerprintsFolder = fingerprintsFolder;
+    }
+
+    public int getFingerprintRefreshDays() {
+        return fingerprintRefreshDays;
+    }
+
+    public void setFingerprintRefreshDays(int fingerprintRefreshDays) {
+        this.fingerprintRefreshDays = fingerprintRefreshDays;
+    }
 }
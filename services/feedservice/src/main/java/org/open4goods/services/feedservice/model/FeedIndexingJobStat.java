@@ -18,6 +18,7 @@ public class FeedIndexingJobStat {
     private long indexed = 0;
     private long validationFail = 0;
     private long exceptions = 0;
+    private long unchanged = 0;
     private Boolean fail = false;
     private String type;
 
@@ -53,6 +54,21 @@ public class FeedIndexingJobStat {
         indexed++;
     }
 
+    public void incrementUnchanged() {
+        unchanged++;
+    }
+
+    /**
+     * Adds the counters of a partial run (e.g. a chunk of the feed) to this one.
+     */
+    public void add(FeedIndexingJobStat other) {
+        processed += other.processed;
+        indexed += other.indexed;
+        validationFail += other.validationFail;
+        exceptions += other.exceptions;
+        unchanged += other.unchanged;
+    }
+
     public String getId() {
         return id;
     }
@@ -117,6 +133,17 @@ public class FeedIndexingJobStat {
         this.exceptions = exceptions;
     }
 
+    /**
+     * @return the number of rows skipped, unchanged since the last run
+     */
+    public long getUnchanged() {
+        return unchanged;
+    }
+
+    public void setUnchanged(long unchanged) {
+        this.unchanged = unchanged;
+    }
+
     public long getDuration() {
         return duration;
     }
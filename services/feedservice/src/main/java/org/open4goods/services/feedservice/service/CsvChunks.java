@@ -0,0 +1,209 @@
+package org.open4goods.services.feedservice.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a local CSV file into byte ranges starting and ending on record boundaries, so that
+ * the ranges can be parsed independently.
+ *
+ * <p>Boundaries are found by a single sequential scan that follows the quoting state the way
+ * the CSV parser does: a quote only opens a quoted value at the start of a field (leading
+ * spaces ignored), doubled quotes and escaped characters do not close it, and line breaks
+ * inside quoted values are not record ends. The scan only looks at separator, quote, escape and
+ * line feed bytes, which is valid for single byte charsets and UTF-8.</p>
+ */
+final class CsvChunks
+{
+    /** Read buffer of the boundaries scan. */
+    private static final int SCAN_BUFFER_SIZE = 1024 * 1024;
+
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    private static final int QUOTE_IN_QUOTED = 3;
+
+    /**
+     * A byte range of the file, made of whole records.
+     *
+     * @param start offset of the first byte, inclusive
+     * @param end offset of the last byte, exclusive
+     */
+    record Chunk(long start, long end)
+    {
+        long length()
+        {
+            return end - start;
+        }
+    }
+
+    /**
+     * The header record and the data chunks of a file.
+     *
+     * @param header range of the header record, leading blank lines included
+     * @param chunks the data ranges, in file order
+     */
+    record Split(Chunk header, List<Chunk> chunks)
+    {
+    }
+
+    private CsvChunks()
+    {
+    }
+
+    /**
+     * Splits a CSV file, the first record being its header.
+     *
+     * @param channel the file
+     * @param separator column separator
+     * @param quote quote char, -1 if values are not quoted
+     * @param escape escape char, -1 if none
+     * @param chunkSize target size of a chunk, in bytes. Chunks end on the first record
+     *            boundary following this size.
+     * @return the header and data ranges
+     * @throws IOException if the file cannot be read
+     */
+    static Split split(FileChannel channel, char separator, int quote, int escape, long chunkSize) throws IOException
+    {
+        long size = channel.size();
+        List<Chunk> chunks = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+
+        long headerEnd = -1;
+        long chunkStart = -1;
+        boolean blankLine = true;
+        boolean escaped = false;
+        int state = FIELD_START;
+        long position = 0;
+
+        while (position < size)
+        {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0)
+            {
+                break;
+            }
+            buffer.flip();
+            for (int i = 0; i < read; i++)
+            {
+                int b = buffer.get(i) & 0xFF;
+                if (escaped)
+                {
+                    escaped = false;
+                    state = state == FIELD_START ? UNQUOTED : state;
+                    continue;
+                }
+
+                boolean recordEnd = false;
+                switch (state)
+                {
+                    case FIELD_START ->
+                    {
+                        if (b == quote)
+                        {
+                            state = QUOTED;
+                        }
+                        else if (b == '\n')
+                        {
+                            recordEnd = true;
+                        }
+                        else if (b == escape)
+                        {
+                            escaped = true;
+                        }
+                        else if (b != separator && b != ' ' && b != '\t' && b != '\r')
+                        {
+                            state = UNQUOTED;
+                        }
+                    }
+                    case UNQUOTED ->
+                    {
+                        if (b == separator)
+                        {
+                            state = FIELD_START;
+                        }
+                        else if (b == '\n')
+                        {
+                            recordEnd = true;
+                        }
+                        else if (b == escape)
+                        {
+                            escaped = true;
+                        }
+                    }
+                    case QUOTED ->
+                    {
+                        if (b == quote)
+                        {
+                            state = QUOTE_IN_QUOTED;
+                        }
+                        else if (b == escape)
+                        {
+                            escaped = true;
+                        }
+                    }
+                    default ->
+                    {
+                        // A quote directly following a quote is a doubled (literal) quote
+                        if (b == quote)
+                        {
+                            state = QUOTED;
+                        }
+                        else if (b == separator)
+                        {
+                            state = FIELD_START;
+                        }
+                        else if (b == '\n')
+                        {
+                            recordEnd = true;
+                        }
+                        else
+                        {
+                            state = UNQUOTED;
+                        }
+                    }
+                }
+
+                if (state != FIELD_START || (b != '\n' && b != '\r' && b != ' ' && b != '\t'))
+                {
+                    blankLine = false;
+                }
+                if (recordEnd)
+                {
+                    long next = position + i + 1;
+                    state = FIELD_START;
+                    if (headerEnd < 0)
+                    {
+                        if (!blankLine)
+                        {
+                            headerEnd = next;
+                            chunkStart = next;
+                        }
+                    }
+                    else if (next - chunkStart >= chunkSize)
+                    {
+                        chunks.add(new Chunk(chunkStart, next));
+                        chunkStart = next;
+                    }
+                    blankLine = true;
+                }
+            }
+            position += read;
+        }
+
+        if (headerEnd < 0)
+        {
+            // Header only, without trailing line feed
+            return new Split(new Chunk(0, size), List.of());
+        }
+        if (chunkStart < size)
+        {
+            chunks.add(new Chunk(chunkStart, size));
+        }
+        return new Split(new Chunk(0, headerEnd), chunks);
+    }
+}
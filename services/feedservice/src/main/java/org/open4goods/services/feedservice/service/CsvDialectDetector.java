@@ -1,9 +1,11 @@
 package org.open4goods.services.feedservice.service;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
@@ -14,7 +16,7 @@ import java.util.Map;
 import tools.jackson.dataformat.csv.CsvSchema;
 
 /**
- * Detects CSV dialects from a small file sample.
+ * Detects CSV dialects from a small file or stream sample.
  *
  * <p>The detector rejects candidates that only produce one column, strips a UTF byte-order mark
  * from the header, ignores blank sample lines, and scores candidates by header/data column-count
@@ -51,7 +53,37 @@ public class CsvDialectDetector
      */
     public CsvSchema detectSchema(File file, Charset charset) throws IOException
     {
-        List<String> sampleLines = readSample(file, charset);
+        try (InputStream in = new FileInputStream(file))
+        {
+            return detectSchema(readSample(in, charset, false));
+        }
+    }
+
+    /**
+     * Detects a CSV schema from the first bytes of a stream, which is left positioned at its
+     * start so that it can be parsed afterwards. Only the buffered prefix is inspected.
+     *
+     * @param in stream to inspect, supporting {@link InputStream#mark(int)}
+     * @param charset charset used to decode the sample
+     * @param prefixBytes maximum number of bytes read for the detection
+     * @return schema using the detected separator and quote character
+     * @throws IOException when the stream cannot be read
+     */
+    public CsvSchema detectSchema(InputStream in, Charset charset, int prefixBytes) throws IOException
+    {
+        if (!in.markSupported())
+        {
+            throw new IllegalArgumentException("Dialect detection on a stream requires mark/reset support");
+        }
+        in.mark(prefixBytes);
+        byte[] prefix = in.readNBytes(prefixBytes);
+        in.reset();
+        // A full prefix probably ends in the middle of a line
+        return detectSchema(readSample(new ByteArrayInputStream(prefix), charset, prefix.length == prefixBytes));
+    }
+
+    private CsvSchema detectSchema(List<String> sampleLines)
+    {
         if (sampleLines.isEmpty())
         {
             return CsvSchema.builder().setUseHeader(true).build();
@@ -89,21 +121,30 @@ public class CsvDialectDetector
         return schema;
     }
 
-    private List<String> readSample(File file, Charset charset) throws IOException
+    private List<String> readSample(InputStream in, Charset charset, boolean truncated) throws IOException
     {
         List<String> sampleLines = new ArrayList<>(DETECTION_SAMPLE_LINES);
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), charset)))
+        BufferedReader br = new BufferedReader(new InputStreamReader(in, charset));
+        String line;
+        boolean complete = false;
+        while (sampleLines.size() < DETECTION_SAMPLE_LINES)
         {
-            String line;
-            while ((line = br.readLine()) != null && sampleLines.size() < DETECTION_SAMPLE_LINES)
+            line = br.readLine();
+            if (line == null)
             {
-                String normalized = stripBom(line);
-                if (!normalized.isBlank())
-                {
-                    sampleLines.add(normalized);
-                }
+                complete = true;
+                break;
+            }
+            String normalized = stripBom(line);
+            if (!normalized.isBlank())
+            {
+                sampleLines.add(normalized);
             }
         }
+        if (truncated && complete && sampleLines.size() > 1)
+        {
+            sampleLines.removeLast();
+        }
         return sampleLines;
     }
 
@@ -1,13 +1,31 @@
 package org.open4goods.services.feedservice.service;
 
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
 import org.open4goods.model.datafragment.DataFragment;
 import org.open4goods.model.exceptions.ValidationException;
 
 /**
  * Indexes feed-produced data fragments into the owning application store.
  */
-@FunctionalInterface
 public interface DataFragmentIndexer {
 
-    void index(DataFragment dataFragment, String datasourceConfigName) throws ValidationException;
+    /**
+     * Submits a data fragment for indexation
+     *
+     * @return completed once the fragment is durably indexed, exceptionally if it is skipped or
+     *         cannot be indexed
+     */
+    CompletableFuture<Void> index(DataFragment dataFragment, String datasourceConfigName) throws ValidationException;
+
+    /**
+     * Marks products as seen unchanged in a datasource feed : their offers from this datasource
+     * are still valid, but nothing else has to be aggregated. Required by the row fingerprints
+     * ({@link org.open4goods.services.feedservice.config.FeedIndexingProperties#getFingerprintsFolder()}).
+     *
+     * @param productIds     the ids of the products seen
+     * @param datasourceName the name of the datasource
+     */
+    void seen(Collection<Long> productIds, String datasourceName);
 }
@@ -2,6 +2,7 @@ package org.open4goods.services.feedservice.service;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.util.Collections;
 import java.util.HashSet;
@@ -9,6 +10,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
@@ -41,14 +43,17 @@ public class FeedIndexingService implements HealthIndicator {
     private final Map<String, FeedIndexingJobStat> runningJobs = new ConcurrentHashMap<>();
     private final AtomicLong feedNoUrls = new AtomicLong(0L);
     private final Set<String> brokenCsvFiles = Collections.synchronizedSet(new HashSet<>());
+    private final ForkJoinPool parsingPool;
 
     public FeedIndexingService(FeedIndexingProperties properties, DataFragmentCompletionService completionService,
             DataFragmentIndexer dataFragmentIndexer, RemoteFileCachingService remoteFileCachingService,
             String logsFolder) {
+        int parallelism = properties.effectiveParseParallelism();
+        this.parsingPool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
         int workers = Math.max(1, properties.getConcurrentFetcherTask());
         for (int i = 0; i < workers; i++) {
             Thread worker = new Thread(new FeedIndexingWorker(this, completionService, dataFragmentIndexer,
-                    properties.getWorkerPauseDurationMs(), logsFolder, remoteFileCachingService));
+                    properties, logsFolder, remoteFileCachingService));
             worker.setName("feed-indexing-worker-" + i);
             worker.start();
         }
@@ -80,6 +85,15 @@ public class FeedIndexingService implements HealthIndicator {
         return schema;
     }
 
+    public CsvSchema detectSchema(InputStream in, Charset charset, int prefixBytes) throws IOException {
+        LOGGER.info("Autodetecting CSV schema on a {} bytes stream prefix (charset {})", prefixBytes, charset);
+        CsvSchema schema = csvDialectDetector.detectSchema(in, charset, prefixBytes);
+        LOGGER.warn("Auto detected schema is quoteChar:{} separatorChar:{} escapeChar:none",
+                schema.getQuoteChar() == -1 ? "none" : Character.toString((char) schema.getQuoteChar()),
+                schema.getColumnSeparator() == -1 ? "none" : Character.toString((char) schema.getColumnSeparator()));
+        return schema;
+    }
+
     public void finished(final FeedIndexingJobStat fetchingJobStats, final DataSourceProperties dataSourceProperties) {
         LOGGER.info("Datasource feed indexing of {} is terminated", dataSourceProperties.getName());
         runningJobs.put(dataSourceProperties.getDatasourceConfigName(), fetchingJobStats);
@@ -100,6 +114,17 @@ public class FeedIndexingService implements HealthIndicator {
         for (final String provider : runningJobs.keySet().stream().collect(Collectors.toSet())) {
             stop(provider);
         }
+        if (parsingPool != null) {
+            parsingPool.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the pool parsing big feeds in parallel chunks, shared by the workers. Null if
+     *         the parallel parsing is disabled.
+     */
+    public ForkJoinPool getParsingPool() {
+        return parsingPool;
     }
 
     public BlockingQueue<DataSourceProperties> getQueue() {
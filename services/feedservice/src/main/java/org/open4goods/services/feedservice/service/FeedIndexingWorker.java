@@ -1,14 +1,25 @@
 package org.open4goods.services.feedservice.service;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.URLDecoder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.text.Normalizer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -16,8 +27,17 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.stream.Collectors;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.open4goods.commons.config.yml.datasource.CsvDataSourceProperties;
 import org.open4goods.commons.config.yml.datasource.DataSourceProperties;
@@ -36,6 +56,7 @@ import org.open4goods.model.product.InStock;
 import org.open4goods.model.product.ProductCondition;
 import org.open4goods.model.rating.Rating;
 import org.open4goods.model.resource.Resource;
+import org.open4goods.services.feedservice.config.FeedIndexingProperties;
 import org.open4goods.services.feedservice.model.FeedIndexingJobStat;
 import org.open4goods.services.remotefilecaching.service.RemoteFileCachingService;
 import org.slf4j.Logger;
@@ -44,8 +65,8 @@ import org.springframework.web.util.UriComponents;
 import org.springframework.web.util.UriComponentsBuilder;
 import java.util.concurrent.ConcurrentHashMap;
 
+import tools.jackson.core.exc.JacksonIOException;
 import tools.jackson.databind.MappingIterator;
-import tools.jackson.databind.ObjectReader;
 import tools.jackson.dataformat.csv.CsvMapper;
 import tools.jackson.dataformat.csv.CsvReadFeature;
 import tools.jackson.dataformat.csv.CsvSchema;
@@ -56,6 +77,17 @@ import tools.jackson.dataformat.csv.CsvSchema;
  * {@link FeedIndexingService#getQueue()}, downloads the remote CSV file, detects its
  * dialect, and indexes each row as a {@link org.open4goods.model.datafragment.DataFragment}.
  *
+ * <p>In streaming mode ({@link org.open4goods.services.feedservice.config.FeedIndexingProperties#isStreaming()}),
+ * the HTTP body is decompressed and parsed on the fly, the dialect being detected on a
+ * buffered prefix. Feeds that cannot be read sequentially are downloaded to a file first.
+ *
+ * <p>When row fingerprints are enabled, the rows unchanged since the last run of a feed are
+ * not turned into DataFragments : their products are only marked as seen, by batches
+ * ({@link DataFragmentIndexer#seen(java.util.Collection, String)}).
+ *
+ * <p>Big local files can be parsed in parallel chunks of whole records, on the parsing pool
+ * shared by the workers ({@link org.open4goods.services.feedservice.config.FeedIndexingProperties#getParseParallelism()}).
+ *
  * <p>One worker processes one feed at a time. Multiple workers run in parallel, one per
  * configured thread in {@link org.open4goods.services.feedservice.config.FeedIndexingProperties#getConcurrentFetcherTask()}.
  *
@@ -86,6 +118,18 @@ public class FeedIndexingWorker implements Runnable {
 
 	private static final String CLASSPATH_PREFIX = "classpath:";
 
+	/** Read buffer of the streamed feeds (network and inflater) */
+	private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+	/** Minimum size of a chunk of a feed parsed in parallel */
+	private static final long MIN_CHUNK_BYTES = 4L * 1024 * 1024;
+
+	/** Number of chunks per parsing thread, for the work stealing to balance uneven chunks */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	/** Number of products seen unchanged submitted at once */
+	private static final int SEEN_BATCH_SIZE = 500;
+
 	// TODO : Should be fully from yaml config. And definitions should be case insensitive
 	private static final List<String> DEFAULT_URL_COLUMNS = List.of(
 	        "product_url",
@@ -279,6 +323,28 @@ public class FeedIndexingWorker implements Runnable {
 	 **/
 	private final int pauseDuration;
 
+	/**
+	 * If true, feeds are parsed as they are downloaded and decompressed
+	 */
+	private final boolean streaming;
+
+	/**
+	 * Size of the streamed feed prefix kept for the dialect detection
+	 */
+	private final int detectionPrefixBytes;
+
+	/**
+	 * Minimum size of a local feed file for it to be parsed in parallel chunks
+	 */
+	private final long parallelParseMinBytes;
+
+	/**
+	 * Folder of the row fingerprints, null if disabled
+	 */
+	private final String fingerprintsFolder;
+
+	private final int fingerprintRefreshDays;
+
 	private String logsFolder;
 
 	/**
@@ -292,11 +358,10 @@ public class FeedIndexingWorker implements Runnable {
 	private FeedIndexingJobStat stats;
 
 	/**
-	 * Per-worker cache that maps config column-name → actual CSV header key for the current URL.
-	 * Cleared between URLs. Accessed only by the owning worker thread — plain HashMap is
-	 * sufficient and avoids CAS overhead.
+	 * Resolution of the config column-names to the actual CSV header keys of the current URL.
+	 * Built once per URL from the header, then shared read-only by the threads parsing it.
 	 */
-	private final Map<String, String> resolvedKeysCache = new java.util.HashMap<>();
+	private volatile ColumnKeys columnKeys;
 
 	/**
 	 * Global cache shared across all worker threads: raw CSV header → comparable (lower-case,
@@ -317,10 +382,15 @@ public class FeedIndexingWorker implements Runnable {
 	 * @param toConsole
 	 * @param dequeuePageSize
 	 */
-	public FeedIndexingWorker(final FeedIndexingService csvService, DataFragmentCompletionService completionService, DataFragmentIndexer dataFragmentIndexer, final int pauseDuration,
+	public FeedIndexingWorker(final FeedIndexingService csvService, DataFragmentCompletionService completionService, DataFragmentIndexer dataFragmentIndexer, final FeedIndexingProperties properties,
 			String logsFolder, RemoteFileCachingService remoteFileCachingService) {
 		this.csvService = csvService;
-		this.pauseDuration = pauseDuration;
+		this.pauseDuration = properties.getWorkerPauseDurationMs();
+		this.streaming = properties.isStreaming();
+		this.detectionPrefixBytes = properties.getDetectionPrefixBytes();
+		this.parallelParseMinBytes = properties.getParallelParseMinBytes();
+		this.fingerprintsFolder = properties.getFingerprintsFolder();
+		this.fingerprintRefreshDays = properties.getFingerprintRefreshDays();
 		this.completionService = completionService;
 		this.dataFragmentIndexer = dataFragmentIndexer;
 		this.logsFolder = logsFolder;
@@ -369,88 +439,64 @@ public class FeedIndexingWorker implements Runnable {
 			
 		}
 		
+		RowFingerprints fingerprints = null;
+		if (null != fingerprintsFolder) {
+			fingerprints = RowFingerprints.open(Path.of(fingerprintsFolder, safeName + ".fp"), fingerprintRefreshDays, LocalDate.now().toEpochDay());
+			dedicatedLogger.info("Loaded {} row fingerprints for {}", fingerprints.known(), dsConfName);
+		}
+
 		for (String url : urls) {
-			resolvedKeysCache.clear();
+			columnKeys = null;
 			dedicatedLogger.warn("STARTING FEED URL {} - {}", url, dsProperties);
 			// Updating status with actual feed
 			stats = new FeedIndexingJobStat(dsProperties.getDatasourceConfigName(), url, FeedIndexingJobStat.TYPE_CSV);
 
-			int okItems = 0;
-			int validationFailedItems = 0;
-			int errorItems = 0;
 			int excludedItems = 0;
 
 			MappingIterator<Map<String, String>> mi = null;
 			File destFile = null;
+			InputStream feedStream = null;
 			try {
 				try {
-					destFile = remoteFileCachingService.downloadToTmpFile(url, safeName);
-					if (destFile ==null || !destFile.exists() || destFile.length() == 0) {
-						dedicatedLogger.error("Non existing or empty downloaded file : {}",url);
-						continue;
+					// Chunked parsing needs a local file
+					if (streaming && null == csvService.getParsingPool()) {
+						feedStream = openStreamedFeed(url, config, dedicatedLogger);
+					}
+					if (feedStream == null) {
+						destFile = remoteFileCachingService.downloadToTmpFile(url, safeName);
+						if (destFile ==null || !destFile.exists() || destFile.length() == 0) {
+							dedicatedLogger.error("Non existing or empty downloaded file : {}",url);
+							continue;
+						}
 					}
 				} catch (Exception e) {
 					dedicatedLogger.error("Exception while downloading feed  {}",url, e);
 					continue;
 				}
 
-				if (config.getGzip()) {
-					destFile = remoteFileCachingService.decompressGzipAndDeleteSource(destFile);
-				} else if (config.getZiped()) {
-					destFile = remoteFileCachingService.unzipFileAndDeleteSource(destFile);
-				}
-
-				CsvSchema schema = configureCsvSchema(config, destFile, dedicatedLogger);
 				Charset charset = Charset.forName(config.getCsvEncoding() != null ? config.getCsvEncoding() : "UTF-8");
-				ObjectReader oReader = CSV_MAPPER.readerFor(Map.class).with(schema);
-
-				mi = oReader.readValues(new InputStreamReader(new FileInputStream(destFile), charset));
-
-				while (true) {
-					Map<String, String> line = null;
-					try {
-
-						// NOTE : can raise exception if further line is invalid
-						boolean hasNext = mi.hasNext();
-						if (!hasNext) {
-							break;
-						}
-
-						line = mi.next();
-						// Count only after a successful read so stats match actual rows attempted
-						stats.incrementLines();
-						if (line == null) {
-							throw new ValidationException("Null line encountered");
-						}
-
-						// Normalise cell values; guard against null values (sparse rows from INSERT_NULLS_FOR_MISSING_COLUMNS)
-						 line = line.entrySet().stream()
-							    .collect(Collectors.toMap(
-							        e -> e.getKey(),
-							        e -> e.getValue() == null ? "" : normalizeCsvValue(e.getValue())
-							    ));
-						DataFragment df = parseCsvLine(dsProperties, line, dsConfName, dedicatedLogger, url);
-
-						// Store the feedUrl as an attribute (for debug)
-						// TODO(p3,conf) : from conf
-						df.addAttribute("feed_url", url, "fr", null);
-
-						dataFragmentIndexer.index(df, dsConfName);
-						stats.incrementIndexed();
-						okItems++;
-						
-					} catch (ValidationException e) {
-						stats.incrementValidationFail();
-						validationFailedItems++;
-						dedicatedLogger.info("Validation exception ({}) while parsing {} (url={})", e.getMessage(), dataFragment(line), url);
-					} catch (Exception e) {
-						stats.incrementErrors();
-						errorItems++;
-						dedicatedLogger.warn("Error in {}, while parsing {} ({} cols)", dsConfName, url, line == null ? 0 : line.size(), e);
+				if (feedStream != null) {
+					// The prefix read by the dialect detection is buffered, and replayed to the parser
+					feedStream = new BufferedInputStream(feedStream, STREAM_BUFFER_SIZE);
+					CsvSchema schema = configureCsvSchema(config, feedStream, charset, dedicatedLogger);
+					mi = CSV_MAPPER.readerFor(Map.class).with(schema).readValues(new InputStreamReader(feedStream, charset));
+					indexRows(mi, dsProperties, dedicatedLogger, url, stats, fingerprints);
+				} else {
+					if (config.getGzip()) {
+						destFile = remoteFileCachingService.decompressGzipAndDeleteSource(destFile);
+					} else if (config.getZiped()) {
+						destFile = remoteFileCachingService.unzipFileAndDeleteSource(destFile);
+					}
+					CsvSchema schema = configureCsvSchema(config, destFile, dedicatedLogger);
+					if (!indexChunks(destFile, schema, charset, dsProperties, dedicatedLogger, url, fingerprints)) {
+						mi = CSV_MAPPER.readerFor(Map.class).with(schema).readValues(new InputStreamReader(new FileInputStream(destFile), charset));
+						indexRows(mi, dsProperties, dedicatedLogger, url, stats, fingerprints);
 					}
 				}
 
-				dedicatedLogger.info("Removing fetched CSV file at {}", destFile);
+				if (destFile != null) {
+					dedicatedLogger.info("Removing fetched CSV file at {}", destFile);
+				}
 
 			} catch (Exception e) {
 				// Triggering healthcheck down in the CsvService
@@ -464,16 +510,234 @@ public class FeedIndexingWorker implements Runnable {
 				stats.terminate();
 				csvService.finished(stats, dsProperties);
 				closeIterator(mi, dedicatedLogger);
+				IOUtils.closeQuietly(feedStream);
 				deleteTemporaryFile(url, destFile, dedicatedLogger);
 			}
 
-			dedicatedLogger.info("Done: {} (imported: {}, errors: {}, not_validable: {}, excluded: {}) - {}", dsConfName, okItems, errorItems, validationFailedItems, excludedItems, url);
+			dedicatedLogger.info("Done: {} (imported: {}, unchanged: {}, errors: {}, not_validable: {}, excluded: {}) - {}", dsConfName, stats.getIndexed(), stats.getUnchanged(), stats.getExceptions(), stats.getValidationFail(), excludedItems, url);
+		}
+		if (null != fingerprints) {
+			// Saved once the fragments of the run are indexed
+			fingerprints.close();
 		}
 		dedicatedLogger.info("End CSV feed indexing for {}", dsConfName);
 	}
 
 	
 
+	/**
+	 * Indexes the rows of a CSV content. Rows unchanged since the last run are not rebuilt,
+	 * their products are marked as seen by batches.
+	 *
+	 * @param mi           the CSV rows
+	 * @param rowStats     the stats to update
+	 * @param fingerprints the row fingerprints of the datasource, null if disabled
+	 */
+	private void indexRows(MappingIterator<Map<String, String>> mi, DataSourceProperties dsProperties, Logger dedicatedLogger, String url, FeedIndexingJobStat rowStats, RowFingerprints fingerprints) {
+		String dsConfName = dsProperties.getDatasourceConfigName();
+		List<Long> seen = new ArrayList<>();
+		try {
+			indexRows(mi, dsProperties, dsConfName, dedicatedLogger, url, rowStats, fingerprints, seen);
+		} finally {
+			if (!seen.isEmpty()) {
+				dataFragmentIndexer.seen(seen, dsProperties.getName());
+			}
+		}
+	}
+
+	private void indexRows(MappingIterator<Map<String, String>> mi, DataSourceProperties dsProperties, String dsConfName, Logger dedicatedLogger, String url, FeedIndexingJobStat rowStats, RowFingerprints fingerprints, List<Long> seen) {
+		while (true) {
+			Map<String, String> line = null;
+			try {
+
+				// NOTE : can raise exception if further line is invalid
+				boolean hasNext = mi.hasNext();
+				if (!hasNext) {
+					break;
+				}
+
+				line = mi.next();
+				// Count only after a successful read so stats match actual rows attempted
+				rowStats.incrementLines();
+				if (line == null) {
+					throw new ValidationException("Null line encountered");
+				}
+
+				// Normalise cell values in place; guard against null values (sparse rows from INSERT_NULLS_FOR_MISSING_COLUMNS)
+				line.replaceAll((key, value) -> value == null ? "" : normalizeCsvValue(value));
+
+				// Skipping the rows unchanged since the last run (hashed before being consumed by the parsing)
+				long rowHash = 0L;
+				if (null != fingerprints) {
+					rowHash = RowFingerprints.hash(line);
+					long productId = fingerprints.unchanged(rowHash);
+					if (0L != productId) {
+						fingerprints.record(rowHash, productId);
+						rowStats.incrementUnchanged();
+						seen.add(productId);
+						if (seen.size() >= SEEN_BATCH_SIZE) {
+							dataFragmentIndexer.seen(List.copyOf(seen), dsProperties.getName());
+							seen.clear();
+						}
+						continue;
+					}
+				}
+
+				DataFragment df = parseCsvLine(dsProperties, line, dsConfName, dedicatedLogger, url);
+
+				// Store the feedUrl as an attribute (for debug)
+				// TODO(p3,conf) : from conf
+				df.addAttribute("feed_url", url, "fr", null);
+
+				CompletableFuture<Void> indexed = dataFragmentIndexer.index(df, dsConfName);
+				rowStats.incrementIndexed();
+				// Rows the indexer ignores (no numeric GTIN, brand fragments) stay rebuilt at each run
+				if (null != fingerprints && !df.isBrandFragment() && StringUtils.isNumeric(df.gtin())) {
+					fingerprints.recordWhenIndexed(rowHash, Long.parseLong(df.gtin()), indexed);
+				}
+
+			} catch (ValidationException e) {
+				rowStats.incrementValidationFail();
+				dedicatedLogger.info("Validation exception ({}) while parsing {} (url={})", e.getMessage(), dataFragment(line), url);
+			} catch (JacksonIOException e) {
+				// The feed content is no longer readable (e.g. dropped connection), not a malformed row
+				throw e;
+			} catch (Exception e) {
+				rowStats.incrementErrors();
+				dedicatedLogger.warn("Error in {}, while parsing {} ({} cols)", dsConfName, url, line == null ? 0 : line.size(), e);
+			}
+		}
+	}
+
+	/**
+	 * Indexes a big local CSV file in parallel : the file is split in chunks of whole records,
+	 * parsed and indexed on the shared {@link FeedIndexingService#getParsingPool() parsing pool}.
+	 * The columns are read once from the header and the column keys resolved once for all the
+	 * chunks. Rows are indexed out of order.
+	 *
+	 * @return false if the file is not eligible to a parallel parsing (small file, no parsing
+	 *         pool, charset not ASCII compatible), and has to be parsed sequentially
+	 * @throws IOException if the file cannot be read, or a chunk failed to be read
+	 */
+	private boolean indexChunks(File file, CsvSchema schema, Charset charset, DataSourceProperties dsProperties, Logger dedicatedLogger, String url, RowFingerprints fingerprints) throws IOException, InterruptedException {
+		ForkJoinPool pool = csvService.getParsingPool();
+		if (null == pool || file.length() < parallelParseMinBytes
+				|| !(StandardCharsets.UTF_8.equals(charset) || charset.newEncoder().maxBytesPerChar() == 1.0f)) {
+			return false;
+		}
+
+		CsvChunks.Split split;
+		long chunkSize = Math.max(MIN_CHUNK_BYTES, file.length() / (pool.getParallelism() * CHUNKS_PER_THREAD));
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			split = CsvChunks.split(channel, (char) schema.getColumnSeparator(), schema.getQuoteChar(), schema.getEscapeChar(), chunkSize);
+		}
+
+		// Reading the columns from the header, the chunks being parsed with an explicit schema
+		CsvSchema chunkSchema;
+		try (MappingIterator<Map<String, String>> header = CSV_MAPPER.readerFor(Map.class).with(schema).readValues(chunkReader(file, split.header(), charset))) {
+			header.hasNext();
+			CsvSchema headerSchema = (CsvSchema) header.parserSchema();
+			if (null == headerSchema || headerSchema.size() == 0) {
+				dedicatedLogger.warn("No columns read from the header of {}, parsing sequentially", url);
+				return false;
+			}
+			chunkSchema = headerSchema.withoutHeader().withSkipFirstDataRow(false);
+		}
+		columnKeys = ColumnKeys.of(chunkSchema.getColumnNames());
+
+		dedicatedLogger.warn("Parsing {} in {} chunks of ~{} bytes, on {} threads", url, split.chunks().size(), chunkSize, pool.getParallelism());
+		List<ForkJoinTask<FeedIndexingJobStat>> tasks = new ArrayList<>(split.chunks().size());
+		for (CsvChunks.Chunk chunk : split.chunks()) {
+			tasks.add(pool.submit(() -> {
+				FeedIndexingJobStat chunkStats = new FeedIndexingJobStat();
+				try (MappingIterator<Map<String, String>> rows = CSV_MAPPER.readerFor(Map.class).with(chunkSchema).readValues(chunkReader(file, chunk, charset))) {
+					indexRows(rows, dsProperties, dedicatedLogger, url, chunkStats, fingerprints);
+				}
+				return chunkStats;
+			}));
+		}
+
+		// Waiting for all the chunks, before merging their stats
+		IOException failure = null;
+		for (ForkJoinTask<FeedIndexingJobStat> task : tasks) {
+			try {
+				stats.add(task.get());
+			} catch (ExecutionException e) {
+				if (null == failure) {
+					failure = new IOException("Error while parsing a chunk of " + url, e.getCause());
+				}
+			}
+		}
+		if (null != failure) {
+			throw failure;
+		}
+		return true;
+	}
+
+	private Reader chunkReader(File file, CsvChunks.Chunk chunk, Charset charset) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ).position(chunk.start());
+		InputStream in = BoundedInputStream.builder()
+				.setInputStream(Channels.newInputStream(channel))
+				.setMaxCount(chunk.length())
+				.get();
+		return new InputStreamReader(new BufferedInputStream(in, STREAM_BUFFER_SIZE), charset);
+	}
+
+	/**
+	 * Opens a feed as a stream of CSV content : the downloaded body is decompressed on the
+	 * fly and nothing is written to disk. The parsing pulls the content as rows are indexed,
+	 * so a slow {@link DataFragmentIndexer} (which blocks when its queues are full) slows
+	 * down the download instead of piling up rows in memory.
+	 *
+	 * @return the CSV content stream, or null if the feed cannot be read sequentially and
+	 *         must be downloaded to a file
+	 * @throws IOException if the feed cannot be opened
+	 */
+	private InputStream openStreamedFeed(String url, CsvDataSourceProperties config, Logger dedicatedLogger) throws IOException {
+		InputStream body = remoteFileCachingService.openStream(url);
+		try {
+			if (config.getGzip()) {
+				return new GZIPInputStream(body, STREAM_BUFFER_SIZE);
+			}
+			if (config.getZiped()) {
+				ZipInputStream zip = new ZipInputStream(new BufferedInputStream(body, STREAM_BUFFER_SIZE));
+				ZipEntry entry;
+				do {
+					entry = zip.getNextEntry();
+				} while (entry != null && entry.isDirectory());
+				if (entry == null) {
+					throw new IOException("No file in zip archive");
+				}
+				dedicatedLogger.info("Streaming {} from zip archive {}", entry.getName(), url);
+				return zip;
+			}
+			return body;
+		} catch (ZipException e) {
+			// Typically stored entries with a trailing data descriptor, that need the central directory
+			IOUtils.closeQuietly(body);
+			dedicatedLogger.warn("Zip archive {} cannot be streamed ({}), falling back to a local copy", url, e.getMessage());
+			return null;
+		} catch (IOException | RuntimeException e) {
+			IOUtils.closeQuietly(body);
+			throw e;
+		}
+	}
+
+	/**
+	 * Builds a {@link CsvSchema} for a streamed feed, detecting the dialect on its buffered
+	 * prefix. The stream is left at its start.
+	 */
+	private CsvSchema configureCsvSchema(CsvDataSourceProperties config, InputStream feedStream, Charset charset, Logger dedicatedLogger) throws IOException
+	{
+	    dedicatedLogger.info("Detecting schema on the streamed feed prefix (charset {})", charset);
+	    CsvSchema schema = applyCsvSchemaOverrides(csvService.detectSchema(feedStream, charset, detectionPrefixBytes), config);
+	    dedicatedLogger.warn("Final schema: quoteChar:{} separatorChar:{} escapeChar:{}",
+	        schema.getQuoteChar() == -1 ? "none" : Character.toString((char) schema.getQuoteChar()),
+	        schema.getColumnSeparator() == -1 ? "none" : Character.toString((char) schema.getColumnSeparator()),
+	        schema.getEscapeChar() == -1 ? "none" : Character.toString((char) schema.getEscapeChar()));
+	    return schema;
+	}
+
 	/**
 	 * Builds a {@link CsvSchema} for {@code destFile} by running dialect auto-detection and then
 	 * applying any explicit overrides from the datasource YAML configuration.
@@ -1326,30 +1590,44 @@ public class FeedIndexingWorker implements Runnable {
 		{
 			return colName;
 		}
-		if (resolvedKeysCache.containsKey(colName))
+		ColumnKeys keys = columnKeys;
+		if (keys == null)
 		{
-			final String cached = resolvedKeysCache.get(colName);
-			return "".equals(cached) ? null : cached;
+			// Sequential parsing, the header is known from the first row
+			keys = ColumnKeys.of(item.keySet());
+			columnKeys = keys;
 		}
+		return keys.resolve(colName);
+	}
 
-		final String normalized = colName.trim();
-		final String comparable = comparableCsvHeader(colName);
-		final String trimmedMatch = item.keySet().stream()
-				.filter(key -> key != null && key.trim().equalsIgnoreCase(normalized))
-				.findFirst()
-				.orElse(null);
-		if (trimmedMatch != null)
+	/**
+	 * Immutable index of the header keys of a CSV feed, matching a configured column name to
+	 * a header key by trimmed case-insensitive equality first, then by comparable form.
+	 */
+	private static final class ColumnKeys
+	{
+		private final Map<String, String> byTrimmedName = new HashMap<>();
+		private final Map<String, String> byComparableName = new HashMap<>();
+
+		static ColumnKeys of(Collection<String> headers)
 		{
-			resolvedKeysCache.put(colName, trimmedMatch);
-			return trimmedMatch;
+			ColumnKeys ret = new ColumnKeys();
+			for (String header : headers)
+			{
+				if (header != null)
+				{
+					ret.byTrimmedName.putIfAbsent(header.trim().toLowerCase(Locale.ROOT), header);
+					ret.byComparableName.putIfAbsent(comparableCsvHeader(header), header);
+				}
+			}
+			return ret;
 		}
-		final String comparableMatch = item.keySet().stream()
-				.filter(key -> comparableCsvHeader(key).equals(comparable))
-				.findFirst()
-				.orElse(null);
 
-		resolvedKeysCache.put(colName, comparableMatch != null ? comparableMatch : "");
-		return comparableMatch;
+		String resolve(String colName)
+		{
+			String trimmedMatch = byTrimmedName.get(colName.trim().toLowerCase(Locale.ROOT));
+			return trimmedMatch != null ? trimmedMatch : byComparableName.get(comparableCsvHeader(colName));
+		}
 	}
 
 	static String comparableCsvHeader(String value)
@@ -0,0 +1,279 @@
+package org.open4goods.services.feedservice.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persisted fingerprints of the rows of a datasource feed, as seen on its last indexation :
+ * row hash → id of the product (GTIN) the row has been indexed to.
+ *
+ * <p>A row whose hash is known is unchanged since the last run, it does not need to be turned
+ * into a DataFragment and aggregated again : its product only has to be marked as seen. Rows
+ * are keyed by their hash rather than by GTIN because the GTIN is only known once the row has
+ * been completed and standardised, which is what is skipped.</p>
+ *
+ * <p>A run reads the fingerprints of the previous one and records the rows it sees (unchanged
+ * or durably indexed) in a new generation, that replaces the file once the run is closed and
+ * all its rows are indexed. Rows that disappeared from the feed, or failed, are thus forgotten. Each row is also rebuilt once
+ * every {@code refreshDays} days whatever its hash, so that mapping or standardisation changes
+ * eventually reach the unchanged rows.</p>
+ *
+ * <p>Entries are kept in open addressing tables of primitive longs (16 bytes per slot, no boxing).
+ * Thread safe : lookups read the previous generation, which is immutable, and records are
+ * synchronized.</p>
+ */
+public class RowFingerprints {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RowFingerprints.class);
+
+    /** File format marker */
+    private static final int MAGIC = 0x46505231;
+
+    /** Slot marker, row hashes are never 0 */
+    private static final long EMPTY = 0L;
+
+    private final Path file;
+    private final long day;
+    private final int refreshDays;
+    private final Table previous;
+    private final Table current;
+
+    /** Rows handed to the indexer, not indexed yet */
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean saved = new AtomicBoolean();
+    private volatile boolean closed;
+
+    private RowFingerprints(Path file, Table previous, int refreshDays, long day) {
+        this.file = file;
+        this.previous = previous;
+        this.refreshDays = refreshDays;
+        this.day = day;
+        this.current = new Table(Math.max(1024, previous.size));
+    }
+
+    /**
+     * Opens the fingerprints of a datasource, empty if none have been saved yet (or if they cannot be read)
+     *
+     * @param file        the fingerprints file of the datasource
+     * @param refreshDays rows are rebuilt once every refreshDays days, whatever their hash
+     * @param day         the current epoch day
+     */
+    public static RowFingerprints open(Path file, int refreshDays, long day) {
+        Table previous = new Table(0);
+        if (Files.exists(file)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("Not a fingerprints file");
+                }
+                int size = in.readInt();
+                previous = new Table(size);
+                for (int i = 0; i < size; i++) {
+                    previous.put(in.readLong(), in.readLong());
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Cannot read row fingerprints {}, all rows will be rebuilt : {}", file, e.getMessage());
+                previous = new Table(0);
+            }
+        }
+        return new RowFingerprints(file, previous, Math.max(1, refreshDays), day);
+    }
+
+    /**
+     * @return the 64 bits hash of a CSV row, regardless of its columns order. Never 0.
+     */
+    public static long hash(Map<String, String> row) {
+        long h = 0x632BE59BD9B4E019L;
+        for (Map.Entry<String, String> cell : row.entrySet()) {
+            h += mix(hash(cell.getKey()) * 31 + hash(cell.getValue()));
+        }
+        h = mix(h ^ row.size());
+        return h == EMPTY ? 1L : h;
+    }
+
+    /**
+     * @param rowHash the hash of a row
+     * @return the product the row has been indexed to on the last run, if unchanged since and
+     *         not due for a rebuild. 0 otherwise.
+     */
+    public long unchanged(long rowHash) {
+        if (Math.floorMod(rowHash + day, refreshDays) == 0) {
+            return 0L;
+        }
+        return previous.get(rowHash);
+    }
+
+    /**
+     * Records a row seen in this run, indexed to the given product
+     */
+    public void record(long rowHash, long productId) {
+        synchronized (current) {
+            current.put(rowHash, productId);
+        }
+    }
+
+    /**
+     * Records a row of this run once it is indexed to the given product. Rows whose indexation
+     * fails are not recorded, they are rebuilt on the next run.
+     *
+     * @param indexed completed once the row is durably indexed
+     */
+    public void recordWhenIndexed(long rowHash, long productId, CompletionStage<?> indexed) {
+        pending.incrementAndGet();
+        indexed.whenComplete((result, failure) -> {
+            if (null == failure) {
+                record(rowHash, productId);
+            }
+            if (pending.decrementAndGet() == 0 && closed) {
+                saveOnce();
+            }
+        });
+    }
+
+    /**
+     * Ends the run : the fingerprints are saved as soon as the rows handed to the indexer are
+     * indexed. Nothing is saved if no row has been recorded.
+     */
+    public void close() {
+        closed = true;
+        if (pending.get() == 0) {
+            saveOnce();
+        }
+    }
+
+    private void saveOnce() {
+        if (recorded() == 0 || !saved.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            save();
+        } catch (IOException e) {
+            LOGGER.error("Cannot save the row fingerprints {}", file, e);
+        }
+    }
+
+    /**
+     * @return the number of rows recorded in this run
+     */
+    public int recorded() {
+        synchronized (current) {
+            return current.size;
+        }
+    }
+
+    /**
+     * @return the number of rows known from the last run
+     */
+    public int known() {
+        return previous.size;
+    }
+
+    /**
+     * Replaces the fingerprints file by the rows recorded in this run
+     *
+     * @throws IOException if the file cannot be written
+     */
+    public void save() throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        synchronized (current) {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(current.size);
+                for (int i = 0; i < current.keys.length; i++) {
+                    if (current.keys[i] != EMPTY) {
+                        out.writeLong(current.keys[i]);
+                        out.writeLong(current.values[i]);
+                    }
+                }
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long hash(String value) {
+        if (null == value) {
+            return 0x9E3779B97F4A7C15L;
+        }
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return mix(h);
+    }
+
+    /** SplitMix64 finalizer */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Linear probing long → long hash table, kept at most half full
+     */
+    private static final class Table {
+
+        private long[] keys;
+        private long[] values;
+        private int size;
+
+        Table(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+            keys = new long[capacity];
+            values = new long[capacity];
+        }
+
+        long get(long key) {
+            int mask = keys.length - 1;
+            for (int i = (int) mix(key) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return 0L;
+        }
+
+        void put(long key, long value) {
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int i = (int) mix(key) & mask;
+            while (keys[i] != EMPTY && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == EMPTY) {
+                size++;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new long[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+    }
+}
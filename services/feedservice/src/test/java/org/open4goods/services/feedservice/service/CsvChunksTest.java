@@ -0,0 +1,93 @@
+package org.open4goods.services.feedservice.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for the record boundaries found by {@link CsvChunks}.
+ */
+class CsvChunksTest
+{
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void chunksEndOnRecordBoundariesOutsideQuotes() throws IOException
+    {
+        String csv = "\n"
+                + "ean;name;description\n"
+                + "1;\"first\";\"spans\ntwo lines\"\n"
+                + "2;second;a 55\" screen\n"
+                + "3;\"third\";\"doubled \"\"quotes\"\"\n and ; separator\"\n"
+                + "4;fourth;\\\"escaped\n";
+
+        CsvChunks.Split split = split(csv, '"', '\\', 1);
+
+        assertThat(text(csv, split.header())).isEqualTo("\nean;name;description\n");
+        assertThat(split.chunks()).extracting(chunk -> text(csv, chunk)).containsExactly(
+                "1;\"first\";\"spans\ntwo lines\"\n",
+                "2;second;a 55\" screen\n",
+                "3;\"third\";\"doubled \"\"quotes\"\"\n and ; separator\"\n",
+                "4;fourth;\\\"escaped\n");
+    }
+
+    @Test
+    void chunksCoverTheWholeFile() throws IOException
+    {
+        StringBuilder csv = new StringBuilder("ean,name\r\n");
+        for (int i = 0; i < 1000; i++)
+        {
+            csv.append(i).append(",\"product\r\n").append(i).append("\"\r\n");
+        }
+        csv.append("last,without line feed");
+
+        CsvChunks.Split split = split(csv.toString(), '"', -1, 1000);
+        List<CsvChunks.Chunk> chunks = split.chunks();
+
+        assertThat(chunks).hasSizeGreaterThan(10);
+        assertThat(chunks.getFirst().start()).isEqualTo(split.header().end());
+        for (int i = 1; i < chunks.size(); i++)
+        {
+            assertThat(chunks.get(i).start()).isEqualTo(chunks.get(i - 1).end());
+            assertThat(text(csv.toString(), chunks.get(i))).matches("(?s)(\\d+,\"product\r\n\\d+\"\r\n)+|.*last.*");
+        }
+        assertThat(chunks.getLast().end()).isEqualTo(csv.length());
+    }
+
+    @Test
+    void unquotedFeedsSplitOnEveryLine() throws IOException
+    {
+        String csv = "ean\tname\n1\t\"a\n2\tb\n";
+
+        CsvChunks.Split split = split(csv, -1, -1, 1);
+
+        assertThat(split.chunks()).extracting(chunk -> text(csv, chunk)).containsExactly("1\t\"a\n", "2\tb\n");
+    }
+
+    private CsvChunks.Split split(String csv, int quote, int escape, long chunkSize) throws IOException
+    {
+        Path file = tmp.resolve("feed.csv");
+        Files.writeString(file, csv, StandardCharsets.UTF_8);
+        char separator = csv.contains("\t") ? '\t' : csv.contains(";") ? ';' : ',';
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            return CsvChunks.split(channel, separator, quote, escape, chunkSize);
+        }
+    }
+
+    private static String text(String csv, CsvChunks.Chunk chunk)
+    {
+        return csv.substring((int) chunk.start(), (int) chunk.end());
+    }
+}
@@ -0,0 +1,72 @@
+package org.open4goods.services.feedservice.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.open4goods.services.feedservice.config.FeedIndexingProperties;
+import org.open4goods.services.feedservice.model.FeedIndexingJobStat;
+
+/**
+ * Tests for the parallel parsing of big local feed files : the chunked parsing must index
+ * exactly the rows of the sequential one.
+ */
+class FeedIndexingWorkerChunkedTest
+{
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @TempDir
+    Path tmp;
+
+    @AfterEach
+    void tearDown()
+    {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void chunkedParsingIndexesTheSameRowsAsSequentialParsing() throws IOException
+    {
+        Path feed = tmp.resolve("feed.csv");
+        StringBuilder csv = new StringBuilder("\"EAN\";\"Product name\";\"price\";\"description\"\n");
+        String description = "x".repeat(120);
+        for (int i = 0; i < 40_000; i++)
+        {
+            csv.append(3_000_000_000_000L + i).append(";\"product ").append(i).append("\";")
+                    .append(i % 100).append(".99;\"").append(description).append("\n\"\"").append(i).append("\"\"\"\n");
+        }
+        Files.writeString(feed, csv, StandardCharsets.UTF_8);
+
+        Set<String> sequential = ConcurrentHashMap.newKeySet();
+        FeedIndexingJobStat sequentialStats = fetch(feed.toFile(), null, sequential);
+        Set<String> chunked = ConcurrentHashMap.newKeySet();
+        FeedIndexingJobStat chunkedStats = fetch(feed.toFile(), pool, chunked);
+
+        assertThat(sequentialStats.getProcessed()).isEqualTo(40_000);
+        assertThat(chunkedStats.getProcessed()).isEqualTo(sequentialStats.getProcessed());
+        assertThat(chunkedStats.getIndexed()).isEqualTo(sequentialStats.getIndexed());
+        assertThat(chunkedStats.getValidationFail()).isEqualTo(sequentialStats.getValidationFail());
+        assertThat(chunked).isEqualTo(sequential);
+    }
+
+    private FeedIndexingJobStat fetch(File feed, ForkJoinPool parsingPool, Set<String> indexed) throws IOException
+    {
+        FeedIndexingProperties properties = new FeedIndexingProperties();
+        properties.setParallelParseMinBytes(1);
+        return FeedIndexingWorkerFixture.fetch(FeedIndexingWorkerFixture.feedIndexingService(parsingPool),
+                FeedIndexingWorkerFixture.indexer(df -> indexed.add(df.gtin() + "|" + df.getNames() + "|" + df.getDescriptionsByDatasource())),
+                properties, FeedIndexingWorkerFixture.downloading(feed),
+                FeedIndexingWorkerFixture.datasource("chunked", feed.toString(), false));
+    }
+}
@@ -0,0 +1,95 @@
+package org.open4goods.services.feedservice.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.open4goods.services.feedservice.config.FeedIndexingProperties;
+import org.open4goods.services.feedservice.model.FeedIndexingJobStat;
+
+/**
+ * Tests for the skipping of the feed rows unchanged since the last run.
+ */
+class FeedIndexingWorkerFingerprintsTest
+{
+
+    @TempDir
+    Path tmp;
+
+    private final List<String> indexed = new ArrayList<>();
+    private final List<Long> seen = new ArrayList<>();
+
+    /** GTINs whose indexation fails */
+    private final Set<String> failing = new HashSet<>();
+
+    private final DataFragmentIndexer indexer = FeedIndexingWorkerFixture.indexer(df -> {
+        indexed.add(df.gtin());
+        return failing.contains(df.gtin())
+                ? CompletableFuture.failedFuture(new IllegalStateException("Not indexed"))
+                : CompletableFuture.completedFuture(null);
+    }, seen::addAll);
+
+    @Test
+    void unchangedRowsAreOnlyMarkedAsSeen() throws IOException
+    {
+        Path feed = tmp.resolve("feed.csv");
+        Files.writeString(feed, "ean;name;price\n"
+                + "3000000000015;first product;10.5\n"
+                + "3000000000022;second product;20\n", StandardCharsets.UTF_8);
+        FeedIndexingJobStat firstRun = fetch(feed.toFile());
+
+        Files.writeString(feed, "ean;name;price\n"
+                + "3000000000015;first product;10.5\n"
+                + "3000000000022;second product;19\n", StandardCharsets.UTF_8);
+        FeedIndexingJobStat secondRun = fetch(feed.toFile());
+
+        assertThat(firstRun.getIndexed()).isEqualTo(2);
+        assertThat(secondRun.getProcessed()).isEqualTo(2);
+        assertThat(secondRun.getIndexed()).isEqualTo(1);
+        assertThat(secondRun.getUnchanged()).isEqualTo(1);
+        assertThat(indexed).containsExactly("3000000000015", "3000000000022", "3000000000022");
+        assertThat(seen).containsExactly(3000000000015L);
+    }
+
+    @Test
+    void rowsNotDurablyIndexedAreRebuiltOnTheNextRun() throws IOException
+    {
+        Path feed = tmp.resolve("feed.csv");
+        Files.writeString(feed, "ean;name;price\n"
+                + "3000000000015;first product;10.5\n"
+                + "3000000000022;second product;20\n", StandardCharsets.UTF_8);
+        failing.add("3000000000022");
+        fetch(feed.toFile());
+
+        failing.clear();
+        FeedIndexingJobStat secondRun = fetch(feed.toFile());
+
+        assertThat(secondRun.getIndexed()).isEqualTo(1);
+        assertThat(secondRun.getUnchanged()).isEqualTo(1);
+        assertThat(indexed).containsExactly("3000000000015", "3000000000022", "3000000000022");
+        assertThat(seen).containsExactly(3000000000015L);
+    }
+
+    private FeedIndexingJobStat fetch(File feed) throws IOException
+    {
+        FeedIndexingProperties properties = new FeedIndexingProperties();
+        properties.setStreaming(false);
+        properties.setFingerprintsFolder(tmp.resolve("fingerprints").toString());
+        // Never due for a rebuild
+        properties.setFingerprintRefreshDays(Integer.MAX_VALUE);
+        return FeedIndexingWorkerFixture.fetch(FeedIndexingWorkerFixture.feedIndexingService(null), indexer, properties,
+                FeedIndexingWorkerFixture.downloading(feed),
+                FeedIndexingWorkerFixture.datasource("fingerprinted", feed.toString(), false));
+    }
+}
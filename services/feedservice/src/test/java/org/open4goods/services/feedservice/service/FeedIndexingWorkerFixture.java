@@ -0,0 +1,130 @@
+package org.open4goods.services.feedservice.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.mockito.ArgumentCaptor;
+import org.open4goods.commons.config.yml.datasource.CsvDataSourceProperties;
+import org.open4goods.commons.config.yml.datasource.DataSourceProperties;
+import org.open4goods.model.datafragment.DataFragment;
+import org.open4goods.services.feedservice.config.FeedIndexingProperties;
+import org.open4goods.services.feedservice.model.FeedIndexingJobStat;
+import org.open4goods.services.remotefilecaching.service.RemoteFileCachingService;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shared fixture of the {@link FeedIndexingWorker} tests : a mocked {@link FeedIndexingService}
+ * detecting the real dialects, datasources, indexers, and a fetch returning the job stats.
+ */
+final class FeedIndexingWorkerFixture
+{
+
+    private FeedIndexingWorkerFixture()
+    {
+    }
+
+    /**
+     * @param parsingPool the pool for the chunked parsing, null to parse sequentially
+     * @return a mocked service, detecting the dialect of files and streams
+     */
+    static FeedIndexingService feedIndexingService(ForkJoinPool parsingPool) throws IOException
+    {
+        FeedIndexingService csvService = mock(FeedIndexingService.class);
+        CsvDialectDetector detector = new CsvDialectDetector();
+        when(csvService.getParsingPool()).thenReturn(parsingPool);
+        when(csvService.createDatasourceLogger(anyString(), any(), anyString()))
+                .thenReturn(LoggerFactory.getLogger(FeedIndexingWorker.class));
+        when(csvService.detectSchema(any(File.class), any(Charset.class)))
+                .thenAnswer(i -> detector.detectSchema(i.<File>getArgument(0), i.getArgument(1)));
+        when(csvService.detectSchema(any(InputStream.class), any(Charset.class), anyInt()))
+                .thenAnswer(i -> detector.detectSchema(i.<InputStream>getArgument(0), i.getArgument(1), i.<Integer>getArgument(2)));
+        return csvService;
+    }
+
+    /**
+     * @return a caching service "downloading" every url to the given local feed
+     */
+    static RemoteFileCachingService downloading(File feed) throws IOException
+    {
+        RemoteFileCachingService remoteFileCachingService = mock(RemoteFileCachingService.class);
+        when(remoteFileCachingService.downloadToTmpFile(anyString(), anyString())).thenReturn(feed);
+        return remoteFileCachingService;
+    }
+
+    static DataSourceProperties datasource(String name, String url, boolean gzip)
+    {
+        CsvDataSourceProperties csv = new CsvDataSourceProperties();
+        csv.setDatasourceUrls(Set.of(url));
+        csv.setGzip(gzip);
+        DataSourceProperties datasource = new DataSourceProperties();
+        datasource.setName(name);
+        datasource.setDatasourceConfigName(name + ".yml");
+        datasource.setCsvDatasource(csv);
+        return datasource;
+    }
+
+    /**
+     * @return an indexer durably indexing every fragment at once
+     */
+    static DataFragmentIndexer indexer(Consumer<DataFragment> index)
+    {
+        return indexer(df -> {
+            index.accept(df);
+            return CompletableFuture.completedFuture(null);
+        }, ids -> { });
+    }
+
+    /**
+     * @param index the indexation of a fragment, returning its outcome
+     * @param seen  the products marked as seen
+     */
+    static DataFragmentIndexer indexer(Function<DataFragment, CompletableFuture<Void>> index, Consumer<Collection<Long>> seen)
+    {
+        return new DataFragmentIndexer()
+        {
+            @Override
+            public CompletableFuture<Void> index(DataFragment dataFragment, String datasourceConfigName)
+            {
+                return index.apply(dataFragment);
+            }
+
+            @Override
+            public void seen(Collection<Long> productIds, String datasourceName)
+            {
+                seen.accept(productIds);
+            }
+        };
+    }
+
+    /**
+     * Fetches a datasource with a new worker
+     *
+     * @return the stats of the job, as reported to the service
+     */
+    static FeedIndexingJobStat fetch(FeedIndexingService csvService, DataFragmentIndexer indexer, FeedIndexingProperties properties,
+            RemoteFileCachingService remoteFileCachingService, DataSourceProperties datasource)
+    {
+        FeedIndexingWorker worker = new FeedIndexingWorker(csvService, mock(DataFragmentCompletionService.class),
+                indexer, properties, "target", remoteFileCachingService);
+        worker.fetch(datasource);
+
+        ArgumentCaptor<FeedIndexingJobStat> stats = ArgumentCaptor.forClass(FeedIndexingJobStat.class);
+        verify(csvService).finished(stats.capture(), any());
+        return stats.getValue();
+    }
+}
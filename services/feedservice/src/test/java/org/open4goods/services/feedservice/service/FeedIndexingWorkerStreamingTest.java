@@ -0,0 +1,77 @@
+package org.open4goods.services.feedservice.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.open4goods.services.feedservice.config.FeedIndexingProperties;
+import org.open4goods.services.feedservice.model.FeedIndexingJobStat;
+import org.open4goods.services.remotefilecaching.service.RemoteFileCachingService;
+
+import tools.jackson.dataformat.csv.CsvSchema;
+
+/**
+ * Tests for the streamed feed indexing : dialect detection on a buffered prefix, and
+ * parsing of compressed feeds without temporary files.
+ */
+class FeedIndexingWorkerStreamingTest
+{
+
+    private static final String CSV = "ean;name;price\n"
+            + "1234567890128;first product;10.5\n"
+            + "4006381333931;second product;20\n"
+            + "9780201379624;third product;30\n";
+
+    @Test
+    void detectionOnPrefixLeavesTheStreamAtItsStart() throws IOException
+    {
+        byte[] content = CSV.getBytes(StandardCharsets.UTF_8);
+        InputStream in = new BufferedInputStream(new ByteArrayInputStream(content), 16);
+
+        // The prefix ends in the middle of the second line
+        CsvSchema schema = new CsvDialectDetector().detectSchema(in, StandardCharsets.UTF_8, 30);
+
+        assertThat((char) schema.getColumnSeparator()).isEqualTo(';');
+        assertThat(in.readAllBytes()).isEqualTo(content);
+    }
+
+    @Test
+    void gzipFeedIsParsedWithoutTemporaryFile() throws IOException
+    {
+        RemoteFileCachingService remoteFileCachingService = mock(RemoteFileCachingService.class);
+        when(remoteFileCachingService.openStream("https://feeds.example.org/feed.csv.gz"))
+                .thenReturn(new ByteArrayInputStream(gzip(CSV)));
+        FeedIndexingService csvService = FeedIndexingWorkerFixture.feedIndexingService(null);
+
+        FeedIndexingJobStat stats = FeedIndexingWorkerFixture.fetch(csvService, FeedIndexingWorkerFixture.indexer(df -> { }),
+                new FeedIndexingProperties(), remoteFileCachingService,
+                FeedIndexingWorkerFixture.datasource("streamed", "https://feeds.example.org/feed.csv.gz", true));
+
+        assertThat(stats.getProcessed()).isEqualTo(3);
+        assertThat(stats.getFail()).isNotEqualTo(Boolean.TRUE);
+        verify(remoteFileCachingService, never()).downloadToTmpFile(anyString(), anyString());
+        verify(csvService, never()).brokenCsv(anyString());
+    }
+
+    private static byte[] gzip(String content) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out))
+        {
+            gzip.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return out.toByteArray();
+    }
+}
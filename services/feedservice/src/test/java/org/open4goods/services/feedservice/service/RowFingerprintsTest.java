@@ -0,0 +1,84 @@
+package org.open4goods.services.feedservice.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for the persisted {@link RowFingerprints} of a feed.
+ */
+class RowFingerprintsTest
+{
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void rowHashIgnoresColumnsOrderButNotValues()
+    {
+        Map<String, String> row = new LinkedHashMap<>(Map.of("ean", "3760000000017", "price", "10.5"));
+
+        assertThat(RowFingerprints.hash(row)).isEqualTo(RowFingerprints.hash(new TreeMap<>(row)));
+        assertThat(RowFingerprints.hash(row)).isNotEqualTo(RowFingerprints.hash(Map.of("ean", "3760000000017", "price", "10.6")));
+        assertThat(RowFingerprints.hash(row)).isNotZero();
+    }
+
+    @Test
+    void onlyRowsRecordedByTheLastRunAreUnchanged() throws IOException
+    {
+        Path file = tmp.resolve("datasource.fp");
+        RowFingerprints first = RowFingerprints.open(file, 1_000_000, 0);
+        for (long hash = 1; hash <= 10_000; hash++)
+        {
+            first.record(hash, hash * 10);
+        }
+        first.save();
+
+        RowFingerprints second = RowFingerprints.open(file, 1_000_000, 0);
+        assertThat(second.known()).isEqualTo(10_000);
+        assertThat(second.unchanged(42)).isEqualTo(420);
+        assertThat(second.unchanged(10_001)).isZero();
+        second.record(42, 420);
+        second.save();
+
+        RowFingerprints third = RowFingerprints.open(file, 1_000_000, 0);
+        assertThat(third.known()).isEqualTo(1);
+        assertThat(third.unchanged(43)).isZero();
+    }
+
+    @Test
+    void rowsAreRebuiltOnceEveryRefreshPeriod() throws IOException
+    {
+        Path file = tmp.resolve("datasource.fp");
+        RowFingerprints first = RowFingerprints.open(file, 7, 0);
+        first.record(100, 1);
+        first.save();
+
+        int rebuilt = 0;
+        for (long day = 0; day < 7; day++)
+        {
+            if (RowFingerprints.open(file, 7, day).unchanged(100) == 0)
+            {
+                rebuilt++;
+            }
+        }
+        assertThat(rebuilt).isEqualTo(1);
+    }
+
+    @Test
+    void unreadableFileMeansNoKnownRows() throws IOException
+    {
+        Path file = tmp.resolve("datasource.fp");
+        Files.writeString(file, "garbage");
+
+        assertThat(RowFingerprints.open(file, 7, 0).known()).isZero();
+    }
+}
@@ -0,0 +1,264 @@
+package org.open4goods.services.productrepository.changes;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.open4goods.services.productrepository.config.ProductChangesConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.Criteria;
+import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
+import org.springframework.data.elasticsearch.core.query.DeleteQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * {@link ProductChangeBus} shared by the nodes through a changes log index of the products
+ * cluster : each published batch is a document, that the subscribers poll by timestamp.
+ * <p>
+ * Batches are read again over an overlap window, to catch the ones not yet searchable
+ * when first polled, and deduplicated by id. A poll pages through the window on
+ * (timestamp, id) until exhausted, whatever the number of batches. The publishers purge
+ * the log beyond its retention.
+ */
+public class ElasticProductChangeBus implements ProductChangeBus {
+
+	private static final Logger logger = LoggerFactory.getLogger(ElasticProductChangeBus.class);
+
+	private static final String MAPPING = """
+			{ "dynamic": false, "properties": {
+				"id": { "type": "keyword" },
+				"timestamp": { "type": "long" },
+				"events": { "type": "keyword", "index": false, "doc_values": false }
+			} }""";
+
+	private final ElasticsearchOperations elasticsearchOperations;
+	private final ProductChangesConfig config;
+	private final IndexCoordinates index;
+
+	private final List<Consumer<List<ProductChangeEvent>>> listeners = new CopyOnWriteArrayList<>();
+
+	private volatile boolean indexChecked;
+	private volatile long lastPurge;
+
+	private ScheduledExecutorService poller;
+	/** Greatest polled timestamp */
+	private long cursor;
+	/** Batches already delivered in the overlap window, with their timestamp */
+	private final Map<String, Long> delivered = new HashMap<>();
+
+	public ElasticProductChangeBus(ElasticsearchOperations elasticsearchOperations, ProductChangesConfig config) {
+		this.elasticsearchOperations = elasticsearchOperations;
+		this.config = config;
+		this.index = IndexCoordinates.of(config.getIndexName());
+		this.lastPurge = System.currentTimeMillis();
+	}
+
+	@Override
+	public void publish(List<ProductChangeEvent> events) {
+		if (events.isEmpty()) {
+			return;
+		}
+		try {
+			ensureIndex();
+			ProductChangeBatch batch = new ProductChangeBatch();
+			batch.setId(UUID.randomUUID().toString());
+			batch.setTimestamp(System.currentTimeMillis());
+			batch.setEvents(encode(events));
+			elasticsearchOperations.index(new IndexQueryBuilder().withId(batch.getId()).withObject(batch).build(), index);
+			purgeIfDue(batch.getTimestamp());
+		} catch (Exception e) {
+			// Best effort, caches will expire the changed entries
+			logger.error("Cannot publish {} product changes : {}", events.size(), e.getMessage());
+		}
+	}
+
+	@Override
+	public synchronized void subscribe(Consumer<List<ProductChangeEvent>> listener) {
+		listeners.add(listener);
+		if (null == poller) {
+			cursor = System.currentTimeMillis();
+			poller = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "product-changes-poller");
+				t.setDaemon(true);
+				return t;
+			});
+			poller.scheduleWithFixedDelay(this::poll, config.getPollIntervalMs(), config.getPollIntervalMs(), TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@PreDestroy
+	public synchronized void shutdown() {
+		if (null != poller) {
+			poller.shutdownNow();
+		}
+	}
+
+	/**
+	 * Deliver the batches published since the last poll
+	 */
+	synchronized void poll() {
+		try {
+			if (!elasticsearchOperations.indexOps(index).exists()) {
+				return;
+			}
+			ensureIndex();
+			long from = cursor - config.getOverlapMs();
+			int pageSize = Math.max(1, config.getMaxBatchesPerPoll());
+			List<Object> searchAfter = null;
+			while (true) {
+				CriteriaQuery query = new CriteriaQuery(new Criteria("timestamp").greaterThanEqual(from));
+				query.setPageable(PageRequest.of(0, pageSize));
+				query.addSort(Sort.by(Sort.Direction.ASC, "timestamp", "id"));
+				if (null != searchAfter) {
+					query.setSearchAfter(searchAfter);
+				}
+
+				List<ProductChangeEvent> events = new ArrayList<>();
+				SearchHits<ProductChangeBatch> hits = elasticsearchOperations.search(query, ProductChangeBatch.class, index);
+				for (SearchHit<ProductChangeBatch> hit : hits) {
+					ProductChangeBatch batch = hit.getContent();
+					if (delivered.putIfAbsent(hit.getId(), batch.getTimestamp()) == null) {
+						events.addAll(decode(batch.getEvents()));
+					}
+					cursor = Math.max(cursor, batch.getTimestamp());
+					searchAfter = hit.getSortValues();
+				}
+				deliver(events);
+				if (hits.getSearchHits().size() < pageSize) {
+					break;
+				}
+			}
+			long horizon = cursor - config.getOverlapMs();
+			delivered.values().removeIf(timestamp -> timestamp < horizon);
+		} catch (Exception e) {
+			logger.error("Cannot poll the product changes : {}", e.getMessage());
+		}
+	}
+
+	private void deliver(List<ProductChangeEvent> events) {
+		if (events.isEmpty()) {
+			return;
+		}
+		logger.info("Received {} product changes", events.size());
+		for (Consumer<List<ProductChangeEvent>> listener : listeners) {
+			try {
+				listener.accept(events);
+			} catch (Exception e) {
+				logger.error("Product changes listener failed", e);
+			}
+		}
+	}
+
+	private void ensureIndex() {
+		if (indexChecked) {
+			return;
+		}
+		IndexOperations indexOperations = elasticsearchOperations.indexOps(index);
+		if (!indexOperations.exists()) {
+			logger.info("Creating the product changes index {}", index.getIndexName());
+			indexOperations.create(Map.of("index.number_of_shards", 1), Document.parse(MAPPING));
+		} else {
+			// Indexes created before the id was mapped, polls sort on it
+			indexOperations.putMapping(Document.parse(MAPPING));
+		}
+		indexChecked = true;
+	}
+
+	private void purgeIfDue(long now) {
+		if (now - lastPurge < config.getRetentionMs() / 4) {
+			return;
+		}
+		lastPurge = now;
+		CriteriaQuery expired = new CriteriaQuery(new Criteria("timestamp").lessThan(now - config.getRetentionMs()));
+		elasticsearchOperations.delete(DeleteQuery.builder(expired).build(), ProductChangeBatch.class, index);
+	}
+
+	/**
+	 * @return the events, one {@code id;vertical;groups mask} line each
+	 */
+	static String encode(List<ProductChangeEvent> events) {
+		StringBuilder sb = new StringBuilder(events.size() * 24);
+		for (ProductChangeEvent event : events) {
+			int mask = 0;
+			for (ProductChangeGroup group : event.groups()) {
+				mask |= 1 << group.ordinal();
+			}
+			sb.append(event.productId()).append(';')
+				.append(null == event.vertical() ? "" : event.vertical()).append(';')
+				.append(mask).append('\n');
+		}
+		return sb.toString();
+	}
+
+	static List<ProductChangeEvent> decode(String encoded) {
+		List<ProductChangeEvent> ret = new ArrayList<>();
+		if (null == encoded) {
+			return ret;
+		}
+		ProductChangeGroup[] groups = ProductChangeGroup.values();
+		for (String line : encoded.split("\n")) {
+			String[] parts = line.split(";", -1);
+			if (parts.length != 3) {
+				continue;
+			}
+			int mask = Integer.parseInt(parts[2]);
+			Set<ProductChangeGroup> changed = EnumSet.noneOf(ProductChangeGroup.class);
+			for (ProductChangeGroup group : groups) {
+				if ((mask & 1 << group.ordinal()) != 0) {
+					changed.add(group);
+				}
+			}
+			ret.add(new ProductChangeEvent(Long.parseLong(parts[0]), parts[1].isEmpty() ? null : parts[1], changed));
+		}
+		return ret;
+	}
+
+	/**
+	 * A published batch of changes, as stored in the changes log
+	 */
+	public static class ProductChangeBatch {
+
+		private String id;
+		private long timestamp;
+		private String events;
+
+		public String getId() {
+			return id;
+		}
+		public void setId(String id) {
+			this.id = id;
+		}
+		public long getTimestamp() {
+			return timestamp;
+		}
+		public void setTimestamp(long timestamp) {
+			this.timestamp = timestamp;
+		}
+		public String getEvents() {
+			return events;
+		}
+		public void setEvents(String events) {
+			this.events = events;
+		}
+	}
+}
@@ -0,0 +1,38 @@
+package org.open4goods.services.productrepository.changes;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In process {@link ProductChangeBus} : the changes are delivered synchronously, in the
+ * publishing thread, to the subscribers of the same JVM. For tests and single node setups.
+ */
+public class LocalProductChangeBus implements ProductChangeBus {
+
+	private static final Logger logger = LoggerFactory.getLogger(LocalProductChangeBus.class);
+
+	private final List<Consumer<List<ProductChangeEvent>>> listeners = new CopyOnWriteArrayList<>();
+
+	@Override
+	public void publish(List<ProductChangeEvent> events) {
+		if (events.isEmpty()) {
+			return;
+		}
+		for (Consumer<List<ProductChangeEvent>> listener : listeners) {
+			try {
+				listener.accept(events);
+			} catch (Exception e) {
+				logger.error("Product changes listener failed", e);
+			}
+		}
+	}
+
+	@Override
+	public void subscribe(Consumer<List<ProductChangeEvent>> listener) {
+		listeners.add(listener);
+	}
+}
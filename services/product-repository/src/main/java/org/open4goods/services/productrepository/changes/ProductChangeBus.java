@@ -0,0 +1,28 @@
+package org.open4goods.services.productrepository.changes;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Channel notifying the products indexation changes to the nodes caching products, so that
+ * they can evict the affected entries instead of waiting for their expiry.
+ * <p>
+ * Delivery is best effort : a lost notification only means an entry served until its
+ * expiry, as without a bus.
+ */
+public interface ProductChangeBus {
+
+	/**
+	 * Notifies the subscribers of changes that have been indexed
+	 *
+	 * @param events the changes, in indexation order
+	 */
+	void publish(List<ProductChangeEvent> events);
+
+	/**
+	 * Registers a listener, notified of the changes published from now on
+	 *
+	 * @param listener receives the changes, batched as published
+	 */
+	void subscribe(Consumer<List<ProductChangeEvent>> listener);
+}
@@ -0,0 +1,65 @@
+package org.open4goods.services.productrepository.changes;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import org.open4goods.model.product.Product;
+import org.open4goods.model.product.ProductPartialUpdateHolder;
+
+/**
+ * Notification of an indexed product change
+ *
+ * @param productId the changed product
+ * @param vertical  its vertical, null if unknown or none
+ * @param groups    the groups of the changed fields
+ */
+public record ProductChangeEvent(long productId, String vertical, Set<ProductChangeGroup> groups) {
+
+	public ProductChangeEvent {
+		groups = groups.isEmpty() ? EnumSet.noneOf(ProductChangeGroup.class) : EnumSet.copyOf(groups);
+	}
+
+	/**
+	 * @return the event of a product indexed as a whole, all its fields having possibly changed
+	 */
+	public static ProductChangeEvent of(Product product) {
+		return new ProductChangeEvent(product.getId(), product.getVertical(), EnumSet.allOf(ProductChangeGroup.class));
+	}
+
+	/**
+	 * @return the event of a partial update. Refreshed offers timestamps are not a visible change
+	 */
+	public static ProductChangeEvent of(ProductPartialUpdateHolder update) {
+		Set<ProductChangeGroup> groups = ProductChangeGroup.of(update.getChanges().keySet());
+		if (!update.getSeenDatasources().isEmpty()) {
+			groups.add(ProductChangeGroup.OTHER);
+		}
+		return new ProductChangeEvent(update.getProductId(), update.getVertical(), groups);
+	}
+
+	/**
+	 * @return the events of a partial update : the event of the update, and the one of the
+	 *         vertical the product left if it changed vertical
+	 */
+	public static List<ProductChangeEvent> events(ProductPartialUpdateHolder update) {
+		ProductChangeEvent event = of(update);
+		if (null == update.getPreviousVertical() || Objects.equals(update.getPreviousVertical(), update.getVertical())) {
+			return List.of(event);
+		}
+		return List.of(event, new ProductChangeEvent(event.productId(), update.getPreviousVertical(), event.groups()));
+	}
+
+	/**
+	 * @return true if some of the changed fields belong to one of the given groups
+	 */
+	public boolean affects(Set<ProductChangeGroup> candidates) {
+		for (ProductChangeGroup group : groups) {
+			if (candidates.contains(group)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,51 @@
+package org.open4goods.services.productrepository.changes;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Groups of product fields, by what their change makes stale in the consumers caches
+ */
+public enum ProductChangeGroup {
+
+	/** Prices and offers */
+	OFFERS,
+	/** Scores and rankings */
+	SCORES,
+	/** Names, vertical and the identifying attributes */
+	NAMES,
+	/** Attributes */
+	ATTRIBUTES,
+	/** Images, videos, documents */
+	RESOURCES,
+	/** Technical fields, not rendered (timestamps, embeddings, datasources codes...) */
+	OTHER;
+
+	/**
+	 * @return the group of a product field, given by its path
+	 */
+	public static ProductChangeGroup of(String path) {
+		int dot = path.indexOf('.');
+		String field = dot < 0 ? path : path.substring(0, dot);
+		return switch (field) {
+		case "price", "offersCount", "offerNames" -> OFFERS;
+		case "scores", "ranking" -> SCORES;
+		case "names", "vertical", "akaBrands", "akaModels" -> NAMES;
+		case "attributes", "gtinInfos", "eprelDatas" -> ATTRIBUTES;
+		case "resources", "coverImagePath" -> RESOURCES;
+		default -> OTHER;
+		};
+	}
+
+	/**
+	 * @return the groups of the given product fields
+	 */
+	public static Set<ProductChangeGroup> of(Collection<String> paths) {
+		Set<ProductChangeGroup> ret = EnumSet.noneOf(ProductChangeGroup.class);
+		for (String path : paths) {
+			ret.add(of(path));
+		}
+		return ret;
+	}
+}
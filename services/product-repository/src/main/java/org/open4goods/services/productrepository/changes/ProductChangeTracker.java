@@ -0,0 +1,223 @@
+package org.open4goods.services.productrepository.changes;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.open4goods.model.product.Product;
+import org.open4goods.model.product.ProductPartialUpdateHolder;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.query.SeqNoPrimaryTerm;
+
+/**
+ * Computes the change sets of products modified in memory, against their state when loaded.
+ * <p>
+ * When tracked, a product is converted to its Elasticsearch document and a 64 bits
+ * fingerprint of each top level field is kept (not the field itself, so that tracking a
+ * whole vertical costs a few hundred bytes per product). The change set of a product is
+ * made of the top level fields whose fingerprint changed, set to be replaced as a whole,
+ * and guarded by the version the product had when read : it is rejected if the product
+ * has been written in between, instead of overwriting that write with a stale copy. The
+ * products of unknown version (indexed after the versions were read) are not tracked : they
+ * are left to the next batch rather than written blind.
+ * <p>
+ * Thread safe, products can be tracked and diffed concurrently.
+ */
+public class ProductChangeTracker {
+
+	/** Fingerprint of an absent field */
+	private static final long ABSENT = 0L;
+
+	private final ElasticsearchConverter converter;
+
+	/** Index of each top level field in the fingerprints arrays */
+	private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+
+	private final AtomicInteger nextSlot = new AtomicInteger();
+
+	private final Map<Long, long[]> fingerprints = new ConcurrentHashMap<>();
+
+	private final Map<Long, SeqNoPrimaryTerm> versions = new ConcurrentHashMap<>();
+
+	private final AtomicInteger untracked = new AtomicInteger();
+
+	/** Vertical of the products as loaded, for the notifications to also target a vertical left */
+	private final Map<Long, String> verticals = new ConcurrentHashMap<>();
+
+	public ProductChangeTracker(ElasticsearchConverter converter) {
+		this.converter = converter;
+	}
+
+	/**
+	 * Records the state of a product as loaded
+	 *
+	 * @param product the product, as loaded
+	 * @param version the version of the product document read before loading it, null if unknown
+	 * @return false if the product cannot be tracked, having no known version
+	 */
+	public boolean track(Product product, SeqNoPrimaryTerm version) {
+		if (null == version) {
+			untracked.incrementAndGet();
+			return false;
+		}
+		fingerprints.put(product.getId(), fingerprint(converter.mapObject(product)));
+		versions.put(product.getId(), version);
+		if (null != product.getVertical()) {
+			verticals.put(product.getId(), product.getVertical());
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if the product state has been recorded
+	 */
+	public boolean isTracked(Product product) {
+		return fingerprints.containsKey(product.getId());
+	}
+
+	/**
+	 * @return the number of tracked products
+	 */
+	public int size() {
+		return fingerprints.size();
+	}
+
+	/**
+	 * @return the number of products not tracked, having no known version
+	 */
+	public int untracked() {
+		return untracked.get();
+	}
+
+	/**
+	 * Computes the change set of a product
+	 *
+	 * @param product the product, modified in memory
+	 * @return the guarded update of the changed fields, null if the product is unchanged or not tracked
+	 */
+	public ProductPartialUpdateHolder changes(Product product) {
+		long[] before = fingerprints.get(product.getId());
+		if (null == before) {
+			return null;
+		}
+		Document document = converter.mapObject(product);
+		long[] after = fingerprint(document);
+
+		ProductPartialUpdateHolder holder = null;
+		for (Map.Entry<String, Integer> slot : slots.entrySet()) {
+			int index = slot.getValue();
+			if (at(before, index) != at(after, index)) {
+				if (null == holder) {
+					holder = new ProductPartialUpdateHolder(product.getId());
+					holder.setVertical(product.getVertical());
+				}
+				// A field that disappeared is nulled
+				holder.addChange(slot.getKey(), document.get(slot.getKey()));
+			}
+		}
+		if (null != holder) {
+			SeqNoPrimaryTerm version = versions.get(product.getId());
+			holder.guard(version.sequenceNumber(), version.primaryTerm());
+			holder.setReplaceFields(true);
+			String loadedVertical = verticals.get(product.getId());
+			if (!Objects.equals(loadedVertical, product.getVertical())) {
+				holder.setPreviousVertical(loadedVertical);
+			}
+		}
+		return holder;
+	}
+
+	/**
+	 * @return the change sets of the changed products
+	 */
+	public List<ProductPartialUpdateHolder> changes(Collection<Product> products) {
+		List<ProductPartialUpdateHolder> ret = new ArrayList<>();
+		for (Product product : products) {
+			ProductPartialUpdateHolder holder = changes(product);
+			if (null != holder) {
+				ret.add(holder);
+			}
+		}
+		return ret;
+	}
+
+	private long[] fingerprint(Map<String, Object> document) {
+		long[] ret = new long[nextSlot.get()];
+		for (Map.Entry<String, Object> field : document.entrySet()) {
+			int index = slots.computeIfAbsent(field.getKey(), k -> nextSlot.getAndIncrement());
+			if (index >= ret.length) {
+				ret = Arrays.copyOf(ret, Math.max(index + 1, nextSlot.get()));
+			}
+			long hash = hash(field.getValue());
+			ret[index] = hash == ABSENT ? 1L : hash;
+		}
+		return ret;
+	}
+
+	private static long at(long[] fingerprint, int index) {
+		return index < fingerprint.length ? fingerprint[index] : ABSENT;
+	}
+
+	/**
+	 * Deep 64 bits hash of a document value. Maps are hashed regardless of their iteration
+	 * order, collections and arrays in order.
+	 */
+	static long hash(Object value) {
+		if (null == value) {
+			return 0x9E3779B97F4A7C15L;
+		}
+		if (value instanceof Map<?, ?> map) {
+			long h = 0x632BE59BD9B4E019L;
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				h += mix(hash(entry.getKey()) * 31 + hash(entry.getValue()));
+			}
+			return mix(h ^ map.size());
+		}
+		if (value instanceof Collection<?> collection) {
+			long h = 0x85EBCA77C2B2AE63L;
+			for (Object item : collection) {
+				h = h * 1_000_003L + hash(item);
+			}
+			return mix(h ^ collection.size());
+		}
+		if (value.getClass().isArray()) {
+			int length = Array.getLength(value);
+			long h = 0x27D4EB2F165667C5L;
+			for (int i = 0; i < length; i++) {
+				h = h * 1_000_003L + hash(Array.get(value, i));
+			}
+			return mix(h ^ length);
+		}
+		if (value instanceof Double || value instanceof Float) {
+			return mix(Double.doubleToLongBits(((Number) value).doubleValue()));
+		}
+		if (value instanceof Number number) {
+			return mix(number.longValue());
+		}
+		if (value instanceof Boolean bool) {
+			return bool ? 0x1B873593L : 0x2F1A7D4BL;
+		}
+		// Strings, and whatever the converter leaves as is, through their text
+		String text = value.toString();
+		long h = 0xCBF29CE484222325L;
+		for (int i = 0; i < text.length(); i++) {
+			h ^= text.charAt(i);
+			h *= 0x100000001B3L;
+		}
+		return mix(h);
+	}
+
+	/** SplitMix64 finalizer */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -0,0 +1,35 @@
+package org.open4goods.services.productrepository.changes;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.elasticsearch.core.query.SeqNoPrimaryTerm;
+
+/**
+ * Read model of the product index giving the version of a product document : its
+ * sequence number and primary term, populated by Spring Data from the search hits.
+ * <p>
+ * Kept apart from {@code Product} on purpose : a {@link SeqNoPrimaryTerm} property on the
+ * product would turn every save of a previously read product into a conditional one.
+ */
+public class ProductVersion {
+
+	@Id
+	private String id;
+
+	private SeqNoPrimaryTerm seqNoPrimaryTerm;
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public SeqNoPrimaryTerm getSeqNoPrimaryTerm() {
+		return seqNoPrimaryTerm;
+	}
+
+	public void setSeqNoPrimaryTerm(SeqNoPrimaryTerm seqNoPrimaryTerm) {
+		this.seqNoPrimaryTerm = seqNoPrimaryTerm;
+	}
+}
@@ -1,5 +1,7 @@
 package org.open4goods.services.productrepository.config;
 
+import org.open4goods.services.productrepository.journal.JournalConfig;
+
 public class IndexationConfig {
 	
 	/**
@@ -13,7 +15,8 @@ public class IndexationConfig {
 	int partialProductsQueueMaxSize = 5000;
 
 	/**
-	 * Max size of the blocking queue for products
+	 * Max size of the blocking queue for datafragments. Shared among the GTIN
+	 * partitioned lanes (one lane per datafragment worker)
 	 */
 	int datafragmentQueueMaxSize = 20000;
 	
@@ -36,7 +39,8 @@ public class IndexationConfig {
 	
 	
 	/**
-	 * Number of concurent workers for datafragments aggregation (means retrieve from cluster, update and save bck)
+	 * Number of concurent workers for datafragments aggregation (means retrieve from cluster, update and save bck).
+	 * Also the number of datafragment queue lanes, a given GTIN being always handled by the same worker
 	 */
 	int dataFragmentworkers = 2;
 	
@@ -46,6 +50,48 @@ public class IndexationConfig {
 	 */
 	int pauseDuration = 4000;
 	
+	/**
+	 * Max serialized bytes of a products bulk. Reduced while the cluster rejects bulks, down to
+	 * bulkMinBytes, then grown back by tenths as they are accepted
+	 */
+	long bulkMaxBytes = 5 * 1024 * 1024;
+
+	long bulkMinBytes = 256 * 1024;
+
+	/**
+	 * Max products in a bulk, whatever their size
+	 */
+	int bulkMaxActions = 1000;
+
+	/**
+	 * Max products bulks in flight, among all the indexation callers
+	 */
+	int bulkMaxInFlight = 4;
+
+	/**
+	 * Retries of the items rejected by the cluster (429), with an exponential backoff
+	 */
+	int bulkMaxRetries = 6;
+
+	int bulkRetryInitialBackoffMs = 200;
+
+	int bulkRetryMaxBackoffMs = 10000;
+
+	/**
+	 * Max wait of a single indexed product for others to share its bulk. A product submitted
+	 * while no other is waiting is sent at once
+	 */
+	int bulkLingerMs = 50;
+
+	/**
+	 * Write-ahead journal backing the datafragments, products and partial products queues
+	 */
+	JournalConfig journal = new JournalConfig();
+
+	/**
+	 * Notifications of the indexed product changes to the caching nodes
+	 */
+	ProductChangesConfig changes = new ProductChangesConfig();
 	
 	public int getDataFragmentBulkPageSize() {
 		return dataFragmentbulkPageSize;
@@ -113,6 +159,66 @@ public class IndexationConfig {
 	public void setPartialProductWorkers(int partialProductWorkers) {
 		this.partialProductWorkers = partialProductWorkers;
 	}
+	public long getBulkMaxBytes() {
+		return bulkMaxBytes;
+	}
+	public void setBulkMaxBytes(long bulkMaxBytes) {
+		this.bulkMaxBytes = bulkMaxBytes;
+	}
+	public long getBulkMinBytes() {
+		return bulkMinBytes;
+	}
+	public void setBulkMinBytes(long bulkMinBytes) {
+		this.bulkMinBytes = bulkMinBytes;
+	}
+	public int getBulkMaxActions() {
+		return bulkMaxActions;
+	}
+	public void setBulkMaxActions(int bulkMaxActions) {
+		this.bulkMaxActions = bulkMaxActions;
+	}
+	public int getBulkMaxInFlight() {
+		return bulkMaxInFlight;
+	}
+	public void setBulkMaxInFlight(int bulkMaxInFlight) {
+		this.bulkMaxInFlight = bulkMaxInFlight;
+	}
+	public int getBulkMaxRetries() {
+		return bulkMaxRetries;
+	}
+	public void setBulkMaxRetries(int bulkMaxRetries) {
+		this.bulkMaxRetries = bulkMaxRetries;
+	}
+	public int getBulkRetryInitialBackoffMs() {
+		return bulkRetryInitialBackoffMs;
+	}
+	public void setBulkRetryInitialBackoffMs(int bulkRetryInitialBackoffMs) {
+		this.bulkRetryInitialBackoffMs = bulkRetryInitialBackoffMs;
+	}
+	public int getBulkRetryMaxBackoffMs() {
+		return bulkRetryMaxBackoffMs;
+	}
+	public void setBulkRetryMaxBackoffMs(int bulkRetryMaxBackoffMs) {
+		this.bulkRetryMaxBackoffMs = bulkRetryMaxBackoffMs;
+	}
+	public int getBulkLingerMs() {
+		return bulkLingerMs;
+	}
+	public void setBulkLingerMs(int bulkLingerMs) {
+		this.bulkLingerMs = bulkLingerMs;
+	}
+	public JournalConfig getJournal() {
+		return journal;
+	}
+	public void setJournal(JournalConfig journal) {
+		this.journal = journal;
+	}
+	public ProductChangesConfig getChanges() {
+		return changes;
+	}
+	public void setChanges(ProductChangesConfig changes) {
+		this.changes = changes;
+	}
 	
 
 
@@ -0,0 +1,77 @@
+package org.open4goods.services.productrepository.config;
+
+/**
+ * Configuration of the product changes notifications, shared through an Elasticsearch
+ * changes log by the indexing and the caching nodes.
+ */
+public class ProductChangesConfig {
+
+	/**
+	 * If false, no changes are published nor polled
+	 */
+	boolean enabled = false;
+
+	/**
+	 * Name of the changes log index
+	 */
+	String indexName = "product-changes";
+
+	/**
+	 * Period of the changes log polling by the subscribers
+	 */
+	long pollIntervalMs = 5000;
+
+	/**
+	 * Already polled time span queried again, for the changes not yet searchable (refresh
+	 * interval) or published by a node whose clock lags
+	 */
+	long overlapMs = 30000;
+
+	/**
+	 * Age after which the published changes are purged from the log
+	 */
+	long retentionMs = 3600000;
+
+	/**
+	 * Number of published batches read per page, a poll reads all the pages of its window
+	 */
+	int maxBatchesPerPoll = 1000;
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+	public String getIndexName() {
+		return indexName;
+	}
+	public void setIndexName(String indexName) {
+		this.indexName = indexName;
+	}
+	public long getPollIntervalMs() {
+		return pollIntervalMs;
+	}
+	public void setPollIntervalMs(long pollIntervalMs) {
+		this.pollIntervalMs = pollIntervalMs;
+	}
+	public long getOverlapMs() {
+		return overlapMs;
+	}
+	public void setOverlapMs(long overlapMs) {
+		this.overlapMs = overlapMs;
+	}
+	public long getRetentionMs() {
+		return retentionMs;
+	}
+	public void setRetentionMs(long retentionMs) {
+		this.retentionMs = retentionMs;
+	}
+	public int getMaxBatchesPerPoll() {
+		return maxBatchesPerPoll;
+	}
+	public void setMaxBatchesPerPoll(int maxBatchesPerPoll) {
+		this.maxBatchesPerPoll = maxBatchesPerPoll;
+	}
+
+}
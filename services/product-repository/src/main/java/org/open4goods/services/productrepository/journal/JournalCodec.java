@@ -0,0 +1,43 @@
+package org.open4goods.services.productrepository.journal;
+
+import java.io.IOException;
+
+import org.open4goods.services.serialisation.exception.SerialisationException;
+import org.open4goods.services.serialisation.service.SerialisationService;
+
+/**
+ * Converts the items of a {@link JournaledQueue} to and from journal records
+ *
+ * @param <T> the queued type
+ */
+public interface JournalCodec<T> {
+
+	byte[] encode(T item) throws IOException;
+
+	T decode(byte[] payload) throws IOException;
+
+	/**
+	 * A JSON codec, relying on the project {@link SerialisationService}
+	 */
+	static <T> JournalCodec<T> json(final SerialisationService serialisationService, final Class<T> type) {
+		return new JournalCodec<>() {
+			@Override
+			public byte[] encode(T item) throws IOException {
+				try {
+					return serialisationService.toBytes(item);
+				} catch (SerialisationException e) {
+					throw new IOException("Cannot serialise " + type.getSimpleName(), e);
+				}
+			}
+
+			@Override
+			public T decode(byte[] payload) throws IOException {
+				try {
+					return serialisationService.fromBytes(payload, type);
+				} catch (SerialisationException e) {
+					throw new IOException("Cannot deserialise " + type.getSimpleName(), e);
+				}
+			}
+		};
+	}
+}
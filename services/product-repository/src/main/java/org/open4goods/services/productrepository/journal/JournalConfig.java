@@ -0,0 +1,106 @@
+package org.open4goods.services.productrepository.journal;
+
+/**
+ * Configuration of the write-ahead journals backing the indexation queues.
+ */
+public class JournalConfig {
+
+	/**
+	 * When the journal is forced to disk
+	 */
+	public enum FsyncPolicy {
+		/** Let the OS flush the mapped pages. Survives a process crash, not a power loss */
+		NEVER,
+		/** Force the current segment every {@link JournalConfig#fsyncIntervalMs} */
+		INTERVAL,
+		/** Force after each append. Safest, slowest */
+		ALWAYS
+	}
+
+	/**
+	 * If false, queues are in-memory only and lost on restart
+	 */
+	boolean enabled = false;
+
+	/**
+	 * Root folder of the journals, each queue gets its own sub folder
+	 */
+	String folder;
+
+	/**
+	 * Size of a memory mapped segment file. A single queued item can not be larger
+	 */
+	int segmentSize = 64 * 1024 * 1024;
+
+	/**
+	 * Number of fully consumed segments kept for reuse instead of being deleted
+	 */
+	int spareSegments = 2;
+
+	FsyncPolicy fsyncPolicy = FsyncPolicy.INTERVAL;
+
+	/**
+	 * Period of the disk force when using {@link FsyncPolicy#INTERVAL}
+	 */
+	long fsyncIntervalMs = 1000;
+
+	/**
+	 * Min duration between two persisted consumer checkpoints
+	 */
+	long checkpointIntervalMs = 1000;
+
+	/**
+	 * Deliveries of an item that keeps failing before it is dropped, 0 for no limit
+	 */
+	int maxDeliveries = 20;
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+	public String getFolder() {
+		return folder;
+	}
+	public void setFolder(String folder) {
+		this.folder = folder;
+	}
+	public int getSegmentSize() {
+		return segmentSize;
+	}
+	public void setSegmentSize(int segmentSize) {
+		this.segmentSize = segmentSize;
+	}
+	public int getSpareSegments() {
+		return spareSegments;
+	}
+	public void setSpareSegments(int spareSegments) {
+		this.spareSegments = spareSegments;
+	}
+	public FsyncPolicy getFsyncPolicy() {
+		return fsyncPolicy;
+	}
+	public void setFsyncPolicy(FsyncPolicy fsyncPolicy) {
+		this.fsyncPolicy = fsyncPolicy;
+	}
+	public long getFsyncIntervalMs() {
+		return fsyncIntervalMs;
+	}
+	public void setFsyncIntervalMs(long fsyncIntervalMs) {
+		this.fsyncIntervalMs = fsyncIntervalMs;
+	}
+	public long getCheckpointIntervalMs() {
+		return checkpointIntervalMs;
+	}
+	public void setCheckpointIntervalMs(long checkpointIntervalMs) {
+		this.checkpointIntervalMs = checkpointIntervalMs;
+	}
+	public int getMaxDeliveries() {
+		return maxDeliveries;
+	}
+	public void setMaxDeliveries(int maxDeliveries) {
+		this.maxDeliveries = maxDeliveries;
+	}
+
+}
@@ -0,0 +1,396 @@
+package org.open4goods.services.productrepository.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded blocking queue, optionally backed by a {@link MappedJournal}.<br/>
+ *
+ * Items are appended to the journal before being queued in memory, and are
+ * acknowledged by the consumers through {@link #commit(Batch)} once handled.
+ * The journal checkpoint is the position of the oldest not acknowledged item,
+ * so a restart replays (through {@link #replay()}) everything that was queued
+ * but not yet handled. Delivery is at least once : items handled but not yet
+ * checkpointed when crashing are replayed.<br/>
+ *
+ * Items that could not be handled are given back through {@link #retry(Batch)} : they
+ * stay journaled and are delivered again, before the newly queued ones, up to
+ * {@link JournalConfig#getMaxDeliveries()} times.<br/>
+ *
+ * The producers can follow an item through {@link #putTracked(Object)} : its future is
+ * completed once the item is committed, or failed if it is rejected or dropped. These
+ * futures live in memory only, the replayed items are not tracked.
+ *
+ * @param <T> the queued type
+ */
+public class JournaledQueue<T> implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(JournaledQueue.class);
+
+	/** Position of the items that are not journaled **/
+	private static final long NOT_JOURNALED = -1L;
+
+	private final String name;
+
+	private final BlockingQueue<Entry<T>> queue;
+
+	/** Items given back by the consumers, delivered before the queued ones **/
+	private final Queue<Entry<T>> retries = new ConcurrentLinkedQueue<>();
+
+	/** The journal, null for in-memory queues **/
+	private final MappedJournal journal;
+
+	private final JournalCodec<T> codec;
+
+	/** Positions of the journaled items not yet acknowledged **/
+	private final ConcurrentSkipListSet<Long> inFlight = new ConcurrentSkipListSet<>();
+
+	/** Makes the journal position and the in flight registration atomic regarding checkpoints **/
+	private final Object appendLock = new Object();
+
+	private final long checkpointIntervalMs;
+
+	private final int maxDeliveries;
+
+	private volatile long lastCheckpoint = 0L;
+
+	/** While replaying, checkpoints can not go beyond the last replayed record **/
+	private volatile long replayCeiling = Long.MAX_VALUE;
+
+	/**
+	 * @param deliveries the times the item was taken from the queue
+	 * @param handled completed once the item is handled, null if not tracked
+	 */
+	private record Entry<T>(long position, T item, int deliveries, CompletableFuture<Void> handled) {
+	}
+
+	/**
+	 * A set of items taken from the queue, to be committed once handled
+	 */
+	public static final class Batch<T> {
+
+		private final List<Entry<T>> entries;
+
+		private Batch(List<Entry<T>> entries) {
+			this.entries = entries;
+		}
+
+		public List<T> items() {
+			return entries.stream().map(Entry::item).toList();
+		}
+
+		public int size() {
+			return entries.size();
+		}
+
+		public boolean isEmpty() {
+			return entries.isEmpty();
+		}
+
+		/**
+		 * @return the items of this batch matching the predicate, to be committed or retried apart
+		 */
+		public Batch<T> filter(Predicate<T> predicate) {
+			return new Batch<>(entries.stream().filter(e -> predicate.test(e.item())).toList());
+		}
+	}
+
+	private JournaledQueue(final String name, final int capacity, final MappedJournal journal, final JournalCodec<T> codec, final JournalConfig config) {
+		this.name = name;
+		this.queue = new LinkedBlockingQueue<>(capacity);
+		this.journal = journal;
+		this.codec = codec;
+		this.checkpointIntervalMs = config.getCheckpointIntervalMs();
+		this.maxDeliveries = config.getMaxDeliveries();
+		if (null != journal && journal.hasRecordsToReplay()) {
+			replayCeiling = journal.checkpointPosition();
+		}
+	}
+
+	/**
+	 * A queue without journal, lost on restart
+	 */
+	public static <T> JournaledQueue<T> inMemory(final String name, final int capacity) {
+		return new JournaledQueue<>(name, capacity, null, null, new JournalConfig());
+	}
+
+	/**
+	 * A queue journaled in the {@code name} sub folder of the configured journal
+	 * folder, or an in-memory one if journaling is disabled
+	 */
+	public static <T> JournaledQueue<T> open(final String name, final int capacity, final JournalConfig config, final JournalCodec<T> codec) throws IOException {
+		if (!config.isEnabled()) {
+			return new JournaledQueue<>(name, capacity, null, null, config);
+		}
+		MappedJournal journal = new MappedJournal(Path.of(config.getFolder(), name), config);
+		return new JournaledQueue<>(name, capacity, journal, codec, config);
+	}
+
+	/**
+	 * Journal then queue an item, waiting if the queue is full
+	 * @param item
+	 * @throws InterruptedException
+	 */
+	public void put(final T item) throws InterruptedException {
+		enqueue(item, null);
+	}
+
+	/**
+	 * Journal then queue an item, waiting if the queue is full
+	 * @param item
+	 * @return completed once the item is committed, exceptionally if it is rejected or dropped
+	 * @throws InterruptedException
+	 */
+	public CompletableFuture<Void> putTracked(final T item) throws InterruptedException {
+		CompletableFuture<Void> handled = new CompletableFuture<>();
+		enqueue(item, handled);
+		return handled;
+	}
+
+	private void enqueue(final T item, final CompletableFuture<Void> handled) throws InterruptedException {
+		Entry<T> entry = new Entry<>(append(item), item, 0, handled);
+		try {
+			queue.put(entry);
+		} catch (InterruptedException | RuntimeException e) {
+			// Never queued, the producer is told : acknowledged not to pin the checkpoint
+			acknowledge(List.of(entry));
+			throw e;
+		}
+	}
+
+	/**
+	 * Wait for a first item, then take up to {@code max} items
+	 * @return the batch, empty if nothing came within the timeout
+	 * @throws InterruptedException
+	 */
+	public Batch<T> poll(final int max, final long timeout, final TimeUnit unit) throws InterruptedException {
+		List<Entry<T>> entries = new ArrayList<>();
+		drainRetries(entries, max);
+		if (entries.isEmpty()) {
+			Entry<T> first = queue.poll(timeout, unit);
+			if (null == first) {
+				return new Batch<>(Collections.emptyList());
+			}
+			entries.add(first);
+		}
+		queue.drainTo(entries, max - entries.size());
+		return new Batch<>(entries);
+	}
+
+	/**
+	 * Take up to {@code max} items, without waiting
+	 */
+	public Batch<T> drain(final int max) {
+		List<Entry<T>> entries = new ArrayList<>();
+		drainRetries(entries, max);
+		queue.drainTo(entries, max - entries.size());
+		return new Batch<>(entries);
+	}
+
+	/**
+	 * Acknowledge a batch as handled, allowing the journal checkpoint to move forward
+	 * @param batch
+	 */
+	public void commit(final Batch<T> batch) {
+		acknowledge(batch.entries);
+		batch.entries.forEach(e -> complete(e, null));
+	}
+
+	/**
+	 * Acknowledge a batch handed over to a further stage, allowing the journal checkpoint to
+	 * move forward. The tracked items are completed with the outcome of that stage.
+	 * @param batch
+	 * @param outcome the outcome of an item in the further stage
+	 */
+	public void commit(final Batch<T> batch, final Function<T, ? extends CompletionStage<?>> outcome) {
+		acknowledge(batch.entries);
+		for (Entry<T> e : batch.entries) {
+			if (null != e.handled()) {
+				outcome.apply(e.item()).whenComplete((result, failure) -> complete(e, failure));
+			}
+		}
+	}
+
+	/**
+	 * Acknowledge a batch that can not be handled, failing its tracked items
+	 * @param batch
+	 * @param reason why the items are not handled
+	 */
+	public void reject(final Batch<T> batch, final String reason) {
+		acknowledge(batch.entries);
+		IllegalStateException failure = new IllegalStateException(reason);
+		batch.entries.forEach(e -> complete(e, failure));
+	}
+
+	/**
+	 * Give back a batch that could not be handled. Its items are not acknowledged, so they
+	 * still hold the journal checkpoint, and are delivered again by the next polls. The
+	 * items already delivered {@link JournalConfig#getMaxDeliveries()} times are dropped.
+	 * @param batch
+	 * @return the number of dropped items
+	 */
+	public int retry(final Batch<T> batch) {
+		List<Entry<T>> dropped = new ArrayList<>();
+		for (Entry<T> e : batch.entries) {
+			if (maxDeliveries > 0 && e.deliveries() + 1 >= maxDeliveries) {
+				dropped.add(e);
+			} else {
+				retries.add(new Entry<>(e.position(), e.item(), e.deliveries() + 1, e.handled()));
+			}
+		}
+		if (!dropped.isEmpty()) {
+			logger.error("Dropping {} items of queue {}, still failing after {} deliveries", dropped.size(), name, maxDeliveries);
+			reject(new Batch<>(dropped), "Dropped after " + maxDeliveries + " deliveries");
+		}
+		return dropped.size();
+	}
+
+	/**
+	 * Replay the journaled items that were not acknowledged before the last
+	 * shutdown. Blocks when the queue is full, so consumers must be started.
+	 * @return the number of replayed items
+	 */
+	public int replay() {
+		if (null == journal) {
+			return 0;
+		}
+		int[] count = {0};
+		try {
+			journal.replay((position, payload) -> {
+				T item;
+				try {
+					item = codec.decode(payload);
+				} catch (IOException e) {
+					logger.error("Skipping undecodable record {} in queue {}", position, name, e);
+					return;
+				}
+				inFlight.add(position);
+				replayCeiling = position;
+				queue.put(new Entry<>(position, item, 0, null));
+				count[0]++;
+			});
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			logger.error("Replay of queue {} interrupted after {} items", name, count[0]);
+		} catch (IOException e) {
+			logger.error("Replay of queue {} failed after {} items", name, count[0], e);
+		} finally {
+			replayCeiling = Long.MAX_VALUE;
+		}
+		logger.info("Replayed {} items in queue {}", count[0], name);
+		return count[0];
+	}
+
+	/**
+	 * Remove all the queued items, acknowledging them as not handled
+	 */
+	public void clear() {
+		List<Entry<T>> entries = new ArrayList<>();
+		drainRetries(entries, Integer.MAX_VALUE);
+		queue.drainTo(entries);
+		reject(new Batch<>(entries), "Queue " + name + " cleared");
+	}
+
+	public int size() {
+		return retries.size() + queue.size();
+	}
+
+	public boolean isEmpty() {
+		return retries.isEmpty() && queue.isEmpty();
+	}
+
+	public boolean isJournaled() {
+		return null != journal;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (null != journal) {
+			checkpoint(true);
+			journal.close();
+		}
+	}
+
+	private void acknowledge(final List<Entry<T>> entries) {
+		for (Entry<T> e : entries) {
+			if (e.position() != NOT_JOURNALED) {
+				inFlight.remove(e.position());
+			}
+		}
+		// An idle queue is immediately checkpointed
+		checkpoint(inFlight.isEmpty());
+	}
+
+	private static void complete(final Entry<?> e, final Throwable failure) {
+		if (null == e.handled()) {
+			return;
+		}
+		if (null == failure) {
+			e.handled().complete(null);
+		} else {
+			e.handled().completeExceptionally(failure);
+		}
+	}
+
+	private void drainRetries(final List<Entry<T>> entries, final int max) {
+		Entry<T> e;
+		while (entries.size() < max && null != (e = retries.poll())) {
+			entries.add(e);
+		}
+	}
+
+	private long append(final T item) {
+		if (null == journal) {
+			return NOT_JOURNALED;
+		}
+		try {
+			byte[] payload = codec.encode(item);
+			synchronized (appendLock) {
+				long position = journal.append(payload);
+				inFlight.add(position);
+				return position;
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			logger.error("Cannot journal item in queue {}, it will only be kept in memory", name, e);
+			return NOT_JOURNALED;
+		}
+	}
+
+	private void checkpoint(final boolean force) {
+		if (null == journal) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		if (!force && now - lastCheckpoint < checkpointIntervalMs) {
+			return;
+		}
+		lastCheckpoint = now;
+		long position;
+		synchronized (appendLock) {
+			position = inFlight.isEmpty() ? journal.writePosition() : inFlight.first();
+		}
+		position = Math.min(position, replayCeiling);
+		try {
+			journal.checkpoint(position);
+		} catch (IOException e) {
+			logger.error("Cannot checkpoint queue {} at {}", name, position, e);
+		}
+	}
+}
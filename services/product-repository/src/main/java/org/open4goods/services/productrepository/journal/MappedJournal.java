@@ -0,0 +1,386 @@
+package org.open4goods.services.productrepository.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.open4goods.services.productrepository.journal.JournalConfig.FsyncPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A segment based, memory mapped, append only journal.<br/>
+ *
+ * Records are appended to fixed size segment files mapped in memory, and are
+ * addressed by a global, ever growing, position (segment base + offset in
+ * segment). Consumers persist a checkpoint position : everything before is
+ * considered consumed, and the segments fully behind the checkpoint are
+ * recycled. On startup, records between the checkpoint and the end of the
+ * journal can be replayed.
+ *
+ * <p>Record layout : {@code int length | int crc32 | payload}. A length of
+ * {@code 0} marks the end of written data (a terminator is written after each
+ * record, which allows recycled segments to be reused without zeroing them), a
+ * length of {@code -1} marks a rolled segment. Torn writes are detected through
+ * the crc and truncated.
+ *
+ * @author goulven
+ *
+ */
+public class MappedJournal implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(MappedJournal.class);
+
+	private static final String SEGMENT_PREFIX = "segment-";
+	private static final String SPARE_PREFIX = "spare-";
+	private static final String SEGMENT_SUFFIX = ".log";
+	private static final String CHECKPOINT_FILE = "checkpoint";
+
+	/** length + crc **/
+	private static final int HEADER_SIZE = 8;
+
+	/** Room always left at the end of a segment for the terminator or the roll marker **/
+	private static final int MARKER_SIZE = 4;
+
+	private static final int END_OF_DATA = 0;
+	private static final int END_OF_SEGMENT = -1;
+
+	/**
+	 * Callback used when replaying the journal
+	 */
+	@FunctionalInterface
+	public interface RecordVisitor {
+		void onRecord(long position, byte[] payload) throws InterruptedException;
+	}
+
+	private final Path folder;
+
+	private final JournalConfig config;
+
+	/** Segment files, by base position **/
+	private final TreeMap<Long, Path> segments = new TreeMap<>();
+
+	/** Consumed segments kept for reuse **/
+	private final Deque<Path> spares = new ArrayDeque<>();
+
+	private MappedByteBuffer current;
+
+	private long currentBase;
+
+	private int currentOffset;
+
+	private long checkpoint;
+
+	/** End of the data present when the journal was opened, replay stops there **/
+	private final long replayEnd;
+
+	private ScheduledExecutorService flusher;
+
+	/**
+	 * Open (or create) a journal
+	 * @param folder the folder holding the segments and the checkpoint
+	 * @param config
+	 * @throws IOException
+	 */
+	public MappedJournal(final Path folder, final JournalConfig config) throws IOException {
+		this.folder = folder;
+		this.config = config;
+
+		Files.createDirectories(folder);
+
+		try (Stream<Path> files = Files.list(folder)) {
+			files.forEach(f -> {
+				String name = f.getFileName().toString();
+				if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+					segments.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())), f);
+				} else if (name.startsWith(SPARE_PREFIX)) {
+					spares.add(f);
+				}
+			});
+		}
+
+		Path checkpointFile = folder.resolve(CHECKPOINT_FILE);
+		if (Files.exists(checkpointFile)) {
+			checkpoint = ByteBuffer.wrap(Files.readAllBytes(checkpointFile)).getLong();
+		} else {
+			checkpoint = segments.isEmpty() ? 0L : segments.firstKey();
+		}
+
+		if (segments.isEmpty()) {
+			openSegment(checkpoint);
+		} else {
+			Map.Entry<Long, Path> last = segments.lastEntry();
+			currentBase = last.getKey();
+			current = map(last.getValue(), Files.size(last.getValue()));
+			try {
+				currentOffset = scan(current, currentBase, 0, Long.MAX_VALUE, null);
+			} catch (InterruptedException e) {
+				// Not reachable without visitor
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while opening journal " + folder, e);
+			}
+		}
+
+		replayEnd = currentBase + currentOffset;
+		recycle();
+
+		if (config.getFsyncPolicy() == FsyncPolicy.INTERVAL) {
+			flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "journal-flusher-" + folder.getFileName());
+				t.setDaemon(true);
+				return t;
+			});
+			flusher.scheduleWithFixedDelay(this::flush, config.getFsyncIntervalMs(), config.getFsyncIntervalMs(), TimeUnit.MILLISECONDS);
+		}
+
+		logger.info("Opened journal {} : {} segments, checkpoint at {}, {} bytes to replay", folder, segments.size(), checkpoint, replayEnd - checkpoint);
+	}
+
+	/**
+	 * Append a record
+	 * @param payload
+	 * @return the position of the record
+	 * @throws IOException
+	 */
+	public synchronized long append(final byte[] payload) throws IOException {
+		int needed = HEADER_SIZE + payload.length;
+		if (needed + MARKER_SIZE > config.getSegmentSize()) {
+			throw new IllegalArgumentException("Record of " + payload.length + " bytes does not fit in a journal segment of " + config.getSegmentSize() + " bytes");
+		}
+
+		if (currentOffset + needed + MARKER_SIZE > current.capacity()) {
+			roll();
+		}
+
+		long position = currentBase + currentOffset;
+
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+
+		current.put(currentOffset + HEADER_SIZE, payload);
+		current.putInt(currentOffset + 4, (int) crc.getValue());
+		current.putInt(currentOffset + needed, END_OF_DATA);
+		// The length is written last, a record is never visible before its content
+		current.putInt(currentOffset, payload.length);
+
+		if (config.getFsyncPolicy() == FsyncPolicy.ALWAYS) {
+			current.force(currentOffset, needed + MARKER_SIZE);
+		}
+
+		currentOffset += needed;
+		return position;
+	}
+
+	/**
+	 * Replay the records between the checkpoint and the end of the journal, as
+	 * found when opened
+	 * @param visitor
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void replay(final RecordVisitor visitor) throws IOException, InterruptedException {
+		List<Map.Entry<Long, Path>> toReplay;
+		long from;
+		synchronized (this) {
+			from = checkpoint;
+			toReplay = new ArrayList<>(segments.entrySet());
+		}
+
+		for (Map.Entry<Long, Path> segment : toReplay) {
+			long base = segment.getKey();
+			if (base >= replayEnd) {
+				break;
+			}
+			long size = Files.size(segment.getValue());
+			if (base + size <= from) {
+				continue;
+			}
+			ByteBuffer buffer = mapReadOnly(segment.getValue(), size);
+			int start = (int) Math.max(0, from - base);
+			scan(buffer, base, start, replayEnd, visitor);
+		}
+	}
+
+	/**
+	 * Persist the consumers checkpoint and recycle the segments fully behind it
+	 * @param position the position of the first not consumed record (or the write position)
+	 * @throws IOException
+	 */
+	public synchronized void checkpoint(final long position) throws IOException {
+		if (position <= checkpoint) {
+			return;
+		}
+		checkpoint = position;
+
+		Path tmp = folder.resolve(CHECKPOINT_FILE + ".tmp");
+		try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, position));
+			channel.force(true);
+		}
+		Files.move(tmp, folder.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		recycle();
+	}
+
+	/**
+	 * @return the position the next record will be written at
+	 */
+	public synchronized long writePosition() {
+		return currentBase + currentOffset;
+	}
+
+	public synchronized long checkpointPosition() {
+		return checkpoint;
+	}
+
+	/**
+	 * @return true if records were left unconsumed at the last shutdown
+	 */
+	public synchronized boolean hasRecordsToReplay() {
+		return replayEnd > checkpoint;
+	}
+
+	/**
+	 * @return the number of segment files in use
+	 */
+	public synchronized int segmentCount() {
+		return segments.size();
+	}
+
+	/**
+	 * Force the current segment to disk
+	 */
+	public synchronized void flush() {
+		try {
+			current.force();
+		} catch (Exception e) {
+			logger.error("Cannot force journal {} to disk", folder, e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (null != flusher) {
+			flusher.shutdownNow();
+		}
+		flush();
+	}
+
+	/**
+	 * Close the current segment and open the next one, reusing a spare file if any
+	 * @throws IOException
+	 */
+	private void roll() throws IOException {
+		current.putInt(currentOffset, END_OF_SEGMENT);
+		current.force();
+		openSegment(currentBase + current.capacity());
+	}
+
+	private void openSegment(final long base) throws IOException {
+		Path segment = folder.resolve(SEGMENT_PREFIX + String.format("%020d", base) + SEGMENT_SUFFIX);
+		Path spare = spares.poll();
+		if (null != spare) {
+			Files.move(spare, segment, StandardCopyOption.ATOMIC_MOVE);
+		}
+		current = map(segment, config.getSegmentSize());
+		// Recycled segments still hold previous data
+		current.putInt(0, END_OF_DATA);
+		currentBase = base;
+		currentOffset = 0;
+		segments.put(base, segment);
+		logger.info("Journal {} rolled to segment {}", folder, segment.getFileName());
+	}
+
+	/**
+	 * Move the segments fully behind the checkpoint to the spare pool, or delete them
+	 * @throws IOException
+	 */
+	private void recycle() throws IOException {
+		Iterator<Map.Entry<Long, Path>> it = segments.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Long, Path> e = it.next();
+			if (e.getKey() == currentBase) {
+				break;
+			}
+			Long next = segments.higherKey(e.getKey());
+			if (null == next || next > checkpoint) {
+				break;
+			}
+			it.remove();
+			if (spares.size() < config.getSpareSegments() && Files.size(e.getValue()) == config.getSegmentSize()) {
+				Path spare = folder.resolve(SPARE_PREFIX + UUID.randomUUID() + SEGMENT_SUFFIX);
+				Files.move(e.getValue(), spare, StandardCopyOption.ATOMIC_MOVE);
+				spares.add(spare);
+			} else {
+				Files.deleteIfExists(e.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Walk the valid records of a segment
+	 * @return the offset following the last valid record
+	 */
+	private int scan(final ByteBuffer buffer, final long base, final int from, final long end, final RecordVisitor visitor) throws InterruptedException {
+		int offset = from;
+		CRC32 crc = new CRC32();
+		while (offset + HEADER_SIZE <= buffer.capacity() && base + offset < end) {
+			int length = buffer.getInt(offset);
+			if (length == END_OF_DATA || length == END_OF_SEGMENT) {
+				break;
+			}
+			if (length < 0 || offset + HEADER_SIZE + length > buffer.capacity()) {
+				logger.warn("Corrupted record in journal {} at {}, truncating", folder, base + offset);
+				break;
+			}
+			byte[] payload = new byte[length];
+			buffer.get(offset + HEADER_SIZE, payload);
+			crc.reset();
+			crc.update(payload);
+			if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+				logger.warn("Torn record in journal {} at {}, truncating", folder, base + offset);
+				break;
+			}
+			if (null != visitor) {
+				visitor.onRecord(base + offset, payload);
+			}
+			offset += HEADER_SIZE + length;
+		}
+		return offset;
+	}
+
+	private MappedByteBuffer map(final Path file, final long size) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+			if (raf.length() != size) {
+				raf.setLength(size);
+			}
+			return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+	}
+
+	private MappedByteBuffer mapReadOnly(final Path file, final long size) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+	}
+}
@@ -0,0 +1,444 @@
+package org.open4goods.services.productrepository.services;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.open4goods.model.product.Product;
+import org.open4goods.services.productrepository.config.IndexationConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.UncategorizedElasticsearchException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+
+/**
+ * Indexes the products through bulk requests sized by their serialized bytes.
+ * <p>
+ * The documents are serialized once, then sent in bulks of at most the current byte budget,
+ * with a bounded number of bulks in flight shared by all the callers. The items rejected
+ * by a saturated cluster (429, {@code es_rejected_execution_exception}) are retried alone,
+ * with an exponential backoff. The budget adapts to the cluster : halved on rejection, it
+ * grows back by steps as the bulks are accepted. The other failures are reported by item,
+ * the transient ones (rejections, server errors) being flagged as retryable.
+ * <p>
+ * Single products can also be submitted : they are coalesced into bulks, sent once full or
+ * after a short linger. A submission with no other caller waiting is sent at once.
+ */
+public class BulkProductIndexer {
+
+	private static final Logger logger = LoggerFactory.getLogger(BulkProductIndexer.class);
+
+	private static final int TOO_MANY_REQUESTS = 429;
+	private static final int SERVER_ERROR = 500;
+	private static final String REJECTED_EXECUTION = "es_rejected_execution_exception";
+
+	private final ElasticsearchOperations elasticsearchOperations;
+	private final IndexationConfig config;
+	private final IndexCoordinates submissionIndex;
+	/** Notified of the submitted products once indexed, by bulk */
+	private final Consumer<List<Product>> submissionsListener;
+
+	/** Bulks in flight, among all the callers */
+	private final Semaphore inFlight;
+	private final ExecutorService bulkExecutor = Executors.newCachedThreadPool(daemon("product-bulk-"));
+	private final ScheduledExecutorService lingerTimer = Executors.newSingleThreadScheduledExecutor(daemon("product-bulk-linger-"));
+
+	/** Current max bytes of a bulk */
+	private final AtomicLong bulkBytes;
+
+	/** Submitted products not yet sent, by id, guarded by the indexer monitor */
+	private Map<String, Submission> pending = new LinkedHashMap<>();
+	private long pendingBytes;
+	private boolean lingerScheduled;
+	/** Submissions not completed yet */
+	private final AtomicInteger waiting = new AtomicInteger();
+
+	/**
+	 * @param elasticsearchOperations the cluster operations
+	 * @param config the bulk sizes, concurrency and retries
+	 * @param submissionIndex the index of the submitted products
+	 * @param submissionsListener notified of the submitted products once indexed
+	 */
+	public BulkProductIndexer(ElasticsearchOperations elasticsearchOperations, IndexationConfig config,
+			IndexCoordinates submissionIndex, Consumer<List<Product>> submissionsListener) {
+		this.elasticsearchOperations = elasticsearchOperations;
+		this.config = config;
+		this.submissionIndex = submissionIndex;
+		this.submissionsListener = submissionsListener;
+		this.inFlight = new Semaphore(Math.max(1, config.getBulkMaxInFlight()));
+		this.bulkBytes = new AtomicLong(config.getBulkMaxBytes());
+	}
+
+	/**
+	 * Index the products, returning once all the bulks are done.
+	 *
+	 * @param products the products to index
+	 * @param index the target index
+	 * @return the indexation outcome, by item
+	 */
+	public BulkIndexReport index(Collection<Product> products, IndexCoordinates index) {
+		Deque<IndexedDocument> remaining = new ArrayDeque<>(products.size());
+		for (Product product : products) {
+			remaining.add(serialize(product));
+		}
+		return send(remaining, index);
+	}
+
+	/**
+	 * Submit a product to the submission index, sent with the other submissions in a bulk.
+	 * The caller filling a bulk, or the only one waiting, sends it and is held back by a
+	 * saturated cluster.
+	 *
+	 * @param product the product to index
+	 * @return completed once the product is indexed, exceptionally if it failed
+	 */
+	public CompletableFuture<Void> submit(Product product) {
+		IndexedDocument document = serialize(product);
+		CompletableFuture<Void> ret = new CompletableFuture<>();
+		boolean alone = waiting.incrementAndGet() == 1;
+		ret.whenComplete((r, e) -> waiting.decrementAndGet());
+		Map<String, Submission> full = null;
+		synchronized (this) {
+			Submission previous = pending.get(document.id());
+			Submission submission = new Submission(product, document, new ArrayList<>(2));
+			if (null != previous) {
+				// Latest version wins, all the callers are notified
+				pendingBytes -= previous.document().bytes();
+				submission.futures().addAll(previous.futures());
+			}
+			submission.futures().add(ret);
+			pending.put(document.id(), submission);
+			pendingBytes += document.bytes();
+
+			if (alone || pendingBytes >= bulkBytes.get() || pending.size() >= config.getBulkMaxActions()) {
+				full = drainPending();
+			} else if (!lingerScheduled) {
+				lingerScheduled = true;
+				lingerTimer.schedule(() -> bulkExecutor.execute(this::flushPending), config.getBulkLingerMs(), TimeUnit.MILLISECONDS);
+			}
+		}
+		if (null != full) {
+			sendSubmissions(full);
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the current max bytes of a bulk
+	 */
+	public long getBulkBytes() {
+		return bulkBytes.get();
+	}
+
+	public void shutdown() {
+		flushPending();
+		lingerTimer.shutdownNow();
+		bulkExecutor.shutdown();
+	}
+
+	private void flushPending() {
+		Map<String, Submission> submissions;
+		synchronized (this) {
+			lingerScheduled = false;
+			if (pending.isEmpty()) {
+				return;
+			}
+			submissions = drainPending();
+		}
+		sendSubmissions(submissions);
+	}
+
+	private Map<String, Submission> drainPending() {
+		Map<String, Submission> ret = pending;
+		pending = new LinkedHashMap<>();
+		pendingBytes = 0;
+		return ret;
+	}
+
+	private void sendSubmissions(Map<String, Submission> submissions) {
+		Deque<IndexedDocument> documents = new ArrayDeque<>(submissions.size());
+		submissions.values().forEach(s -> documents.add(s.document()));
+		BulkIndexReport report;
+		try {
+			report = send(documents, submissionIndex);
+		} catch (RuntimeException e) {
+			submissions.values().forEach(s -> s.futures().forEach(f -> f.completeExceptionally(e)));
+			return;
+		}
+		List<Product> indexed = submissions.values().stream()
+				.filter(s -> !report.failures().containsKey(s.document().id()))
+				.map(Submission::product)
+				.toList();
+		try {
+			if (!indexed.isEmpty()) {
+				submissionsListener.accept(indexed);
+			}
+		} catch (RuntimeException e) {
+			logger.error("Indexed products listener failed", e);
+		}
+		for (Submission submission : submissions.values()) {
+			String failure = report.failures().get(submission.document().id());
+			for (CompletableFuture<Void> future : submission.futures()) {
+				if (null == failure) {
+					future.complete(null);
+				} else {
+					future.completeExceptionally(new IllegalStateException("Cannot index product " + submission.document().id() + " : " + failure));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Send the documents in bulks of the current budget, each started once a bulk slot is free
+	 */
+	private BulkIndexReport send(Deque<IndexedDocument> remaining, IndexCoordinates index) {
+		List<CompletableFuture<BulkIndexReport>> bulks = new ArrayList<>();
+		while (!remaining.isEmpty()) {
+			try {
+				inFlight.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				Map<String, String> failures = new HashMap<>();
+				remaining.forEach(d -> failures.put(d.id(), "interrupted"));
+				bulks.add(CompletableFuture.completedFuture(new BulkIndexReport(0, 0, failures, failures.keySet())));
+				break;
+			}
+			List<IndexedDocument> bulk = nextBulk(remaining);
+			try {
+				bulks.add(CompletableFuture.supplyAsync(() -> {
+					try {
+						return sendBulk(bulk, index);
+					} finally {
+						inFlight.release();
+					}
+				}, bulkExecutor));
+			} catch (RuntimeException e) {
+				inFlight.release();
+				throw e;
+			}
+		}
+
+		int indexed = 0;
+		int retried = 0;
+		Map<String, String> failures = new HashMap<>();
+		Set<String> retryable = new HashSet<>();
+		for (CompletableFuture<BulkIndexReport> bulk : bulks) {
+			BulkIndexReport report = bulk.join();
+			indexed += report.indexed();
+			retried += report.retried();
+			failures.putAll(report.failures());
+			retryable.addAll(report.retryable());
+		}
+		return new BulkIndexReport(indexed, retried, failures, retryable);
+	}
+
+	/**
+	 * @return the next documents within the byte budget, at least one
+	 */
+	private List<IndexedDocument> nextBulk(Deque<IndexedDocument> remaining) {
+		long budget = bulkBytes.get();
+		List<IndexedDocument> ret = new ArrayList<>();
+		long bytes = 0;
+		while (!remaining.isEmpty() && ret.size() < config.getBulkMaxActions()
+				&& (ret.isEmpty() || bytes + remaining.peek().bytes() <= budget)) {
+			IndexedDocument document = remaining.poll();
+			bytes += document.bytes();
+			ret.add(document);
+		}
+		return ret;
+	}
+
+	/**
+	 * Send a bulk, retrying its rejected items with a backoff
+	 */
+	BulkIndexReport sendBulk(List<IndexedDocument> bulk, IndexCoordinates index) {
+		Map<String, String> failures = new HashMap<>();
+		Set<String> retryable = new HashSet<>();
+		List<IndexedDocument> toSend = bulk;
+		int indexed = 0;
+		int retried = 0;
+		long backoff = config.getBulkRetryInitialBackoffMs();
+		for (int attempt = 0; ; attempt++) {
+			List<IndexedDocument> rejected = new ArrayList<>();
+			try {
+				elasticsearchOperations.bulkIndex(toSend.stream().map(IndexedDocument::query).toList(), index);
+				indexed += toSend.size();
+			} catch (BulkFailureException e) {
+				Map<String, IndexedDocument> byId = new HashMap<>();
+				toSend.forEach(d -> byId.put(d.id(), d));
+				for (Map.Entry<String, BulkFailureException.FailureDetails> failure : e.getFailedDocuments().entrySet()) {
+					BulkFailureException.FailureDetails details = failure.getValue();
+					if (isRejection(details.status(), details.errorMessage()) && byId.containsKey(failure.getKey())) {
+						rejected.add(byId.get(failure.getKey()));
+					} else {
+						failures.put(failure.getKey(), details.status() + " " + details.errorMessage());
+						if (null != details.status() && details.status() >= SERVER_ERROR) {
+							retryable.add(failure.getKey());
+						}
+					}
+				}
+				indexed += toSend.size() - e.getFailedDocuments().size();
+			} catch (RuntimeException e) {
+				if (!isRejection(e)) {
+					logger.error("Bulk of {} products failed : {}", toSend.size(), e.getMessage());
+					// Not answered by item, the whole bulk can be sent again
+					toSend.forEach(d -> {
+						failures.put(d.id(), e.getMessage());
+						retryable.add(d.id());
+					});
+					break;
+				}
+				rejected.addAll(toSend);
+			}
+
+			if (rejected.isEmpty()) {
+				growBudget();
+				break;
+			}
+			shrinkBudget();
+			if (attempt >= config.getBulkMaxRetries()) {
+				logger.error("{} products still rejected by the cluster after {} retries", rejected.size(), attempt);
+				rejected.forEach(d -> {
+					failures.put(d.id(), TOO_MANY_REQUESTS + " rejected, retries exhausted");
+					retryable.add(d.id());
+				});
+				break;
+			}
+			try {
+				// Jittered, not to retry in step with the other bulks
+				Thread.sleep(backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				rejected.forEach(d -> {
+					failures.put(d.id(), "interrupted");
+					retryable.add(d.id());
+				});
+				break;
+			}
+			backoff = Math.min(backoff * 2, config.getBulkRetryMaxBackoffMs());
+			retried += rejected.size();
+			toSend = rejected;
+		}
+		return new BulkIndexReport(indexed, retried, failures, retryable);
+	}
+
+	private void shrinkBudget() {
+		long budget = bulkBytes.updateAndGet(b -> Math.max(config.getBulkMinBytes(), b / 2));
+		logger.warn("Bulk rejected by the cluster, bulk size reduced to {} bytes", budget);
+	}
+
+	private void growBudget() {
+		long step = Math.max(1, config.getBulkMaxBytes() / 10);
+		bulkBytes.updateAndGet(b -> Math.min(config.getBulkMaxBytes(), b + step));
+	}
+
+	private IndexedDocument serialize(Product product) {
+		String id = String.valueOf(product.getId());
+		String source = elasticsearchOperations.getElasticsearchConverter().mapObject(product).toJson();
+		return new IndexedDocument(id, source);
+	}
+
+	static boolean isRejection(Integer status, String message) {
+		return Integer.valueOf(TOO_MANY_REQUESTS).equals(status) || (null != message && message.contains(REJECTED_EXECUTION));
+	}
+
+	/**
+	 * @return true if the whole bulk was rejected by a saturated cluster
+	 */
+	static boolean isRejection(Throwable e) {
+		for (Throwable t = e; null != t; t = t.getCause()) {
+			if (t instanceof UncategorizedElasticsearchException u && isRejection(u.getStatusCode(), u.getResponseBody())) {
+				return true;
+			}
+			if (t instanceof ElasticsearchException ee && isRejection(ee.status(), ee.getMessage())) {
+				return true;
+			}
+			if (null != t.getMessage() && t.getMessage().contains(REJECTED_EXECUTION)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static ThreadFactory daemon(String prefix) {
+		AtomicInteger counter = new AtomicInteger();
+		return r -> {
+			Thread t = new Thread(r, prefix + counter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+	}
+
+	/**
+	 * The outcome of an indexation
+	 *
+	 * @param indexed the number of indexed products
+	 * @param retried the number of items sent again after a rejection
+	 * @param failures the reason of each failed product, by id
+	 * @param retryable the ids of the failures worth sending again (cluster saturated, server errors)
+	 */
+	public record BulkIndexReport(int indexed, int retried, Map<String, String> failures, Set<String> retryable) {
+
+		public boolean hasFailures() {
+			return !failures.isEmpty();
+		}
+	}
+
+	/**
+	 * A product serialized once, sized by the UTF-8 bytes of its source
+	 */
+	record IndexedDocument(String id, String source, long bytes) {
+
+		IndexedDocument(String id, String source) {
+			this(id, source, utf8Length(source));
+		}
+
+		/**
+		 * @return the UTF-8 encoded length, without encoding
+		 */
+		static long utf8Length(String value) {
+			long ret = value.length();
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if (c >= 0x800) {
+					// 3 bytes, or 4 for a surrogate pair (2 chars)
+					ret += Character.isSurrogate(c) ? 1 : 2;
+				} else if (c >= 0x80) {
+					ret++;
+				}
+			}
+			return ret;
+		}
+
+		IndexQuery query() {
+			return new IndexQueryBuilder().withId(id).withSource(source).build();
+		}
+	}
+
+	private record Submission(Product product, IndexedDocument document, List<CompletableFuture<Void>> futures) {
+	}
+}
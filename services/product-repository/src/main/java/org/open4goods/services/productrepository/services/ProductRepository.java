@@ -1,5 +1,6 @@
 package org.open4goods.services.productrepository.services;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -10,8 +11,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -23,17 +24,29 @@ import org.open4goods.model.product.ProductPartialUpdateHolder;
 import org.open4goods.model.vertical.ScoreRange;
 import org.open4goods.model.vertical.VerticalConfig;
 import org.open4goods.model.vertical.SubsetCriteriaOperator;
+import org.open4goods.services.productrepository.changes.ProductChangeBus;
+import org.open4goods.services.productrepository.changes.ProductChangeEvent;
+import org.open4goods.services.productrepository.changes.ProductChangeTracker;
+import org.open4goods.services.productrepository.changes.ProductVersion;
 import org.open4goods.services.productrepository.config.IndexationConfig;
+import org.open4goods.services.productrepository.journal.JournalCodec;
+import org.open4goods.services.productrepository.journal.JournaledQueue;
+import org.open4goods.services.productrepository.services.BulkProductIndexer.BulkIndexReport;
 import org.open4goods.services.productrepository.workers.FullProductIndexationWorker;
 import org.open4goods.services.productrepository.workers.PartialProductIndexationWorker;
+import org.open4goods.services.serialisation.service.SerialisationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.elasticsearch.BulkFailureException;
 import org.springframework.data.elasticsearch.UncategorizedElasticsearchException;
 import org.springframework.data.elasticsearch.client.elc.ElasticsearchAggregations;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
 import org.springframework.data.elasticsearch.client.elc.NativeQuery;
 import org.springframework.data.elasticsearch.client.elc.NativeQueryBuilder;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
@@ -47,9 +60,8 @@ import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
 import org.springframework.data.elasticsearch.core.query.Criteria;
 import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
 import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
-import org.springframework.data.elasticsearch.core.query.IndexQuery;
-import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
 import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.data.elasticsearch.core.query.SeqNoPrimaryTerm;
 import org.springframework.data.elasticsearch.core.query.UpdateQuery;
 
 import co.elastic.clients.elasticsearch._types.ElasticsearchException;
@@ -64,6 +76,7 @@ import co.elastic.clients.elasticsearch._types.aggregations.LongTermsBucket;
 import co.elastic.clients.elasticsearch._types.mapping.FieldType;
 import co.elastic.clients.elasticsearch._types.ScriptSortType;
 import co.elastic.clients.json.JsonData;
+import jakarta.annotation.PreDestroy;
 
 
 /**
@@ -104,6 +117,30 @@ public class ProductRepository {
                         "lastChange"
         };
 
+        /**
+         * Fields read by the streamed vertical scoring : the attributes the scores are
+         * computed from, and the scores themselves to detect the ones that disappeared.
+         */
+        private static final String[] SCORING_FIELDS = {
+                        "id",
+                        "attributes.indexed",
+                        "attributes.referentielAttributes",
+                        "scores"
+        };
+
+        /**
+         * Replaces the top level fields of a document, where a Document update would merge them
+         */
+        private static final String REPLACE_FIELDS_SCRIPT = "for (entry in params.fieldsToUpdate.entrySet()) { ctx._source[entry.getKey()] = entry.getValue(); }";
+
+        /**
+         * Replaces the top level fields of a document, and refreshes the timestamp of the offers
+         * of the datasources seen unchanged
+         */
+        private static final String SEEN_OFFERS_SCRIPT = REPLACE_FIELDS_SCRIPT
+                        + " if (ctx._source.price != null && ctx._source.price.offers != null) {"
+                        + " for (offer in ctx._source.price.offers) { if (params.seen.contains(offer.datasourceName)) { offer.timeStamp = params.now; } } }";
+
         private static final String PRODUCT_EMBEDDING_FIELD = "embedding";
         private static final String IMAGE_EMBEDDING_FIELD = "resources.imageInfo.embedding";
 
@@ -122,7 +159,8 @@ public class ProductRepository {
                 FULL,
                 WITHOUT_VECTORS,
                 NO_SOURCE,
-                OPEN_DATA
+                OPEN_DATA,
+                SCORING
         }
 
         /**
@@ -160,6 +198,7 @@ public class ProductRepository {
                 });
                 case NO_SOURCE -> new FetchSourceFilter(false, null, null);
                 case OPEN_DATA -> new FetchSourceFilter(true, OPEN_DATA_EXPORT_FIELDS.clone(), null);
+                case SCORING -> new FetchSourceFilter(true, SCORING_FIELDS.clone(), null);
                 };
         }
 
@@ -193,10 +232,10 @@ public class ProductRepository {
 
 
 	// The file queue implementation for Full products (no partial updates)
-	private BlockingQueue<Product> fullProductQueue;
+	private JournaledQueue<Product> fullProductQueue;
 
-	// The file queue implementation for Full products (no partial updates)
-	private BlockingQueue<ProductPartialUpdateHolder> partialProductQueue;
+	// The file queue implementation for partial updates
+	private JournaledQueue<ProductPartialUpdateHolder> partialProductQueue;
 
 
 
@@ -209,10 +248,23 @@ public class ProductRepository {
 
 	private static final int MAX_TITLE_ITEMS_TO_FETCH = 5;
 
+	private static final String REFRESH_INTERVAL_SETTING = "refresh_interval";
+	private static final String REPLICAS_SETTING = "number_of_replicas";
+
 	public static IndexCoordinates CURRENT_INDEX = IndexCoordinates.of(MAIN_INDEX_NAME);
 
 	private ElasticsearchOperations elasticsearchOperations;
 
+	/**
+	 * Notified of the indexed changes, if set
+	 */
+	private ProductChangeBus changeBus;
+
+	private IndexationConfig indexationConfig;
+
+	/** Created on first use, the operations being possibly set after the construction */
+	private BulkProductIndexer bulkIndexer;
+
 
 //	private @Autowired RedisProductRepository redisRepository;
 
@@ -234,13 +286,27 @@ public class ProductRepository {
 		this(indexationConfig, null);
 	}
 
-	//TODO(p3,perf) : Virtual threads, but ko with visualVM profiling
 	public ProductRepository(IndexationConfig indexationConfig, ElasticsearchOperations elasticsearchOperations) {
+		this(indexationConfig, elasticsearchOperations, new SerialisationService());
+	}
+
+	/**
+	 * Build a repository with its indexation workers. If the journal is enabled in the
+	 * {@link IndexationConfig}, the queues are journaled on disk and the items not
+	 * indexed before the last shutdown are replayed once the application is ready.
+	 */
+	//TODO(p3,perf) : Virtual threads, but ko with visualVM profiling
+	public ProductRepository(IndexationConfig indexationConfig, ElasticsearchOperations elasticsearchOperations, SerialisationService serialisationService) {
 
 		this.elasticsearchOperations = elasticsearchOperations;
+		this.indexationConfig = indexationConfig;
 
-		this.fullProductQueue = new LinkedBlockingQueue<>(indexationConfig.getProductsQueueMaxSize());
-		this.partialProductQueue = new LinkedBlockingQueue<>(indexationConfig.getPartialProductsQueueMaxSize());
+		try {
+			this.fullProductQueue = JournaledQueue.open("products", indexationConfig.getProductsQueueMaxSize(), indexationConfig.getJournal(), JournalCodec.json(serialisationService, Product.class));
+			this.partialProductQueue = JournaledQueue.open("partial-products", indexationConfig.getPartialProductsQueueMaxSize(), indexationConfig.getJournal(), JournalCodec.json(serialisationService, ProductPartialUpdateHolder.class));
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot open the indexation journals", e);
+		}
 
 		for (int i = 0; i < indexationConfig.getProductWorkers(); i++) {
 			new Thread((new FullProductIndexationWorker(this, indexationConfig.getProductsbulkPageSize(), indexationConfig.getPauseDuration(),"full-products-worker-"+i))).start();
@@ -249,7 +315,52 @@ public class ProductRepository {
 		for (int i = 0; i < indexationConfig.getPartialProductWorkers(); i++) {
 			new Thread((new PartialProductIndexationWorker(this, indexationConfig.getPartialProductsbulkPageSize(), indexationConfig.getPauseDuration(),"partial-products-worker-"+i))).start();
 		}
+	}
 
+	/**
+	 * Replay, in background, the journaled items not indexed before the last shutdown. Run
+	 * once the application is ready, not to hold its startup for the whole replay.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	public void replayJournals() {
+		if (null == fullProductQueue || !fullProductQueue.isJournaled() && !partialProductQueue.isJournaled()) {
+			return;
+		}
+		Thread replay = new Thread(() -> {
+			fullProductQueue.replay();
+			partialProductQueue.replay();
+		}, "products-journal-replay");
+		replay.setDaemon(true);
+		replay.start();
+	}
+
+	/**
+	 * @param changeBus the bus notified of the products indexed in the main index, null for none
+	 */
+	public void setChangeBus(ProductChangeBus changeBus) {
+		this.changeBus = changeBus;
+	}
+
+	/**
+	 * Send the pending submitted products, and persist the queues checkpoints
+	 */
+	@PreDestroy
+	public void closeQueues() {
+		synchronized (this) {
+			if (null != bulkIndexer) {
+				bulkIndexer.shutdown();
+			}
+		}
+		try {
+			if (null != fullProductQueue) {
+				fullProductQueue.close();
+			}
+			if (null != partialProductQueue) {
+				partialProductQueue.close();
+			}
+		} catch (IOException e) {
+			logger.error("Error while closing indexation journals", e);
+		}
 	}
 
 
@@ -265,6 +376,43 @@ public class ProductRepository {
 
 	}
 
+	/**
+	 * Reads the current version (sequence number and primary term) of the products
+	 * typed with the given vertical, without their source. To guard updates of products
+	 * loaded through {@link #getProductsMatchingVerticalId(VerticalConfig)}, versions must
+	 * be read first : a product written in between is then rejected instead of overwritten.
+	 *
+	 * @param v the vertical
+	 * @return the versions, by product id
+	 */
+	public Map<Long, SeqNoPrimaryTerm> getVersionsMatchingVerticalId(VerticalConfig v) {
+		Criteria c = new Criteria("vertical").is(v.getId());
+
+		final NativeQuery query = new NativeQueryBuilder()
+				.withQuery(new CriteriaQuery(c))
+				.withSourceFilter(noSourceFilter())
+				.withPageable(EXPORT_STREAM_PAGE)
+				.build();
+
+		Map<Long, SeqNoPrimaryTerm> ret = new HashMap<>();
+		try (var iterator = elasticsearchOperations.searchForStream(query, ProductVersion.class, CURRENT_INDEX)) {
+			iterator.forEachRemaining(hit -> {
+				SeqNoPrimaryTerm version = hit.getContent().getSeqNoPrimaryTerm();
+				if (null != version) {
+					ret.put(Long.valueOf(hit.getId()), version);
+				}
+			});
+		}
+		return ret;
+	}
+
+	/**
+	 * @return a new tracker, to compute the change sets of products modified in memory
+	 */
+	public ProductChangeTracker newChangeTracker() {
+		return new ProductChangeTracker(elasticsearchOperations.getElasticsearchConverter());
+	}
+
 	/**
 	 * Export all aggregated data
 	 *
@@ -296,6 +444,22 @@ public class ProductRepository {
         }
 
 
+        /**
+         * Export the products changed since the given date, for incremental backups.
+         *
+         * @param epoch the date, products changed after it are exported
+         * @param pageSize the page size to use when streaming products
+         * @return stream of products
+         */
+        public Stream<Product> exportChangedSince(long epoch, int pageSize) {
+            Query query = new CriteriaQuery(getSinceDateQuery(epoch));
+            query.setPageable(PageRequest.of(0, pageSize));
+            var iterator = elasticsearchOperations
+                    .searchForStream(query, Product.class, CURRENT_INDEX);
+            return iterator.stream().onClose(iterator::close)
+                    .map(SearchHit::getContent);
+        }
+
     public SearchHits<Product> get(Pageable page) {
         Query query = Query.findAll();
         query.setPageable(page);
@@ -432,9 +596,18 @@ public class ProductRepository {
 	 * @return
 	 */
 	public Stream<Product> exportVerticalWithValidDate(VerticalConfig vertical, boolean withExcluded) {
+		return exportVerticalWithValidDate(vertical, withExcluded, null);
+	}
 
-
-
+	/**
+	 * Export all aggregateddatas for a vertical, restricted to a projection
+	 *
+	 * @param vertical
+	 * @param withExcluded
+	 * @param projection the projection to apply, or null for the full documents
+	 * @return
+	 */
+	public Stream<Product> exportVerticalWithValidDate(VerticalConfig vertical, boolean withExcluded, ProductProjection projection) {
 
 		Criteria c = getRecentPriceQuery()
 				.and( new Criteria("vertical").is(vertical.getId()))
@@ -446,9 +619,13 @@ public class ProductRepository {
             c = c.and(new Criteria("excluded").is(false));
         }
 
-		final NativeQuery initialQuery = new NativeQueryBuilder()
-				.withQuery(new CriteriaQuery(c)).build();
-		var iterator = elasticsearchOperations.searchForStream(initialQuery, Product.class, CURRENT_INDEX);
+		NativeQueryBuilder queryBuilder = new NativeQueryBuilder()
+				.withQuery(new CriteriaQuery(c));
+		if (null != projection) {
+			queryBuilder = queryBuilder.withSourceFilter(sourceFilter(projection))
+					.withPageable(EXPORT_STREAM_PAGE);
+		}
+		var iterator = elasticsearchOperations.searchForStream(queryBuilder.build(), Product.class, CURRENT_INDEX);
 		return iterator.stream().onClose(iterator::close)
 				.map(SearchHit::getContent);
 	}
@@ -676,6 +853,17 @@ public class ProductRepository {
 
 	}
 
+	/**
+	 * Run several searches in a single {@code _msearch} round trip.
+	 *
+	 * @param queries   queries to run
+	 * @param indexName index the queries target
+	 * @return the hits of each query, in query order
+	 */
+	public List<SearchHits<Product>> multiSearch(List<? extends Query> queries, final String indexName) {
+		return elasticsearchOperations.multiSearch(queries, Product.class, IndexCoordinates.of(indexName));
+	}
+
     /**
      * Get random products for a vertical
      * @param vertical
@@ -821,48 +1009,68 @@ public class ProductRepository {
 	 * Bulk Index multiple Product
 	 *
 	 * @param p
+	 * @return by product id, completed once the product is indexed, exceptionally if it could not be
 	 */
-	public void addToFullindexationQueue(Collection<Product> data) {
+	public Map<Long, CompletableFuture<Void>> addToFullindexationQueue(Collection<Product> data) {
 
 		logger.info("Queuing {} products", data.size());
 
+		Map<Long, CompletableFuture<Void>> ret = new HashMap<>();
 		data.forEach(e -> {
 
+			CompletableFuture<Void> indexed;
 			try {
-				fullProductQueue.put(e) ;
+				indexed = fullProductQueue.putTracked(e) ;
 			} catch (Exception e1) {
 				logger.error("!!!! exception, cannot enqueue product {}",e);
+				indexed = CompletableFuture.failedFuture(e1);
 			}
+			ret.merge(e.getId(), indexed, CompletableFuture::allOf);
 
 		});
+		return ret;
 	}
 
-	public void addToPartialIndexationQueue(Collection<ProductPartialUpdateHolder> data) {
+	/**
+	 * @return by product id, completed once the update is applied, exceptionally if it could not be
+	 */
+	public Map<Long, CompletableFuture<Void>> addToPartialIndexationQueue(Collection<ProductPartialUpdateHolder> data) {
 
 		logger.info("Queuing {} products", data.size());
 
+		Map<Long, CompletableFuture<Void>> ret = new HashMap<>();
 		data.forEach(e -> {
 
+			CompletableFuture<Void> updated;
 			try {
-				partialProductQueue.put(e) ;
+				updated = partialProductQueue.putTracked(e) ;
 			} catch (Exception e1) {
 				logger.error("!!!! exception, cannot enqueue product {}",e);
+				updated = CompletableFuture.failedFuture(e1);
 			}
+			ret.merge(e.getProductId(), updated, CompletableFuture::allOf);
 
 		});
+		return ret;
 	}
 
-	public void store(Collection<Product> data) {
+	/**
+	 * Bulk index multiple products into the main index, through bulks sized by bytes. The
+	 * items rejected by a saturated cluster are retried, the other failures are reported.
+	 *
+	 * @param data the products to index
+	 * @return the indexation outcome, by item
+	 */
+	public BulkIndexReport store(Collection<Product> data) {
 	    logger.info("Indexing {} products", data.size());
 
-	    List<IndexQuery> indexQueries = data.stream()
-	        .map(p -> new IndexQueryBuilder()
-	            .withId(String.valueOf(p.getId()))
-	            .withObject(p)
-	            .build())
-	        .collect(Collectors.toList());
-
-	    elasticsearchOperations.bulkIndex(indexQueries, CURRENT_INDEX);
+	    BulkIndexReport report = bulkIndexer().index(data, CURRENT_INDEX);
+	    logFailures(report, MAIN_INDEX_NAME);
+	    publishChanges(data.stream()
+	        .filter(p -> !report.failures().containsKey(String.valueOf(p.getId())))
+	        .map(ProductChangeEvent::of)
+	        .toList());
+	    return report;
 	}
 
 	/**
@@ -870,18 +1078,33 @@ public class ProductRepository {
 	 *
 	 * @param data the products to index
 	 * @param indexName the target index name
+	 * @return the indexation outcome, by item
 	 */
-	public void store(Collection<Product> data, String indexName) {
+	public BulkIndexReport store(Collection<Product> data, String indexName) {
 	    logger.info("Indexing {} products into {}", data.size(), indexName);
 
-	    List<IndexQuery> indexQueries = data.stream()
-	        .map(p -> new IndexQueryBuilder()
-	            .withId(String.valueOf(p.getId()))
-	            .withObject(p)
-	            .build())
-	        .collect(Collectors.toList());
+	    BulkIndexReport report = bulkIndexer().index(data, IndexCoordinates.of(indexName));
+	    logFailures(report, indexName);
+	    return report;
+	}
 
-	    elasticsearchOperations.bulkIndex(indexQueries, IndexCoordinates.of(indexName));
+	private void logFailures(BulkIndexReport report, String indexName) {
+	    if (report.retried() > 0) {
+	        logger.info("{} products retried after a rejection of {}", report.retried(), indexName);
+	    }
+	    if (report.hasFailures()) {
+	        logger.error("{} products not indexed in {} : {}", report.failures().size(), indexName,
+	            report.failures().entrySet().stream().limit(10).map(e -> e.getKey() + " (" + e.getValue() + ")").collect(Collectors.joining(", ")));
+	    }
+	}
+
+	private synchronized BulkProductIndexer bulkIndexer() {
+	    if (null == bulkIndexer) {
+	        bulkIndexer = new BulkProductIndexer(elasticsearchOperations,
+	            null == indexationConfig ? new IndexationConfig() : indexationConfig, CURRENT_INDEX,
+	            products -> publishChanges(products.stream().map(ProductChangeEvent::of).toList()));
+	    }
+	    return bulkIndexer;
 	}
 
 	/**
@@ -911,16 +1134,65 @@ public class ProductRepository {
 
 
 
+	/**
+	 * Suspend the refresh and the replication of the main index, for a bulk load to
+	 * run at the ingest speed of the primaries.
+	 *
+	 * @return the previous settings, to be given back to {@link #restoreBulkLoadSettings(Map)}
+	 */
+	public Map<String, String> relaxSettingsForBulkLoad() {
+		Settings current = elasticsearchOperations.indexOps(CURRENT_INDEX).getSettings().flatten();
+		Map<String, String> previous = new HashMap<>();
+		previous.put(REFRESH_INTERVAL_SETTING, Objects.toString(current.get("index." + REFRESH_INTERVAL_SETTING), "1s"));
+		previous.put(REPLICAS_SETTING, Objects.toString(current.get("index." + REPLICAS_SETTING), "1"));
+		logger.info("Relaxing {} settings for bulk load, previously {}", MAIN_INDEX_NAME, previous);
+		putIndexSettings("-1", "0");
+		return previous;
+	}
+
+	/**
+	 * Restore the settings relaxed by {@link #relaxSettingsForBulkLoad()}, and refresh the main index
+	 *
+	 * @param previous the settings to restore
+	 */
+	public void restoreBulkLoadSettings(Map<String, String> previous) {
+		logger.info("Restoring {} settings {}", MAIN_INDEX_NAME, previous);
+		putIndexSettings(previous.get(REFRESH_INTERVAL_SETTING), previous.get(REPLICAS_SETTING));
+		elasticsearchOperations.indexOps(CURRENT_INDEX).refresh();
+	}
+
+	private void putIndexSettings(String refreshInterval, String replicas) {
+		// Not exposed by IndexOperations
+		if (!(elasticsearchOperations instanceof ElasticsearchTemplate template)) {
+			logger.warn("Cannot update the settings of {} through {}", MAIN_INDEX_NAME, elasticsearchOperations.getClass().getSimpleName());
+			return;
+		}
+		template.execute(client -> client.indices().putSettings(r -> r.index(MAIN_INDEX_NAME)
+				.settings(s -> s.refreshInterval(t -> t.time(refreshInterval)).numberOfReplicas(replicas))));
+	}
+
+	/**
+	 * Index a product in the main index, returning once indexed. Concurrent calls share bulks.
+	 *
+	 * @param data the product to index
+	 */
 	public void forceIndex(Product data) {
 		logger.info("Indexing  product {}", data.gtin());
+		try {
+			submitIndex(data).join();
+		} catch (CompletionException e) {
+			throw e.getCause() instanceof RuntimeException cause ? cause : e;
+		}
+	}
 
-//		executor.submit(() -> {
-			elasticsearchOperations.save(data, CURRENT_INDEX);
-//		});
-
-//		executor.submit(() -> {
-//			redisRepository.save(data);
-//		});
+	/**
+	 * Submit a product to the main index, sent in a bulk with the other submissions.
+	 *
+	 * @param data the product to index
+	 * @return completed once indexed, exceptionally if it failed
+	 */
+	public CompletableFuture<Void> submitIndex(Product data) {
+		return bulkIndexer().submit(data);
 	}
 
 	/**
@@ -975,14 +1247,30 @@ public class ProductRepository {
 	 * @throws ResourceNotFoundException when the product does not exist
 	 */
 	public Product getByIdWithoutEmbedding(final Long productId) throws ResourceNotFoundException {
+		Product result = getById(productId, productFieldsWithoutEmbeddingSourceFilter());
+		saveToRedis(result);
+		return result;
+	}
+
+	/**
+	 * Return a product by id, projected with the given source filter. Fields left out by the
+	 * projection keep their default values.
+	 *
+	 * @param productId    product identifier
+	 * @param sourceFilter source projection, see {@link #sourceFilter(ProductProjection)} and
+	 *                     {@link #customSourceFilter(String[], String[])}
+	 * @return the projected product document
+	 * @throws ResourceNotFoundException when the product does not exist
+	 */
+	public Product getById(final Long productId, final FetchSourceFilter sourceFilter) throws ResourceNotFoundException {
 
-		logger.info("Getting product {} without embedding", productId);
+		logger.info("Getting product {} projected", productId);
 		co.elastic.clients.elasticsearch._types.query_dsl.Query idsQuery =
 				co.elastic.clients.elasticsearch._types.query_dsl.Query.of(
 						q -> q.ids(i -> i.values(String.valueOf(productId))));
 		NativeQuery query = new NativeQueryBuilder()
 				.withQuery(idsQuery)
-				.withSourceFilter(productFieldsWithoutEmbeddingSourceFilter())
+				.withSourceFilter(sourceFilter)
 				.build();
 
 		Product result = elasticsearchOperations.search(query, Product.class, CURRENT_INDEX).stream()
@@ -994,7 +1282,6 @@ public class ProductRepository {
 			throw new ResourceNotFoundException("Product '" + productId + "' does not exists");
 		}
 
-		saveToRedis(result);
 		return result;
 	}
 
@@ -1094,8 +1381,23 @@ public class ProductRepository {
 	 */
 	public Map<String, Product> multiGetByIdWithoutEmbedding(final Collection<Long> ids)
 			throws ResourceNotFoundException {
+		return multiGetById(ids, productFieldsWithoutEmbeddingSourceFilter());
+	}
 
-		logger.info("Getting {} products from default index without embedding", ids.size());
+	/**
+	 * Get multiple products by id, projected with the given source filter. Fields left out by
+	 * the projection keep their default values.
+	 *
+	 * @param ids          product identifiers
+	 * @param sourceFilter source projection, see {@link #sourceFilter(ProductProjection)} and
+	 *                     {@link #customSourceFilter(String[], String[])}
+	 * @return products keyed by GTIN
+	 * @throws ResourceNotFoundException when Elasticsearch cannot resolve requested products
+	 */
+	public Map<String, Product> multiGetById(final Collection<Long> ids, final FetchSourceFilter sourceFilter)
+			throws ResourceNotFoundException {
+
+		logger.info("Getting {} projected products from default index", ids.size());
 		Map<String, Product> ret = new HashMap<String, Product>();
 		Set<String> missingIds = computeMissingIds(ids, ret);
 		logger.info("returned hits : {}, missing : {}", ret.size(), missingIds.size());
@@ -1103,7 +1405,7 @@ public class ProductRepository {
 		if (missingIds.size() != 0) {
 			NativeQuery query = new NativeQueryBuilder()
 					.withIds(missingIds)
-					.withSourceFilter(productFieldsWithoutEmbeddingSourceFilter())
+					.withSourceFilter(sourceFilter)
 					.build();
 
 			elasticsearchOperations.multiGet(query, Product.class, CURRENT_INDEX)
@@ -1445,66 +1747,124 @@ public class ProductRepository {
 	}
 
 	/**
-	 * Bulk update, using Document
+	 * Bulk update, using Document. Updates having a guard are rejected if the document
+	 * has been written since it was read, updates replacing their fields or refreshing
+	 * seen offers are applied through a script (a Document update merges objects).
 	 * @param partialItemsResults
+	 * @return the ids of the products whose update has been rejected (guard, or missing document)
 	 */
-	public void bulkUpdateDocument(Collection<ProductPartialUpdateHolder> partialItemsResults) {
-	    List<UpdateQuery> updateQueries = mergePartialUpdates(partialItemsResults).stream()
+	public Set<Long> bulkUpdateDocument(Collection<ProductPartialUpdateHolder> partialItemsResults) {
+	    Collection<ProductPartialUpdateHolder> merged = mergePartialUpdates(partialItemsResults);
+	    List<UpdateQuery> updateQueries = merged.stream()
 	        .map(product -> {
 	            Map<String, Object> fieldsToUpdate = product.getChanges();
-	            return UpdateQuery.builder(String.valueOf(product.getProductId()))
-	                .withDocument(Document.from(fieldsToUpdate))
-	                .withIndex(CURRENT_INDEX.getIndexName())
-	                .build();
+	            UpdateQuery.Builder builder = UpdateQuery.builder(String.valueOf(product.getProductId()))
+	                .withIndex(CURRENT_INDEX.getIndexName());
+	            if (!product.getSeenDatasources().isEmpty()) {
+	                Map<String, Object> params = new HashMap<>();
+	                params.put("fieldsToUpdate", fieldsToUpdate);
+	                params.put("seen", new ArrayList<>(product.getSeenDatasources()));
+	                params.put("now", System.currentTimeMillis());
+	                builder.withScript(SEEN_OFFERS_SCRIPT).withParams(params);
+	            } else if (product.isReplaceFields()) {
+	                Map<String, Object> params = new HashMap<>();
+	                params.put("fieldsToUpdate", fieldsToUpdate);
+	                builder.withScript(REPLACE_FIELDS_SCRIPT).withParams(params);
+	            } else {
+	                builder.withDocument(Document.from(fieldsToUpdate));
+	            }
+	            if (product.hasGuard()) {
+	                builder.withIfSeqNo(product.getIfSeqNo()).withIfPrimaryTerm(product.getIfPrimaryTerm());
+	            }
+	            return builder.build();
 	        })
 	        .collect(Collectors.toList());
 
+	    if (updateQueries.isEmpty()) {
+	        return Set.of();
+	    }
 	    // Perform the bulk update
-	    elasticsearchOperations.bulkUpdate(updateQueries, CURRENT_INDEX);
+	    Set<Long> rejected = applyUpdates(updateQueries);
+	    publishChanges(merged.stream()
+	        .filter(update -> !rejected.contains(update.getProductId()))
+	        .flatMap(update -> ProductChangeEvent.events(update).stream())
+	        .toList());
+	    return rejected;
+	}
+
+	private Set<Long> applyUpdates(List<UpdateQuery> updateQueries) {
+	    try {
+	        elasticsearchOperations.bulkUpdate(updateQueries, CURRENT_INDEX);
+	        return Set.of();
+	    } catch (BulkFailureException e) {
+	        return versionConflicts(e);
+	    }
 	}
 
+	/**
+	 * Notify the change bus, if any, of changes applied to the main index
+	 */
+	private void publishChanges(List<ProductChangeEvent> events) {
+	    if (null != changeBus && !events.isEmpty()) {
+	        changeBus.publish(events);
+	    }
+	}
+
+	/**
+	 * @return the ids of the documents rejected on a version conflict, or missing (e.g. seen
+	 *         offers of a product not indexed yet)
+	 * @throws BulkFailureException if some documents failed for another reason
+	 */
+	static Set<Long> versionConflicts(BulkFailureException e) {
+	    Set<Long> conflicts = new HashSet<>();
+	    for (Map.Entry<String, BulkFailureException.FailureDetails> failure : e.getFailedDocuments().entrySet()) {
+	        Integer status = failure.getValue().status();
+	        if (!Integer.valueOf(409).equals(status) && !Integer.valueOf(404).equals(status)) {
+	            throw e;
+	        }
+	        conflicts.add(Long.valueOf(failure.getKey()));
+	    }
+	    logger.info("{} updates rejected, documents changed since read or missing", conflicts.size());
+	    return conflicts;
+	}
+
+        /**
+         * Merges the successive updates of a product sharing the same guard and the same way of
+         * writing their fields. Updates read at different versions, or guarded and unguarded, are
+         * kept as separate bulk items, applied in arrival order, each checked on its own guard.
+         */
         static Collection<ProductPartialUpdateHolder> mergePartialUpdates(Collection<ProductPartialUpdateHolder> partialItemsResults) {
-                Map<Long, ProductPartialUpdateHolder> mergedByProductId = new LinkedHashMap<>();
+                List<ProductPartialUpdateHolder> ret = new ArrayList<>();
+                Map<Long, ProductPartialUpdateHolder> lastByProductId = new HashMap<>();
                 for (ProductPartialUpdateHolder partial : partialItemsResults) {
                         if (partial == null || partial.getProductId() == null) {
                                 continue;
                         }
-                        ProductPartialUpdateHolder merged = mergedByProductId.computeIfAbsent(
-                                        partial.getProductId(),
-                                        ProductPartialUpdateHolder::new);
+                        ProductPartialUpdateHolder merged = lastByProductId.get(partial.getProductId());
+                        if (merged == null
+                                        || !Objects.equals(merged.getIfSeqNo(), partial.getIfSeqNo())
+                                        || !Objects.equals(merged.getIfPrimaryTerm(), partial.getIfPrimaryTerm())
+                                        || merged.isReplaceFields() != partial.isReplaceFields()) {
+                                merged = new ProductPartialUpdateHolder(partial.getProductId());
+                                if (partial.hasGuard()) {
+                                        merged.guard(partial.getIfSeqNo(), partial.getIfPrimaryTerm());
+                                }
+                                merged.setReplaceFields(partial.isReplaceFields());
+                                lastByProductId.put(partial.getProductId(), merged);
+                                ret.add(merged);
+                        }
                         merged.getChanges().putAll(partial.getChanges());
+                        if (partial.getVertical() != null) {
+                                merged.setVertical(partial.getVertical());
+                        }
+                        if (merged.getPreviousVertical() == null) {
+                                merged.setPreviousVertical(partial.getPreviousVertical());
+                        }
+                        merged.getSeenDatasources().addAll(partial.getSeenDatasources());
                 }
-                return mergedByProductId.values();
+                return ret;
         }
 
-//	/**
-//	 * Bulk update, using script
-//	 * @param partialItemsResults
-//	 */
-//	public void bulkUpdateScript(Set<ProductPartialUpdateHolder> partialItemsResults) {
-//	    // Prepare a list to hold the update queries
-//	    List<UpdateQuery> updateQueries = partialItemsResults.stream()
-//	        .map(product -> {
-//	            // Script to iterate over the map and update the fields in _source
-//	            String script = "for (entry in params.fieldsToUpdate.entrySet()) { ctx._source[entry.getKey()] = entry.getValue(); }";
-//
-//	            // Pass the updated fields as parameters
-//	            Map<String, Object> params = new HashMap<>();
-//	            params.put("fieldsToUpdate", product.getChanges());
-//
-//	            // Create and return the UpdateQuery with the script and parameters
-//	            return UpdateQuery.builder(String.valueOf(product.getProductId()))
-//	                .withScript(script)
-//	                .withParams(params)
-//	                .withIndex(current_index.getIndexName())  // Use the current index
-//	                .build();
-//	        })
-//	        .collect(Collectors.toList());
-//
-//	    // Perform the bulk update
-//	    elasticsearchOperations.bulkUpdate(updateQueries, current_index);
-//	}
-//
 
 
 	/**
@@ -1590,11 +1950,11 @@ public class ProductRepository {
 //		});
 	}
 
-	public BlockingQueue<Product> getFullProductQueue() {
+	public JournaledQueue<Product> getFullProductQueue() {
 		return fullProductQueue;
 	}
 
-	public BlockingQueue<ProductPartialUpdateHolder> getPartialProductQueue() {
+	public JournaledQueue<ProductPartialUpdateHolder> getPartialProductQueue() {
 		return partialProductQueue;
 	}
 
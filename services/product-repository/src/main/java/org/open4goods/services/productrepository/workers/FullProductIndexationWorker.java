@@ -1,15 +1,16 @@
 package org.open4goods.services.productrepository.workers;
 
-import java.util.HashSet;
-import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import org.open4goods.model.product.Product;
+import org.open4goods.services.productrepository.journal.JournaledQueue.Batch;
+import org.open4goods.services.productrepository.services.BulkProductIndexer.BulkIndexReport;
 import org.open4goods.services.productrepository.services.ProductRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 /**
- * Worker thread that asynchronously dequeue the DataFragments from the file queue. It
+ * Worker thread that asynchronously dequeue the products from the (journaled) queue, and
+ * acknowledge them once indexed.
  * @author goulven
  *
  */
@@ -50,13 +51,31 @@ public class FullProductIndexationWorker implements Runnable {
 		// TODO : exit thread condition
 		while (true) {
 			try {
-				Product firstItem = service.getFullProductQueue().poll(pauseDuration, TimeUnit.MILLISECONDS);
-				if (firstItem != null) {
-					final Set<Product> buffer = new HashSet<>();	
-					buffer.add(firstItem);
-					service.getFullProductQueue().drainTo(buffer, dequeuePageSize - 1);
-					
-					service.store(buffer);
+				final Batch<Product> buffer = service.getFullProductQueue().poll(dequeuePageSize, pauseDuration, TimeUnit.MILLISECONDS);
+				if (!buffer.isEmpty()) {
+					final BulkIndexReport report;
+					try {
+						report = service.store(buffer.items());
+					} catch (final Exception e) {
+						// Kept journaled, indexed again once the cluster recovers
+						logger.error("{} failed to index {} products, they will be retried : {}", workerName, buffer.size(), e.getMessage());
+						service.getFullProductQueue().retry(buffer);
+						Thread.sleep(pauseDuration);
+						continue;
+					}
+					if (report.hasFailures()) {
+						// Transient failures are indexed again, the others are given up
+						service.getFullProductQueue().retry(buffer.filter(p -> report.retryable().contains(String.valueOf(p.getId()))));
+						service.getFullProductQueue().reject(buffer.filter(p -> report.failures().containsKey(String.valueOf(p.getId())) && !report.retryable().contains(String.valueOf(p.getId()))), "Not indexed");
+						service.getFullProductQueue().commit(buffer.filter(p -> !report.failures().containsKey(String.valueOf(p.getId()))));
+						logger.warn("{} failed to index {} products, {} of them will be retried", workerName, report.failures().size(), report.retryable().size());
+						if (!report.retryable().isEmpty()) {
+							// Letting the cluster recover
+							Thread.sleep(pauseDuration);
+						}
+					} else {
+						service.getFullProductQueue().commit(buffer);
+					}
 					
 					logger.info ("{} has indexed {} products. {} Remaining in queue",workerName,  buffer.size(), service.getFullProductQueue().size());
 				}
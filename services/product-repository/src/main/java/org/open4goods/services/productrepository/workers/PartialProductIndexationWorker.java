@@ -1,15 +1,16 @@
 package org.open4goods.services.productrepository.workers;
 
-import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import org.open4goods.model.product.ProductPartialUpdateHolder;
+import org.open4goods.services.productrepository.journal.JournaledQueue.Batch;
 import org.open4goods.services.productrepository.services.ProductRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 /**
- * Worker thread that asynchronously dequeue the DataFragments from the file queue. It
+ * Worker thread that asynchronously dequeue the partial product updates from the (journaled) queue, and
+ * acknowledge them once indexed.
  * @author goulven
  *
  */
@@ -50,13 +51,25 @@ public class PartialProductIndexationWorker implements Runnable {
 		// TODO : exit thread condition
 		while (true) {
 			try {
-				ProductPartialUpdateHolder firstItem = service.getPartialProductQueue().poll(pauseDuration, TimeUnit.MILLISECONDS);
-				if (firstItem != null) {
-					final Set<ProductPartialUpdateHolder> buffer = new HashSet<>();	
-					buffer.add(firstItem);
-					service.getPartialProductQueue().drainTo(buffer, dequeuePageSize - 1);
-					
-					service.bulkUpdateDocument(buffer);
+				final Batch<ProductPartialUpdateHolder> buffer = service.getPartialProductQueue().poll(dequeuePageSize, pauseDuration, TimeUnit.MILLISECONDS);
+				if (!buffer.isEmpty()) {
+					final Set<Long> rejected;
+					try {
+						rejected = service.bulkUpdateDocument(buffer.items());
+					} catch (final Exception e) {
+						// Kept journaled, indexed again once the cluster recovers
+						logger.error("{} failed to index {} products, they will be retried : {}", workerName, buffer.size(), e.getMessage());
+						service.getPartialProductQueue().retry(buffer);
+						Thread.sleep(pauseDuration);
+						continue;
+					}
+					if (!rejected.isEmpty()) {
+						// Changed since read, or missing
+						service.getPartialProductQueue().reject(buffer.filter(u -> rejected.contains(u.getProductId())), "Update rejected");
+						service.getPartialProductQueue().commit(buffer.filter(u -> !rejected.contains(u.getProductId())));
+					} else {
+						service.getPartialProductQueue().commit(buffer);
+					}
 					
 					logger.info ("{} has indexed {} products. {} Remaining in queue",workerName,  buffer.size(), service.getPartialProductQueue().size());
 				}
@@ -0,0 +1,119 @@
+package org.open4goods.services.productrepository.changes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.open4goods.services.productrepository.changes.ElasticProductChangeBus.ProductChangeBatch;
+import org.open4goods.services.productrepository.config.ProductChangesConfig;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.SearchHitsImpl;
+import org.springframework.data.elasticsearch.core.TotalHitsRelation;
+import org.springframework.data.elasticsearch.core.convert.MappingElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.mapping.SimpleElasticsearchMappingContext;
+import org.springframework.data.elasticsearch.core.query.Query;
+
+class ElasticProductChangeBusTest
+{
+
+    @Test
+    void eventsSurviveTheLogEncoding()
+    {
+        List<ProductChangeEvent> events = List.of(
+                new ProductChangeEvent(42L, "tv", EnumSet.of(ProductChangeGroup.OFFERS, ProductChangeGroup.SCORES)),
+                new ProductChangeEvent(7L, null, EnumSet.allOf(ProductChangeGroup.class)),
+                new ProductChangeEvent(8L, "washing-machines", Set.of()));
+
+        String encoded = ElasticProductChangeBus.encode(events);
+
+        assertThat(encoded).startsWith("42;tv;3\n");
+        assertThat(ElasticProductChangeBus.decode(encoded)).containsExactlyElementsOf(events);
+    }
+
+    @Test
+    void malformedLinesAreSkipped()
+    {
+        assertThat(ElasticProductChangeBus.decode("garbage\n1;tv;1\n")).containsExactly(
+                new ProductChangeEvent(1L, "tv", EnumSet.of(ProductChangeGroup.OFFERS)));
+        assertThat(ElasticProductChangeBus.decode(null)).isEmpty();
+    }
+
+    @Test
+    void batchesAreMappedByTheConverter()
+    {
+        MappingElasticsearchConverter converter = new MappingElasticsearchConverter(new SimpleElasticsearchMappingContext());
+        converter.afterPropertiesSet();
+        ProductChangeBatch batch = new ProductChangeBatch();
+        batch.setId("batch");
+        batch.setTimestamp(12L);
+        batch.setEvents("1;tv;1\n");
+
+        Document document = Document.create();
+        converter.write(batch, document);
+        ProductChangeBatch read = converter.read(ProductChangeBatch.class, document);
+
+        assertThat(document).containsEntry("timestamp", 12L).containsEntry("events", "1;tv;1\n");
+        assertThat(read.getTimestamp()).isEqualTo(12L);
+        assertThat(read.getEvents()).isEqualTo("1;tv;1\n");
+    }
+
+    @Test
+    void pollPagesThroughAllTheBatchesOfTheWindow()
+    {
+        ElasticsearchOperations operations = mock(ElasticsearchOperations.class);
+        IndexOperations indexOperations = mock(IndexOperations.class);
+        when(operations.indexOps(any(IndexCoordinates.class))).thenReturn(indexOperations);
+        when(indexOperations.exists()).thenReturn(true);
+        // More batches in the window than a page, all published on the same millisecond
+        long timestamp = System.currentTimeMillis();
+        List<List<Object>> searchAfters = new ArrayList<>();
+        when(operations.search(any(Query.class), eq(ProductChangeBatch.class), any(IndexCoordinates.class))).thenAnswer(invocation -> {
+            Query query = invocation.getArgument(0);
+            searchAfters.add(query.getSearchAfter());
+            int page = searchAfters.size() - 1;
+            return hits(timestamp, page * 2, Math.min(5, page * 2 + 2));
+        });
+        ProductChangesConfig config = new ProductChangesConfig();
+        config.setMaxBatchesPerPoll(2);
+        config.setPollIntervalMs(3_600_000);
+        ElasticProductChangeBus bus = new ElasticProductChangeBus(operations, config);
+        List<Long> received = new ArrayList<>();
+        bus.subscribe(events -> events.forEach(e -> received.add(e.productId())));
+
+        bus.poll();
+        bus.shutdown();
+
+        assertThat(received).containsExactly(0L, 1L, 2L, 3L, 4L);
+        assertThat(searchAfters).hasSize(3);
+        assertThat(searchAfters.get(0)).isNull();
+        assertThat(searchAfters.get(1)).containsExactly(timestamp, "batch-1");
+        assertThat(searchAfters.get(2)).containsExactly(timestamp, "batch-3");
+    }
+
+    private static SearchHits<ProductChangeBatch> hits(long timestamp, int from, int to)
+    {
+        List<SearchHit<ProductChangeBatch>> hits = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            ProductChangeBatch batch = new ProductChangeBatch();
+            batch.setId("batch-" + i);
+            batch.setTimestamp(timestamp);
+            batch.setEvents(i + ";tv;1\n");
+            hits.add(new SearchHit<>("changes", batch.getId(), null, 1f, new Object[] {timestamp, batch.getId()},
+                    null, null, null, null, null, batch));
+        }
+        return new SearchHitsImpl<>(hits.size(), TotalHitsRelation.EQUAL_TO, 1f, null, null, null, hits, null, null, null);
+    }
+}
@@ -0,0 +1,134 @@
+package org.open4goods.services.productrepository.changes;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.open4goods.model.product.Product;
+import org.open4goods.model.product.ProductPartialUpdateHolder;
+import org.open4goods.model.product.Score;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchCustomConversions;
+import org.springframework.data.elasticsearch.core.convert.MappingElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.mapping.SimpleElasticsearchMappingContext;
+import org.springframework.data.elasticsearch.core.query.SeqNoPrimaryTerm;
+
+class ProductChangeTrackerTest
+{
+
+    private ProductChangeTracker tracker;
+
+    @BeforeEach
+    void setUp()
+    {
+        ElasticsearchCustomConversions conversions = new ElasticsearchCustomConversions(List.of());
+        SimpleElasticsearchMappingContext context = new SimpleElasticsearchMappingContext();
+        context.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        MappingElasticsearchConverter converter = new MappingElasticsearchConverter(context);
+        converter.setConversions(conversions);
+        converter.afterPropertiesSet();
+        tracker = new ProductChangeTracker(converter);
+    }
+
+    @Test
+    void unchangedProductsHaveNoChanges()
+    {
+        Product product = product(1L);
+        tracker.track(product, new SeqNoPrimaryTerm(5, 1));
+
+        assertThat(tracker.changes(product)).isNull();
+        assertThat(tracker.changes(List.of(product(1L)))).isEmpty();
+    }
+
+    @Test
+    void onlyChangedFieldsAreReplacedUnderGuard()
+    {
+        Product product = product(1L);
+        tracker.track(product, new SeqNoPrimaryTerm(5, 1));
+
+        product.getScores().remove("REPAIR");
+        product.getScores().put("WEIGHT", new Score("WEIGHT", 2.0));
+        product.setExcluded(true);
+
+        ProductPartialUpdateHolder changes = tracker.changes(product);
+
+        assertThat(changes.getChanges()).containsOnlyKeys("scores", "excluded");
+        assertThat(changes.getChanges().get("excluded")).isEqualTo(true);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> scores = (Map<String, Object>) changes.getChanges().get("scores");
+        assertThat(scores).containsOnlyKeys("WEIGHT");
+        assertThat(changes.isReplaceFields()).isTrue();
+        assertThat(changes.getIfSeqNo()).isEqualTo(5L);
+        assertThat(changes.getIfPrimaryTerm()).isEqualTo(1L);
+    }
+
+    @Test
+    void removedFieldsAreNulled()
+    {
+        Product product = product(1L);
+        product.setVertical("tv");
+        tracker.track(product, new SeqNoPrimaryTerm(5, 1));
+
+        product.setVertical(null);
+
+        ProductPartialUpdateHolder changes = tracker.changes(product);
+        assertThat(changes.getChanges()).containsOnlyKeys("vertical");
+        assertThat(changes.getChanges().get("vertical")).isNull();
+    }
+
+    @Test
+    void verticalChangesNotifyBothVerticals()
+    {
+        Product moved = product(1L);
+        moved.setVertical("tv");
+        tracker.track(moved, new SeqNoPrimaryTerm(5, 1));
+        Product unmatched = product(2L);
+        unmatched.setVertical("tv");
+        tracker.track(unmatched, new SeqNoPrimaryTerm(5, 1));
+        Product stayed = product(3L);
+        stayed.setVertical("tv");
+        tracker.track(stayed, new SeqNoPrimaryTerm(5, 1));
+
+        moved.setVertical("monitor");
+        unmatched.setVertical(null);
+        stayed.setExcluded(true);
+
+        assertThat(ProductChangeEvent.events(tracker.changes(moved))).extracting(ProductChangeEvent::vertical)
+                .containsExactly("monitor", "tv");
+        assertThat(ProductChangeEvent.events(tracker.changes(unmatched))).extracting(ProductChangeEvent::vertical)
+                .containsExactly(null, "tv");
+        assertThat(ProductChangeEvent.events(tracker.changes(stayed))).extracting(ProductChangeEvent::vertical)
+                .containsExactly("tv");
+    }
+
+    @Test
+    void productsWithoutVersionAreLeftToTheNextBatch()
+    {
+        Product product = product(1L);
+
+        assertThat(tracker.track(product, null)).isFalse();
+        product.setExcluded(true);
+        assertThat(tracker.isTracked(product)).isFalse();
+        assertThat(tracker.untracked()).isEqualTo(1);
+        assertThat(tracker.changes(product)).isNull();
+    }
+
+    @Test
+    void hashIgnoresMapOrderButNotListOrder()
+    {
+        assertThat(ProductChangeTracker.hash(new java.util.LinkedHashMap<>(Map.of("a", 1, "b", 2))))
+                .isEqualTo(ProductChangeTracker.hash(new java.util.TreeMap<>(Map.of("b", 2, "a", 1))));
+        assertThat(ProductChangeTracker.hash(List.of(1, 2))).isNotEqualTo(ProductChangeTracker.hash(List.of(2, 1)));
+        assertThat(ProductChangeTracker.hash("1")).isNotEqualTo(ProductChangeTracker.hash(1));
+    }
+
+    private static Product product(long id)
+    {
+        Product product = new Product(id);
+        product.setOffersCount(2);
+        product.getScores().put("REPAIR", new Score("REPAIR", 1.0));
+        return product;
+    }
+}
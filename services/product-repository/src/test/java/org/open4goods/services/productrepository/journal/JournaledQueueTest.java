@@ -0,0 +1,228 @@
+package org.open4goods.services.productrepository.journal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.open4goods.model.product.ProductPartialUpdateHolder;
+import org.open4goods.services.productrepository.journal.JournaledQueue.Batch;
+import org.open4goods.services.serialisation.service.SerialisationService;
+
+class JournaledQueueTest
+{
+
+    @TempDir
+    private Path tempDir;
+
+    private JournalConfig config;
+
+    private JournalCodec<ProductPartialUpdateHolder> codec;
+
+    @BeforeEach
+    void setUp()
+    {
+        config = new JournalConfig();
+        config.setEnabled(true);
+        config.setFolder(tempDir.toString());
+        config.setFsyncPolicy(JournalConfig.FsyncPolicy.NEVER);
+        config.setCheckpointIntervalMs(0);
+        codec = JournalCodec.json(new SerialisationService(), ProductPartialUpdateHolder.class);
+    }
+
+    @Test
+    void replaysOnlyNotCommittedItemsAfterRestart() throws Exception
+    {
+        JournaledQueue<ProductPartialUpdateHolder> queue = JournaledQueue.open("partial", 100, config, codec);
+        for (long id = 1; id <= 5; id++) {
+            queue.put(holder(id));
+        }
+        Batch<ProductPartialUpdateHolder> handled = queue.poll(2, 1, TimeUnit.SECONDS);
+        queue.commit(handled);
+        // Taken but never committed, as when crashing during the bulk
+        queue.poll(1, 1, TimeUnit.SECONDS);
+        queue.close();
+
+        JournaledQueue<ProductPartialUpdateHolder> reopened = JournaledQueue.open("partial", 100, config, codec);
+
+        assertThat(reopened.replay()).isEqualTo(3);
+        assertThat(ids(reopened.drain(10).items())).containsExactly(3L, 4L, 5L);
+        reopened.close();
+    }
+
+    @Test
+    void committedSegmentsAreRecycled() throws Exception
+    {
+        config.setSegmentSize(512);
+        config.setSpareSegments(1);
+        JournaledQueue<ProductPartialUpdateHolder> queue = JournaledQueue.open("partial", 1000, config, codec);
+
+        for (long id = 1; id <= 200; id++) {
+            queue.put(holder(id));
+            queue.commit(queue.drain(1));
+        }
+
+        assertThat(segmentFiles()).hasSizeLessThanOrEqualTo(2);
+        queue.close();
+
+        JournaledQueue<ProductPartialUpdateHolder> reopened = JournaledQueue.open("partial", 1000, config, codec);
+        assertThat(reopened.replay()).isZero();
+        reopened.close();
+    }
+
+    @Test
+    void tornRecordIsTruncatedOnReplay() throws Exception
+    {
+        JournaledQueue<ProductPartialUpdateHolder> queue = JournaledQueue.open("partial", 100, config, codec);
+        queue.put(holder(1L));
+        queue.put(holder(2L));
+        queue.close();
+
+        // Corrupting the last byte of the second record payload
+        Path segment = segmentFiles().get(0);
+        int firstLength = readInt(segment, 0);
+        int secondOffset = 8 + firstLength;
+        int secondLength = readInt(segment, secondOffset);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {'#'}), secondOffset + 8 + secondLength - 1);
+        }
+
+        JournaledQueue<ProductPartialUpdateHolder> reopened = JournaledQueue.open("partial", 100, config, codec);
+        assertThat(reopened.replay()).isEqualTo(1);
+        assertThat(ids(reopened.drain(10).items())).containsExactly(1L);
+
+        // Appending after the truncation point
+        reopened.put(holder(3L));
+        reopened.close();
+        JournaledQueue<ProductPartialUpdateHolder> again = JournaledQueue.open("partial", 100, config, codec);
+        assertThat(again.replay()).isEqualTo(2);
+        again.close();
+    }
+
+    @Test
+    void retriedItemsAreDeliveredFirstAndStayJournaled() throws Exception
+    {
+        config.setMaxDeliveries(2);
+        JournaledQueue<ProductPartialUpdateHolder> queue = JournaledQueue.open("partial", 100, config, codec);
+        for (long id = 1; id <= 3; id++) {
+            queue.put(holder(id));
+        }
+        Batch<ProductPartialUpdateHolder> failed = queue.poll(2, 1, TimeUnit.SECONDS);
+        queue.retry(failed);
+
+        Batch<ProductPartialUpdateHolder> again = queue.poll(10, 1, TimeUnit.SECONDS);
+        assertThat(ids(again.items())).containsExactly(1L, 2L, 3L);
+        queue.commit(again.filter(h -> h.getProductId() == 3L));
+        // Delivered twice, dropped on the second failure
+        assertThat(queue.retry(again.filter(h -> h.getProductId() == 1L))).isEqualTo(1);
+        queue.close();
+
+        JournaledQueue<ProductPartialUpdateHolder> reopened = JournaledQueue.open("partial", 100, config, codec);
+        // The dropped item is acknowledged, the checkpoint stays on the still failing one
+        assertThat(reopened.replay()).isEqualTo(2);
+        assertThat(ids(reopened.drain(10).items())).containsExactly(2L, 3L);
+        reopened.close();
+    }
+
+    @Test
+    void trackedItemsCompleteWithTheirOutcome() throws Exception
+    {
+        JournaledQueue<ProductPartialUpdateHolder> queue = JournaledQueue.open("partial", 100, config, codec);
+        CompletableFuture<Void> indexed = queue.putTracked(holder(1));
+        CompletableFuture<Void> rejected = queue.putTracked(holder(2));
+        CompletableFuture<Void> pending = new CompletableFuture<>();
+        CompletableFuture<Void> handedOver = queue.putTracked(holder(3));
+
+        Batch<ProductPartialUpdateHolder> batch = queue.drain(10);
+        queue.reject(batch.filter(h -> h.getProductId() == 2L), "Not indexed");
+        queue.commit(batch.filter(h -> h.getProductId() == 1L));
+        queue.commit(batch.filter(h -> h.getProductId() == 3L), h -> pending);
+
+        assertThat(indexed).isCompleted();
+        assertThat(rejected).isCompletedExceptionally();
+        assertThat(handedOver).isNotDone();
+        pending.complete(null);
+        assertThat(handedOver).isCompleted();
+        assertThat(queue.isEmpty()).isTrue();
+        queue.close();
+    }
+
+    @Test
+    void interruptedPutDoesNotPinTheCheckpoint() throws Exception
+    {
+        config.setSegmentSize(512);
+        config.setSpareSegments(1);
+        JournaledQueue<ProductPartialUpdateHolder> queue = JournaledQueue.open("partial", 1, config, codec);
+        queue.put(holder(1L));
+
+        // Blocked on the full queue, interrupted as on shutdown
+        Thread.currentThread().interrupt();
+        assertThatThrownBy(() -> queue.put(holder(2L))).isInstanceOf(InterruptedException.class);
+
+        for (long id = 3; id <= 200; id++) {
+            queue.commit(queue.drain(1));
+            queue.put(holder(id));
+        }
+        queue.commit(queue.drain(1));
+
+        assertThat(segmentFiles()).hasSizeLessThanOrEqualTo(2);
+        queue.close();
+
+        JournaledQueue<ProductPartialUpdateHolder> reopened = JournaledQueue.open("partial", 100, config, codec);
+        assertThat(reopened.replay()).isZero();
+        reopened.close();
+    }
+
+    @Test
+    void disabledJournalKeepsItemsInMemory() throws Exception
+    {
+        config.setEnabled(false);
+        JournaledQueue<ProductPartialUpdateHolder> queue = JournaledQueue.open("partial", 100, config, codec);
+        queue.put(holder(1L));
+
+        assertThat(queue.isJournaled()).isFalse();
+        assertThat(queue.replay()).isZero();
+        assertThat(queue.size()).isEqualTo(1);
+        assertThat(tempDir.resolve("partial")).doesNotExist();
+    }
+
+    private ProductPartialUpdateHolder holder(long id)
+    {
+        ProductPartialUpdateHolder holder = new ProductPartialUpdateHolder(id);
+        holder.addChange("price.minPrice.price", 10.5 * id);
+        return holder;
+    }
+
+    private List<Long> ids(List<ProductPartialUpdateHolder> holders)
+    {
+        return holders.stream().map(ProductPartialUpdateHolder::getProductId).toList();
+    }
+
+    private List<Path> segmentFiles() throws IOException
+    {
+        try (Stream<Path> files = Files.list(tempDir.resolve("partial"))) {
+            return files.filter(f -> f.getFileName().toString().startsWith("segment-")).sorted().toList();
+        }
+    }
+
+    private int readInt(Path file, int offset) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.read(buffer, offset);
+        }
+        return buffer.getInt(0);
+    }
+}
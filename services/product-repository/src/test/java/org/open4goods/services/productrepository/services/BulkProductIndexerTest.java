@@ -0,0 +1,166 @@
+package org.open4goods.services.productrepository.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.open4goods.model.product.Product;
+import org.open4goods.services.productrepository.config.IndexationConfig;
+import org.open4goods.services.productrepository.services.BulkProductIndexer.BulkIndexReport;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.UncategorizedElasticsearchException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchCustomConversions;
+import org.springframework.data.elasticsearch.core.convert.MappingElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.mapping.SimpleElasticsearchMappingContext;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+
+class BulkProductIndexerTest
+{
+
+    private static final IndexCoordinates INDEX = IndexCoordinates.of("products-test");
+
+    private ElasticsearchOperations elasticsearchOperations;
+    private IndexationConfig config;
+    private List<List<String>> bulks;
+
+    @BeforeEach
+    void setUp()
+    {
+        SimpleElasticsearchMappingContext mappingContext = new SimpleElasticsearchMappingContext();
+        mappingContext.setSimpleTypeHolder(new ElasticsearchCustomConversions(List.of()).getSimpleTypeHolder());
+        MappingElasticsearchConverter converter = new MappingElasticsearchConverter(mappingContext);
+        converter.afterPropertiesSet();
+        elasticsearchOperations = mock(ElasticsearchOperations.class);
+        when(elasticsearchOperations.getElasticsearchConverter()).thenReturn(converter);
+
+        config = new IndexationConfig();
+        config.setBulkRetryInitialBackoffMs(1);
+        config.setBulkRetryMaxBackoffMs(2);
+        bulks = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    @Test
+    void bulksAreSizedBySerializedBytes()
+    {
+        recordBulks();
+        List<Product> products = products(1, 10);
+        long documentBytes = elasticsearchOperations.getElasticsearchConverter().mapObject(products.get(0)).toJson().length();
+        config.setBulkMaxBytes(documentBytes * 3);
+        BulkProductIndexer indexer = new BulkProductIndexer(elasticsearchOperations, config, INDEX, p -> {});
+
+        BulkIndexReport report = indexer.index(products, INDEX);
+
+        assertThat(report.indexed()).isEqualTo(10);
+        assertThat(report.hasFailures()).isFalse();
+        assertThat(bulks).hasSize(4);
+        assertThat(bulks).allSatisfy(bulk -> assertThat(bulk).hasSizeLessThanOrEqualTo(3));
+        assertThat(bulks.stream().flatMap(List::stream)).hasSize(10).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void onlyRejectedItemsAreRetriedAndFailuresReported()
+    {
+        when(elasticsearchOperations.bulkIndex(any(), eq(INDEX))).thenAnswer(invocation -> {
+            List<String> ids = ids(invocation.getArgument(0));
+            bulks.add(ids);
+            if (bulks.size() == 1) {
+                throw new BulkFailureException("failed", Map.of(
+                        "1", new BulkFailureException.FailureDetails(429, "es_rejected_execution_exception"),
+                        "2", new BulkFailureException.FailureDetails(400, "mapper_parsing_exception")));
+            }
+            if (bulks.size() == 2) {
+                throw new UncategorizedElasticsearchException("Too many requests", 429, null, null);
+            }
+            return List.of();
+        });
+        BulkProductIndexer indexer = new BulkProductIndexer(elasticsearchOperations, config, INDEX, p -> {});
+
+        BulkIndexReport report = indexer.index(products(1, 3), INDEX);
+
+        assertThat(bulks).containsExactly(List.of("1", "2", "3"), List.of("1"), List.of("1"));
+        assertThat(report.indexed()).isEqualTo(2);
+        assertThat(report.retried()).isEqualTo(2);
+        assertThat(report.failures()).containsOnlyKeys("2");
+        assertThat(report.retryable()).isEmpty();
+        assertThat(indexer.getBulkBytes()).isLessThan(config.getBulkMaxBytes());
+    }
+
+    @Test
+    void submissionsWaitingTogetherShareABulk() throws Exception
+    {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(elasticsearchOperations.bulkIndex(any(), eq(INDEX))).thenAnswer(invocation -> {
+            bulks.add(ids(invocation.getArgument(0)));
+            sending.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return List.of();
+        });
+        List<Product> notified = Collections.synchronizedList(new ArrayList<>());
+        config.setBulkLingerMs(200);
+        BulkProductIndexer indexer = new BulkProductIndexer(elasticsearchOperations, config, INDEX, notified::addAll);
+        List<Product> products = products(1, 3);
+
+        // Alone, the first one is sent at once
+        CompletableFuture<Void> first = CompletableFuture.supplyAsync(() -> indexer.submit(products.get(0))).thenCompose(f -> f);
+        assertThat(sending.await(5, TimeUnit.SECONDS)).isTrue();
+        List<CompletableFuture<Void>> others = products.subList(1, 3).stream().map(indexer::submit).toList();
+        release.countDown();
+        CompletableFuture.allOf(first, others.get(0), others.get(1)).get(5, TimeUnit.SECONDS);
+
+        assertThat(bulks).containsExactly(List.of("1"), List.of("2", "3"));
+        assertThat(notified).extracting(Product::getId).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void documentsAreSizedByTheirUtf8Bytes()
+    {
+        String source = "{\"name\":\"caf\u00e9 \u20ac \ud83d\ude00\"}";
+
+        assertThat(BulkProductIndexer.IndexedDocument.utf8Length(source)).isEqualTo(source.getBytes(StandardCharsets.UTF_8).length);
+        assertThat(new BulkProductIndexer.IndexedDocument("1", source).bytes()).isGreaterThan(source.length());
+    }
+
+    @Test
+    void saturatedClusterIsDetectedThroughTheCauses()
+    {
+        assertThat(BulkProductIndexer.isRejection(new RuntimeException(
+                new UncategorizedElasticsearchException("rejected", 429, null, null)))).isTrue();
+        assertThat(BulkProductIndexer.isRejection(new IllegalStateException("es_rejected_execution_exception: queue full"))).isTrue();
+        assertThat(BulkProductIndexer.isRejection(new UncategorizedElasticsearchException("bad", 400, null, null))).isFalse();
+    }
+
+    private void recordBulks()
+    {
+        when(elasticsearchOperations.bulkIndex(any(), eq(INDEX))).thenAnswer(invocation -> {
+            bulks.add(ids(invocation.getArgument(0)));
+            return List.of();
+        });
+    }
+
+    private static List<String> ids(List<IndexQuery> queries)
+    {
+        return queries.stream().map(IndexQuery::getId).toList();
+    }
+
+    private static List<Product> products(long from, long to)
+    {
+        return LongStream.rangeClosed(from, to).mapToObj(Product::new).toList();
+    }
+}
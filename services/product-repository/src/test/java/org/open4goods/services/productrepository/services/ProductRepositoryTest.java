@@ -4,11 +4,13 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import co.elastic.clients.elasticsearch._types.KnnSearch;
 import co.elastic.clients.elasticsearch._types.query_dsl.IdsQuery;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -24,10 +26,18 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.open4goods.model.product.Product;
 import org.open4goods.model.product.ProductPartialUpdateHolder;
 import org.open4goods.model.vertical.SubsetCriteriaOperator;
+import org.open4goods.services.productrepository.changes.LocalProductChangeBus;
+import org.open4goods.services.productrepository.changes.ProductChangeEvent;
+import org.open4goods.services.productrepository.changes.ProductChangeGroup;
+import org.open4goods.services.productrepository.services.ProductRepository.ProductProjection;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.BulkFailureException;
 import org.springframework.data.elasticsearch.client.elc.NativeQuery;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
 import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchCustomConversions;
+import org.springframework.data.elasticsearch.core.convert.MappingElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.mapping.SimpleElasticsearchMappingContext;
 import org.springframework.data.elasticsearch.core.query.Criteria;
 import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
 import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
@@ -152,6 +162,16 @@ class ProductRepositoryTest
         assertThat(sourceFilter.getExcludes()).containsExactly("embedding", "resources.imageInfo.embedding");
     }
 
+    @Test
+    void scoringSourceFilterOnlyIncludesScoringInputs()
+    {
+        FetchSourceFilter sourceFilter = ProductRepository.sourceFilter(ProductProjection.SCORING);
+
+        assertThat(sourceFilter.fetchSource()).isTrue();
+        assertThat(sourceFilter.getIncludes()).containsExactly("id", "attributes.indexed", "attributes.referentielAttributes", "scores");
+        assertThat(sourceFilter.getExcludes()).isNull();
+    }
+
     @Test
     void customSourceFilterRejectsUnsafePaths()
     {
@@ -207,6 +227,120 @@ class ProductRepositoryTest
                 .containsEntry("price", "updated");
     }
 
+    @Test
+    void guardedReplacingUpdatesUseScriptAndSeqNo()
+    {
+        ProductPartialUpdateHolder update = new ProductPartialUpdateHolder(42L);
+        update.addChange("scores", Map.of("ECOSCORE", 3.0));
+        update.guard(12L, 2L);
+        update.setReplaceFields(true);
+
+        Set<Long> conflicts = repository.bulkUpdateDocument(List.of(update));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<UpdateQuery>> updateCaptor = ArgumentCaptor.forClass(List.class);
+        verify(elasticsearchOperations).bulkUpdate(updateCaptor.capture(), eq(ProductRepository.CURRENT_INDEX));
+        UpdateQuery query = updateCaptor.getValue().getFirst();
+        assertThat(conflicts).isEmpty();
+        assertThat(query.getScript()).contains("ctx._source[entry.getKey()]");
+        assertThat(query.getParams()).containsEntry("fieldsToUpdate", Map.of("scores", Map.of("ECOSCORE", 3.0)));
+        assertThat(query.getDocument()).isNull();
+        assertThat(query.getIfSeqNo()).isEqualTo(12L);
+        assertThat(query.getIfPrimaryTerm()).isEqualTo(2L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void seenOffersAreRefreshedByScript()
+    {
+        ProductPartialUpdateHolder first = new ProductPartialUpdateHolder(42L);
+        first.addChange("lastChange", 1L);
+        first.seen("merchant-a");
+        ProductPartialUpdateHolder second = new ProductPartialUpdateHolder(42L);
+        second.addChange("lastChange", 2L);
+        second.seen("merchant-b");
+
+        repository.bulkUpdateDocument(List.of(first, second));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<UpdateQuery>> updateCaptor = ArgumentCaptor.forClass(List.class);
+        verify(elasticsearchOperations).bulkUpdate(updateCaptor.capture(), eq(ProductRepository.CURRENT_INDEX));
+        UpdateQuery query = updateCaptor.getValue().getFirst();
+        assertThat(query.getScript()).contains("params.seen.contains(offer.datasourceName)");
+        assertThat(query.getParams()).containsEntry("fieldsToUpdate", Map.of("lastChange", 2L));
+        assertThat((List<Object>) query.getParams().get("seen")).containsExactlyInAnyOrder("merchant-a", "merchant-b");
+        assertThat(query.getParams()).containsKey("now");
+        assertThat(query.getDocument()).isNull();
+    }
+
+    @Test
+    void versionConflictsAreReturnedOtherFailuresThrown()
+    {
+        BulkFailureException conflicts = new BulkFailureException("failed", Map.of(
+                "1", new BulkFailureException.FailureDetails(409, "conflict"),
+                "2", new BulkFailureException.FailureDetails(409, "conflict")));
+        assertThat(ProductRepository.versionConflicts(conflicts)).containsExactlyInAnyOrder(1L, 2L);
+
+        BulkFailureException mixed = new BulkFailureException("failed", Map.of(
+                "1", new BulkFailureException.FailureDetails(409, "conflict"),
+                "2", new BulkFailureException.FailureDetails(400, "mapping")));
+        assertThatThrownBy(() -> ProductRepository.versionConflicts(mixed)).isSameAs(mixed);
+    }
+
+    @Test
+    void missingDocumentsAreReturnedAsRejected()
+    {
+        BulkFailureException missing = new BulkFailureException("failed", Map.of(
+                "1", new BulkFailureException.FailureDetails(409, "conflict"),
+                "2", new BulkFailureException.FailureDetails(404, "document missing")));
+        assertThat(ProductRepository.versionConflicts(missing)).containsExactlyInAnyOrder(1L, 2L);
+    }
+
+    @Test
+    void storedProductsArePublishedAsFullyChanged()
+    {
+        List<ProductChangeEvent> published = subscribeToChanges();
+        SimpleElasticsearchMappingContext mappingContext = new SimpleElasticsearchMappingContext();
+        mappingContext.setSimpleTypeHolder(new ElasticsearchCustomConversions(List.of()).getSimpleTypeHolder());
+        MappingElasticsearchConverter converter = new MappingElasticsearchConverter(mappingContext);
+        converter.afterPropertiesSet();
+        when(elasticsearchOperations.getElasticsearchConverter()).thenReturn(converter);
+        Product product = new Product(42L);
+        product.setVertical("tv");
+
+        repository.store(List.of(product));
+
+        assertThat(published).containsExactly(new ProductChangeEvent(42L, "tv", Set.of(ProductChangeGroup.values())));
+    }
+
+    @Test
+    void appliedPartialUpdatesArePublishedWithTheirFieldGroups()
+    {
+        List<ProductChangeEvent> published = subscribeToChanges();
+        ProductPartialUpdateHolder prices = new ProductPartialUpdateHolder(1L);
+        prices.setVertical("tv");
+        prices.addChange("price", "updated");
+        prices.addChange("lastChange", 1L);
+        ProductPartialUpdateHolder conflicting = new ProductPartialUpdateHolder(2L);
+        conflicting.addChange("scores", Map.of());
+        doThrow(new BulkFailureException("failed", Map.of("2", new BulkFailureException.FailureDetails(409, "conflict"))))
+                .when(elasticsearchOperations).bulkUpdate(any(), eq(ProductRepository.CURRENT_INDEX));
+
+        repository.bulkUpdateDocument(List.of(prices, conflicting));
+
+        assertThat(published).containsExactly(
+                new ProductChangeEvent(1L, "tv", Set.of(ProductChangeGroup.OFFERS, ProductChangeGroup.OTHER)));
+    }
+
+    private List<ProductChangeEvent> subscribeToChanges()
+    {
+        LocalProductChangeBus bus = new LocalProductChangeBus();
+        List<ProductChangeEvent> published = new ArrayList<>();
+        bus.subscribe(published::addAll);
+        repository.setChangeBus(bus);
+        return published;
+    }
+
     @Test
     void mergePartialUpdatesSkipsNullProductIds()
     {
@@ -221,6 +355,42 @@ class ProductRepositoryTest
         assertThat(merged.iterator().next().getChanges()).containsEntry("offersCount", 3);
     }
 
+    @Test
+    void updatesOfDifferentGuardsAreSentAsSeparateBulkItems()
+    {
+        ProductPartialUpdateHolder batch = new ProductPartialUpdateHolder(1L);
+        batch.addChange("price", "stale");
+        batch.addChange("scores", "batch");
+        batch.guard(12L, 2L);
+        batch.setReplaceFields(true);
+        ProductPartialUpdateHolder realtime = new ProductPartialUpdateHolder(1L);
+        realtime.addChange("price", "fresh");
+        ProductPartialUpdateHolder otherRead = new ProductPartialUpdateHolder(1L);
+        otherRead.addChange("scores", "other");
+        otherRead.guard(13L, 2L);
+        otherRead.setReplaceFields(true);
+        ProductPartialUpdateHolder sameRead = new ProductPartialUpdateHolder(1L);
+        sameRead.addChange("vertical", "tv");
+        sameRead.guard(13L, 2L);
+        sameRead.setReplaceFields(true);
+
+        repository.bulkUpdateDocument(List.of(batch, realtime, otherRead, sameRead));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<UpdateQuery>> updateCaptor = ArgumentCaptor.forClass(List.class);
+        verify(elasticsearchOperations).bulkUpdate(updateCaptor.capture(), eq(ProductRepository.CURRENT_INDEX));
+        List<UpdateQuery> updates = updateCaptor.getValue();
+        assertThat(updates).hasSize(3);
+        assertThat(updates.get(0).getParams()).containsEntry("fieldsToUpdate", Map.of("price", "stale", "scores", "batch"));
+        assertThat(updates.get(0).getIfSeqNo()).isEqualTo(12L);
+        assertThat(updates.get(1).getDocument()).containsEntry("price", "fresh");
+        assertThat(updates.get(1).getScript()).isNull();
+        assertThat(updates.get(1).getIfSeqNo()).isNull();
+        assertThat(updates.get(2).getParams()).containsEntry("fieldsToUpdate", Map.of("scores", "other", "vertical", "tv"));
+        assertThat(updates.get(2).getIfSeqNo()).isEqualTo(13L);
+        assertThat(updates.get(2).getIfPrimaryTerm()).isEqualTo(2L);
+    }
+
     @Test
     void getByIdWithoutEmbeddingUsesNativeIdsQuery()
     {
@@ -3,7 +3,9 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.net.URLConnection;
 import java.nio.file.Files;
 import java.util.Base64;
 import java.util.HashMap;
@@ -202,9 +204,29 @@ public class RemoteFileCachingService {
 
         return destFile;
     }
-    
-    
-    
+
+    /**
+     * Opens the content of the given URL as a stream, without copying it to disk. Remote
+     * resources are read with the configured connection and read timeouts, other urls are
+     * considered as local file paths.
+     *
+     * @param url The URL (or local path) of the resource to read.
+     * @return The stream of the resource content, to be closed by the caller.
+     * @throws IOException If the connection fails or the local file cannot be opened.
+     */
+    public InputStream openStream(String url) throws IOException {
+        if (!url.startsWith("http")) {
+            return new FileInputStream(url);
+        }
+        logger.info("Streaming '{}'", url);
+        URLConnection connection = new URL(url).openConnection();
+        connection.setConnectTimeout(connectionTimeout);
+        connection.setReadTimeout(readTimeout);
+        return connection.getInputStream();
+    }
+
+
+
 
 	public File decompressGzipAndDeleteSource(File destFile) throws IOException {
 		File tmpFile = File.createTempFile("gzip", "gzip");
@@ -54,6 +54,11 @@ public class UrlFetcherConfig {
      */
     private RecordConfig record = new RecordConfig();
 
+    /**
+     * Per host fetch limits, applied to the asynchronous fetches.
+     */
+    private PolitenessConfig politeness = new PolitenessConfig();
+
     public Map<String, DomainConfig> getDomains() {
         return domains;
     }
@@ -110,6 +115,14 @@ public class UrlFetcherConfig {
         this.record = record;
     }
 
+    public PolitenessConfig getPoliteness() {
+        return politeness;
+    }
+
+    public void setPoliteness(PolitenessConfig politeness) {
+        this.politeness = politeness == null ? new PolitenessConfig() : politeness;
+    }
+
     /**
      * Domain-specific configuration options.
      */
@@ -159,6 +172,17 @@ public class UrlFetcherConfig {
          */
         private String externalProvider;
 
+        /**
+         * Max concurrent requests to the host, overriding {@link PolitenessConfig#getMaxInFlightPerHost()}.
+         */
+        private Integer maxInFlight;
+
+        /**
+         * Max requests started per second to the host, overriding
+         * {@link PolitenessConfig#getRequestsPerSecondPerHost()}.
+         */
+        private Double requestsPerSecond;
+
         // Getters and setters
 
         public String getUserAgent() {
@@ -216,6 +240,55 @@ public class UrlFetcherConfig {
         public void setExternalProvider(String externalProvider) {
             this.externalProvider = externalProvider;
         }
+
+        public Integer getMaxInFlight() {
+            return maxInFlight;
+        }
+
+        public void setMaxInFlight(Integer maxInFlight) {
+            this.maxInFlight = maxInFlight;
+        }
+
+        public Double getRequestsPerSecond() {
+            return requestsPerSecond;
+        }
+
+        public void setRequestsPerSecond(Double requestsPerSecond) {
+            this.requestsPerSecond = requestsPerSecond;
+        }
+    }
+
+    /**
+     * Default per host limits. Each host has its own queue, so a slow or throttled host
+     * never delays the fetches of the others.
+     */
+    public static class PolitenessConfig {
+
+        /**
+         * Max concurrent requests to a same host.
+         */
+        private int maxInFlightPerHost = 6;
+
+        /**
+         * Max requests started per second to a same host, 0 for no rate limit.
+         */
+        private double requestsPerSecondPerHost = 0;
+
+        public int getMaxInFlightPerHost() {
+            return maxInFlightPerHost;
+        }
+
+        public void setMaxInFlightPerHost(int maxInFlightPerHost) {
+            this.maxInFlightPerHost = maxInFlightPerHost;
+        }
+
+        public double getRequestsPerSecondPerHost() {
+            return requestsPerSecondPerHost;
+        }
+
+        public void setRequestsPerSecondPerHost(double requestsPerSecondPerHost) {
+            this.requestsPerSecondPerHost = requestsPerSecondPerHost;
+        }
     }
 
     public static class ExternalConfig {
@@ -0,0 +1,204 @@
+package org.open4goods.services.urlfetching.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Schedules the fetches host by host, enforcing per host a max number of requests in flight
+ * and a max request rate.
+ * <p>
+ * Each host has its own queue, started in submission order as its limits allow. No thread is
+ * held while a fetch waits for its host: a busy or throttled host never delays the fetches
+ * of the other hosts, which share the capacity fairly.
+ * </p>
+ * <p>
+ * The in flight and queued fetches are exposed as the {@code url.fetch.host.inflight} and
+ * {@code url.fetch.host.queued} gauges, tagged by host for the configured domains and
+ * aggregated under {@code host=other} for the others.
+ * </p>
+ */
+public class HostFetchScheduler {
+
+    static final String OTHER_HOSTS = "other";
+
+    private final Map<String, HostQueue> hosts = new ConcurrentHashMap<>();
+    private final Set<String> taggedHosts;
+
+    /** Starts the fetches delayed by a rate limit */
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "url-fetch-scheduler");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * @param meterRegistry the registry of the per host gauges
+     * @param taggedHosts   the hosts having their own gauges, the others being aggregated
+     */
+    public HostFetchScheduler(MeterRegistry meterRegistry, Set<String> taggedHosts) {
+        this.taggedHosts = Set.copyOf(taggedHosts);
+        for (String host : this.taggedHosts) {
+            registerGauges(meterRegistry, host);
+        }
+        registerGauges(meterRegistry, OTHER_HOSTS);
+    }
+
+    /**
+     * Submits a fetch, started once its host limits allow it.
+     *
+     * @param host              the fetched host
+     * @param maxInFlight       max concurrent fetches to the host
+     * @param requestsPerSecond max fetches started per second to the host, 0 for no limit
+     * @param fetch             starts the fetch
+     * @return the fetch result
+     */
+    public <T> CompletableFuture<T> submit(String host, int maxInFlight, double requestsPerSecond,
+            Supplier<CompletableFuture<T>> fetch) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        HostQueue queue = hosts.computeIfAbsent(host, h -> new HostQueue());
+        synchronized (queue) {
+            queue.maxInFlight = Math.max(1, maxInFlight);
+            queue.intervalNanos = requestsPerSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond) : 0;
+            queue.pending.add(() -> start(queue, fetch, result));
+        }
+        dispatch(queue);
+        return result;
+    }
+
+    /**
+     * @return the fetches in progress to the host
+     */
+    public int inFlight(String host) {
+        HostQueue queue = hosts.get(host);
+        if (queue == null) {
+            return 0;
+        }
+        synchronized (queue) {
+            return queue.inFlight;
+        }
+    }
+
+    /**
+     * @return the fetches to the host waiting for its limits
+     */
+    public int queued(String host) {
+        HostQueue queue = hosts.get(host);
+        if (queue == null) {
+            return 0;
+        }
+        synchronized (queue) {
+            return queue.pending.size();
+        }
+    }
+
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * Starts the pending fetches of a host allowed by its limits, and schedules the next
+     * dispatch if the rate limit delays the following one.
+     */
+    private void dispatch(HostQueue queue) {
+        List<Runnable> ready = new ArrayList<>();
+        synchronized (queue) {
+            long now = System.nanoTime();
+            while (!queue.pending.isEmpty() && queue.inFlight < queue.maxInFlight) {
+                if (queue.intervalNanos > 0 && now < queue.nextStartNanos) {
+                    if (!queue.wakeupScheduled && !timer.isShutdown()) {
+                        queue.wakeupScheduled = true;
+                        timer.schedule(() -> wakeup(queue), queue.nextStartNanos - now, TimeUnit.NANOSECONDS);
+                    }
+                    break;
+                }
+                queue.inFlight++;
+                queue.nextStartNanos = now + queue.intervalNanos;
+                ready.add(queue.pending.poll());
+            }
+        }
+        // Started out of the lock, fetches being asynchronous
+        ready.forEach(Runnable::run);
+    }
+
+    private void wakeup(HostQueue queue) {
+        synchronized (queue) {
+            queue.wakeupScheduled = false;
+        }
+        dispatch(queue);
+    }
+
+    private <T> void start(HostQueue queue, Supplier<CompletableFuture<T>> fetch, CompletableFuture<T> result) {
+        CompletableFuture<T> started;
+        try {
+            started = fetch.get();
+        } catch (RuntimeException e) {
+            started = CompletableFuture.failedFuture(e);
+        }
+        started.whenComplete((value, error) -> {
+            synchronized (queue) {
+                queue.inFlight--;
+            }
+            // Dispatched by the timer, not to recurse through the fetches completing immediately
+            try {
+                timer.execute(() -> dispatch(queue));
+            } catch (RejectedExecutionException e) {
+                // Shutting down
+            }
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+        });
+    }
+
+    private void registerGauges(MeterRegistry meterRegistry, String tag) {
+        Gauge.builder("url.fetch.host.inflight", this, s -> s.sum(tag, true))
+                .tag("host", tag)
+                .strongReference(true)
+                .register(meterRegistry);
+        Gauge.builder("url.fetch.host.queued", this, s -> s.sum(tag, false))
+                .tag("host", tag)
+                .strongReference(true)
+                .register(meterRegistry);
+    }
+
+    private double sum(String tag, boolean inFlight) {
+        if (!OTHER_HOSTS.equals(tag)) {
+            return inFlight ? inFlight(tag) : queued(tag);
+        }
+        Collection<String> others = hosts.keySet().stream().filter(h -> !taggedHosts.contains(h)).toList();
+        double ret = 0;
+        for (String host : others) {
+            ret += inFlight ? inFlight(host) : queued(host);
+        }
+        return ret;
+    }
+
+    /**
+     * The fetches state of a host, guarded by its monitor
+     */
+    private static final class HostQueue {
+        private final Queue<Runnable> pending = new ArrayDeque<>();
+        private int inFlight;
+        private int maxInFlight = 1;
+        private long intervalNanos;
+        private long nextStartNanos;
+        private boolean wakeupScheduled;
+    }
+}
@@ -5,10 +5,12 @@ import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executor;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 import tools.jackson.databind.ObjectMapper;
 import org.open4goods.services.urlfetching.config.FetchStrategy;
@@ -19,13 +21,15 @@ import org.open4goods.services.urlfetching.service.fetchers.ExternalFetchProvide
 import org.open4goods.services.urlfetching.service.fetchers.HttpFetcher;
 import org.open4goods.services.urlfetching.service.fetchers.ProxifiedHttpFetcher;
 import org.open4goods.services.urlfetching.service.fetchers.PlaywrightHttpFetcher;
-import org.open4goods.services.urlfetching.service.Fetcher;
 import org.open4goods.services.urlfetching.util.StructuredMetadataExtractor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 
 /**
  * Service that orchestrates URL fetching based on domain configuration.
@@ -35,6 +39,12 @@ import io.micrometer.core.instrument.MeterRegistry;
  * specified by {@code urlfetcher.record.destinationFolder}. This feature is primarily intended for
  * test or mock generation purposes.
  * </p>
+ * <p>
+ * The HTTP, proxified and external fetchers are long lived, one per distinct domain configuration,
+ * so that their {@link java.net.http.HttpClient} connections (HTTP/2 where the host supports it)
+ * are reused across fetches instead of handshaking for each one. Asynchronous fetches go through a
+ * {@link HostFetchScheduler} enforcing the per host concurrency and rate limits.
+ * </p>
  */
 @Service
 public class UrlFetchingService {
@@ -50,7 +60,16 @@ public class UrlFetchingService {
 
     private final UrlFetcherConfig urlFetcherConfig;
     private final MeterRegistry meterRegistry;
-    private final Executor executor;
+    private final ExecutorService executor;
+    private final HostFetchScheduler scheduler;
+
+    /** Configuration of the domains not configured */
+    private final DomainConfig defaultDomainConfig;
+
+    /** The reusable fetchers, by the configuration they are built from */
+    private final Map<FetcherKey, Fetcher> fetchers = new ConcurrentHashMap<>();
+    private final Counter fetchersCreated;
+    private final LongAdder pooledFetches = new LongAdder();
 
     /**
      * Constructs a new UrlFetchingService.
@@ -62,6 +81,21 @@ public class UrlFetchingService {
         this.urlFetcherConfig = urlFetcherConfig;
         this.meterRegistry = meterRegistry;
         this.executor = Executors.newFixedThreadPool(urlFetcherConfig.getThreadPoolSize());
+        this.scheduler = new HostFetchScheduler(meterRegistry, urlFetcherConfig.getDomains().keySet());
+        this.defaultDomainConfig = new DomainConfig();
+        this.defaultDomainConfig.setUserAgent("DefaultUserAgent/1.0");
+        this.defaultDomainConfig.setStrategy(FetchStrategy.HTTP);
+        this.fetchersCreated = meterRegistry.counter("url.fetch.client.created");
+        // Share of the fetches served by an already built client, thus able to reuse its connections
+        Gauge.builder("url.fetch.client.reuse.ratio", this, s -> s.clientReuseRatio())
+                .strongReference(true)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        executor.shutdownNow();
     }
 
     /**
@@ -92,13 +126,7 @@ public class UrlFetchingService {
     public CompletableFuture<FetchResponse> fetchUrlAsync(String url, Map<String, String> headers) {
         logger.info("URL_FETCH url={} phase=select", url);
         String domain = getDomainFromUrl(url);
-        DomainConfig domainConfig = urlFetcherConfig.getDomains().get(domain);
-        if (domainConfig == null) {
-            logger.warn("URL_FETCH domain={} phase=select outcome=defaultConfig strategy=HTTP", domain);
-            domainConfig = new DomainConfig();
-            domainConfig.setUserAgent("DefaultUserAgent/1.0");
-            domainConfig.setStrategy(FetchStrategy.HTTP);
-        }
+        DomainConfig domainConfig = domainConfig(domain);
         domainConfig = withRuntimeOverrides(domainConfig, headers);
         boolean forcePlaywrightProxy = requestedPlaywrightProxy(headers);
         String expectedGtin = headers == null ? null : headers.get(EXPECTED_GTIN_HEADER); //TODO : Why expectedGtin is Empty ?
@@ -109,7 +137,8 @@ public class UrlFetchingService {
                 domainConfig.getCustomHeaders() == null ? java.util.Set.of() : domainConfig.getCustomHeaders().keySet());
         Fetcher fetcher = getFetcherForStrategy(domainConfig, forcePlaywrightProxy);
         // TODO : Here the strategy for reverse proxying http proxy seems to fail
-        CompletableFuture<FetchResponse> future = fetcher.fetchUrlAsync(url, outboundHeaders);
+        CompletableFuture<FetchResponse> future = scheduler.submit(domain, maxInFlight(domainConfig),
+                requestsPerSecond(domainConfig), () -> fetcher.fetchUrlAsync(url, outboundHeaders));
         return future.thenApply(response -> {
             FetchResponse effectiveResponse = rejectOnGtinMismatch(response, expectedGtin);
             // Recording mode: if enabled, record the fetch response to file.
@@ -126,13 +155,7 @@ public class UrlFetchingService {
     public FetchResponse fetchUrlSync(String url) throws IOException, InterruptedException {
         logger.info("URL_FETCH url={} phase=select", url);
         String domain = getDomainFromUrl(url);
-        DomainConfig domainConfig = urlFetcherConfig.getDomains().get(domain);
-        if (domainConfig == null) {
-            logger.warn("URL_FETCH domain={} phase=select outcome=defaultConfig strategy=HTTP", domain);
-            domainConfig = new DomainConfig();
-            domainConfig.setUserAgent("DefaultUserAgent/1.0");
-            domainConfig.setStrategy(FetchStrategy.HTTP);
-        }
+        DomainConfig domainConfig = domainConfig(domain);
 
         Fetcher fetcher = getFetcherForStrategy(domainConfig, false);
         FetchResponse response = fetcher.fetchUrlSync(url);
@@ -143,7 +166,30 @@ public class UrlFetchingService {
     }
 
     /**
-     * Returns a Fetcher implementation based on the configured strategy.
+     * @return the configuration of the domain, or the default one if not configured
+     */
+    private DomainConfig domainConfig(String domain) {
+        DomainConfig domainConfig = urlFetcherConfig.getDomains().get(domain);
+        if (domainConfig == null) {
+            logger.warn("URL_FETCH domain={} phase=select outcome=defaultConfig strategy=HTTP", domain);
+            return defaultDomainConfig;
+        }
+        return domainConfig;
+    }
+
+    private int maxInFlight(DomainConfig domainConfig) {
+        return domainConfig.getMaxInFlight() != null ? domainConfig.getMaxInFlight()
+                : urlFetcherConfig.getPoliteness().getMaxInFlightPerHost();
+    }
+
+    private double requestsPerSecond(DomainConfig domainConfig) {
+        return domainConfig.getRequestsPerSecond() != null ? domainConfig.getRequestsPerSecond()
+                : urlFetcherConfig.getPoliteness().getRequestsPerSecondPerHost();
+    }
+
+    /**
+     * Returns a Fetcher implementation based on the configured strategy. The HTTP based fetchers
+     * are built once per distinct configuration and then reused.
      *
      * @param domainConfig the domain configuration
      * @return a Fetcher instance
@@ -152,6 +198,26 @@ public class UrlFetchingService {
         if (domainConfig.getStrategy() == null) {
             domainConfig.setStrategy(FetchStrategy.HTTP);
         }
+        if (domainConfig.getStrategy() == FetchStrategy.PLAYWRIGHT) {
+            // A browser is launched per fetch, nothing to reuse
+            return createFetcher(domainConfig, forcePlaywrightProxy);
+        }
+        pooledFetches.increment();
+        return fetchers.computeIfAbsent(FetcherKey.of(domainConfig), k -> {
+            fetchersCreated.increment();
+            return createFetcher(domainConfig, forcePlaywrightProxy);
+        });
+    }
+
+    /**
+     * @return the share of the HTTP based fetches served by an already built fetcher
+     */
+    double clientReuseRatio() {
+        long fetches = pooledFetches.sum();
+        return fetches == 0 ? 0 : 1 - fetchersCreated.count() / fetches;
+    }
+
+    private Fetcher createFetcher(DomainConfig domainConfig, boolean forcePlaywrightProxy) {
         switch (domainConfig.getStrategy()) {
             case PROXIFIED:
                 logger.info("URL_FETCH strategy=PROXIFIED phase=selected");
@@ -202,6 +268,8 @@ public class UrlFetchingService {
         overridden.setRetryPolicy(original.getRetryPolicy());
         overridden.setBrowserChannel(original.getBrowserChannel());
         overridden.setExternalProvider(runtimeExternalProvider(headers, original.getExternalProvider()));
+        overridden.setMaxInFlight(original.getMaxInFlight());
+        overridden.setRequestsPerSecond(original.getRequestsPerSecond());
         logger.info("URL_FETCH phase=select runtimeStrategyOverride={} runtimeTimeoutMs={}",
                 override, timeoutOverride);
         return overridden;
@@ -334,4 +402,18 @@ public class UrlFetchingService {
         String sanitized = url.replaceFirst("^(https?://)", "").replaceAll("[^a-zA-Z0-9]", "_");
         return sanitized + ".txt";
     }
+
+    /**
+     * The configuration a fetcher is built from, overridden configurations of a same domain
+     * sharing their fetcher when equal.
+     */
+    private record FetcherKey(FetchStrategy strategy, String userAgent, Map<String, String> customHeaders,
+            long timeout, String externalProvider) {
+
+        static FetcherKey of(DomainConfig domainConfig) {
+            return new FetcherKey(domainConfig.getStrategy(), domainConfig.getUserAgent(),
+                    domainConfig.getCustomHeaders() == null ? Map.of() : new java.util.HashMap<>(domainConfig.getCustomHeaders()),
+                    domainConfig.getTimeout(), domainConfig.getExternalProvider());
+        }
+    }
 }
@@ -53,6 +53,7 @@ public class HttpFetcher implements Fetcher {
         this.executor = executor;
         this.httpClient = HttpClient.newBuilder()
                 .executor(executor)
+                .version(HttpClient.Version.HTTP_2)
                 .connectTimeout(this.timeout)
                 .followRedirects(HttpClient.Redirect.NEVER)
                 .build();
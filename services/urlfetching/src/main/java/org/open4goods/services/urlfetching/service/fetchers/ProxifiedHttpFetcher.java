@@ -54,6 +54,7 @@ public class ProxifiedHttpFetcher implements Fetcher {
         // Build HttpClient with proxy settings if provided
         HttpClient.Builder builder = HttpClient.newBuilder()
                 .executor(executor)
+                .version(HttpClient.Version.HTTP_2)
                 .connectTimeout(this.timeout)
                 .followRedirects(HttpClient.Redirect.NEVER);
         if (proxy != null && proxy.getHost() != null) {
@@ -0,0 +1,88 @@
+package org.open4goods.services.urlfetching.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Unit tests for the per host fetch scheduling.
+ */
+class HostFetchSchedulerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final HostFetchScheduler scheduler = new HostFetchScheduler(meterRegistry, Set.of("slow.example"));
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void limitsInFlightFetchesPerHostWithoutDelayingOtherHosts() throws Exception {
+        List<CompletableFuture<String>> slowFetches = new CopyOnWriteArrayList<>();
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(scheduler.submit("slow.example", 2, 0, () -> {
+                CompletableFuture<String> fetch = new CompletableFuture<>();
+                slowFetches.add(fetch);
+                return fetch;
+            }));
+        }
+
+        assertThat(scheduler.inFlight("slow.example")).isEqualTo(2);
+        assertThat(scheduler.queued("slow.example")).isEqualTo(3);
+        assertThat(meterRegistry.get("url.fetch.host.queued").tag("host", "slow.example").gauge().value()).isEqualTo(3);
+
+        // Another host is served while the first one is saturated
+        String other = scheduler.submit("fast.example", 2, 0, () -> CompletableFuture.completedFuture("fast"))
+                .get(5, TimeUnit.SECONDS);
+        assertThat(other).isEqualTo("fast");
+
+        // Completing a fetch starts a queued one
+        slowFetches.get(0).complete("first");
+        assertThat(results.get(0).get(5, TimeUnit.SECONDS)).isEqualTo("first");
+        awaitQueued("slow.example", 2);
+        assertThat(scheduler.inFlight("slow.example")).isEqualTo(2);
+        assertThat(slowFetches).hasSize(3);
+    }
+
+    @Test
+    void spacesFetchStartsToTheRequestRate() throws Exception {
+        List<Long> starts = new ArrayList<>();
+        List<CompletableFuture<Long>> results = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            results.add(scheduler.submit("rated.example", 10, 20, () -> {
+                long now = System.nanoTime();
+                synchronized (starts) {
+                    starts.add(now);
+                }
+                return CompletableFuture.completedFuture(now);
+            }));
+        }
+        for (CompletableFuture<Long> result : results) {
+            result.get(5, TimeUnit.SECONDS);
+        }
+
+        // 20 requests per second : at least 50ms between two starts
+        assertThat(starts).hasSize(3);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(starts.get(2) - starts.get(0))).isGreaterThanOrEqualTo(100);
+    }
+
+    private void awaitQueued(String host, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (scheduler.queued(host) != expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(scheduler.queued(host)).isEqualTo(expected);
+    }
+}
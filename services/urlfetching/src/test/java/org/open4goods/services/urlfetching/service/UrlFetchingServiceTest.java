@@ -71,6 +71,32 @@ class UrlFetchingServiceTest {
         }
     }
 
+    @Test
+    void fetchUrlAsync_ReusesTheFetcherOfADomain() throws Exception {
+        HttpServer server = startServer();
+        try {
+            UrlFetcherConfig config = new UrlFetcherConfig();
+            DomainConfig domainConfig = new DomainConfig();
+            domainConfig.setStrategy(FetchStrategy.HTTP);
+            domainConfig.setUserAgent("Open4GoodsTestAgent/1.0");
+            domainConfig.setTimeout(5000);
+            config.setDomains(Map.of("localhost", domainConfig));
+
+            SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+            UrlFetchingService service = new UrlFetchingService(config, meterRegistry);
+            String url = "http://localhost:" + server.getAddress().getPort() + "/product";
+            for (int i = 0; i < 4; i++) {
+                assertThat(service.fetchUrlAsync(url).get().statusCode()).isEqualTo(200);
+            }
+
+            assertThat(meterRegistry.get("url.fetch.client.created").counter().count()).isEqualTo(1);
+            assertThat(meterRegistry.get("url.fetch.client.reuse.ratio").gauge().value()).isEqualTo(0.75);
+            service.shutdown();
+        } finally {
+            server.stop(0);
+        }
+    }
+
     @Test
     void fetchUrlAsync_AppliesRuntimeTimeoutOverrideWithoutMutatingConfiguredDomain() throws Exception {
         UrlFetcherConfig config = new UrlFetcherConfig();